@@ -0,0 +1,34 @@
+package com.sana.paranoiaplus.bench;
+
+import com.sana.paranoiaplus.util.ConfigSnapshot;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Logger;
+
+/** BenchConfig - the plugin's bundled config.yml compiled to a ConfigSnapshot, with per-benchmark overrides. */
+final class BenchConfig {
+    private BenchConfig() {}
+
+    static final Logger LOG = Logger.getLogger("ParanoiaPlus-Bench");
+
+    /** overrides: alternating path, value pairs set on top of the defaults. */
+    static ConfigSnapshot load(Object... overrides) {
+        YamlConfiguration c;
+        try (InputStream in = BenchConfig.class.getResourceAsStream("/config.yml")) {
+            if (in == null) throw new IllegalStateException("config.yml not on the classpath (is the plugin jar a dependency?)");
+            try (Reader r = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                c = YamlConfiguration.loadConfiguration(r);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        for (int i = 0; i + 1 < overrides.length; i += 2) c.set((String) overrides[i], overrides[i + 1]);
+        return ConfigSnapshot.compile(c, LOG);
+    }
+}
@@ -0,0 +1,32 @@
+package com.sana.paranoiaplus.bench;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * BenchMain - entry point of benchmarks.jar: JMH with its usual arguments, except results default to JSON in
+ * results/jmh-&lt;timestamp&gt;.json so runs can be kept and compared (pass -rf/-rff to override).
+ */
+public final class BenchMain {
+    private BenchMain() {}
+
+    public static void main(String[] args) throws Exception {
+        List<String> a = new ArrayList<>(Arrays.asList(args));
+        if (!a.contains("-rf")) {
+            a.add("-rf");
+            a.add("json");
+        }
+        if (!a.contains("-rff")) {
+            File out = new File("results", "jmh-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".json");
+            if (!out.getParentFile().isDirectory() && !out.getParentFile().mkdirs())
+                throw new IllegalStateException("Cannot create " + out.getParentFile());
+            a.add("-rff");
+            a.add(out.getPath());
+        }
+        org.openjdk.jmh.Main.main(a.toArray(new String[0]));
+    }
+}
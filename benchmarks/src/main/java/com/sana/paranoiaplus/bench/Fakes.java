@@ -0,0 +1,100 @@
+package com.sana.paranoiaplus.bench;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.LivingEntity;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * Fakes - in-memory stand-ins for the few Bukkit objects the engine classes touch, built as dynamic proxies so
+ * no server is needed. Only the methods the plugin's util classes call are answered; anything else throws, so
+ * a new dependency on live server state shows up at once instead of reading as zero.
+ */
+final class Fakes {
+    private Fakes() {}
+
+    /** A mob the harness moves and retires; the proxy returned by {@link #mob} reads it. */
+    static final class Mob {
+        final UUID id;
+        final EntityType type;
+        final long dieAt;
+        double x, y, z;
+        boolean ai = true;
+        LivingEntity entity;
+
+        Mob(UUID id, EntityType type, double x, double y, double z, long dieAt) {
+            this.id = id;
+            this.type = type;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.dieAt = dieAt;
+        }
+    }
+
+    /** An overworld that is always at the given time of day (ticks 0-23999). */
+    static World world(String name, UUID id, long time) {
+        return proxy(World.class, (self, m, args) -> {
+            switch (m.getName()) {
+                case "getUID": return id;
+                case "getName": return name;
+                case "getTime": return time;
+                case "getEnvironment": return World.Environment.NORMAL;
+                default: return unsupported(self, m, args, "World " + name);
+            }
+        });
+    }
+
+    /** A living entity backed by state; it is valid until clock reaches state.dieAt. */
+    static LivingEntity mob(World w, Mob state, LongSupplier clock) {
+        LivingEntity e = proxy(LivingEntity.class, (self, m, args) -> {
+            switch (m.getName()) {
+                case "getUniqueId": return state.id;
+                case "getWorld": return w;
+                case "getType": return state.type;
+                case "isValid": return clock.getAsLong() < state.dieAt;
+                case "isInWater": return false;
+                case "getHeight": return 1.95;
+                case "hasAI": return state.ai;
+                case "setAI":
+                    state.ai = (Boolean) args[0];
+                    return null;
+                case "getLocation":
+                    if (args == null || args.length == 0) return new Location(w, state.x, state.y, state.z);
+                    Location l = (Location) args[0];
+                    l.setWorld(w);
+                    l.setX(state.x);
+                    l.setY(state.y);
+                    l.setZ(state.z);
+                    return l;
+                default: return unsupported(self, m, args, "mob " + state.id);
+            }
+        });
+        state.entity = e;
+        return e;
+    }
+
+    private interface Handler {
+        Object invoke(Object self, Method m, Object[] args);
+    }
+
+    private static <T> T proxy(Class<T> type, Handler h) {
+        return type.cast(Proxy.newProxyInstance(Fakes.class.getClassLoader(), new Class<?>[]{type},
+                (self, m, args) -> h.invoke(self, m, args)));
+    }
+
+    // identity semantics for Object methods; everything else is outside what the harness simulates
+    private static Object unsupported(Object self, Method m, Object[] args, String what) {
+        switch (m.getName()) {
+            case "equals": return self == args[0];
+            case "hashCode": return System.identityHashCode(self);
+            case "toString": return what;
+            default: throw new UnsupportedOperationException(what + ": " + m.getName() + " is not simulated");
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.sana.paranoiaplus.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** LoadReport - what LoadSim measured, per player count and module; serialized as the JSON report. */
+final class LoadReport {
+    long seed;
+    int warmupTicks, ticks;
+    boolean paced;
+    String started;
+    Map<String, Object> overrides = new LinkedHashMap<>();
+    List<Run> runs = new ArrayList<>();
+
+    static final class Run {
+        final int players, bots, ticks;
+        final double wallMs;
+        final List<Module> modules = new ArrayList<>();
+        final Map<String, Long> notes = new LinkedHashMap<>();
+        final Map<String, String> info = new LinkedHashMap<>();
+
+        Run(int players, int bots, int ticks, double wallMs) {
+            this.players = players;
+            this.bots = bots;
+            this.ticks = ticks;
+            this.wallMs = wallMs;
+        }
+    }
+
+    /** One module at one player count; times in ms, allocation in KB, all per tick unless named otherwise. */
+    static final class Module {
+        String name;
+        double mainAvgMs, mainP50Ms, mainP95Ms, mainP99Ms, mainMaxMs;
+        double workerCpuMs, mainAllocKb, workerAllocKb, packets, packetKb;
+
+        static Module of(String name, long[] tickNanos, long workerCpuNanos, long mainAlloc, long workerAlloc,
+                         long packets, long bytes, int ticks) {
+            Module m = new Module();
+            m.name = name;
+            long[] sorted = tickNanos.clone();
+            Arrays.sort(sorted);
+            long sum = 0;
+            for (long v : sorted) sum += v;
+            m.mainAvgMs = sum / 1e6 / ticks;
+            m.mainP50Ms = quantile(sorted, 0.50);
+            m.mainP95Ms = quantile(sorted, 0.95);
+            m.mainP99Ms = quantile(sorted, 0.99);
+            m.mainMaxMs = sorted[sorted.length - 1] / 1e6;
+            m.workerCpuMs = workerCpuNanos / 1e6 / ticks;
+            m.mainAllocKb = mainAlloc / 1024.0 / ticks;
+            m.workerAllocKb = workerAlloc / 1024.0 / ticks;
+            m.packets = (double) packets / ticks;
+            m.packetKb = bytes / 1024.0 / ticks;
+            return m;
+        }
+
+        private static double quantile(long[] sorted, double q) {
+            int i = Math.min(sorted.length - 1, (int) Math.ceil(q * sorted.length) - 1);
+            return sorted[Math.max(0, i)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,590 @@
+package com.sana.paranoiaplus.bench;
+
+import com.sana.paranoiaplus.util.BotStream;
+import com.sana.paranoiaplus.util.ConfigSnapshot;
+import com.sana.paranoiaplus.util.MobRegistry;
+import com.sana.paranoiaplus.util.NavUtils;
+import com.sana.paranoiaplus.util.PlayerSnapshot;
+import com.sana.paranoiaplus.util.SamplePipeline;
+import com.sana.paranoiaplus.util.ScopedModels;
+import com.sana.paranoiaplus.util.ShadowHead;
+import com.sana.paranoiaplus.util.ShadowSpot;
+import com.sana.paranoiaplus.util.SpawnRules;
+import com.sana.paranoiaplus.util.TimingWheel;
+import com.sana.paranoiaplus.util.VisionSystem;
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.LivingEntity;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LoadRun - one simulated server at a fixed player count, driving each module's per-tick engine work the way
+ * the module's scheduled tasks and listeners do, on a simulated clock:
+ * <ul>
+ *   <li>core: PlayerSnapshot capture and the TimingWheel;</li>
+ *   <li>shadow: the 15 s spawn check (alone, dark, cooldown, ShadowSpot search) and per-tick head tracking;</li>
+ *   <li>mobs: natural spawns and periodic spawn storms through SpawnRules and MobRegistry, and the controller
+ *       feeding the VisionSystem worker;</li>
+ *   <li>fake: bots walking A* paths from the nav pool to goals around their target, streamed to viewers;</li>
+ *   <li>ml: block place/break/pickup samples with periodic event floods, drained, recompiled and persisted
+ *       on an async thread as the scheduler would.</li>
+ * </ul>
+ * Players walk scripted loops over a synthetic voxel world. Every input is drawn from seeded generators, so
+ * a seed replays the same workload, SpawnRules' roll and token bucket included (the bucket runs on the simulated
+ * clock), and a bot's path search is taken up on its next round (searches settle at the tick boundary, not
+ * in the measured window); what depends on timing (a search cut by nav.astar-max-ms, which vision frame is
+ * late) only changes that bot's or mob's own outcome.
+ *
+ * Packets are counted, not built: shadows go through ShadowHead and bots through BotStream, the seams under
+ * ShadowModule and BotRenderer, with sinks that count instead of queueing. Mobs send none (freezing is a
+ * server-side AI flag).
+ */
+final class LoadRun {
+    static final String[] MODULES = {"core", "shadow", "mobs", "fake", "ml"};
+    private static final int CORE = 0, SHADOW = 1, MOBS = 2, FAKE = 3, ML = 4;
+
+    private static final long SHADOW_CHECK_TICKS = 20L * 15;
+    private static final long ML_DRAIN_TICKS = 5L;
+    private static final long STORM_EVERY = 600L, STORM_TICKS = 60L, FLOOD_EVERY = 600L, FLOOD_TICKS = 100L;
+    private static final EntityType[] SPAWN_TYPES = {
+            EntityType.ZOMBIE, EntityType.SKELETON, EntityType.SPIDER, EntityType.CREEPER, EntityType.ENDERMAN, EntityType.COW };
+
+    private final ConfigSnapshot cfg;
+    private final int n;
+    private final Terrain terrain;
+    private final World world;
+    private long tick;
+
+    // players: scripted loops around a home point
+    private final UUID[] ids, worlds;
+    private final double[] px, py, pz;
+    private final float[] yaw, pitch;
+    private final byte[] gameMode, light;
+    private final double[][] waypoints; // per player: x0, z0, x1, z1, ...
+    private final int[] nextWaypoint;
+    private final Random players;
+    private PlayerSnapshot snap = PlayerSnapshot.EMPTY;
+
+    private final TimingWheel wheel = new TimingWheel(null);
+
+    // shadow
+    private final Random shadowRandom;
+    private final Set<UUID> cooling = new HashSet<>();
+    private final Map<UUID, Shadow> shadows = new HashMap<>();
+    private final TimingWheel.Action cooldownExpired = (ref, arg) -> cooling.remove(ref);
+    private final TimingWheel.Action despawn = this::despawnShadow;
+    private final double[] spot = new double[3];
+    private int nextShadowId = 1000;
+
+    // mobs
+    private final Random mobRandom;
+    private final MobRegistry controlled = new MobRegistry();
+    private final SpawnRules rules;
+    private final VisionSystem vision;
+    private final Set<UUID> frozen = new HashSet<>();
+    private final Location scratch = new Location(null, 0, 0, 0);
+    private final MobRegistry.Visitor sample = this::sampleMob;
+    private long mobSeq, freezeToggles;
+
+    // fake
+    private final Bot[] bots;
+    private final BotStream stream = new BotStream(new Counted());
+    private final Map<UUID, Integer> viewerSlots = new HashMap<>();
+    private final TimingWheel.Action hideTab = (ref, arg) -> count(FAKE, 1, BotStream.B_INFO);
+
+    // ml
+    private final Random mlRandom;
+    private final File mlDir;
+    private final ScopedModels models;
+    private final SamplePipeline samples = new SamplePipeline(8192);
+    private final ExecutorService async;
+    private final int[] materials;
+
+    // measurement
+    private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final long[] packets = new long[MODULES.length], bytes = new long[MODULES.length];
+    private long[][] nanos;
+    private final long[] alloc = new long[MODULES.length];
+    private int measured = -1;
+
+    LoadRun(ConfigSnapshot cfg, int players, int botCount, long seed) throws IOException {
+        this.cfg = cfg;
+        this.n = players;
+        this.terrain = new Terrain(seed, 0.05, 0.3);
+        this.world = Fakes.world("world", new UUID(seed, 0L), 18000L);
+        Random root = new Random(seed);
+        this.players = new Random(root.nextLong());
+        this.shadowRandom = new Random(root.nextLong());
+        this.mobRandom = new Random(root.nextLong());
+        this.mlRandom = new Random(root.nextLong());
+        long botSeed = root.nextLong();
+        this.rules = new SpawnRules(new Random(root.nextLong()), () -> tick * 50_000_000L); // bucket refills on the simulated clock
+
+        ids = new UUID[n];
+        worlds = new UUID[n];
+        px = new double[n];
+        py = new double[n];
+        pz = new double[n];
+        yaw = new float[n];
+        pitch = new float[n];
+        gameMode = new byte[n];
+        light = new byte[n];
+        waypoints = new double[n][];
+        nextWaypoint = new int[n];
+        double side = Math.sqrt(n) * 64; // ~64 blocks between homes, so some players are alone
+        for (int i = 0; i < n; i++) {
+            ids[i] = new UUID(seed, i + 1L);
+            worlds[i] = world.getUID();
+            double hx = this.players.nextDouble() * side, hz = this.players.nextDouble() * side;
+            double[] w = new double[8];
+            for (int k = 0; k < w.length; k += 2) {
+                w[k] = hx + (this.players.nextDouble() - 0.5) * 64;
+                w[k + 1] = hz + (this.players.nextDouble() - 0.5) * 64;
+            }
+            waypoints[i] = w;
+            px[i] = w[0];
+            py[i] = Terrain.FLOOR;
+            pz[i] = w[1];
+            gameMode[i] = (byte) (this.players.nextInt(20) == 0 ? GameMode.CREATIVE : GameMode.SURVIVAL).ordinal();
+        }
+
+        vision = new VisionSystem(w -> terrain);
+
+        bots = new Bot[Math.min(botCount, n)];
+        for (int b = 0; b < bots.length; b++) bots[b] = new Bot(b, (b * 7) % n, new Random(botSeed + b));
+
+        mlDir = Files.createTempDirectory("paranoia-load").toFile();
+        models = new ScopedModels(mlDir, cfg.ml, BenchConfig.LOG);
+        models.recompute(cfg.ml);
+        async = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "LoadSim-Async");
+            t.setDaemon(true);
+            return t;
+        });
+        List<Integer> m = new ArrayList<>();
+        for (Material mat : Material.values()) if (!mat.isLegacy() && mat.isBlock() && !mat.isAir()) m.add(mat.ordinal());
+        materials = new int[m.size()];
+        for (int i = 0; i < materials.length; i++) materials[i] = m.get(i);
+    }
+
+    // ---- driver ----
+
+    /** Run warmup ticks unmeasured, then ticks measured; paced: hold each tick to 50 ms like a real server. */
+    LoadReport.Run run(int warmup, int ticks, boolean paced) throws InterruptedException {
+        for (int t = 0; t < warmup; t++) step(paced);
+        nanos = new long[MODULES.length][ticks];
+        Arrays.fill(alloc, 0L);
+        Arrays.fill(packets, 0L);
+        Arrays.fill(bytes, 0L);
+        Map<Long, long[]> before = workerTimes();
+        long wall = System.nanoTime();
+        for (measured = 0; measured < ticks; measured++) step(paced);
+        wall = System.nanoTime() - wall;
+        quiesce(); // let queued async work finish inside the window
+        Map<Long, long[]> after = workerTimes();
+        long[] workerCpu = new long[MODULES.length], workerAlloc = new long[MODULES.length];
+        for (Map.Entry<Long, long[]> e : after.entrySet()) {
+            long[] a = e.getValue(), b = before.get(e.getKey());
+            int mod = (int) a[0];
+            workerCpu[mod] += a[1] - (b == null ? 0 : b[1]);
+            workerAlloc[mod] += a[2] - (b == null ? 0 : b[2]);
+        }
+        LoadReport.Run r = new LoadReport.Run(n, bots.length, ticks, wall / 1e6);
+        for (int m = 0; m < MODULES.length; m++) {
+            r.modules.add(LoadReport.Module.of(MODULES[m], nanos[m], workerCpu[m], alloc[m], workerAlloc[m], packets[m], bytes[m], ticks));
+        }
+        r.notes.put("shadowsLive", (long) shadows.size());
+        r.notes.put("mobsControlled", (long) controlled.size());
+        r.notes.put("mobsFrozen", (long) frozen.size());
+        r.notes.put("freezeToggles", freezeToggles);
+        r.notes.put("mlAccepted", samples.accepted());
+        r.notes.put("mlDropped", samples.dropped());
+        r.notes.put("timersPending", (long) wheel.size());
+        r.info.put("vision", vision.stats());
+        r.info.put("spawnRules", rules.stats());
+        r.info.put("nav", NavUtils.stats());
+        r.info.put("ml", models.stats());
+        return r;
+    }
+
+    void close() {
+        vision.shutdown();
+        async.shutdown();
+        try {
+            async.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        models.close(10000L);
+        delete(mlDir);
+    }
+
+    private void step(boolean paced) throws InterruptedException {
+        long start = System.nanoTime();
+        tick++;
+        movePlayers();
+        settleSearches();
+        long t = begin();
+        coreTick();
+        t = end(CORE, t);
+        shadowTick();
+        t = end(SHADOW, t);
+        mobsTick();
+        t = end(MOBS, t);
+        fakeTick();
+        t = end(FAKE, t);
+        mlTick();
+        end(ML, t);
+        if (paced) {
+            long left = 50_000_000L - (System.nanoTime() - start);
+            if (left > 0) TimeUnit.NANOSECONDS.sleep(left);
+        }
+    }
+
+    // ---- measurement ----
+
+    private long lastAlloc;
+
+    private long begin() {
+        lastAlloc = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        return System.nanoTime();
+    }
+
+    private long end(int module, long t0) {
+        long now = System.nanoTime();
+        long a = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        if (measured >= 0) {
+            nanos[module][measured] = now - t0;
+            alloc[module] += a - lastAlloc;
+        }
+        lastAlloc = a;
+        return now;
+    }
+
+    private void count(int module, int packetCount, int byteCount) {
+        packets[module] += packetCount;
+        bytes[module] += byteCount;
+    }
+
+    // worker threads by module: thread id -> {module, cpu ns, allocated bytes}
+    private Map<Long, long[]> workerTimes() {
+        Map<Long, long[]> out = new HashMap<>();
+        for (Thread th : Thread.getAllStackTraces().keySet()) {
+            String name = th.getName();
+            int mod = name.startsWith("ParanoiaPlus-Vision") ? MOBS
+                    : name.startsWith("ParanoiaPlus-Nav-") ? FAKE
+                    : name.startsWith("ParanoiaPlus-MLStore") || name.equals("LoadSim-Async") ? ML : -1;
+            if (mod < 0) continue;
+            long id = th.getId();
+            out.put(id, new long[]{mod, threads.getThreadCpuTime(id), threads.getThreadAllocatedBytes(id)});
+        }
+        return out;
+    }
+
+    private void quiesce() throws InterruptedException {
+        CompletableFuture<Void> done = CompletableFuture.runAsync(() -> { }, async);
+        try {
+            done.get(30, TimeUnit.SECONDS);
+        } catch (Exception ex) {
+            throw new IllegalStateException("async work did not finish", ex);
+        }
+    }
+
+    // ---- players (the server's own work; not measured) ----
+
+    private void movePlayers() {
+        for (int i = 0; i < n; i++) {
+            double[] w = waypoints[i];
+            int k = nextWaypoint[i];
+            double dx = w[k] - px[i], dz = w[k + 1] - pz[i];
+            double d = Math.sqrt(dx * dx + dz * dz);
+            if (d < 0.5) {
+                nextWaypoint[i] = (k + 2) % w.length;
+                continue;
+            }
+            double speed = 0.22;
+            px[i] += dx / d * speed;
+            pz[i] += dz / d * speed;
+            // face the way they walk, glancing around
+            yaw[i] = (float) (Math.toDegrees(Math.atan2(-dx, dz)) + (players.nextDouble() - 0.5) * 60);
+            pitch[i] = (float) ((players.nextDouble() - 0.5) * 30);
+            int l = terrain.light((int) Math.floor(px[i]), Terrain.FLOOR, (int) Math.floor(pz[i]));
+            light[i] = (byte) Math.max(0, l);
+        }
+    }
+
+    // ---- core ----
+
+    private void coreTick() {
+        snap = PlayerSnapshot.of(ids, worlds, px, py, pz, yaw, pitch, gameMode, light, tick, cfg.global.gridCellSize);
+        wheel.advance();
+    }
+
+    // ---- shadow ----
+
+    private static final class Shadow {
+        final int id;
+        final ShadowHead head;
+
+        Shadow(int id, ShadowHead head) {
+            this.id = id;
+            this.head = head;
+        }
+    }
+
+    private void shadowTick() {
+        ConfigSnapshot.Shadow s = cfg.shadow;
+        if (!s.enabled) return;
+        if (tick % SHADOW_CHECK_TICKS == 0) {
+            for (int i = 0; i < snap.count; i++) {
+                if (snap.gameMode[i] == GameMode.CREATIVE.ordinal()) continue;
+                if (snap.light[i] > s.minLightLevel) continue;
+                if (cooling.contains(snap.ids[i])) continue;
+                if (snap.anyOtherWithin(i, s.requireAloneRadius)) continue;
+                if (!ShadowSpot.find(s, shadowRandom, snap.x[i], snap.eyeY[i], snap.z[i], snap.dirX[i], snap.dirZ[i], terrain, spot)) continue;
+                int id = nextShadowId++;
+                count(SHADOW, 3, ShadowHead.B_SPAWN);
+                shadows.put(snap.ids[i], new Shadow(id, new ShadowHead(spot[0], spot[1], spot[2], snap.x[i], snap.eyeY[i], snap.z[i], s)));
+                wheel.schedule(20L * (1 + shadowRandom.nextInt(3)), despawn, snap.ids[i], id);
+                int[] cd = s.cooldownSeconds;
+                if (cooling.add(snap.ids[i])) wheel.schedule(cd[shadowRandom.nextInt(cd.length)] * 20L, cooldownExpired, snap.ids[i], 0L);
+            }
+        }
+        // head tracking, as ShadowModule.trackHeads
+        for (Map.Entry<UUID, Shadow> e : shadows.entrySet()) {
+            int i = snap.indexOf(e.getKey());
+            if (i < 0) continue;
+            ShadowHead h = e.getValue().head;
+            int angles = h.track(tick, snap.x[i], snap.eyeY[i], snap.z[i]);
+            if (angles < 0) continue; // unchanged or held back by the rate cap
+            count(SHADOW, 2, ShadowHead.B_TRACK);
+            h.sent(tick, angles);
+        }
+    }
+
+    private void despawnShadow(Object ref, long id) {
+        Shadow t = shadows.get(ref);
+        if (t != null && t.id == (int) id) shadows.remove(ref);
+        count(SHADOW, 1, ShadowHead.B_DESPAWN);
+    }
+
+    // ---- mobs ----
+
+    private void mobsTick() {
+        ConfigSnapshot.Mobs m = cfg.mobs;
+        // natural spawns around players, with a storm every STORM_EVERY ticks
+        boolean storm = tick % STORM_EVERY < STORM_TICKS;
+        double rate = n * (storm ? 0.5 : 0.02);
+        int attempts = (int) rate + (mobRandom.nextDouble() < rate - (int) rate ? 1 : 0);
+        for (int a = 0; a < attempts; a++) {
+            int i = mobRandom.nextInt(n);
+            double ang = mobRandom.nextDouble() * Math.PI * 2, d = 16 + mobRandom.nextDouble() * 24;
+            EntityType type = SPAWN_TYPES[mobRandom.nextInt(SPAWN_TYPES.length)];
+            long dieAt = tick + 600 + mobRandom.nextInt(600);
+            if (!m.replaceNaturalSpawns) continue;
+            Fakes.Mob state = new Fakes.Mob(new UUID(0x30B5L, ++mobSeq), type, px[i] + Math.cos(ang) * d, Terrain.FLOOR,
+                    pz[i] + Math.sin(ang) * d, dieAt);
+            LivingEntity le = Fakes.mob(world, state, () -> tick);
+            boolean full = controlled.count(world) >= m.maxControlledPerWorld;
+            if (rules.evaluate(le, m, snap, full) == SpawnRules.ACCEPT) controlled.add(le, m.maxControlledPerWorld);
+        }
+        // controller, as MobsModule.controllerTick
+        if (controlled.size() == 0 && frozen.isEmpty()) return;
+        if (!vision.poll()) return;
+        VisionSystem.Frame res = vision.result();
+        for (int i = 0; i < res.count; i++) {
+            LivingEntity le = (LivingEntity) res.ref[i];
+            if (!le.isValid()) continue;
+            boolean watched = res.watched(i);
+            if (watched == frozen.contains(le.getUniqueId())) continue;
+            le.setAI(!watched);
+            freezeToggles++;
+            if (watched) frozen.add(le.getUniqueId()); else frozen.remove(le.getUniqueId());
+        }
+        controlled.visit(m.controllerBudgetNanos, sample);
+        vision.start(snap, m, m.visionRange);
+    }
+
+    private boolean sampleMob(LivingEntity le) {
+        if (!le.isValid()) {
+            frozen.remove(le.getUniqueId());
+            return false;
+        }
+        Location l = le.getLocation(scratch);
+        vision.add(l.getWorld(), l.getX(), l.getY() + le.getHeight() * 0.5, l.getZ(), le);
+        return true;
+    }
+
+    // ---- fake ----
+
+    /** A bot walking A* paths to random goals around its target player. */
+    private final class Bot {
+        final int slot, target;
+        final Random random;
+        final int render;
+        double x, y = Terrain.FLOOR, z;
+        float yaw;
+        long[] path = new long[0];
+        int pathIdx;
+        CompletableFuture<NavUtils.PathResult> pending;
+
+        Bot(int slot, int target, Random random) {
+            this.slot = slot;
+            this.target = target;
+            this.random = random;
+            this.x = px[target] + 8;
+            this.z = pz[target] + 8;
+            this.render = stream.add(0x7F000000 + slot, ids[target], world.getUID(), x, y, z, 0f, 0f);
+        }
+
+        void step(ConfigSnapshot.Fake f) {
+            if (pending != null) {
+                if (!pending.isDone()) return; // as FakeModule: poll, never wait on the main thread
+                NavUtils.PathResult r = pending.getNow(null);
+                pending = null;
+                path = r == null ? new long[0] : r.nodes;
+                pathIdx = 0;
+            }
+            if (pathIdx < path.length) {
+                follow(f.speedWalk * f.tickInterval);
+                return;
+            }
+            int gx = (int) Math.floor(px[target] + (random.nextDouble() - 0.5) * 48);
+            int gz = (int) Math.floor(pz[target] + (random.nextDouble() - 0.5) * 48);
+            pending = NavUtils.findPath(terrain, (int) Math.floor(x), (int) y, (int) Math.floor(z), gx, Terrain.FLOOR, gz,
+                    f.astarMaxNodes, f.astarMaxMs);
+        }
+
+        private void follow(double budget) {
+            while (budget > 0 && pathIdx < path.length) {
+                long p = path[pathIdx];
+                double dx = NavUtils.unpackX(p) + 0.5 - x, dy = NavUtils.unpackY(p) - y, dz = NavUtils.unpackZ(p) + 0.5 - z;
+                double d = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                if (dx != 0 || dz != 0) yaw = (float) Math.toDegrees(Math.atan2(-dx, dz));
+                if (d <= budget) {
+                    x += dx; y += dy; z += dz;
+                    budget -= d;
+                    pathIdx++;
+                } else {
+                    double k = budget / d;
+                    x += dx * k; y += dy * k; z += dz * k;
+                    budget = 0;
+                }
+            }
+        }
+    }
+
+    // Tick boundary before a bot round: searches asked for on the last round settle here, outside the measured
+    // window, so every bot takes its path up one round later whatever the pool's speed and the walk replays.
+    private void settleSearches() {
+        ConfigSnapshot.Fake f = cfg.fake;
+        if (!f.enabled || tick % f.tickInterval != 0) return;
+        for (Bot b : bots) {
+            if (b.pending == null) continue;
+            try {
+                b.pending.join();
+            } catch (CompletionException ex) {
+                b.pending = null; // a failed search leaves the bot standing, as getNow would
+            }
+        }
+    }
+
+    private void fakeTick() {
+        ConfigSnapshot.Fake f = cfg.fake;
+        if (!f.enabled || bots.length == 0 || tick % f.tickInterval != 0) return;
+        for (Bot b : bots) {
+            b.step(f);
+            stream.update(b.render, world.getUID(), b.x, b.y, b.z, b.yaw, 0f);
+        }
+        long p = stream.packets(), by = stream.bytes();
+        stream.flush(snap, "nearby".equalsIgnoreCase(f.visibleTo) || "all".equalsIgnoreCase(f.visibleTo), f.renderViewDistance);
+        count(FAKE, (int) (stream.packets() - p), (int) (stream.bytes() - by));
+    }
+
+    /** BotRenderer's side of the stream, counting instead of building packets; queues never refuse. */
+    private final class Counted implements BotStream.Sink {
+        @Override
+        public int viewer(UUID id) {
+            Integer s = viewerSlots.get(id);
+            if (s != null) return s;
+            int v = stream.addViewer();
+            viewerSlots.put(id, v);
+            return v;
+        }
+
+        @Override
+        public boolean show(int b, int v, double x, double y, double z, byte yaw, byte pitch) {
+            wheel.schedule(40L, hideTab, null, v);
+            return true;
+        }
+
+        @Override
+        public void frame(int b, int kind, short dx, short dy, short dz, double x, double y, double z, byte yaw, byte pitch, boolean head) {
+        }
+
+        @Override
+        public boolean update(int b, int v) {
+            return true;
+        }
+
+        @Override
+        public boolean resync(int b, int v, double x, double y, double z, byte yaw, byte pitch) {
+            return true;
+        }
+
+        @Override
+        public void destroy(int v, int[] ids, int n) {
+        }
+
+        @Override
+        public void hide(int b, int v) {
+        }
+    }
+
+    // ---- ml ----
+
+    private void mlTick() {
+        ConfigSnapshot.Ml m = cfg.ml;
+        samples.advanceClock();
+        // block events: about one a second per player; a flood has a quarter of the players at two a tick
+        boolean flood = (tick + FLOOD_EVERY / 2) % FLOOD_EVERY < FLOOD_TICKS;
+        for (int i = 0; i < n; i++) {
+            int events = flood && (i & 3) == 0 ? 2 : mlRandom.nextInt(20) == 0 ? 1 : 0;
+            for (int e = 0; e < events; e++) {
+                double u = mlRandom.nextDouble();
+                int ordinal = materials[(int) (materials.length * u * u * u)];
+                int kind = mlRandom.nextInt(3); // place, break, pickup
+                int bx = (int) Math.floor(px[i]) + mlRandom.nextInt(9) - 4, bz = (int) Math.floor(pz[i]) + mlRandom.nextInt(9) - 4;
+                if (m.excludeCreative && gameMode[i] == GameMode.CREATIVE.ordinal()) continue;
+                int scope = models.scopeOf(ids[i], world, bx, bz);
+                samples.offer(ordinal, kind == 2 ? 0.5 : 1.0, scope, models.worldScope(world));
+            }
+        }
+        // the plugin's async timers
+        if (tick % ML_DRAIN_TICKS == 0) async.execute(() -> models.drain(samples, m.emaAlpha));
+        if (tick % (20L * m.updateIntervalSeconds) == 0) async.execute(() -> {
+            models.drain(samples, m.emaAlpha);
+            models.recompute(m);
+        });
+        if (tick % (20L * m.persistFlushSeconds) == 0) async.execute(models::flushAll);
+    }
+
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) for (File c : children) delete(c);
+        if (!f.delete()) f.deleteOnExit();
+    }
+}
@@ -0,0 +1,121 @@
+package com.sana.paranoiaplus.bench;
+
+import com.google.gson.GsonBuilder;
+import com.sana.paranoiaplus.util.ConfigSnapshot;
+import com.sana.paranoiaplus.util.NavUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * LoadSim - headless load harness: runs every module's engine work together ({@link LoadRun}) at a sweep of
+ * player counts and reports per-tick main-thread cost, worker CPU, allocation and packet volume per module.
+ * Needs no server, no network and no world files; a seed replays the same workload.
+ *
+ * java -cp benchmarks.jar com.sana.paranoiaplus.bench.LoadSim [--players 10,50,100,250,500] [--ticks 1200]
+ *     [--warmup 200] [--seed 1] [--bots-per 10] [--paced] [--set path=value ...] [--out file.json]
+ */
+public final class LoadSim {
+    private LoadSim() {}
+
+    public static void main(String[] args) throws Exception {
+        int[] counts = {10, 50, 100, 250, 500};
+        int ticks = 1200, warmup = 200, botsPer = 10;
+        long seed = 1L;
+        boolean paced = false;
+        List<Object> overrides = new ArrayList<>();
+        File out = null;
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            switch (a) {
+                case "--players": counts = ints(args[++i]); break;
+                case "--ticks": ticks = Integer.parseInt(args[++i]); break;
+                case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--bots-per": botsPer = Integer.parseInt(args[++i]); break;
+                case "--paced": paced = true; break;
+                case "--out": out = new File(args[++i]); break;
+                case "--set": {
+                    String kv = args[++i];
+                    int eq = kv.indexOf('=');
+                    if (eq <= 0) throw new IllegalArgumentException("--set expects path=value, got " + kv);
+                    overrides.add(kv.substring(0, eq));
+                    overrides.add(value(kv.substring(eq + 1)));
+                    break;
+                }
+                default: throw new IllegalArgumentException("Unknown option " + a);
+            }
+        }
+        if (out == null) out = new File("results", "load-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".json");
+
+        ConfigSnapshot cfg = BenchConfig.load(overrides.toArray());
+        LoadReport report = new LoadReport();
+        report.seed = seed;
+        report.warmupTicks = warmup;
+        report.ticks = ticks;
+        report.paced = paced;
+        report.started = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX").format(new Date());
+        for (int i = 0; i + 1 < overrides.size(); i += 2) report.overrides.put((String) overrides.get(i), overrides.get(i + 1));
+
+        System.out.printf("%7s %-7s %8s %8s %8s %8s %9s %9s %9s %9s %9s%n", "players", "module",
+                "avg ms", "p50 ms", "p95 ms", "max ms", "worker ms", "alloc KB", "wAlloc KB", "packets", "pkt KB");
+        try {
+            for (int players : counts) {
+                LoadRun run = new LoadRun(cfg, players, Math.max(1, players / Math.max(1, botsPer)), seed);
+                try {
+                    LoadReport.Run r = run.run(warmup, ticks, paced);
+                    report.runs.add(r);
+                    print(r);
+                } finally {
+                    run.close();
+                }
+            }
+        } finally {
+            NavUtils.shutdown();
+        }
+
+        File dir = out.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        try (Writer w = Files.newBufferedWriter(out.toPath(), StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().serializeSpecialFloatingPointValues().create().toJson(report, w);
+        }
+        System.out.println("Report written to " + out.getPath() + " (all figures per tick)");
+    }
+
+    private static void print(LoadReport.Run r) {
+        double total = 0;
+        for (LoadReport.Module m : r.modules) {
+            total += m.mainAvgMs;
+            System.out.printf("%7d %-7s %8.3f %8.3f %8.3f %8.3f %9.3f %9.1f %9.1f %9.1f %9.2f%n", r.players, m.name,
+                    m.mainAvgMs, m.mainP50Ms, m.mainP95Ms, m.mainMaxMs, m.workerCpuMs, m.mainAllocKb, m.workerAllocKb,
+                    m.packets, m.packetKb);
+        }
+        System.out.printf("%7d %-7s %8.3f   bots=%d wall=%.0fms %s%n", r.players, "total", total, r.bots, r.wallMs, r.notes);
+    }
+
+    private static int[] ints(String csv) {
+        String[] parts = csv.split(",");
+        int[] out = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) out[i] = Integer.parseInt(parts[i].trim());
+        return out;
+    }
+
+    // config values keep their YAML type: booleans, whole numbers, decimals, else text
+    private static Object value(String s) {
+        if (s.equalsIgnoreCase("true") || s.equalsIgnoreCase("false")) return Boolean.valueOf(s);
+        try {
+            return Integer.valueOf(s);
+        } catch (NumberFormatException ignored) { }
+        try {
+            return Double.valueOf(s);
+        } catch (NumberFormatException ignored) { }
+        return s;
+    }
+}
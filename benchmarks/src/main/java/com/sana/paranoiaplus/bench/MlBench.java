@@ -0,0 +1,125 @@
+package com.sana.paranoiaplus.bench;
+
+import com.sana.paranoiaplus.util.ConfigSnapshot;
+import com.sana.paranoiaplus.util.SamplePipeline;
+import com.sana.paranoiaplus.util.ScopedModels;
+import org.bukkit.Material;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MlBench - the MLModule whitelist paths on the classes it wraps: sample ingestion (SamplePipeline.offer, then
+ * the ScopedModels.drain the aggregator runs), policy recompilation (recomputeWhitelist) and getTopMap, with
+ * per-player scopes over every non-legacy material. Materials are drawn skewed, like real building, so top-k
+ * has a head and a long tail. Scope files go to a temp directory that is removed afterwards.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MlBench {
+    private static final int BATCH = 4096;
+
+    @State(Scope.Benchmark)
+    public static class Models {
+        @Param({"16", "1024"})
+        int players;
+
+        ConfigSnapshot.Ml cfg, reloaded;
+        ScopedModels models;
+        SamplePipeline samples;
+        int[] ordinals, scopes;
+        double[] weights;
+        File dir;
+        int next, reloads;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            // every scope stays resident: eviction to disk would measure the file system
+            Object[] overrides = {"ml.whitelist.scope", "player", "ml.whitelist.scope-max-memory-kb", 1 << 20};
+            cfg = BenchConfig.load(overrides).ml;
+            reloaded = BenchConfig.load(overrides).ml;
+            dir = Files.createTempDirectory("paranoia-bench").toFile();
+            models = new ScopedModels(dir, cfg, BenchConfig.LOG);
+            samples = new SamplePipeline(BATCH * 2);
+            List<Material> mats = new ArrayList<>();
+            for (Material m : Material.values()) if (!m.isLegacy()) mats.add(m);
+            int[] playerScopes = new int[players];
+            for (int i = 0; i < players; i++) playerScopes[i] = models.playerScope(new UUID(0xBE7CL, i));
+            Random r = new Random(11L);
+            int n = 1 << 16;
+            ordinals = new int[n];
+            scopes = new int[n];
+            weights = new double[n];
+            for (int i = 0; i < n; i++) {
+                double u = r.nextDouble();
+                ordinals[i] = mats.get((int) (mats.size() * u * u * u)).ordinal();
+                scopes[i] = playerScopes[r.nextInt(players)];
+                weights[i] = r.nextInt(4) == 0 ? 0.5 : 1.0;
+            }
+            prefill();
+        }
+
+        // enough samples that every player scope passes min-samples and has a realistic spread
+        private void prefill() {
+            int rounds = Math.max(4, players * cfg.minSamples * 2 / BATCH);
+            for (int k = 0; k < rounds; k++) ingest();
+        }
+
+        int ingest() {
+            for (int i = 0; i < BATCH; i++) {
+                int j = next++ & (ordinals.length - 1);
+                samples.offer(ordinals[j], weights[j], scopes[j], ScopedModels.GLOBAL);
+            }
+            return models.drain(samples, cfg.emaAlpha);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            models.close(10000L);
+            delete(dir);
+        }
+
+        private static void delete(File f) {
+            File[] children = f.listFiles();
+            if (children != null) for (File c : children) delete(c);
+            if (!f.delete()) f.deleteOnExit();
+        }
+    }
+
+    /** Offer a batch of samples and fold them into the models; time per sample. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int ingest(Models s) {
+        return s.ingest();
+    }
+
+    /** Recompile every scope's policy, as after a reload (an unchanged scope is otherwise skipped). */
+    @Benchmark
+    public int recomputeAll(Models s) {
+        ConfigSnapshot.Ml c = (s.reloads++ & 1) == 0 ? s.cfg : s.reloaded;
+        return s.models.recompute(c);
+    }
+
+    /** The periodic recompute: one batch of new samples, then recompile only the scopes it touched. */
+    @Benchmark
+    public int recomputeChanged(Models s) {
+        s.ingest();
+        return s.models.recompute(s.cfg);
+    }
+
+    @Benchmark
+    public Map<Material, Double> topMap(Models s) {
+        return s.models.topGlobal(s.cfg.topK);
+    }
+}
@@ -0,0 +1,51 @@
+package com.sana.paranoiaplus.bench;
+
+import com.sana.paranoiaplus.util.NavUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NavBench - NavUtils.findPath across flat synthetic terrain with scattered pillars, start to goal at the given
+ * distance. Measured end to end through the nav pool, as the bots call it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NavBench {
+    @Param({"16", "48", "96"})
+    int distance;
+
+    @Param({"0.0", "0.15", "0.30"})
+    double pillars;
+
+    private Terrain terrain;
+    private int sx, gx, gz;
+
+    @Setup
+    public void setup() {
+        terrain = new Terrain(42L, pillars, 0.0);
+        gz = distance / 2;
+        sx = clear(0, 0);
+        gx = clear(distance, gz);
+    }
+
+    @TearDown
+    public void tearDown() {
+        NavUtils.shutdown();
+    }
+
+    @Benchmark
+    public NavUtils.PathResult findPath() {
+        return NavUtils.findPath(terrain, sx, Terrain.FLOOR, 0, gx, Terrain.FLOOR, gz, 20000, 50L).join();
+    }
+
+    // step along the row until the column is free of pillars, so start and goal are standable
+    private int clear(int x, int z) {
+        while (terrain.flags(x, Terrain.FLOOR, z) == NavUtils.BlockSource.SOLID) x++;
+        return x;
+    }
+}
@@ -0,0 +1,42 @@
+package com.sana.paranoiaplus.bench;
+
+import com.sana.paranoiaplus.util.ConfigSnapshot;
+import com.sana.paranoiaplus.util.ShadowSpot;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ShadowSpotBench - the shadow spawn candidate search (ShadowModule.computeSpawnAwayFromPlayer) against a light
+ * map where the given fraction of blocks is dark enough; sparse darkness means more of the 12 attempts run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShadowSpotBench {
+    @Param({"0.05", "0.50"})
+    double dark;
+
+    private ConfigSnapshot.Shadow cfg;
+    private Terrain terrain;
+    private final Random random = new Random(3L);
+    private final double[] out = new double[3];
+    private double ex, ez;
+
+    @Setup
+    public void setup() {
+        cfg = BenchConfig.load().shadow;
+        terrain = new Terrain(3L, 0.0, dark);
+    }
+
+    @Benchmark
+    public boolean find() {
+        ex += 1.5; // a moving viewer, so the light lookups do not repeat
+        ez += 0.5;
+        return ShadowSpot.find(cfg, random, ex, 50.62, ez, 0.6, 0.8, terrain, out);
+    }
+}
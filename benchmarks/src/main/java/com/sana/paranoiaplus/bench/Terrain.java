@@ -0,0 +1,44 @@
+package com.sana.paranoiaplus.bench;
+
+import com.sana.paranoiaplus.util.NavUtils;
+import com.sana.paranoiaplus.util.ShadowSpot;
+
+/**
+ * Terrain - in-memory stand-in for the TerrainCache: flat ground with its surface at y=FLOOR, pillars two blocks
+ * high scattered at the given density, and block light hashed from the position. Deterministic for a seed, so
+ * runs compare; stateless, so it is safe from the nav worker threads.
+ */
+final class Terrain implements NavUtils.BlockSource, ShadowSpot.Light {
+    static final int FLOOR = 64;
+
+    private final long seed;
+    private final int pillarPermille, darkPermille;
+
+    Terrain(long seed, double pillars, double dark) {
+        this.seed = seed;
+        this.pillarPermille = (int) (pillars * 1000);
+        this.darkPermille = (int) (dark * 1000);
+    }
+
+    @Override
+    public int flags(int x, int y, int z) {
+        if (y < 0 || y > 255) return UNKNOWN;
+        if (y < FLOOR) return SOLID;
+        if (y < FLOOR + 2 && hash(x, 0, z) % 1000 < pillarPermille) return SOLID;
+        return PASSABLE;
+    }
+
+    @Override
+    public int light(int x, int y, int z) {
+        if (y < 0 || y > 255) return UNKNOWN;
+        return hash(x, y, z) % 1000 < darkPermille ? 0 : 8 + hash(z, y, x) % 8;
+    }
+
+    private int hash(int x, int y, int z) {
+        long h = seed ^ (x * 0x9E3779B97F4A7C15L) ^ (y * 0xC2B2AE3D27D4EB4FL) ^ (z * 0x165667B19E3779F9L);
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) (h & 0x7FFFFFFF);
+    }
+}
@@ -0,0 +1,80 @@
+package com.sana.paranoiaplus.bench;
+
+import com.sana.paranoiaplus.util.VisionSystem;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * VisionBench - the "is a player looking at it" math VisionSystem runs per viewer and target: the view-cone test,
+ * and the voxel raycast for line of sight through synthetic terrain. Each invocation covers a batch of random
+ * eye/target pairs within the vision range.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VisionBench {
+    private static final int PAIRS = 1024;
+
+    @Param({"16", "48"})
+    int range;
+
+    @Param({"0.05", "0.30"})
+    double pillars;
+
+    private Terrain terrain;
+    private final double[] eye = new double[PAIRS * 3], dir = new double[PAIRS * 3], target = new double[PAIRS * 3];
+    private final double cos = Math.cos(Math.toRadians(70));
+
+    @Setup
+    public void setup() {
+        terrain = new Terrain(7L, pillars, 0.0);
+        Random r = new Random(7L);
+        for (int i = 0; i < PAIRS * 3; i += 3) {
+            eye[i] = r.nextDouble() * 256;
+            eye[i + 1] = Terrain.FLOOR + 1.62;
+            eye[i + 2] = r.nextDouble() * 256;
+            double yaw = r.nextDouble() * Math.PI * 2, pitch = (r.nextDouble() - 0.5) * 0.6;
+            dir[i] = Math.cos(yaw) * Math.cos(pitch);
+            dir[i + 1] = Math.sin(pitch);
+            dir[i + 2] = Math.sin(yaw) * Math.cos(pitch);
+            double a = r.nextDouble() * Math.PI * 2, d = 1 + r.nextDouble() * (range - 1);
+            target[i] = eye[i] + Math.cos(a) * d;
+            target[i + 1] = Terrain.FLOOR + r.nextDouble() * 2;
+            target[i + 2] = eye[i + 2] + Math.sin(a) * d;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void cone(Blackhole bh) {
+        for (int i = 0; i < PAIRS * 3; i += 3) {
+            bh.consume(VisionSystem.inCone(dir[i], dir[i + 1], dir[i + 2],
+                    target[i] - eye[i], target[i + 1] - eye[i + 1], target[i + 2] - eye[i + 2], cos));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void raycast(Blackhole bh) {
+        for (int i = 0; i < PAIRS * 3; i += 3) {
+            bh.consume(VisionSystem.blockedBetween(terrain, eye[i], eye[i + 1], eye[i + 2], target[i], target[i + 1], target[i + 2]));
+        }
+    }
+
+    /** Cone first, raycast only for targets inside it: what VisionSystem does per pair. */
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void lookingAt(Blackhole bh) {
+        for (int i = 0; i < PAIRS * 3; i += 3) {
+            bh.consume(VisionSystem.inCone(dir[i], dir[i + 1], dir[i + 2],
+                    target[i] - eye[i], target[i + 1] - eye[i + 1], target[i + 2] - eye[i + 2], cos)
+                    && !VisionSystem.blockedBetween(terrain, eye[i], eye[i + 1], eye[i + 2], target[i], target[i + 1], target[i + 2]));
+        }
+    }
+}
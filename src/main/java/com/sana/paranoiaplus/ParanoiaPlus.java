@@ -61,6 +61,7 @@ public class ParanoiaPlus extends JavaPlugin {
         getLogger().info("ParanoiaPlus disabled.");
     }
 
+    public CoreModule getCore() { return core; }
     public MLModule getMlModule() { return ml; }
     public FakeModule getFakeModule() { return fake; }
     public ShadowModule getShadowModule() { return shadow; }
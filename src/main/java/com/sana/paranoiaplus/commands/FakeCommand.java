@@ -6,6 +6,7 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import com.sana.paranoiaplus.ParanoiaPlus;
 import com.sana.paranoiaplus.modules.FakeModule;
+import com.sana.paranoiaplus.util.NavUtils;
 
 public class FakeCommand implements CommandExecutor {
     private final ParanoiaPlus plugin;
@@ -35,6 +36,15 @@ public class FakeCommand implements CommandExecutor {
                 sender.sendMessage("Bot removed (if existed)"); return true;
             } else if (sub.equals("info")) {
                 sender.sendMessage("Fake module: bots=" + fake.getBotCount());
+                sender.sendMessage("Sim: " + fake.getSimStats());
+                sender.sendMessage("Build: " + fake.getBuildStats());
+                sender.sendMessage("Resources: " + fake.getResourceStats());
+                sender.sendMessage("Nav: " + NavUtils.stats());
+                sender.sendMessage("Clone: " + fake.getCloneStats());
+                sender.sendMessage("Skins: " + fake.getSkinStats());
+                return true;
+            } else if (sub.equals("net")) {
+                for (String line : fake.getRenderStats()) sender.sendMessage(line);
                 return true;
             }
         } catch (Exception ex) {
@@ -33,8 +33,13 @@ public class PMobCommand implements CommandExecutor {
                 sender.sendMessage("Unknown entity type."); 
             }
             return true;
+        } else if (sub.equals("stats")) {
+            sender.sendMessage("Registry: " + mobs.getRegistryStats());
+            sender.sendMessage("Spawns: " + mobs.getSpawnStats());
+            sender.sendMessage("Vision: " + mobs.getVisionStats());
+            return true;
         } else if (sub.equals("reload")) {
-            plugin.reloadConfig();
+            plugin.getCore().reload();
             sender.sendMessage("ParanoiaPlus config reloaded.");
             return true;
         }
@@ -18,15 +18,23 @@ public class ParanoiaCommand implements CommandExecutor {
         String sub = args[0].toLowerCase();
         if (sub.equals("toggle")) {
             // simple global toggle in config (in-memory)
-            boolean enabled = plugin.getConfig().getBoolean("global.enabled", true);
+            boolean enabled = plugin.getCore().config().global.enabled;
             plugin.getConfig().set("global.enabled", !enabled);
             plugin.saveConfig();
+            plugin.getCore().publishConfig();
             sender.sendMessage("ParanoiaPlus global enabled=" + !enabled);
             return true;
         } else if (sub.equals("reload")) {
-            plugin.reloadConfig();
+            plugin.getCore().reload();
             sender.sendMessage("ParanoiaPlus config reloaded.");
             return true;
+        } else if (sub.equals("health")) {
+            sender.sendMessage("Health: " + plugin.getCore().getProfiler().stats());
+            return true;
+        } else if (sub.equals("stats")) {
+            // /paranoia stats [core|shadow|mobs|fake|ml]
+            for (String line : plugin.getCore().metrics().lines(args.length > 1 ? args[1] : null)) sender.sendMessage(line);
+            return true;
         }
         return false;
     }
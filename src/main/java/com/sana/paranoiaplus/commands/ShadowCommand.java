@@ -45,8 +45,11 @@ public class ShadowCommand implements CommandExecutor {
                 shadow.revealShadowFor(target);
                 sender.sendMessage("Shadow revealed for " + target.getName());
                 return true;
+            } else if (sub.equals("stats")) {
+                sender.sendMessage("Packets: " + shadow.getPacketStats());
+                return true;
             } else if (sub.equals("reload")) {
-                plugin.reloadConfig();
+                plugin.getCore().reload();
                 sender.sendMessage("ParanoiaPlus config reloaded.");
                 return true;
             }
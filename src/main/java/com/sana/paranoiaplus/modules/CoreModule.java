@@ -3,63 +3,156 @@ package com.sana.paranoiaplus.modules;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.Bukkit;
 import org.bukkit.scheduler.BukkitRunnable;
+import com.sana.paranoiaplus.util.ConfigSnapshot;
+import com.sana.paranoiaplus.util.Metrics;
+import com.sana.paranoiaplus.util.MetricsExporter;
+import com.sana.paranoiaplus.util.PacketQueue;
+import com.sana.paranoiaplus.util.PlayerSnapshot;
+import com.sana.paranoiaplus.util.ResourceIndex;
+import com.sana.paranoiaplus.util.TerrainCache;
+import com.sana.paranoiaplus.util.TickProfiler;
+import com.sana.paranoiaplus.util.TimingWheel;
 
 /**
- * CoreModule - improved: provides reliable config access, TPS guard and helper utilities.
+ * CoreModule - improved: provides reliable config access, graded server health and helper utilities.
  */
 public class CoreModule {
     protected final JavaPlugin plugin;
-    private final TpsMonitor tpsMonitor;
+    private final TickProfiler profiler;
+    private final TerrainCache terrain;
+    private final ResourceIndex resources;
+    private final PacketQueue packets;
+    private final TimingWheel wheel;
+    private final Metrics metrics = new Metrics();
+    private final MetricsExporter exporter;
+    private volatile PlayerSnapshot players = PlayerSnapshot.EMPTY;
+    private volatile ConfigSnapshot config;
+    private long tick = 0L;
 
     public CoreModule(JavaPlugin plugin) {
         this.plugin = plugin;
-        this.tpsMonitor = new TpsMonitor();
+        this.profiler = new TickProfiler(plugin);
+        this.terrain = new TerrainCache(plugin);
+        this.resources = new ResourceIndex(plugin, terrain);
+        this.wheel = new TimingWheel(plugin);
+        PacketQueue q;
+        try {
+            q = new PacketQueue(plugin, com.comphenix.protocol.ProtocolLibrary.getProtocolManager());
+        } catch (NoClassDefFoundError | Exception ex) {
+            q = null; // no ProtocolLib: packet features stay off
+        }
+        this.packets = q;
+        this.config = ConfigSnapshot.compile(plugin.getConfig(), plugin.getLogger());
+        this.exporter = new MetricsExporter(plugin, metrics);
     }
 
     public void onEnable() {
         plugin.getLogger().info("CoreModule enabled (improved).");
+        profiler.onEnable(config.global);
+        terrain.onEnable(config.global);
+        resources.onEnable();
+        wheel.onEnable();
+        if (packets != null) packets.onEnable(config.global);
+        registerMetrics();
+        exporter.onEnable(config.global);
+        // one capture of every player per tick; modules query this instead of Bukkit
         new BukkitRunnable() {
             @Override
             public void run() {
-                tpsMonitor.sample();
+                players = PlayerSnapshot.capture(Bukkit.getOnlinePlayers(), terrain, ++tick, config.global.gridCellSize);
+                metrics.sample();
             }
-        }.runTaskTimerAsynchronously(plugin, 20L, 20L);
+        }.runTaskTimer(plugin, 1L, 1L);
     }
 
     public void onDisable() {
+        exporter.onDisable();
+        profiler.onDisable();
+        terrain.onDisable();
+        resources.onDisable();
+        wheel.onDisable();
+        if (packets != null) packets.onDisable();
         plugin.getLogger().info("CoreModule disabled.");
     }
 
-    public double getRecentTps() {
-        return tpsMonitor.getTps();
+    private void registerMetrics() {
+        metrics.gauge("paranoia_tick_mspt", "Milliseconds per tick over the health window.", "core", "p50", profiler::p50);
+        metrics.gauge("paranoia_tick_mspt", "Milliseconds per tick over the health window.", "core", "p95", profiler::p95);
+        metrics.gauge("paranoia_tick_mspt", "Milliseconds per tick over the health window.", "core", "p99", profiler::p99);
+        metrics.gauge("paranoia_health_level", "Graded load level: 0 full, 1 reduced, 2 minimal, 3 off.", "core", "level", () -> profiler.level().ordinal());
+        metrics.gauge("paranoia_players", "Players in the latest capture.", "core", "online", () -> players.count);
+        metrics.counter("paranoia_terrain_total", "Terrain cache chunk captures and lookups.", "core", "captures", terrain::captures);
+        metrics.counter("paranoia_terrain_total", "Terrain cache chunk captures and lookups.", "core", "hits", terrain::hits);
+        metrics.counter("paranoia_terrain_total", "Terrain cache chunk captures and lookups.", "core", "misses", terrain::misses);
+        metrics.sampledGauge("paranoia_wheel_pending", "Delayed actions waiting in the timing wheel.", "core", "pending", wheel::size);
+        metrics.sampledCounter("paranoia_wheel_fired_total", "Delayed actions run by the timing wheel.", "core", "fired", wheel::fired);
+        if (packets == null) return;
+        metrics.sampledCounter("paranoia_packets_total", "Outbound packets by outcome.", "core", "sent", packets::sent);
+        metrics.sampledCounter("paranoia_packets_total", "Outbound packets by outcome.", "core", "dropped", packets::dropped);
+        metrics.sampledCounter("paranoia_packets_total", "Outbound packets by outcome.", "core", "failed", packets::failed);
+        metrics.sampledGauge("paranoia_packets_queued", "Packets waiting in per-viewer queues.", "core", "queued", packets::queued);
     }
 
-    public boolean isServerHealthy() {
-        return getRecentTps() >= plugin.getConfig().getDouble("global.min-tps", 18.0);
+    /** Current compiled config; read it once per call and keep the reference for that call. */
+    public ConfigSnapshot config() {
+        return config;
     }
 
-    // Simple TPS monitor (smoothed)
-    private static class TpsMonitor {
-        private final double[] samples = new double[10];
-        private int idx = 0;
-        private boolean filled = false;
+    /** Re-read config.yml from disk and atomically publish the compiled result. */
+    public void reload() {
+        plugin.reloadConfig();
+        publishConfig();
+    }
 
-        public void sample() {
-            double tps = 20.0;
-            try {
-                double[] tpsArr = Bukkit.getServer().getTPS();
-                if (tpsArr != null && tpsArr.length > 0) tps = tpsArr[0];
-            } catch (Throwable ignored) {}
-            samples[idx++] = tps;
-            if (idx >= samples.length) { idx = 0; filled = true; }
-        }
+    /** Compile the in-memory configuration (e.g. after a programmatic set) and swap it in. */
+    public void publishConfig() {
+        config = ConfigSnapshot.compile(plugin.getConfig(), plugin.getLogger());
+        profiler.configure(config.global);
+        terrain.configure(config.global);
+        if (packets != null) packets.configure(config.global);
+    }
 
-        public double getTps() {
-            int len = filled ? samples.length : idx;
-            if (len == 0) return 20.0;
-            double sum = 0;
-            for (int i = 0; i < len; i++) sum += samples[i];
-            return sum / len;
-        }
+    /** Latest per-tick player capture; safe to read from any thread. */
+    public PlayerSnapshot getPlayers() {
+        return players;
+    }
+
+    /** Shared chunk-snapshot terrain cache (passability + light), safe to query off the main thread. */
+    public TerrainCache getTerrain() {
+        return terrain;
+    }
+
+    /** Gatherable blocks (logs, stone, ores) indexed from the terrain snapshots; safe to query off the main thread. */
+    public ResourceIndex getResources() {
+        return resources;
+    }
+
+    /** Shared delayed-action scheduler (main thread); cost does not grow with the number of pending actions. */
+    public TimingWheel getWheel() {
+        return wheel;
+    }
+
+    /** Shared budgeted outbound packet queue (main thread), or null without ProtocolLib. */
+    public PacketQueue getPackets() {
+        return packets;
+    }
+
+    /** Plugin-wide metrics registry; create metrics once at enable, record from any thread. */
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    /** Measured tick times (MSPT percentiles) behind {@link #health()}. */
+    public TickProfiler getProfiler() {
+        return profiler;
+    }
+
+    /** How much optional work to do right now; read it once per run and scale budgets and periods with it. */
+    public TickProfiler.Level health() {
+        return profiler.level();
+    }
+
+    public double getRecentTps() {
+        return profiler.tps();
     }
 }
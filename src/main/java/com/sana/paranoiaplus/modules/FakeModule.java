@@ -2,29 +2,84 @@ package com.sana.paranoiaplus.modules;
 
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.Material;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.Block;
-import org.bukkit.event.block.BlockPlaceEvent;
-import org.bukkit.event.block.BlockBreakEvent;
-import org.bukkit.event.Event;
-import org.bukkit.event.HandlerList;
+import com.sana.paranoiaplus.util.Blueprint;
+import com.sana.paranoiaplus.util.BotRenderer;
+import com.sana.paranoiaplus.util.CloneEngine;
+import com.sana.paranoiaplus.util.CloneModel;
+import com.sana.paranoiaplus.util.CommandQueue;
+import com.sana.paranoiaplus.util.ConfigSnapshot;
+import com.sana.paranoiaplus.util.Metrics;
+import com.sana.paranoiaplus.util.NavUtils;
+import com.sana.paranoiaplus.util.PacketQueue;
+import com.sana.paranoiaplus.util.PlacementPipeline;
+import com.sana.paranoiaplus.util.PlayerSnapshot;
+import com.sana.paranoiaplus.util.ProfileCache;
+import com.sana.paranoiaplus.util.ResourceIndex;
+import com.sana.paranoiaplus.util.TerrainCache;
+import com.sana.paranoiaplus.util.TickProfiler;
+import com.sana.paranoiaplus.util.TimingWheel;
 
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 /**
  * FakeModule - improved with real placement check (uses MLModule whitelist) and rate-limiting.
+ * With ml.clone enabled, bot motion comes from recorded player behaviour (CloneEngine) while the server is
+ * healthy; on low TPS bots fall back to the fixed PEEK/RETREAT/GATHER/BUILD/VANISH walk.
+ *
+ * Bots are simulated off the main thread: every movement tick-interval a round steps all bots on a small
+ * worker pool against the player snapshot and the terrain cache. Workers never touch the world; block
+ * placement, removal and timer changes are posted as batched commands that the main thread drains under
+ * fake.sim.main-thread-budget-us per tick. Rounds are pipelined like clone inference: one still running when
+ * the next is due is counted as late and skipped, so the main thread never waits on bots.
+ * A bot that reaches its spot builds fake.build.blueprint through the budgeted {@link PlacementPipeline}.
+ * With ProtocolLib, bots are shown as packet-only players ({@link BotRenderer}) after each finished round,
+ * wearing the fake.skin-from skin once {@link ProfileCache} has it.
  */
 public class FakeModule {
+    private static final long CLONE_STATE_TICKS = 20L * 10;
+    private static final int ACTION_TICKS = 20; // state machine runs once per second
+    private static final double REACH_SPOT = 2.0, REACH_RESOURCE = 3.0; // squared distance counting as arrived
+
     private final JavaPlugin plugin;
     private final CoreModule core;
     private final Map<String, Bot> bots = new ConcurrentHashMap<>();
-    private final Map<String, Long> lastPlace = new ConcurrentHashMap<>(); // per-bot last placement time ms
+    private volatile Bot[] roster = new Bot[0]; // main thread writes on spawn/remove; rounds read a stable copy
+    private final ArrayDeque<Bot> unslotted = new ArrayDeque<>(); // main thread: bots still waiting for a clone slot
+    private final TimingWheel.Action stateTimeout = (ref, arg) -> ((Bot) ref).expiredGen = arg;
+    private final CommandQueue commands = new CommandQueue();
+    private final PlacementPipeline.Done buildDone = (owner, placed, complete) -> {
+        Bot b = bots.get(owner);
+        if (b != null) b.building = false;
+    };
+    private final Location scratch = new Location(null, 0, 0, 0);
+    private PlacementPipeline pipeline;
+    private BotRenderer renderer; // null without ProtocolLib
+    private ProfileCache profiles; // likewise
+    private Blueprint blueprint;
+    private CloneEngine clone;
+    private boolean cloning; // main thread, published to workers with each round: clone inference drove it
+
+    private ExecutorService sim;
+    private int simWorkers;
+    private CompletableFuture<Void> round;
+    private long simTick, lastInference;
+    private long rounds, lateRounds;
+    private final AtomicLong stepNanos = new AtomicLong(), maxPartNanos = new AtomicLong(), steps = new AtomicLong();
+    private final AtomicLong gathered = new AtomicLong();
+    private Metrics.Histogram simTime, placeTime, renderTime, stepTime;
 
     public FakeModule(JavaPlugin plugin, CoreModule core) {
         this.plugin = plugin;
@@ -33,66 +88,228 @@ public class FakeModule {
 
     public void onEnable() {
         plugin.getLogger().info("FakeModule enabled (improved with safety checks).");
+        ConfigSnapshot.Fake fake = core.config().fake;
+        simWorkers = fake.simWorkers;
+        pipeline = new PlacementPipeline(core.getTerrain(), plugin.getLogger());
+        Metrics m = core.metrics();
+        simTime = m.timer("fake", "sim_tick");
+        placeTime = m.timer("fake", "place");
+        renderTime = m.timer("fake", "render");
+        stepTime = m.timer("fake", "step_slice");
+        m.sampledEvents("fake", "rounds", () -> rounds);
+        m.sampledEvents("fake", "late_rounds", () -> lateRounds);
+        m.sampledEvents("fake", "blocks_placed", pipeline::placed);
+        m.events("fake", "gathered", gathered::get);
+        m.gauge("paranoia_fake_bots", "Live fake players.", "fake", "bots", bots::size);
+        PacketQueue packets = core.getPackets();
+        if (packets != null) {
+            renderer = new BotRenderer(com.comphenix.protocol.ProtocolLibrary.getProtocolManager(), packets, core.getWheel());
+            profiles = new ProfileCache(plugin, new ProfileCache.MojangResolver());
+            profiles.onEnable(fake);
+        }
+        AtomicInteger n = new AtomicInteger();
+        sim = Executors.newFixedThreadPool(simWorkers, r -> {
+            Thread t = new Thread(r, "ParanoiaPlus-Bots-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        ConfigSnapshot.Ml ml = core.config().ml;
+        clone = new CloneEngine(ml.inferenceWorkers, fake.maxBots);
+        if (ml.cloneEnabled) {
+            File dir = getMl() != null ? getMl().getRecorder().directory() : new File(plugin.getDataFolder(), "recordings");
+            new BukkitRunnable() {
+                @Override
+                public void run() {
+                    CloneModel m = CloneModel.load(dir, ml.inferenceMaxSteps, plugin.getLogger());
+                    clone.setModel(m);
+                    if (m != null) plugin.getLogger().info("Clone model loaded: " + m.size + " steps (" + (m.memoryBytes() >> 10) + " KB)");
+                }
+            }.runTaskAsynchronously(plugin);
+        }
         new BukkitRunnable() {
             @Override
             public void run() {
-                if (!plugin.getConfig().getBoolean("fake.enabled", true)) return;
-                if (!core.isServerHealthy()) return;
-                for (Bot b : bots.values()) {
-                    try { b.tick(); } catch (Throwable t) { plugin.getLogger().warning("Bot tick error: " + t.getMessage()); }
-                }
+                simTick();
             }
-        }.runTaskTimer(plugin, 20L, 20L);
+        }.runTaskTimer(plugin, 1L, 1L);
     }
 
     public void onDisable() {
         for (Bot b : bots.values()) b.kill();
         bots.clear();
+        roster = new Bot[0];
+        unslotted.clear();
+        if (sim != null) sim.shutdownNow();
+        if (clone != null) clone.shutdown();
+        if (profiles != null) profiles.onDisable();
+        NavUtils.shutdown();
         plugin.getLogger().info("FakeModule disabled.");
     }
 
-    // Safely place a block if allowed by ML-module and config rate limits.
-    // Returns true if placed successfully, false otherwise.
-    public boolean placeBlockReal(String botName, Location loc, Material m) {
+    // Per-block veto for real placement: learned whitelist for the imitated player (or region) and hard-deny.
+    private boolean allowPlacement(Player actor, Block b, Material m) {
         MLModule ml = getMl();
         if (ml == null) return false;
-        if (!ml.isAllowed(m)) {
-            plugin.getLogger().info("ML denied placement of " + m.name() + " by bot " + botName);
+        if (ml.isHardDenied(m)) {
+            plugin.getLogger().fine("Hard-deny material for real placement: " + m.name());
             return false;
         }
-        // rate-limit per bot
-        long now = System.currentTimeMillis();
-        long last = lastPlace.getOrDefault(botName, 0L);
-        long minInterval = plugin.getConfig().getLong("fake.build.real-place-interval-ms", 1000L);
-        if (now - last < minInterval) return false;
+        // the bot imitates its target: use the target's (or the region's) habits when the model has them
+        return ml.isAllowed(actor, b.getLocation(scratch), m);
+    }
 
-        // safety: disallow hard-deny materials
-        List<String> hard = plugin.getConfig().getStringList("ml.whitelist.hard-deny.materials");
-        if (hard != null && hard.contains(m.name())) {
-            plugin.getLogger().info("Hard-deny material for real placement: " + m.name());
-            return false;
+    // Queue the configured blueprint for a bot with its corner at (x, y, z) (main thread).
+    private void build(Bot bot, World w, int x, int y, int z) {
+        if (bot.removed) return;
+        String name = core.config().fake.blueprint;
+        if (blueprint == null || !blueprint.name.equalsIgnoreCase(name)) {
+            blueprint = Blueprint.named(name);
+            if (blueprint == null) {
+                plugin.getLogger().warning("Unknown blueprint " + name + ", using hut_5x5");
+                blueprint = Blueprint.named("hut_5x5");
+            }
         }
+        if (!pipeline.submit(bot.name, w, x, y, z, blueprint, bot.getTarget(), this::allowPlacement, buildDone)) bot.building = false;
+    }
 
-        // try to find bot actor to fire BlockPlaceEvent with a Player
-        Bot bot = bots.get(botName);
-        Player actor = (bot != null) ? bot.getTarget() : null;
-
-        Block b = loc.getBlock();
+    // Main thread, every tick: run queued bot commands, then start the next simulation round when due.
+    // Under load rounds come every 2x/4x tick-interval (none at OFF) and block placement gets less time.
+    private void simTick() {
+        long t0 = System.nanoTime();
+        runSim();
+        simTime.since(t0);
+    }
 
-        if (actor != null) {
-            // Use event so other plugins may cancel it
-            BlockPlaceEvent ev = new BlockPlaceEvent(b, b.getState(), b, actor.getInventory().getItemInMainHand(), actor, true);
-            Bukkit.getPluginManager().callEvent(ev);
-            if (ev.isCancelled()) return false;
-            b.setType(m, true);
+    private void runSim() {
+        ConfigSnapshot cfg = core.config();
+        TickProfiler.Level level = core.health();
+        commands.drain(cfg.fake.simBudgetNanos, plugin.getLogger());
+        if (pipeline.isEmpty()) {
+            pipeline.tick(cfg.fake, 0L); // keeps the token bucket and rate window moving
         } else {
-            // No actor available — either reject or place silently. We place silently to not throw.
-            b.setType(m, true);
+            long t1 = System.nanoTime();
+            pipeline.tick(cfg.fake, level.budget(cfg.fake.placeBudgetNanos));
+            placeTime.since(t1);
+        }
+        simTick++;
+        if (!cfg.fake.enabled || !level.due(simTick, cfg.fake.tickInterval)) return;
+        if (round != null) {
+            if (!round.isDone()) {
+                lateRounds++;
+                return;
+            }
+            round = null; // isDone() orders the workers' bot writes before the reads below
+        }
+        Bot[] r = roster;
+        if (r.length == 0) return;
+        if (renderer != null) {
+            long t2 = System.nanoTime();
+            render(r, cfg);
+            renderTime.since(t2);
         }
+        if (simTick - lastInference >= cfg.ml.inferenceIntervalTicks) {
+            lastInference = simTick;
+            inferenceTick(cfg, level);
+        }
+        boolean cl = cloning;
+        PlayerSnapshot snap = core.getPlayers();
+        int dt = level.stride(cfg.fake.tickInterval);
+        int parts = Math.min(simWorkers, r.length);
+        int per = (r.length + parts - 1) / parts;
+        CompletableFuture<?>[] fs = new CompletableFuture<?>[parts];
+        for (int w = 0; w < parts; w++) {
+            final int from = w * per, to = Math.min(r.length, from + per);
+            fs[w] = CompletableFuture.runAsync(() -> step(r, from, to, snap, cfg, dt, cl), sim);
+        }
+        round = CompletableFuture.allOf(fs);
+        rounds++;
+    }
 
-        lastPlace.put(botName, now);
-        plugin.getLogger().info("Bot " + botName + " placed " + m.name() + " at " + loc.toString());
-        return true;
+    // Show the finished round: positions are stable until the next round starts.
+    private void render(Bot[] r, ConfigSnapshot cfg) {
+        for (Bot b : r) {
+            if (!b.removed) renderer.update(b.render, b.world, b.x, b.y, b.z, b.yaw, b.pitch);
+        }
+        renderer.flush(core.getPlayers(), cfg.fake.visibleTo, cfg.fake.renderViewDistance);
+    }
+
+    // Worker: step one slice of the roster and publish its side effects as one batch.
+    private void step(Bot[] r, int from, int to, PlayerSnapshot snap, ConfigSnapshot cfg, int dt, boolean cl) {
+        long t0 = System.nanoTime();
+        CommandQueue.Batch out = new CommandQueue.Batch();
+        for (int k = from; k < to; k++) {
+            try {
+                r[k].step(snap, cfg, dt, cl, out);
+            } catch (Throwable t) {
+                String msg = "Bot tick error: " + t.getMessage();
+                out.add(() -> plugin.getLogger().warning(msg));
+            }
+        }
+        commands.post(out);
+        long d = System.nanoTime() - t0;
+        stepNanos.addAndGet(d);
+        stepTime.record(d);
+        steps.addAndGet(to - from);
+        long max;
+        while (d > (max = maxPartNanos.get()) && !maxPartNanos.compareAndSet(max, d)) { }
+    }
+
+    // Claim clone slots for new bots and start the next inference round (main thread, between sim rounds).
+    private void inferenceTick(ConfigSnapshot cfg, TickProfiler.Level level) {
+        CloneModel m = clone.model();
+        cloning = false;
+        if (m == null) return;
+        if (!cfg.ml.cloneEnabled || "fsm".equalsIgnoreCase(cfg.ml.cloneMode)) return;
+        if (cfg.ml.inferenceFallbackOnLowTps && level != TickProfiler.Level.FULL) {
+            clone.noteFallback();
+            return;
+        }
+        for (int i = unslotted.size(); i > 0; i--) {
+            Bot b = unslotted.poll();
+            if (b.removed) continue;
+            b.slot = clone.register(b.name.hashCode() * 0x9E3779B97F4A7C15L ^ System.nanoTime());
+            if (b.slot < 0) unslotted.add(b);
+        }
+        cloning = true;
+        int steps = Math.max(1, cfg.ml.inferenceIntervalTicks * Math.max(1, m.sampleRateTps) / 20);
+        clone.tick(steps, cfg.ml.inferenceBudgetNanos, cfg.ml.inferenceEpsilon);
+    }
+
+    public String getCloneStats() {
+        return clone == null ? "disabled" : clone.stats();
+    }
+
+    public String getSimStats() {
+        long n = steps.get();
+        return "rounds=" + rounds + " late=" + lateRounds + " workers=" + simWorkers
+                + " avgStepNs=" + (n == 0 ? 0 : stepNanos.get() / n) + " maxSliceNs=" + maxPartNanos.get()
+                + " gathered=" + gathered.get()
+                + " commands: " + commands.stats();
+    }
+
+    public String getBuildStats() {
+        return pipeline == null ? "disabled" : pipeline.stats();
+    }
+
+    public String getResourceStats() {
+        return core.getResources().stats();
+    }
+
+    public String getSkinStats() {
+        return profiles == null ? "disabled (no ProtocolLib)" : profiles.stats();
+    }
+
+    /** Renderer totals, then per-bot and per-viewer packet and byte counts. */
+    public List<String> getRenderStats() {
+        List<String> out = new ArrayList<>();
+        if (renderer == null) {
+            out.add("Render: disabled (no ProtocolLib)");
+            return out;
+        }
+        out.add("Render: " + renderer.stats());
+        for (Bot b : roster) out.add("  bot " + b.name + ": " + renderer.botStats(b.render));
+        for (String v : renderer.viewerStats(10)) out.add("  viewer " + v);
+        return out;
     }
 
     private MLModule getMl() {
@@ -101,63 +318,276 @@ public class FakeModule {
     }
 
     public boolean spawnBot(String name, Player target) {
-        if (bots.size() >= plugin.getConfig().getInt("fake.max-bots", 1)) return false;
+        if (bots.size() >= core.config().fake.maxBots || bots.containsKey(name)) return false;
         Bot b = new Bot(name, target);
         bots.put(name, b);
+        unslotted.add(b);
+        if (renderer != null) {
+            b.render = renderer.add(name, b.targetId, b.world, b.x, b.y, b.z, b.yaw, b.pitch);
+            dress(b, core.config().fake);
+        }
+        publishRoster();
         plugin.getLogger().log(Level.INFO, "Spawned bot {0} for target {1}", new Object[]{name, target.getName()});
         return true;
     }
 
+    // Skin from fake.skin-from, or the target's own when unset; until a lookup lands the bot wears the default.
+    private void dress(Bot b, ConfigSnapshot.Fake cfg) {
+        profiles.configure(cfg);
+        String from = cfg.skinFrom.trim();
+        if (from.isEmpty() || from.startsWith("<")) {
+            renderer.skin(b.render, profiles.capture(b.target));
+            return;
+        }
+        profiles.request(from).thenAccept(s -> commands.post(() -> {
+            if (!b.removed) renderer.skin(b.render, s);
+        }));
+    }
+
     public void removeBot(String name) {
         Bot b = bots.remove(name);
-        if (b != null) b.kill();
+        if (b == null) return;
+        b.kill();
+        pipeline.cancel(name);
+        publishRoster();
     }
 
     public int getBotCount() { return bots.size(); }
 
+    private void publishRoster() {
+        roster = bots.values().toArray(new Bot[0]);
+    }
+
     private static enum State { PEEK, RETREAT, GATHER, BUILD, VANISH }
 
+    /**
+     * One bot. Simulation fields are only touched by the round currently stepping it (rounds never overlap);
+     * timer, slot bookkeeping and removal happen on the main thread.
+     */
     private class Bot {
         private final String name;
-        private final Player target;
-        private long lastAction = 0L;
-        private State state = State.PEEK;
+        private final Player target; // main thread only (placement actor)
+        private final UUID targetId;
+        private volatile boolean removed;
+        private volatile boolean building; // blueprint job queued; cleared on the main thread when it ends
+        private State state;
+        private int actionTicks, lostTicks;
+        private boolean vanished;
+        private World world;
+        private double x, y, z;
+        private float yaw, pitch;
+        private long navGoal = Long.MIN_VALUE;
+        private long resource = ResourceIndex.NONE; // block to visit before building
+        private CompletableFuture<NavUtils.PathResult> pendingPath;
+        private long[] path = new long[0];
+        private int pathIdx = 0;
+        private long stateGen;
+        private volatile long expiredGen;
+        private long stateTimer = TimingWheel.NONE; // main thread
+        private int slot = -1; // main thread writes between rounds
+        private int render = -1; // renderer slot, main thread
 
         public Bot(String name, Player target) {
             this.name = name;
             this.target = target;
+            this.targetId = target.getUniqueId();
+            Location l = target.getLocation();
+            world = l.getWorld();
+            x = l.getX();
+            y = l.getY();
+            z = l.getZ();
+            yaw = l.getYaw();
+            pitch = l.getPitch();
+            enter(State.PEEK, null);
         }
 
+        // switch state and restart its timeout (clone-driven PEEK/RETREAT hold until it fires);
+        // the wheel is main-thread only, so from a worker the re-arm goes out as a command
+        private void enter(State s, CommandQueue.Batch out) {
+            state = s;
+            long g = ++stateGen;
+            if (out == null) arm(g);
+            else out.add(() -> arm(g));
+        }
+
+        private void arm(long gen) {
+            TimingWheel wheel = core.getWheel();
+            wheel.cancel(stateTimer);
+            stateTimer = removed ? TimingWheel.NONE : wheel.schedule(CLONE_STATE_TICKS, stateTimeout, this, gen);
+        }
+
+        private boolean stateExpired() { return expiredGen == stateGen; }
+
         public Player getTarget() { return target; }
 
-        public void tick() {
-            long now = System.currentTimeMillis();
-            if (now - lastAction < 1000) return;
-            lastAction = now;
+        // Walk towards the goal block at up to speed blocks; returns true once within sqrt(reach2) of it.
+        private boolean navigate(int gx, int gy, int gz, double reach2, double speed, ConfigSnapshot.Fake cfg) {
+            double cx = gx + 0.5 - x, cy = gy - y, cz = gz + 0.5 - z;
+            if (cx * cx + cy * cy + cz * cz < reach2) return true;
+            long goal = NavUtils.pack(gx, gy, gz);
+            if (pendingPath != null) {
+                if (!pendingPath.isDone()) return false;
+                NavUtils.PathResult r = pendingPath.getNow(null);
+                pendingPath = null;
+                if (r == null || r.isEmpty()) {
+                    if (plugin.getLogger().isLoggable(Level.FINE)) {
+                        plugin.getLogger().fine("Bot " + name + " nav " + (r == null ? "failed" : r.status) + " (" + NavUtils.stats() + ")");
+                    }
+                    return false;
+                }
+                path = r.nodes;
+                pathIdx = 0;
+            }
+            if (pathIdx < path.length && goal == navGoal) {
+                follow(speed);
+                return false;
+            }
+            // no usable path (or goal moved): ask the nav pool for a new one
+            navGoal = goal;
+            pendingPath = NavUtils.findPath(core.getTerrain().source(world), floor(x), floor(y), floor(z),
+                    gx, gy, gz, cfg.astarMaxNodes, cfg.astarMaxMs);
+            return false;
+        }
+
+        // advance along the path by up to budget blocks, facing the direction of travel
+        private void follow(double budget) {
+            while (budget > 0 && pathIdx < path.length) {
+                long n = path[pathIdx];
+                double dx = NavUtils.unpackX(n) + 0.5 - x, dy = NavUtils.unpackY(n) - y, dz = NavUtils.unpackZ(n) + 0.5 - z;
+                double d = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                if (dx != 0 || dz != 0) yaw = (float) Math.toDegrees(Math.atan2(-dx, dz));
+                if (d <= budget) {
+                    x += dx; y += dy; z += dz;
+                    budget -= d;
+                    pathIdx++;
+                } else {
+                    double f = budget / d;
+                    x += dx * f; y += dy * f; z += dz * f;
+                    budget = 0;
+                }
+            }
+        }
+
+        // hybrid: recorded behaviour drives PEEK/RETREAT; clone: everything but the GATHER walk
+        private boolean cloneDriven(boolean cl, ConfigSnapshot cfg) {
+            if (!cl) return false;
+            if ("clone".equalsIgnoreCase(cfg.ml.cloneMode)) return state != State.GATHER;
+            return state == State.PEEK || state == State.RETREAT;
+        }
+
+        // Apply this bot's clone intent once; blocked or unknown terrain re-seeds its place in the recordings.
+        private void applyIntent(boolean cl, ConfigSnapshot cfg, CommandQueue.Batch out) {
+            int s = slot;
+            CloneEngine.Intents in = clone.intents(); // stable: inference only publishes between sim rounds
+            if (s < 0 || s >= in.ready.length || !in.ready[s]) return;
+            in.ready[s] = false;
+            if (!cloneDriven(cl, cfg)) return;
+            double nx = x + in.dx[s], ny = y + in.dy[s], nz = z + in.dz[s];
+            TerrainCache terrain = core.getTerrain();
+            int bx = floor(nx), by = floor(ny), bz = floor(nz);
+            int feet = terrain.flags(world, bx, by, bz), head = terrain.flags(world, bx, by + 1, bz);
+            if (feet == TerrainCache.UNKNOWN || head == TerrainCache.UNKNOWN
+                    || ((feet | head) & NavUtils.BlockSource.SOLID) != 0) {
+                out.add(() -> { if (!removed) clone.reset(s); });
+                return;
+            }
+            x = nx; y = ny; z = nz;
+            yaw += in.dyaw[s];
+            pitch = in.pitch[s];
+        }
+
+        // Worker: one simulation step of dt ticks.
+        void step(PlayerSnapshot snap, ConfigSnapshot cfg, int dt, boolean cl, CommandQueue.Batch out) {
+            if (removed || vanished) return;
+            applyIntent(cl, cfg, out);
+            int ti = snap.indexOf(targetId);
+            if (ti < 0) { // target gone from the snapshot for a full second: nothing left to haunt
+                if ((lostTicks += dt) >= ACTION_TICKS) vanish(out);
+                return;
+            }
+            lostTicks = 0;
+            boolean sameWorld = world != null && world.getUID().equals(snap.worldId(snap.world[ti]));
+            int gx = floor(snap.x[ti] + 2), gy = floor(snap.y[ti]), gz = floor(snap.z[ti] + 2);
+            boolean arrived = false;
+            if (state == State.GATHER && sameWorld) {
+                double speed = cfg.fake.speedWalk * dt;
+                if (resource != ResourceIndex.NONE) {
+                    // gather first: walk up to the chosen log or stone
+                    if (navigate(NavUtils.unpackX(resource), NavUtils.unpackY(resource), NavUtils.unpackZ(resource),
+                            REACH_RESOURCE, speed, cfg.fake)) {
+                        resource = ResourceIndex.NONE;
+                        gathered.incrementAndGet();
+                    }
+                } else {
+                    // then walk to a spot near the target and build there
+                    arrived = navigate(gx, gy, gz, REACH_SPOT, speed, cfg.fake);
+                }
+            }
+            actionTicks += dt;
+            if (actionTicks < ACTION_TICKS) return;
+            actionTicks = 0;
             switch (state) {
                 case PEEK:
-                    state = State.RETREAT;
+                    if (cloneDriven(cl, cfg) && !stateExpired()) break;
+                    enter(State.RETREAT, out);
                     break;
                 case RETREAT:
-                    state = State.GATHER;
+                    if (cloneDriven(cl, cfg) && !stateExpired()) break;
+                    resource = pickResource(cfg.fake);
+                    enter(State.GATHER, out);
                     break;
                 case GATHER:
-                    // try to place a simple block near target as 'build' demo
-                    Location loc = target.getLocation().add(2, 0, 2);
-                    placeBlockReal(name, loc, Material.OAK_PLANKS);
-                    state = State.BUILD;
+                    if (resource != ResourceIndex.NONE && stateExpired()) resource = ResourceIndex.NONE; // unreachable: skip it
+                    if (!arrived) break;
+                    if (cfg.fake.taskBuild) {
+                        World w = world;
+                        building = true;
+                        out.add(() -> build(this, w, gx, gy - 1, gz)); // floor level with the ground
+                    }
+                    enter(State.BUILD, out);
                     break;
                 case BUILD:
-                    state = State.VANISH;
+                    if (building) break; // rate-limited builds may outlast the state timeout
+                    enter(State.VANISH, out);
                     break;
                 case VANISH:
-                    kill();
+                    vanish(out);
                     break;
             }
         }
 
+        // nearest indexed log or stone around the bot (wood/stone alternate between bots when both are enabled)
+        private long pickResource(ConfigSnapshot.Fake cfg) {
+            int kind;
+            if (cfg.taskGatherWood && (!cfg.taskGatherStone || (name.hashCode() & 1) == 0)) kind = ResourceIndex.WOOD;
+            else if (cfg.taskGatherStone) kind = ResourceIndex.STONE;
+            else return ResourceIndex.NONE;
+            if (world == null) return ResourceIndex.NONE;
+            return core.getResources().nearest(world, kind, floor(x), floor(y), floor(z), cfg.areaScanRadius);
+        }
+
+        private void vanish(CommandQueue.Batch out) {
+            vanished = true;
+            out.add(() -> { if (bots.get(name) == this) removeBot(name); });
+        }
+
+        // main thread
         public void kill() {
+            removed = true;
+            CompletableFuture<NavUtils.PathResult> p = pendingPath;
+            if (p != null) p.cancel(false);
+            if (slot >= 0) clone.release(slot);
+            if (renderer != null) renderer.remove(render);
+            render = -1;
+            core.getWheel().cancel(stateTimer);
+            stateTimer = TimingWheel.NONE;
+            slot = -1;
             plugin.getLogger().fine("Bot " + name + " killed");
         }
     }
+
+    private static int floor(double v) {
+        int i = (int) v;
+        return v < i ? i - 1 : i;
+    }
 }
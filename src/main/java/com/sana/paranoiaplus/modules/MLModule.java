@@ -7,9 +7,21 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.player.PlayerPickupItemEvent;
+import org.bukkit.GameMode;
 import org.bukkit.Material;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
 import org.bukkit.event.player.PlayerItemConsumeEvent;
 import org.bukkit.event.EventPriority;
+import com.sana.paranoiaplus.util.BehaviorRecorder;
+import com.sana.paranoiaplus.util.ConfigSnapshot;
+import com.sana.paranoiaplus.util.MaterialPolicy;
+import com.sana.paranoiaplus.util.Metrics;
+import com.sana.paranoiaplus.util.SamplePipeline;
+import com.sana.paranoiaplus.util.ScopedModels;
+import com.sana.paranoiaplus.util.TickProfiler;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
@@ -21,158 +33,222 @@ import java.io.*;
 
 /**
  * MLModule - lightweight in-plugin collector + simple heuristic whitelist model with persistence and EMA smoothing.
+ * Event handlers only push packed samples (tagged with their scope) into per-thread rings; an async aggregator
+ * drains them in batches into sparse per-scope EMA models (see {@link ScopedModels}), which are journaled to
+ * disk and evicted under a memory cap. Persisted global counts load off the main thread before ingestion starts.
  */
 public class MLModule implements Listener {
+    private static final long DRAIN_PERIOD_TICKS = 5L;
+
     private final JavaPlugin plugin;
     private final CoreModule core;
     private final AtomicBoolean enabled = new AtomicBoolean(false);
-    private final ConcurrentHashMap<Material, Double> emaCounts = new ConcurrentHashMap<>();
-    private volatile List<Material> allowed = Collections.emptyList();
-    private final Gson gson = new Gson();
-    private final File persistFile;
+    private final SamplePipeline samples = new SamplePipeline(8192);
+    private final ScopedModels models;
+    private final BehaviorRecorder recorder;
+    private volatile boolean loaded;
+    private long reportedDrops;
+    private final Location scratch = new Location(null, 0, 0, 0); // main thread: item positions without allocating
+    private final File legacyFile;
+    private Metrics.Histogram placeTime, breakTime, pickupTime, drainTime, recomputeTime, flushTime;
 
     public MLModule(JavaPlugin plugin, CoreModule core) {
         this.plugin = plugin;
         this.core = core;
-        this.persistFile = new File(plugin.getDataFolder(), "ml_counts.json");
+        this.legacyFile = new File(plugin.getDataFolder(), "ml_counts.json");
+        this.models = new ScopedModels(plugin.getDataFolder(), core.config().ml, plugin.getLogger());
+        this.recorder = new BehaviorRecorder(plugin);
     }
 
     public void onEnable() {
+        Metrics m = core.metrics();
+        placeTime = m.timer("ml", "on_place");
+        breakTime = m.timer("ml", "on_break");
+        pickupTime = m.timer("ml", "on_pickup");
+        drainTime = m.timer("ml", "drain");
+        recomputeTime = m.timer("ml", "recompute");
+        flushTime = m.timer("ml", "persist_flush");
+        m.events("ml", "samples_dropped", samples::dropped);
         enabled.set(true);
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
-        loadPersisted();
-        plugin.getLogger().info("MLModule enabled (collector + EMA + persistence).");
-        long seconds = plugin.getConfig().getLong("ml.whitelist.update-interval-seconds", 300L);
+        models.recompute(core.config().ml); // seeds only until persisted counts are loaded
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                loadPersisted();
+                models.recompute(core.config().ml);
+            }
+        }.runTaskAsynchronously(plugin);
+        if (core.config().ml.cloneEnabled) recorder.onEnable(core.config().ml, core::getPlayers);
+        plugin.getLogger().info("MLModule enabled (collector + EMA + persistence, scope " + models.mode() + ").");
+        long seconds = core.config().ml.updateIntervalSeconds;
+        long flush = core.config().ml.persistFlushSeconds;
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                samples.advanceClock();
+            }
+        }.runTaskTimer(plugin, 1L, 1L);
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                if (!enabled.get()) return;
+                long t0 = System.nanoTime();
+                drainSamples();
+                drainTime.since(t0);
+            }
+        }.runTaskTimerAsynchronously(plugin, DRAIN_PERIOD_TICKS, DRAIN_PERIOD_TICKS);
         new BukkitRunnable() {
             @Override
             public void run() {
                 if (!enabled.get()) return;
-                if (!core.isServerHealthy()) return;
+                if (!core.health().atLeast(TickProfiler.Level.REDUCED)) return;
+                long t0 = System.nanoTime();
                 recomputeWhitelist();
-                persistCounts();
+                recomputeTime.since(t0);
             }
         }.runTaskTimerAsynchronously(plugin, 20L * seconds, 20L * seconds);
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                if (!enabled.get() || !loaded) return;
+                long t0 = System.nanoTime();
+                models.flushAll();
+                flushTime.since(t0);
+            }
+        }.runTaskTimerAsynchronously(plugin, 20L * flush, 20L * flush);
     }
 
     public void onDisable() {
         enabled.set(false);
-        persistCounts();
+        recorder.onDisable();
+        drainSamples();
+        if (loaded) models.close(5000L);
         plugin.getLogger().info("MLModule disabled.");
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onPlace(BlockPlaceEvent ev) {
         if (!enabled.get()) return;
-        if (ev.getPlayer().getGameMode().name().equalsIgnoreCase("CREATIVE") && plugin.getConfig().getBoolean("ml.whitelist.exclude-creative", true)) return;
-        addSample(ev.getBlockPlaced().getType(), 1.0);
+        if (ev.getPlayer().getGameMode() == GameMode.CREATIVE && core.config().ml.excludeCreative) return;
+        long t0 = System.nanoTime();
+        Block b = ev.getBlockPlaced();
+        offer(ev.getPlayer(), b.getWorld(), b.getX(), b.getZ(), b.getType(), 1.0);
+        placeTime.since(t0);
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onBreak(BlockBreakEvent ev) {
         if (!enabled.get()) return;
-        if (ev.getPlayer().getGameMode().name().equalsIgnoreCase("CREATIVE") && plugin.getConfig().getBoolean("ml.whitelist.exclude-creative", true)) return;
-        addSample(ev.getBlock().getType(), 1.0);
+        if (ev.getPlayer().getGameMode() == GameMode.CREATIVE && core.config().ml.excludeCreative) return;
+        long t0 = System.nanoTime();
+        Block b = ev.getBlock();
+        offer(ev.getPlayer(), b.getWorld(), b.getX(), b.getZ(), b.getType(), 1.0);
+        breakTime.since(t0);
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onPickup(PlayerPickupItemEvent ev) {
         if (!enabled.get()) return;
-        addSample(ev.getItem().getItemStack().getType(), 0.5);
-    }
-
-    private void addSample(Material m, double weight) {
-        emaCounts.merge(m, weight, (old, v) -> old * (1.0 - getAlpha()) + v * getAlpha());
-    }
-
-    private double getAlpha() {
-        return plugin.getConfig().getDouble("ml.whitelist.ema-alpha", 0.3);
+        long t0 = System.nanoTime();
+        Location at = ev.getItem().getLocation(scratch);
+        offer(ev.getPlayer(), at.getWorld(), at.getBlockX(), at.getBlockZ(), ev.getItem().getItemStack().getType(), 0.5);
+        at.setWorld(null); // don't pin an unloaded world
+        pickupTime.since(t0);
+    }
+
+    // Resolve the sample's scope and world on the event thread; the aggregator never touches Bukkit objects.
+    private void offer(Player p, World w, int bx, int bz, Material m, double weight) {
+        int scope = models.scopeOf(p.getUniqueId(), w, bx, bz);
+        int world = models.worldScope(w);
+        samples.offer(m.ordinal(), weight, scope, world);
+    }
+
+    // Aggregator: fold every queued sample into the scoped models in one batch.
+    private void drainSamples() {
+        if (!loaded) return; // samples wait in the rings until persisted counts are in place
+        models.drain(samples, core.config().ml.emaAlpha);
+        long dropped = samples.dropped();
+        if (dropped > reportedDrops) {
+            plugin.getLogger().warning("MLModule dropped " + (dropped - reportedDrops) + " samples under backpressure (" + samples.stats() + ")");
+            reportedDrops = dropped;
+        }
     }
 
     private void recomputeWhitelist() {
-        int topK = plugin.getConfig().getInt("ml.whitelist.top-k", 20);
-        Set<Material> hardDeny = loadHardDeny();
-        List<Map.Entry<Material, Double>> list = new ArrayList<>(emaCounts.entrySet());
-        list.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
-        List<Material> newAllowed = new ArrayList<>();
-        for (Map.Entry<Material, Double> e : list) {
-            if (newAllowed.size() >= topK) break;
-            if (hardDeny.contains(e.getKey())) continue;
-            newAllowed.add(e.getKey());
-        }
-        // ensure seeds are present
-        List<Material> seeds = loadSeedAllow();
-        for (Material m : seeds) if (!newAllowed.contains(m)) newAllowed.add(m);
-        allowed = Collections.unmodifiableList(newAllowed);
-        plugin.getLogger().info("MLModule recomputed allowed list: size=" + allowed.size());
-    }
-
-    private Set<Material> loadHardDeny() {
-        Set<Material> deny = EnumSet.noneOf(Material.class);
-        List<String> names = plugin.getConfig().getStringList("ml.whitelist.hard-deny.materials");
-        for (String s : names) {
-            try { deny.add(Material.valueOf(s.toUpperCase())); } catch (Exception ignored) {}
-        }
-        return deny;
+        drainSamples();
+        int compiled = models.recompute(core.config().ml);
+        plugin.getLogger().info("MLModule recomputed " + compiled + " scope policies: global size=" + policy().size()
+                + " models: " + models.stats() + " ingest: " + samples.stats());
     }
 
-    private List<Material> loadSeedAllow() {
-        List<Material> out = new ArrayList<>();
-        List<String> names = plugin.getConfig().getStringList("ml.whitelist.seed-allow");
-        for (String s : names) {
-            try { out.add(Material.valueOf(s.toUpperCase())); } catch (Exception ignored) {}
-        }
-        return out;
+    private MaterialPolicy policy() {
+        MaterialPolicy p = models.policy(ScopedModels.GLOBAL);
+        return p == null ? MaterialPolicy.EMPTY : p;
     }
 
-    // Persistence: save emaCounts to JSON
-    private void persistCounts() {
+    private void loadPersisted() {
+        boolean migrate = false;
         try {
-            if (!plugin.getDataFolder().exists()) plugin.getDataFolder().mkdirs();
-            Map<String, Double> map = new HashMap<>();
-            for (Map.Entry<Material, Double> e : emaCounts.entrySet()) map.put(e.getKey().name(), e.getValue());
-            try (Writer w = new FileWriter(persistFile)) {
-                gson.toJson(map, w);
-            }
+            if (!models.loadGlobal() && legacyFile.exists()) migrate = loadLegacy();
         } catch (Exception ex) {
-            plugin.getLogger().warning("Failed to persist ML counts: " + ex.getMessage());
+            plugin.getLogger().log(Level.WARNING, "Failed to load persisted ML counts", ex);
         }
+        loaded = true;
+        if (migrate) {
+            models.compactGlobal();
+            models.whenWritten(() -> {
+                if (!legacyFile.renameTo(new File(legacyFile.getPath() + ".migrated")))
+                    plugin.getLogger().warning("Could not rename " + legacyFile.getName() + " after migration.");
+            });
+        }
+        plugin.getLogger().info("MLModule loaded persisted counts: " + models.globalSize() + (migrate ? " (migrated from JSON)" : ""));
     }
 
-    @SuppressWarnings("unchecked")
-    private void loadPersisted() {
-        try {
-            if (!persistFile.exists()) return;
-            try (Reader r = new FileReader(persistFile)) {
-                Map<String, Double> map = gson.fromJson(r, new TypeToken<Map<String, Double>>(){}.getType());
-                if (map == null) return;
-                for (Map.Entry<String, Double> e : map.entrySet()) {
-                    try { Material m = Material.valueOf(e.getKey()); emaCounts.put(m, e.getValue()); } catch (Exception ignored) {}
-                }
-                plugin.getLogger().info("MLModule loaded persisted counts: " + emaCounts.size());
-            }
-        } catch (Exception ex) {
-            plugin.getLogger().warning("Failed to load persisted ML counts: " + ex.getMessage());
+    // One-time import of the pre-binary ml_counts.json.
+    private boolean loadLegacy() throws IOException {
+        try (Reader r = new BufferedReader(new FileReader(legacyFile))) {
+            Map<String, Double> map = new Gson().fromJson(r, new TypeToken<Map<String, Double>>(){}.getType());
+            if (map == null) return false;
+            for (Map.Entry<String, Double> e : map.entrySet()) if (e.getValue() != null) models.putGlobal(e.getKey(), e.getValue());
+            return true;
         }
     }
 
     // Public API
     public boolean isAllowed(Material m) {
-        return allowed.contains(m);
+        return policy().isAllowed(m);
+    }
+
+    /** Allowed in the most specific trained scope for a bot imitating target at loc (falls back to world, then global). */
+    public boolean isAllowed(Player target, Location loc, Material m) {
+        return models.policyFor(target != null ? target.getUniqueId() : null, loc.getWorld(), loc.getBlockX(), loc.getBlockZ()).isAllowed(m);
+    }
+
+    /** Hard-denied by material or category (independent of the learned ranking); follows reloads immediately. */
+    public boolean isHardDenied(Material m) {
+        return core.config().ml.hardDeny.isDenied(m);
     }
 
     public List<Material> getAllowedSnapshot() {
-        return allowed;
+        return policy().toList();
     }
 
     public Map<Material, Double> getTopMap(int n) {
-        List<Map.Entry<Material, Double>> list = new ArrayList<>(emaCounts.entrySet());
-        list.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
-        Map<Material, Double> out = new LinkedHashMap<>();
-        int i = 0;
-        for (Map.Entry<Material, Double> e : list) {
-            if (i++ >= n) break;
-            out.put(e.getKey(), e.getValue());
-        }
-        return out;
+        return models.topGlobal(n);
+    }
+
+    /** Ingestion counters: accepted, drained, dropped samples and aggregator lag. */
+    public String getIngestStats() {
+        return samples.stats() + " | " + models.stats();
+    }
+
+    /** Behaviour recorder counters (ml.clone.record). */
+    public String getRecorderStats() {
+        return recorder.stats();
+    }
+
+    public BehaviorRecorder getRecorder() {
+        return recorder;
     }
 }
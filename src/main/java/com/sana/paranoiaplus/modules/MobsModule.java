@@ -16,18 +16,36 @@ import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Event;
-import java.util.Random;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import com.sana.paranoiaplus.util.ConfigSnapshot;
+import com.sana.paranoiaplus.util.Metrics;
+import com.sana.paranoiaplus.util.MobRegistry;
+import com.sana.paranoiaplus.util.PlayerSnapshot;
+import com.sana.paranoiaplus.util.SpawnRules;
+import com.sana.paranoiaplus.util.TickProfiler;
+import com.sana.paranoiaplus.util.VisionSystem;
 import java.util.logging.Level;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * MobsModule - improved spawn replacement skeleton and per-entity freeze-on-look controller.
+ * Who is being looked at is decided off-thread by {@link VisionSystem}; the controller only applies the result.
+ * Controlled mobs live in a per-world {@link MobRegistry} (capped by mobs.max-controlled-per-world) and are
+ * updated in time-boxed slices, so a large registry spreads over several ticks instead of spiking one.
+ * The slice budget and controller rate follow the server's health level; at OFF every frozen mob is released.
  */
 public class MobsModule implements Listener {
     private final JavaPlugin plugin;
     private final CoreModule core;
-    private final Set<UUID> controlled = Collections.newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
+    private final MobRegistry controlled = new MobRegistry();
+    private final Set<UUID> frozen = new HashSet<>(); // main thread: AI switched off by freeze-on-look
+    private final Location scratch = new Location(null, 0, 0, 0);
+    private VisionSystem vision;
+    private final MobRegistry.Visitor sample = this::sample;
+    private final SpawnRules rules = new SpawnRules();
+    private Metrics.Histogram controllerTime, spawnEventTime;
+    private Metrics.Counter replaced;
 
     public MobsModule(JavaPlugin plugin, CoreModule core) {
         this.plugin = plugin;
@@ -37,61 +55,145 @@ public class MobsModule implements Listener {
     public void onEnable() {
         plugin.getLogger().info("MobsModule enabled (improved).");
         Bukkit.getPluginManager().registerEvents(this, plugin);
+        vision = new VisionSystem(core.getTerrain());
+        Metrics m = core.metrics();
+        controllerTime = m.timer("mobs", "controller");
+        spawnEventTime = m.timer("mobs", "on_spawn");
+        replaced = m.events("mobs", "replaced");
+        m.sampledGauge("paranoia_mobs_controlled", "Mobs under paranoia control.", "mobs", "controlled", controlled::size);
+        m.sampledGauge("paranoia_mobs_frozen", "Controlled mobs frozen (AI off) while a player looks at them.", "mobs", "frozen", frozen::size);
         // Schedule controller tick
         new BukkitRunnable() {
             @Override
             public void run() {
-                if (!plugin.getConfig().getBoolean("mobs.replace-natural-spawns", true)) return;
-                if (!core.isServerHealthy()) return;
-                // iterate controlled entities and ensure controllers applied (placeholder)
+                if (controlled.size() == 0 && frozen.isEmpty()) return;
+                TickProfiler.Level level = core.health();
+                if (level == TickProfiler.Level.OFF) {
+                    thawAll();
+                    return;
+                }
+                if (!level.due(core.getPlayers().tick, 1)) return;
+                long t0 = System.nanoTime();
+                controllerTick(level);
+                controllerTime.since(t0);
             }
-        }.runTaskTimerAsynchronously(plugin, 20L * 5, 20L * 5);
+        }.runTaskTimer(plugin, 1L, 1L);
     }
 
     public void onDisable() {
+        thawAll();
+        if (vision != null) vision.shutdown();
         plugin.getLogger().info("MobsModule disabled.");
     }
 
+    // NoAI is saved with the entity: never leave a mob frozen behind
+    private void thawAll() {
+        if (frozen.isEmpty()) return;
+        for (UUID id : frozen) {
+            LivingEntity le = controlled.get(id);
+            if (le != null && le.isValid()) le.setAI(true);
+        }
+        frozen.clear();
+    }
+
+    public String getVisionStats() {
+        return vision == null ? "disabled" : vision.stats() + " frozen=" + frozen.size();
+    }
+
+    public String getRegistryStats() {
+        return controlled.stats();
+    }
+
+    public String getSpawnStats() {
+        return rules.stats();
+    }
+
+    // Apply last tick's watched bits, then queue this tick's mob positions for the vision worker.
+    private void controllerTick(TickProfiler.Level level) {
+        if (!vision.poll()) return; // worker still busy: keep the current freeze state one more tick
+        VisionSystem.Frame res = vision.result();
+        for (int i = 0; i < res.count; i++) {
+            LivingEntity le = (LivingEntity) res.ref[i];
+            if (!le.isValid()) continue;
+            boolean watched = res.watched(i);
+            if (watched == frozen.contains(le.getUniqueId())) continue;
+            le.setAI(!watched);
+            if (watched) frozen.add(le.getUniqueId()); else frozen.remove(le.getUniqueId());
+        }
+        ConfigSnapshot.Mobs cfg = core.config().mobs;
+        controlled.visit(level.budget(cfg.controllerBudgetNanos), sample);
+        vision.start(core.getPlayers(), cfg, cfg.visionRange);
+    }
+
+    // One controller step: queue the mob for this tick's vision frame; mobs removed without an event leave here.
+    private boolean sample(LivingEntity le) {
+        if (!le.isValid()) {
+            frozen.remove(le.getUniqueId());
+            return false;
+        }
+        Location l = le.getLocation(scratch);
+        vision.add(l.getWorld(), l.getX(), l.getY() + le.getHeight() * 0.5, l.getZ(), le);
+        return true;
+    }
+
     // Example API for spawning a controlled paranoia mob (returns the entity if applicable)
     public LivingEntity spawnControlled(EntityType type, Player nearPlayer) {
         plugin.getLogger().log(Level.INFO, "(mobs) spawn request {0} near {1}", new Object[]{type.name(), nearPlayer.getName()});
+        if (controlled.count(nearPlayer.getWorld()) >= core.config().mobs.maxControlledPerWorld) {
+            plugin.getLogger().info("(mobs) max-controlled-per-world reached in " + nearPlayer.getWorld().getName());
+            return null;
+        }
         // spawn at player's location offset
         Location loc = nearPlayer.getLocation().add(nearPlayer.getLocation().getDirection().multiply(6.0));
         LivingEntity e = (LivingEntity) nearPlayer.getWorld().spawnEntity(loc, type);
         if (e instanceof Mob) {
-            controlled.add(e.getUniqueId());
+            controlled.add(e, core.config().mobs.maxControlledPerWorld);
         }
         return e;
     }
 
-    // Freeze-on-look check: if any player looks at controlled entity, disable its AI
-    private boolean isPlayerLookingAt(Player player, LivingEntity entity, double fovDeg) {
-        Location eye = player.getEyeLocation();
-        Location target = entity.getLocation().add(0, entity.getHeight() * 0.5, 0);
-        org.bukkit.util.Vector dir = eye.getDirection().normalize();
-        org.bukkit.util.Vector toTarget = target.toVector().subtract(eye.toVector()).normalize();
-        double dot = dir.dot(toTarget);
-        double cos = Math.cos(Math.toRadians(fovDeg));
-        if (dot < cos) return false;
-        // raytrace check for line of sight
-        org.bukkit.util.RayTraceResult r = player.getWorld().rayTrace(eye, toTarget, eye.distance(target), org.bukkit.FluidCollisionMode.NEVER, true, 0.1, e -> e.equals(entity));
-        return r != null && r.getHitEntity() != null && r.getHitEntity().getUniqueId().equals(entity.getUniqueId());
-    }
-
     @EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
     public void onEntitySpawn(EntitySpawnEvent ev) {
         // if replacement rules apply, mark for control
         if (!(ev.getEntity() instanceof LivingEntity)) return;
         LivingEntity le = (LivingEntity) ev.getEntity();
-        // Example rule: only replace some spawns probabilistically
-        if (new Random().nextDouble() < plugin.getConfig().getDouble("mobs.replace-chance", 0.25)) {
-            controlled.add(le.getUniqueId());
+        ConfigSnapshot.Mobs cfg = core.config().mobs;
+        if (!cfg.replaceNaturalSpawns || core.health() != TickProfiler.Level.FULL) return;
+        long t0 = System.nanoTime();
+        boolean full = controlled.count(le.getWorld()) >= cfg.maxControlledPerWorld;
+        if (rules.evaluate(le, cfg, core.getPlayers(), full) == SpawnRules.ACCEPT) {
+            controlled.add(le, cfg.maxControlledPerWorld);
+            replaced.inc();
         }
+        spawnEventTime.since(t0);
     }
 
     @EventHandler
     public void onEntityDeath(EntityDeathEvent ev) {
         controlled.remove(ev.getEntity().getUniqueId());
+        frozen.remove(ev.getEntity().getUniqueId());
+    }
+
+    @EventHandler
+    public void onChunkUnload(ChunkUnloadEvent ev) {
+        if (controlled.size() == 0) return;
+        for (org.bukkit.entity.Entity e : ev.getChunk().getEntities()) {
+            if (!controlled.remove(e.getUniqueId())) continue;
+            if (frozen.remove(e.getUniqueId())) ((LivingEntity) e).setAI(true);
+        }
+    }
+
+    @EventHandler
+    public void onWorldUnload(WorldUnloadEvent ev) {
+        for (Iterator<UUID> it = frozen.iterator(); it.hasNext(); ) {
+            LivingEntity le = controlled.get(it.next());
+            if (le != null && le.getWorld() == ev.getWorld()) {
+                le.setAI(true);
+                it.remove();
+            }
+        }
+        controlled.removeWorld(ev.getWorld().getUID());
+        rules.forgetWorld(ev.getWorld().getUID());
     }
 
     @EventHandler
@@ -4,6 +4,7 @@ import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.entity.Player;
 import org.bukkit.Bukkit;
 import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.GameMode;
 import org.bukkit.Location;
 import org.bukkit.util.Vector;
 import org.bukkit.World;
@@ -13,11 +14,20 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.UUID;
 
+import com.sana.paranoiaplus.util.ConfigSnapshot;
+import com.sana.paranoiaplus.util.Metrics;
+import com.sana.paranoiaplus.util.PacketQueue;
+import com.sana.paranoiaplus.util.PlayerSnapshot;
+import com.sana.paranoiaplus.util.ShadowHead;
+import com.sana.paranoiaplus.util.ShadowSpot;
+import com.sana.paranoiaplus.util.TerrainCache;
+import com.sana.paranoiaplus.util.TickProfiler;
+import com.sana.paranoiaplus.util.TimingWheel;
+
 import com.comphenix.protocol.ProtocolLibrary;
 import com.comphenix.protocol.ProtocolManager;
 import com.comphenix.protocol.events.PacketContainer;
 import com.comphenix.protocol.wrappers.WrappedDataWatcher;
-import com.comphenix.protocol.wrappers.WrappedGameProfile;
 import com.comphenix.protocol.wrappers.WrappedChatComponent;
 import com.comphenix.protocol.PacketType;
 import com.comphenix.protocol.wrappers.EnumWrappers;
@@ -30,9 +40,15 @@ public class ShadowModule {
     private final JavaPlugin plugin;
     private final CoreModule core;
     private ProtocolManager protocolManager;
-    private final Map<UUID, Long> lastSpawn = new ConcurrentHashMap<>();
-    private final Map<UUID, Integer> spawnedEntityId = new ConcurrentHashMap<>(); // map target player -> entity id for cleanup
+    private final Set<UUID> cooling = new HashSet<>(); // main thread; entries expire through the timing wheel
+    private final Map<UUID, Tracked> tracked = new ConcurrentHashMap<>(); // target player -> live shadow (head tracking, cleanup)
     private final Random random = new Random();
+    private Templates templates; // built on first spawn (main thread)
+    private final TimingWheel.Action cooldownExpired = (ref, arg) -> cooling.remove(ref);
+    private final TimingWheel.Action despawn = this::despawn;
+    private long headUpdates, headSuppressed;
+    private Metrics.Histogram spawnCheckTime, headTrackTime;
+    private Metrics.Counter spawned;
 
     public ShadowModule(JavaPlugin plugin, CoreModule core) {
         this.plugin = plugin;
@@ -47,142 +63,245 @@ public class ShadowModule {
 
     public void onEnable() {
         plugin.getLogger().info("ShadowModule enabled (ProtocolLib-aware).");
+        Metrics m = core.metrics();
+        spawnCheckTime = m.timer("shadow", "spawn_check");
+        headTrackTime = m.timer("shadow", "head_track");
+        spawned = m.events("shadow", "spawned");
+        m.sampledEvents("shadow", "head_updates", () -> headUpdates);
         new BukkitRunnable() {
             @Override
             public void run() {
                 try {
-                    if (!plugin.getConfig().getBoolean("shadow.enabled", true)) return;
-                    if (!core.isServerHealthy()) return;
+                    ConfigSnapshot.Shadow cfg = core.config().shadow;
+                    if (!cfg.enabled) return;
+                    if (core.health() != TickProfiler.Level.FULL) return; // scares are optional: only on a relaxed server
+                    long t0 = System.nanoTime();
+                    PlayerSnapshot snap = core.getPlayers();
                     for (Player p : Bukkit.getOnlinePlayers()) {
-                        trySpawnShadowCheck(p);
+                        trySpawnShadowCheck(cfg, snap, p);
                     }
+                    spawnCheckTime.since(t0);
                 } catch (Throwable t) {
                     plugin.getLogger().warning("Shadow periodic task error: " + t.getMessage());
                 }
             }
         }.runTaskTimer(plugin, 20L * 15, 20L * 15); // every 15s check
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                if (tracked.isEmpty() || !core.health().atLeast(TickProfiler.Level.REDUCED)) return;
+                long t0 = System.nanoTime();
+                trackHeads();
+                headTrackTime.since(t0);
+            }
+        }.runTaskTimer(plugin, 1L, 1L);
     }
 
     public void onDisable() {
         plugin.getLogger().info("ShadowModule disabled.");
-        // cleanup if needed
+        // remove shadows whose destroy task will not run any more; CoreModule flushes the queue after us
+        PacketQueue packets = core.getPackets();
+        if (templates == null || packets == null) return;
+        for (Tracked t : tracked.values()) {
+            if (t.viewer.isOnline()) packets.push(t.viewer, templates.destroy(t.id));
+        }
+        tracked.clear();
     }
 
-    private void trySpawnShadowCheck(Player p) {
-        if (p.getGameMode().name().equalsIgnoreCase("CREATIVE")) return;
-        if (p.getLocation().getBlock().getLightLevel() > plugin.getConfig().getInt("shadow.min-light-level", 7)) return;
-        long last = lastSpawn.getOrDefault(p.getUniqueId(), 0L);
-        long cooldown = getRandomCooldownMs();
-        long now = System.currentTimeMillis();
-        if (now - last < cooldown) return;
-        double aloneRadius = plugin.getConfig().getDouble("shadow.require-alone-radius", 40.0);
-        boolean someoneNearby = Bukkit.getOnlinePlayers().stream()
-                .anyMatch(o -> !o.getUniqueId().equals(p.getUniqueId()) &&
-                        o.getLocation().distanceSquared(p.getLocation()) < aloneRadius * aloneRadius);
-        if (someoneNearby) return;
-        Location spawn = computeSpawnAwayFromPlayer(p, plugin.getConfig().getInt("shadow.distance-min", 20), plugin.getConfig().getInt("shadow.distance-max", 40));
+    private void trySpawnShadowCheck(ConfigSnapshot.Shadow cfg, PlayerSnapshot snap, Player p) {
+        int i = snap.indexOf(p.getUniqueId());
+        if (i < 0) return; // joined after the last capture
+        if (snap.gameMode[i] == GameMode.CREATIVE.ordinal()) return;
+        if (snap.light[i] > cfg.minLightLevel) return;
+        if (cooling.contains(p.getUniqueId())) return;
+        if (snap.anyOtherWithin(i, cfg.requireAloneRadius)) return;
+        Location spawn = computeSpawnAwayFromPlayer(cfg, p);
         if (spawn == null) return;
         spawnShadowFor(p, spawn);
-        lastSpawn.put(p.getUniqueId(), now);
+        startCooldown(cfg, p.getUniqueId());
     }
 
-    private long getRandomCooldownMs() {
-        List<Integer> arr = plugin.getConfig().getIntegerList("shadow.cooldown-seconds");
-        if (arr == null || arr.isEmpty()) return 300_000L;
-        int s = arr.get(random.nextInt(arr.size()));
-        return s * 1000L;
+    private void startCooldown(ConfigSnapshot.Shadow cfg, UUID player) {
+        int[] arr = cfg.cooldownSeconds;
+        if (cooling.add(player)) core.getWheel().schedule(arr[random.nextInt(arr.length)] * 20L, cooldownExpired, player, 0L);
     }
 
-    private Location computeSpawnAwayFromPlayer(Player p, int min, int max) {
-        Location eye = p.getEyeLocation();
-        Vector look = eye.getDirection().normalize();
+    private Location computeSpawnAwayFromPlayer(ConfigSnapshot.Shadow cfg, Player p) {
+        PlayerSnapshot snap = core.getPlayers();
+        int i = snap.indexOf(p.getUniqueId());
         World w = p.getWorld();
-        for (int attempts = 0; attempts < 12; attempts++) {
-            double dist = min + random.nextDouble() * (max - min);
-            double angle = Math.toRadians((plugin.getConfig().getInt("shadow.fov-deg", 30) + plugin.getConfig().getInt("shadow.fov-margin-deg", 8)) + (5 + random.nextDouble() * 120));
-            double yaw = Math.atan2(look.getZ(), look.getX()) + angle * (random.nextBoolean() ? 1 : -1);
-            double dx = Math.cos(yaw) * dist;
-            double dz = Math.sin(yaw) * dist;
-            Location candidate = eye.clone().add(dx, 0, dz);
-            candidate.setY(Math.max(2, Math.min(candidate.getY(), plugin.getConfig().getInt("shadow.max-y", 60))));
-            if (candidate.getBlock().getLightLevel() <= plugin.getConfig().getInt("shadow.min-light-level", 7))
-                return candidate;
+        double ex, ey, ez, lookX, lookZ;
+        if (i >= 0) {
+            ex = snap.x[i]; ey = snap.eyeY[i]; ez = snap.z[i];
+            lookX = snap.dirX[i];
+            lookZ = snap.dirZ[i];
+        } else {
+            Location eye = p.getEyeLocation();
+            Vector look = eye.getDirection();
+            ex = eye.getX(); ey = eye.getY(); ez = eye.getZ();
+            lookX = look.getX();
+            lookZ = look.getZ();
         }
-        return null;
+        double[] spot = new double[3];
+        TerrainCache terrain = core.getTerrain();
+        if (!ShadowSpot.find(cfg, random, ex, ey, ez, lookX, lookZ, (x, y, z) -> terrain.light(w, x, y, z), spot)) return null;
+        return new Location(w, spot[0], spot[1], spot[2]);
     }
 
     // Public API: spawn a shadow at a specific world location for a target player
     public void spawnShadowFor(Player target, Location spawnLoc) {
-        if (protocolManager == null) {
+        PacketQueue packets = core.getPackets();
+        if (protocolManager == null || packets == null) {
             plugin.getLogger().info("ProtocolLib missing — fallback shadow log for " + target.getName());
-            lastSpawn.put(target.getUniqueId(), System.currentTimeMillis());
+            startCooldown(core.config().shadow, target.getUniqueId());
             return;
         }
-        UUID fakeUuid = UUID.randomUUID();
         int entityId = random.nextInt(Integer.MAX_VALUE / 2) + 1000;
-        spawnedEntityId.put(target.getUniqueId(), entityId);
 
         try {
-            // Create a simple WrappedGameProfile (avoid direct authlib usage)
-            WrappedGameProfile profile = new WrappedGameProfile(fakeUuid, " ");
-
-            // NAMED_ENTITY_SPAWN (player-like entity)
-            PacketContainer spawn = protocolManager.createPacket(PacketType.Play.Server.NAMED_ENTITY_SPAWN);
-            spawn.getIntegers().write(0, entityId);
-            spawn.getUUIDs().write(0, fakeUuid);
-            spawn.getDoubles().write(0, spawnLoc.getX());
-            spawn.getDoubles().write(1, spawnLoc.getY());
-            spawn.getDoubles().write(2, spawnLoc.getZ());
-            spawn.getBytes().write(0, (byte) 0);
-            spawn.getBytes().write(1, (byte) 0);
-            protocolManager.sendServerPacket(target, spawn);
-
-            // ENTITY_METADATA: minimal watcher
-            PacketContainer meta = protocolManager.createPacket(PacketType.Play.Server.ENTITY_METADATA);
-            WrappedDataWatcher watcher = new WrappedDataWatcher();
-            meta.getIntegers().write(0, entityId);
-            meta.getWatchableCollectionModifier().write(0, watcher.getWatchableObjects());
-            protocolManager.sendServerPacket(target, meta);
-
-            // HEAD_ROTATION
-            PacketContainer head = protocolManager.createPacket(PacketType.Play.Server.ENTITY_HEAD_ROTATION);
-            head.getIntegers().write(0, entityId);
-            head.getBytes().write(0, (byte) 0);
-            protocolManager.sendServerPacket(target, head);
-
-            // Schedule destroy for retreat effect
-            new BukkitRunnable() {
-                @Override
-                public void run() {
-                    try {
-                        PacketContainer destroy = protocolManager.createPacket(PacketType.Play.Server.ENTITY_DESTROY);
-                        destroy.getIntegerArrays().write(0, new int[]{entityId});
-                        protocolManager.sendServerPacket(target, destroy);
-                    } catch (Exception ex) {
-                        plugin.getLogger().warning("Failed to destroy shadow entity: " + ex.getMessage());
-                    }
-                }
-            }.runTaskLater(plugin, 20L * (1 + random.nextInt(3)));
+            if (templates == null) templates = new Templates(protocolManager);
+            // face the viewer
+            Location eye = target.getEyeLocation();
+            ShadowHead head = new ShadowHead(spawnLoc.getX(), spawnLoc.getY(), spawnLoc.getZ(), eye.getX(), eye.getY(), eye.getZ(),
+                    core.config().shadow);
+            byte yaw = head.yaw(), pitch = head.pitch();
+            if (!packets.offer(target,
+                    templates.spawn(entityId, spawnLoc.getX(), spawnLoc.getY(), spawnLoc.getZ(), yaw, pitch),
+                    templates.metadata(entityId),
+                    templates.head(entityId, yaw))) {
+                return; // viewer's queue is full (mass event): skip this one
+            }
+            tracked.put(target.getUniqueId(), new Tracked(target, entityId, head));
+            if (spawned != null) spawned.inc();
+
+            // Schedule destroy for retreat effect (dropped if the viewer quits first)
+            core.getWheel().schedule(20L * (1 + random.nextInt(3)), despawn, target, entityId, target.getUniqueId());
         } catch (Exception ex) {
             plugin.getLogger().warning("ProtocolLib send error: " + ex.getMessage());
         }
     }
 
+    private void despawn(Object ref, long entityId) {
+        Player p = (Player) ref;
+        Tracked t = tracked.get(p.getUniqueId());
+        if (t != null && t.id == (int) entityId) tracked.remove(p.getUniqueId());
+        PacketQueue packets = core.getPackets();
+        if (packets != null) packets.push(p, templates.destroy((int) entityId));
+    }
+
+    // One pass per tick over live shadows: aim at where the viewer was head-track-lag-ms ago and send a
+    // look + head rotation only when the quantized angle changed and the viewer's rate cap allows it.
+    private void trackHeads() {
+        PacketQueue packets = core.getPackets();
+        if (packets == null || templates == null) return;
+        PlayerSnapshot snap = core.getPlayers();
+        long tick = snap.tick;
+        for (Tracked t : tracked.values()) {
+            int i = snap.indexOf(t.viewer.getUniqueId());
+            if (i < 0) {
+                if (!t.viewer.isOnline()) tracked.remove(t.viewer.getUniqueId(), t); // its despawn was dropped on quit
+                continue;
+            }
+            int angles = t.head.track(tick, snap.x[i], snap.eyeY[i], snap.z[i]);
+            if (angles == ShadowHead.NONE) continue;
+            if (angles == ShadowHead.SUPPRESSED) {
+                headSuppressed++;
+                continue;
+            }
+            byte yaw = ShadowHead.yaw(angles);
+            if (!packets.offer(t.viewer, templates.look(t.id, yaw, ShadowHead.pitch(angles)), templates.head(t.id, yaw))) continue;
+            t.head.sent(tick, angles);
+            headUpdates++;
+        }
+    }
+
     public void spawnShadowFor(Player p) {
-        Location spawn = computeSpawnAwayFromPlayer(p, plugin.getConfig().getInt("shadow.distance-min", 20), plugin.getConfig().getInt("shadow.distance-max", 40));
+        Location spawn = computeSpawnAwayFromPlayer(core.config().shadow, p);
         if (spawn != null) spawnShadowFor(p, spawn);
     }
 
+    public String getPacketStats() {
+        PacketQueue packets = core.getPackets();
+        return packets == null ? "disabled" : packets.stats() + " shadows=" + tracked.size()
+                + " headUpdates=" + headUpdates + " headSuppressed=" + headSuppressed;
+    }
+
     public void revealShadowFor(Player player) {
-        Integer id = spawnedEntityId.remove(player.getUniqueId());
-        if (id != null && protocolManager != null) {
+        Tracked t = tracked.remove(player.getUniqueId());
+        PacketQueue packets = core.getPackets();
+        if (t != null && templates != null && packets != null) {
             try {
-                PacketContainer destroy = protocolManager.createPacket(PacketType.Play.Server.ENTITY_DESTROY);
-                destroy.getIntegerArrays().write(0, new int[]{id});
-                protocolManager.sendServerPacket(player, destroy);
+                packets.push(player, templates.destroy(t.id));
             } catch (Exception ex) {
                 plugin.getLogger().warning("Failed to destroy shadow during reveal: " + ex.getMessage());
             }
         }
     }
+
+    /** A live shadow: its viewer, entity id and head tracking. */
+    private static final class Tracked {
+        final Player viewer;
+        final int id;
+        final ShadowHead head;
+
+        Tracked(Player viewer, int id, ShadowHead head) {
+            this.viewer = viewer;
+            this.id = id;
+            this.head = head;
+        }
+    }
+
+    /**
+     * Templates - the shadow archetype's packets, built once with ProtocolLib's reflective writers and
+     * shallow-cloned per spawn; only the entity id, UUID, position and rotation are patched.
+     * The metadata list is shared by every clone and never modified.
+     */
+    private static final class Templates {
+        private static final long UUID_MSB = 0x5348_4144_4f57_4000L; // version-4 layout; lsb = entity id
+        private final PacketContainer spawn, metadata, head, look, destroy;
+
+        Templates(ProtocolManager pm) {
+            spawn = pm.createPacket(PacketType.Play.Server.NAMED_ENTITY_SPAWN);
+            metadata = pm.createPacket(PacketType.Play.Server.ENTITY_METADATA);
+            metadata.getWatchableCollectionModifier().write(0, new WrappedDataWatcher().getWatchableObjects());
+            head = pm.createPacket(PacketType.Play.Server.ENTITY_HEAD_ROTATION);
+            look = pm.createPacket(PacketType.Play.Server.ENTITY_LOOK);
+            destroy = pm.createPacket(PacketType.Play.Server.ENTITY_DESTROY);
+        }
+
+        PacketContainer spawn(int id, double x, double y, double z, byte yaw, byte pitch) {
+            PacketContainer c = spawn.shallowClone();
+            c.getIntegers().write(0, id);
+            c.getUUIDs().write(0, new UUID(UUID_MSB, id));
+            c.getDoubles().write(0, x).write(1, y).write(2, z);
+            c.getBytes().write(0, yaw).write(1, pitch);
+            return c;
+        }
+
+        PacketContainer metadata(int id) {
+            PacketContainer c = metadata.shallowClone();
+            c.getIntegers().write(0, id);
+            return c;
+        }
+
+        PacketContainer head(int id, byte yaw) {
+            PacketContainer c = head.shallowClone();
+            c.getIntegers().write(0, id);
+            c.getBytes().write(0, yaw);
+            return c;
+        }
+
+        PacketContainer look(int id, byte yaw, byte pitch) {
+            PacketContainer c = look.shallowClone();
+            c.getIntegers().write(0, id);
+            c.getBytes().write(0, yaw).write(1, pitch);
+            return c;
+        }
+
+        PacketContainer destroy(int id) {
+            PacketContainer c = destroy.shallowClone();
+            c.getIntegerArrays().write(0, new int[]{id});
+            return c;
+        }
+    }
 }
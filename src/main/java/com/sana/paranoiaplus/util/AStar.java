@@ -0,0 +1,245 @@
+package com.sana.paranoiaplus.util;
+
+import java.util.Arrays;
+
+/**
+ * AStar - allocation-light A* search over packed block coordinates.
+ * One instance per worker thread: the node table and open heap are plain primitive arrays
+ * that are reused between searches (a generation stamp replaces clearing), so a search only
+ * allocates its final path.
+ */
+final class AStar {
+    private static final float DIAG = 1.4142135f;
+    private static final int[] DX = {1, -1, 0, 0, 1, 1, -1, -1};
+    private static final int[] DZ = {0, 0, 1, -1, 1, -1, 1, -1};
+    private static final int MAX_DROP = 3;
+
+    // node table (open addressing): key, g-score, parent, closed flag, generation stamp
+    private long[] keys;
+    private float[] g;
+    private long[] parent;
+    private boolean[] closed;
+    private int[] stamp;
+    private int mask;
+    private int gen;
+
+    // open set: binary min-heap over (f, key)
+    private float[] heapF;
+    private long[] heapKey;
+    private int heapSize;
+
+    AStar() {
+        allocTable(1 << 14);
+        heapF = new float[4096];
+        heapKey = new long[4096];
+    }
+
+    NavUtils.PathResult search(NavUtils.BlockSource src, int sx, int sy, int sz, int gx, int gy, int gz,
+                               int maxNodes, long maxNanos) {
+        long t0 = System.nanoTime();
+        prepare(maxNodes);
+        long start = NavUtils.pack(sx, sy, sz);
+        long goal = NavUtils.pack(gx, gy, gz);
+
+        int slot = slotFor(start);
+        g[slot] = 0f;
+        parent[slot] = start;
+        push(h(sx, sy, sz, gx, gy, gz), start);
+
+        long best = start;
+        float bestH = h(sx, sy, sz, gx, gy, gz);
+        int expanded = 0;
+        int unknown = 0;
+        NavUtils.Status status = NavUtils.Status.NO_PATH;
+
+        while (heapSize > 0) {
+            long cur = pop();
+            int cs = find(cur);
+            if (closed[cs]) continue; // stale duplicate
+            closed[cs] = true;
+            if (cur == goal) { best = cur; status = NavUtils.Status.FOUND; break; }
+            if (++expanded > maxNodes) { status = NavUtils.Status.BUDGET; break; }
+            if ((expanded & 63) == 0 && System.nanoTime() - t0 > maxNanos) { status = NavUtils.Status.TIMEOUT; break; }
+
+            int x = NavUtils.unpackX(cur), y = NavUtils.unpackY(cur), z = NavUtils.unpackZ(cur);
+            float hc = h(x, y, z, gx, gy, gz);
+            if (hc < bestH) { bestH = hc; best = cur; }
+            float gc = g[cs];
+
+            for (int d = 0; d < 8; d++) {
+                int nx = x + DX[d], nz = z + DZ[d];
+                int ny;
+                float step;
+                if (d < 4) {
+                    ny = resolveY(src, x, y, z, nx, nz);
+                    if (ny == Integer.MIN_VALUE) { unknown++; continue; }
+                    if (ny == Integer.MAX_VALUE) continue;
+                    step = 1f + Math.abs(ny - y) * 0.5f;
+                } else {
+                    // diagonals only on flat ground and without cutting corners
+                    if (walkable(src, nx, y, nz) != 1 || passable2(src, x + DX[d], y, z) != 1 || passable2(src, x, y, z + DZ[d]) != 1) continue;
+                    ny = y;
+                    step = DIAG;
+                }
+                long nk = NavUtils.pack(nx, ny, nz);
+                int ns = slotFor(nk);
+                if (closed[ns]) continue;
+                float ng = gc + step;
+                if (ng < g[ns]) {
+                    g[ns] = ng;
+                    parent[ns] = cur;
+                    push(ng + h(nx, ny, nz, gx, gy, gz), nk);
+                }
+            }
+        }
+        if (status == NavUtils.Status.NO_PATH && unknown > 0) status = NavUtils.Status.UNKNOWN_TERRAIN;
+        long[] path = status == NavUtils.Status.FOUND || best != start ? reconstruct(best, start) : new long[0];
+        return new NavUtils.PathResult(status, path, expanded, System.nanoTime() - t0);
+    }
+
+    // Returns the feet y reachable when stepping into column (nx, nz), MAX_VALUE if blocked,
+    // MIN_VALUE if the answer depends on terrain that is not loaded.
+    private static int resolveY(NavUtils.BlockSource src, int x, int y, int z, int nx, int nz) {
+        int w = walkable(src, nx, y, nz);
+        if (w < 0) return Integer.MIN_VALUE;
+        if (w == 1) return y;
+        // step up: needs head room above the current node
+        int up = walkable(src, nx, y + 1, nz);
+        if (up < 0) return Integer.MIN_VALUE;
+        if (up == 1) {
+            int head = passable(src.flags(x, y + 2, z));
+            if (head < 0) return Integer.MIN_VALUE;
+            if (head == 1) return y + 1;
+        }
+        // drop down: the column we walk into must be open
+        int open = passable2(src, nx, y, nz);
+        if (open != 1) return open < 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        for (int dy = 1; dy <= MAX_DROP; dy++) {
+            int wd = walkable(src, nx, y - dy, nz);
+            if (wd < 0) return Integer.MIN_VALUE;
+            if (wd == 1) return y - dy;
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    // 1 = standable (solid floor, two passable blocks), 0 = not, -1 = unknown
+    private static int walkable(NavUtils.BlockSource src, int x, int y, int z) {
+        int floor = src.flags(x, y - 1, z);
+        if (floor == NavUtils.BlockSource.UNKNOWN) return -1;
+        if ((floor & NavUtils.BlockSource.SOLID) == 0) return 0;
+        return passable2(src, x, y, z);
+    }
+
+    private static int passable2(NavUtils.BlockSource src, int x, int y, int z) {
+        int feet = passable(src.flags(x, y, z));
+        if (feet != 1) return feet;
+        return passable(src.flags(x, y + 1, z));
+    }
+
+    private static int passable(int f) {
+        if (f == NavUtils.BlockSource.UNKNOWN) return -1;
+        return (f & NavUtils.BlockSource.PASSABLE) != 0 && (f & NavUtils.BlockSource.LIQUID) == 0 ? 1 : 0;
+    }
+
+    private static float h(int x, int y, int z, int gx, int gy, int gz) {
+        int dx = Math.abs(x - gx), dz = Math.abs(z - gz);
+        int mn = Math.min(dx, dz), mx = Math.max(dx, dz);
+        return (mx - mn) + mn * DIAG + Math.abs(y - gy);
+    }
+
+    private long[] reconstruct(long end, long start) {
+        int n = 1;
+        for (long k = end; k != start; k = parent[find(k)]) n++;
+        long[] out = new long[n];
+        long k = end;
+        for (int i = n - 1; i >= 0; i--) { out[i] = k; k = parent[find(k)]; }
+        return out;
+    }
+
+    // ---- node table ----
+
+    private void prepare(int maxNodes) {
+        // every expansion inserts at most 8 neighbours; keep the load factor under 0.5
+        int need = Integer.highestOneBit(Math.max(1024, maxNodes * 16) - 1) << 1;
+        if (need > keys.length) allocTable(need);
+        if (++gen == 0) { Arrays.fill(stamp, 0); gen = 1; }
+        heapSize = 0;
+    }
+
+    private void allocTable(int cap) {
+        keys = new long[cap];
+        g = new float[cap];
+        parent = new long[cap];
+        closed = new boolean[cap];
+        stamp = new int[cap];
+        mask = cap - 1;
+    }
+
+    private int slotFor(long key) {
+        int i = mix(key) & mask;
+        while (stamp[i] == gen) {
+            if (keys[i] == key) return i;
+            i = (i + 1) & mask;
+        }
+        stamp[i] = gen;
+        keys[i] = key;
+        g[i] = Float.POSITIVE_INFINITY;
+        closed[i] = false;
+        return i;
+    }
+
+    private int find(long key) {
+        int i = mix(key) & mask;
+        while (stamp[i] == gen) {
+            if (keys[i] == key) return i;
+            i = (i + 1) & mask;
+        }
+        throw new IllegalStateException("node not in table");
+    }
+
+    private static int mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        return (int) k;
+    }
+
+    // ---- open heap ----
+
+    private void push(float f, long key) {
+        if (heapSize == heapF.length) {
+            heapF = Arrays.copyOf(heapF, heapSize << 1);
+            heapKey = Arrays.copyOf(heapKey, heapSize << 1);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            if (heapF[p] <= f) break;
+            heapF[i] = heapF[p];
+            heapKey[i] = heapKey[p];
+            i = p;
+        }
+        heapF[i] = f;
+        heapKey[i] = key;
+    }
+
+    private long pop() {
+        long top = heapKey[0];
+        int n = --heapSize;
+        float f = heapF[n];
+        long key = heapKey[n];
+        int i = 0;
+        while (true) {
+            int c = (i << 1) + 1;
+            if (c >= n) break;
+            if (c + 1 < n && heapF[c + 1] < heapF[c]) c++;
+            if (heapF[c] >= f) break;
+            heapF[i] = heapF[c];
+            heapKey[i] = heapKey[c];
+            i = c;
+        }
+        heapF[i] = f;
+        heapKey[i] = key;
+        return top;
+    }
+}
@@ -0,0 +1,302 @@
+package com.sana.paranoiaplus.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.Action;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.player.PlayerAnimationEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * BehaviorRecorder - ml.clone.record: samples position, look and action streams of included players.
+ * Samples come from the per-tick PlayerSnapshot (no Bukkit calls per sample) and are delta + varint encoded
+ * into preallocated direct buffers; full buffers are appended to segment files by a background flusher and
+ * returned to the pool. If the pool runs dry, samples are dropped and counted rather than allocating.
+ *
+ * Files: recordings/&lt;uuid&gt;/&lt;session-start-ms&gt;-&lt;seq&gt;.seg, each starting with a header and a keyframe.
+ * Header: magic, version, session start ms, sample rate.
+ * Record: varint (tickDelta &lt;&lt; 1 | keyframe), then
+ *   keyframe: zigzag x, y, z (1/32 block), yaw, pitch (1/256 turn, one byte each), varint bits, varint world name length + UTF-8;
+ *   delta:    zigzag dx, dy, dz, dyaw, dpitch, varint bits.
+ * Bits: {@link #PLACE} .. {@link #SWING} are actions since the previous sample, {@link #SNEAKING}/{@link #SPRINTING} are state.
+ */
+public final class BehaviorRecorder implements Listener {
+    public static final int PLACE = 1, BREAK = 2, ATTACK = 4, INTERACT = 8, SWING = 16, SNEAKING = 32, SPRINTING = 64;
+    public static final int MAGIC = 0x50505243; // "PPRC"
+    public static final short VERSION = 1;
+    public static final double POS_SCALE = 32.0;
+
+    private static final int KEYFRAME_EVERY = 600;
+    private static final int MAX_RECORD = 1 + 5 * 3 + 2 + 5 + 5 + 4 * 256;
+    private static final long FLUSH_PERIOD_TICKS = 20L * 30;
+
+    private final JavaPlugin plugin;
+    private final File dir;
+    private final Map<UUID, Session> sessions = new HashMap<>(); // main thread only
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong writeErrors = new AtomicLong();
+    private BlockingQueue<ByteBuffer> pool;
+    private ExecutorService flusher;
+    private BukkitTask task;
+    private Supplier<PlayerSnapshot> players;
+    private ConfigSnapshot.Ml cfg;
+    private long samples, dropped, captureNanos, ticks;
+
+    public BehaviorRecorder(JavaPlugin plugin) {
+        this.plugin = plugin;
+        this.dir = new File(plugin.getDataFolder(), "recordings");
+    }
+
+    public void onEnable(ConfigSnapshot.Ml cfg, Supplier<PlayerSnapshot> players) {
+        this.cfg = cfg;
+        this.players = players;
+        pool = new ArrayBlockingQueue<>(cfg.recordBuffers);
+        for (int i = 0; i < cfg.recordBuffers; i++) pool.add(ByteBuffer.allocateDirect(cfg.recordBufferBytes));
+        flusher = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "ParanoiaPlus-Recorder");
+            t.setDaemon(true);
+            return t;
+        });
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+        for (Player p : Bukkit.getOnlinePlayers()) start(p);
+        int period = Math.max(1, Math.round(20f / cfg.recordSampleRateTps));
+        task = new BukkitRunnable() {
+            @Override
+            public void run() {
+                if (++ticks % period == 0) capture();
+                if (ticks % FLUSH_PERIOD_TICKS == 0) for (Session s : sessions.values()) handOff(s);
+            }
+        }.runTaskTimer(plugin, 1L, 1L);
+    }
+
+    public void onDisable() {
+        if (task != null) task.cancel();
+        HandlerList.unregisterAll(this);
+        for (Session s : sessions.values()) handOff(s);
+        sessions.clear();
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public File directory() {
+        return dir;
+    }
+
+    public String stats() {
+        return "sessions=" + sessions.size() + " samples=" + samples + " dropped=" + dropped
+                + " bytes=" + bytesWritten.get() + " freeBuffers=" + (pool == null ? 0 : pool.size())
+                + " nsPerSample=" + (samples == 0 ? 0 : captureNanos / samples) + " writeErrors=" + writeErrors.get();
+    }
+
+    // ---- sessions ----
+
+    private boolean included(Player p) {
+        Set<String> inc = cfg.recordIncludePlayers;
+        return inc.contains("*") || inc.contains(p.getName()) || inc.contains(p.getName().toLowerCase(Locale.ROOT))
+                || inc.contains(p.getUniqueId().toString());
+    }
+
+    private void start(Player p) {
+        if (!cfg.cloneEnabled || !included(p) || sessions.containsKey(p.getUniqueId())) return;
+        Session s = new Session(p.getUniqueId(), System.currentTimeMillis(), ticks + cfg.recordMaxSessionMin * 1200L);
+        sessions.put(s.id, s);
+    }
+
+    private void capture() {
+        if (sessions.isEmpty()) return;
+        PlayerSnapshot snap = players.get();
+        long t0 = System.nanoTime();
+        int n = 0;
+        for (Session s : sessions.values()) {
+            if (s.done) continue;
+            if (ticks >= s.endTick) {
+                handOff(s); // max-session-min reached: the next session starts on rejoin
+                s.done = true;
+                continue;
+            }
+            int i = snap.indexOf(s.id);
+            if (i < 0) continue;
+            if (record(s, snap, i)) n++;
+            else dropped++;
+        }
+        samples += n;
+        captureNanos += System.nanoTime() - t0;
+    }
+
+    private boolean record(Session s, PlayerSnapshot snap, int i) {
+        ByteBuffer b = s.buf;
+        if (b != null && b.remaining() < MAX_RECORD) {
+            handOff(s);
+            b = null;
+        }
+        if (b == null) {
+            if ((b = pool.poll()) == null) return false;
+            s.buf = b;
+        }
+        if (s.segmentBytes == 0 && b.position() == 0) {
+            b.putInt(MAGIC).putShort(VERSION).putLong(s.start).putInt(cfg.recordSampleRateTps);
+            s.key = true;
+        }
+        int x = (int) Math.floor(snap.x[i] * POS_SCALE), y = (int) Math.floor(snap.y[i] * POS_SCALE), z = (int) Math.floor(snap.z[i] * POS_SCALE);
+        int yaw = angle(snap.yaw[i]), pitch = angle(snap.pitch[i]);
+        int bits = s.actions | (snap.state[i] & PlayerSnapshot.SNEAKING) * SNEAKING | ((snap.state[i] & PlayerSnapshot.SPRINTING) >> 1) * SPRINTING;
+        UUID world = snap.worldId(snap.world[i]);
+        long dt = s.lastTick < 0 ? 0 : Math.min(Integer.MAX_VALUE, snap.tick - s.lastTick);
+        boolean key = s.key || !world.equals(s.world) || ++s.sinceKey >= KEYFRAME_EVERY;
+        putVar(b, (dt << 1) | (key ? 1 : 0));
+        if (key) {
+            putVar(b, zigzag(x)); putVar(b, zigzag(y)); putVar(b, zigzag(z));
+            b.put((byte) yaw).put((byte) pitch);
+            putVar(b, bits);
+            if (!world.equals(s.world)) {
+                World w = Bukkit.getWorld(world);
+                s.world = world;
+                s.worldName = (w != null ? w.getName() : world.toString()).getBytes(StandardCharsets.UTF_8);
+            }
+            putVar(b, s.worldName.length);
+            b.put(s.worldName);
+            s.key = false;
+            s.sinceKey = 0;
+        } else {
+            putVar(b, zigzag(x - s.x)); putVar(b, zigzag(y - s.y)); putVar(b, zigzag(z - s.z));
+            putVar(b, zigzag((byte) (yaw - s.yaw))); putVar(b, zigzag((byte) (pitch - s.pitch)));
+            putVar(b, bits);
+        }
+        s.x = x; s.y = y; s.z = z; s.yaw = yaw; s.pitch = pitch;
+        s.lastTick = snap.tick;
+        s.actions = 0;
+        return true;
+    }
+
+    // Queue the session's buffer for writing; the flusher returns it to the pool.
+    private void handOff(Session s) {
+        ByteBuffer b = s.buf;
+        if (b == null || b.position() == 0) return;
+        s.buf = null;
+        File file = new File(new File(dir, s.id.toString()), s.start + "-" + s.seq + ".seg");
+        s.segmentBytes += b.position();
+        if (s.segmentBytes >= cfg.recordSegmentBytes) {
+            // the next buffer opens a new segment with its own header and keyframe
+            s.seq++;
+            s.segmentBytes = 0;
+        }
+        b.flip();
+        flusher.execute(() -> {
+            try {
+                file.getParentFile().mkdirs();
+                try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    while (b.hasRemaining()) bytesWritten.addAndGet(ch.write(b));
+                }
+            } catch (IOException ex) {
+                if (writeErrors.getAndIncrement() == 0) plugin.getLogger().warning("Recorder write failed: " + ex.getMessage());
+            } finally {
+                b.clear();
+                pool.offer(b);
+            }
+        });
+    }
+
+    private void mark(Player p, int action) {
+        Session s = sessions.get(p.getUniqueId());
+        if (s != null) s.actions |= action;
+    }
+
+    // ---- events ----
+
+    @EventHandler
+    public void onJoin(PlayerJoinEvent ev) { start(ev.getPlayer()); }
+
+    @EventHandler
+    public void onQuit(PlayerQuitEvent ev) {
+        Session s = sessions.remove(ev.getPlayer().getUniqueId());
+        if (s != null) handOff(s);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlace(BlockPlaceEvent ev) { mark(ev.getPlayer(), PLACE); }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBreak(BlockBreakEvent ev) { mark(ev.getPlayer(), BREAK); }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onAttack(EntityDamageByEntityEvent ev) {
+        if (ev.getDamager() instanceof Player) mark((Player) ev.getDamager(), ATTACK);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInteract(PlayerInteractEvent ev) {
+        if (ev.getAction() == Action.RIGHT_CLICK_BLOCK || ev.getAction() == Action.RIGHT_CLICK_AIR) mark(ev.getPlayer(), INTERACT);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSwing(PlayerAnimationEvent ev) { mark(ev.getPlayer(), SWING); }
+
+    // ---- encoding ----
+
+    static int angle(float deg) {
+        return Math.round(deg * 256f / 360f) & 0xFF;
+    }
+
+    static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    static void putVar(ByteBuffer b, long v) {
+        while ((v & ~0x7FL) != 0) {
+            b.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        b.put((byte) v);
+    }
+
+    private static final class Session {
+        final UUID id;
+        final long start;
+        final long endTick;
+        ByteBuffer buf;
+        int seq;
+        long segmentBytes;
+        boolean key = true, done;
+        int sinceKey;
+        int x, y, z, yaw, pitch;
+        long lastTick = -1L;
+        UUID world;
+        byte[] worldName;
+        int actions;
+
+        Session(UUID id, long start, long endTick) {
+            this.id = id;
+            this.start = start;
+            this.endTick = endTick;
+        }
+    }
+}
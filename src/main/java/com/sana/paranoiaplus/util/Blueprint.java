@@ -0,0 +1,80 @@
+package com.sana.paranoiaplus.util;
+
+import org.bukkit.Material;
+
+import java.util.Arrays;
+
+/**
+ * Blueprint - a structure as parallel arrays of block offsets (from its minimum corner) and materials.
+ * Built-ins are selected by name (fake.build.blueprint); placement order is decided by the
+ * {@link PlacementPipeline}, not here.
+ */
+public final class Blueprint {
+    public final String name;
+    public final int size;
+    final int[] dx, dy, dz;
+    final Material[] type;
+
+    private Blueprint(String name, int[] dx, int[] dy, int[] dz, Material[] type, int size) {
+        this.name = name;
+        this.size = size;
+        this.dx = Arrays.copyOf(dx, size);
+        this.dy = Arrays.copyOf(dy, size);
+        this.dz = Arrays.copyOf(dz, size);
+        this.type = Arrays.copyOf(type, size);
+    }
+
+    /** A built-in blueprint by name, or null if there is none. */
+    public static Blueprint named(String name) {
+        if (name == null) return null;
+        switch (name.toLowerCase()) {
+            case "hut_5x5": return hut("hut_5x5", 5, 3);
+            case "hut_7x7": return hut("hut_7x7", 7, 4);
+            case "pillar": return pillar();
+            default: return null;
+        }
+    }
+
+    // cobblestone floor, plank walls with a 2-high door gap in the middle of the z=0 side, plank roof
+    private static Blueprint hut(String name, int w, int h) {
+        int cap = w * w * (h + 2);
+        Builder b = new Builder(cap);
+        for (int x = 0; x < w; x++) for (int z = 0; z < w; z++) b.add(x, 0, z, Material.COBBLESTONE);
+        int door = w / 2;
+        for (int y = 1; y <= h; y++) {
+            for (int x = 0; x < w; x++) {
+                for (int z = 0; z < w; z++) {
+                    if (x != 0 && x != w - 1 && z != 0 && z != w - 1) continue;
+                    if (z == 0 && x == door && y <= 2) continue;
+                    b.add(x, y, z, Material.OAK_PLANKS);
+                }
+            }
+        }
+        for (int x = 0; x < w; x++) for (int z = 0; z < w; z++) b.add(x, h + 1, z, Material.OAK_PLANKS);
+        return b.build(name);
+    }
+
+    private static Blueprint pillar() {
+        Builder b = new Builder(4);
+        for (int y = 0; y < 4; y++) b.add(0, y, 0, Material.COBBLESTONE);
+        return b.build("pillar");
+    }
+
+    private static final class Builder {
+        final int[] dx, dy, dz;
+        final Material[] type;
+        int n;
+
+        Builder(int cap) {
+            dx = new int[cap]; dy = new int[cap]; dz = new int[cap];
+            type = new Material[cap];
+        }
+
+        void add(int x, int y, int z, Material m) {
+            dx[n] = x; dy[n] = y; dz[n] = z;
+            type[n++] = m;
+        }
+
+        Blueprint build(String name) { return new Blueprint(name, dx, dy, dz, type, n); }
+    }
+}
@@ -0,0 +1,288 @@
+package com.sana.paranoiaplus.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.*;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.ProtocolManager;
+import com.comphenix.protocol.events.PacketContainer;
+import com.comphenix.protocol.wrappers.EnumWrappers;
+import com.comphenix.protocol.wrappers.PlayerInfoData;
+import com.comphenix.protocol.wrappers.WrappedChatComponent;
+import com.comphenix.protocol.wrappers.WrappedGameProfile;
+import com.comphenix.protocol.wrappers.WrappedSignedProperty;
+
+/**
+ * BotRenderer - bots as client-side player entities, streamed only to the players that can see them.
+ * Who sees what, which move or look each bot sends and the packet accounting live in {@link BotStream}; this
+ * class resolves viewers to players and builds the packets from templates. The move frame is built once per
+ * bot and shared by all its viewers, and a viewer whose update was dropped by the {@link PacketQueue} cap gets a
+ * teleport instead of the next delta, so it never drifts.
+ *
+ * Packet counts and estimated wire bytes are kept per bot and per viewer. Main thread only.
+ */
+public final class BotRenderer {
+    private static final int FIRST_ENTITY_ID = 0x7F000000; // far above server ids and shadow ids
+    private static final long TAB_HIDE_TICKS = 40L; // tab entry outlives the spawn long enough for the skin
+
+    private final PacketQueue packets;
+    private final TimingWheel wheel;
+    private final Templates templates;
+    private final BotStream stream = new BotStream(new Out());
+    private final TimingWheel.Action hideTab = this::hideTab;
+    private int nextEntityId = FIRST_ENTITY_ID;
+
+    private int[] entityId = new int[16]; // by bot slot
+    private WrappedGameProfile[] profile = new WrappedGameProfile[16];
+    private final Map<UUID, Integer> viewerSlots = new HashMap<>();
+    private Player[] viewer = new Player[16]; // by viewer slot
+
+    public BotRenderer(ProtocolManager pm, PacketQueue packets, TimingWheel wheel) {
+        this.packets = packets;
+        this.wheel = wheel;
+        this.templates = new Templates(pm);
+    }
+
+    /** Start rendering a bot at the given position; returns its slot. */
+    public int add(String name, UUID targetPlayer, World w, double px, double py, double pz, float yw, float pt) {
+        int id = nextEntityId++;
+        int b = stream.add(id, targetPlayer, w == null ? null : w.getUID(), px, py, pz, yw, pt);
+        if (b >= profile.length) {
+            entityId = Arrays.copyOf(entityId, Math.max(b + 1, entityId.length * 2));
+            profile = Arrays.copyOf(profile, entityId.length);
+        }
+        entityId[b] = id;
+        profile[b] = new WrappedGameProfile(new UUID(Templates.UUID_MSB, id), name.length() > 16 ? name.substring(0, 16) : name);
+        return b;
+    }
+
+    /** New desired state for a bot; sent on the next {@link #flush}. */
+    public void update(int b, World w, double px, double py, double pz, float yw, float pt) {
+        stream.update(b, w == null ? null : w.getUID(), px, py, pz, yw, pt);
+    }
+
+    /**
+     * Give a bot a skin. Bots start with a blank profile (default skin); clients only read the skin when the
+     * player is added, so viewers that already see the bot get it respawned on the next flush.
+     */
+    public void skin(int b, ProfileCache.Skin s) {
+        if (!stream.isLive(b) || s == null || s.texture == null) return;
+        WrappedGameProfile p = new WrappedGameProfile(profile[b].getUUID(), profile[b].getName());
+        p.getProperties().put("textures", WrappedSignedProperty.fromValues("textures", s.texture, s.signature));
+        stream.respawn(b);
+        profile[b] = p;
+    }
+
+    /** Stop rendering a bot and despawn it everywhere. */
+    public void remove(int b) {
+        if (!stream.isLive(b)) return;
+        stream.remove(b);
+        profile[b] = null;
+    }
+
+    /**
+     * Stream every live bot to its current viewers: spawn for new viewers, one shared move/look packet for
+     * existing ones, a batched destroy for viewers that lost sight. visibleTo: "target" or "nearby".
+     */
+    public void flush(PlayerSnapshot snap, String visibleTo, double range) {
+        dropOfflineViewers();
+        stream.flush(snap, "nearby".equalsIgnoreCase(visibleTo) || "all".equalsIgnoreCase(visibleTo), range);
+    }
+
+    private void hideTab(Object ref, long v) {
+        Player p = v < viewer.length ? viewer[(int) v] : null;
+        if (p != null) packets.push(p, templates.info((WrappedGameProfile) ref, false));
+    }
+
+    private void dropOfflineViewers() {
+        for (int v = 0; v < viewer.length; v++) {
+            Player p = viewer[v];
+            if (p == null || p.isOnline()) continue;
+            stream.removeViewer(v);
+            viewerSlots.remove(p.getUniqueId());
+            viewer[v] = null;
+        }
+    }
+
+    /** Builds and queues the packets {@link BotStream} decides on. */
+    private final class Out implements BotStream.Sink {
+        private int kind;
+        private short dx, dy, dz;
+        private double x, y, z;
+        private byte yaw, pitch;
+        private boolean turned;
+        private PacketContainer move, head, resync; // this frame's, built on first use
+
+        @Override
+        public int viewer(UUID id) {
+            Integer s = viewerSlots.get(id);
+            if (s != null) return s;
+            Player p = Bukkit.getPlayer(id);
+            if (p == null) return -1;
+            int v = stream.addViewer();
+            if (v >= viewer.length) viewer = Arrays.copyOf(viewer, Math.max(v + 1, viewer.length * 2));
+            viewer[v] = p;
+            viewerSlots.put(id, v);
+            return v;
+        }
+
+        @Override
+        public boolean show(int b, int v, double px, double py, double pz, byte ya, byte pi) {
+            int id = entityId[b];
+            if (!packets.offer(viewer[v], templates.info(profile[b], true), templates.spawn(id, profile[b].getUUID(), px, py, pz, ya, pi),
+                    templates.head(id, ya))) return false;
+            wheel.schedule(TAB_HIDE_TICKS, hideTab, profile[b], v, viewer[v].getUniqueId());
+            return true;
+        }
+
+        @Override
+        public void frame(int b, int k, short fdx, short fdy, short fdz, double px, double py, double pz, byte ya, byte pi, boolean h) {
+            kind = k;
+            dx = fdx; dy = fdy; dz = fdz;
+            x = px; y = py; z = pz;
+            yaw = ya;
+            pitch = pi;
+            turned = h;
+            move = head = resync = null;
+        }
+
+        @Override
+        public boolean update(int b, int v) {
+            if (move == null) {
+                int id = entityId[b];
+                switch (kind) {
+                    case BotStream.MOVE: move = templates.move(id, dx, dy, dz); break;
+                    case BotStream.MOVE_LOOK: move = templates.moveLook(id, dx, dy, dz, yaw, pitch); break;
+                    case BotStream.LOOK: move = templates.look(id, yaw, pitch); break;
+                    default: move = templates.teleport(id, x, y, z, yaw, pitch); break;
+                }
+                if (turned) head = templates.head(id, yaw);
+            }
+            return head == null ? packets.offer(viewer[v], move) : packets.offer(viewer[v], move, head);
+        }
+
+        @Override
+        public boolean resync(int b, int v, double px, double py, double pz, byte ya, byte pi) {
+            if (resync == null) resync = templates.teleport(entityId[b], px, py, pz, ya, pi);
+            return packets.offer(viewer[v], resync, templates.head(entityId[b], ya));
+        }
+
+        @Override
+        public void destroy(int v, int[] ids, int n) {
+            packets.push(viewer[v], templates.destroy(Arrays.copyOf(ids, n)));
+        }
+
+        @Override
+        public void hide(int b, int v) {
+            packets.push(viewer[v], templates.destroy(new int[]{entityId[b]}));
+            packets.push(viewer[v], templates.info(profile[b], false));
+        }
+    }
+
+    // ---- stats ----
+
+    public String stats() {
+        return stream.stats();
+    }
+
+    /** Packets and estimated bytes for one bot (and how many players see it). */
+    public String botStats(int b) {
+        return stream.botStats(b);
+    }
+
+    /** Per-viewer packets and estimated bytes, heaviest first. */
+    public List<String> viewerStats(int limit) {
+        List<Integer> order = new ArrayList<>(viewerSlots.values());
+        order.sort((a, c) -> Long.compare(stream.viewerBytes(c), stream.viewerBytes(a)));
+        List<String> out = new ArrayList<>();
+        for (int i = 0; i < order.size() && i < limit; i++) {
+            int v = order.get(i);
+            out.add(viewer[v].getName() + ": bots=" + stream.visibleCount(v) + " packets=" + stream.viewerPackets(v)
+                    + " estBytes=" + stream.viewerBytes(v));
+        }
+        return out;
+    }
+
+    private static final class Templates {
+        static final long UUID_MSB = 0x424f_5453_0000_4000L; // version-4 layout; lsb = entity id
+        private final PacketContainer info, spawn, head, move, moveLook, look, teleport, destroy;
+
+        Templates(ProtocolManager pm) {
+            info = pm.createPacket(PacketType.Play.Server.PLAYER_INFO);
+            spawn = pm.createPacket(PacketType.Play.Server.NAMED_ENTITY_SPAWN);
+            head = pm.createPacket(PacketType.Play.Server.ENTITY_HEAD_ROTATION);
+            move = pm.createPacket(PacketType.Play.Server.REL_ENTITY_MOVE);
+            moveLook = pm.createPacket(PacketType.Play.Server.REL_ENTITY_MOVE_LOOK);
+            look = pm.createPacket(PacketType.Play.Server.ENTITY_LOOK);
+            teleport = pm.createPacket(PacketType.Play.Server.ENTITY_TELEPORT);
+            destroy = pm.createPacket(PacketType.Play.Server.ENTITY_DESTROY);
+        }
+
+        PacketContainer info(WrappedGameProfile p, boolean add) {
+            PacketContainer c = info.shallowClone();
+            c.getPlayerInfoAction().write(0, add ? EnumWrappers.PlayerInfoAction.ADD_PLAYER : EnumWrappers.PlayerInfoAction.REMOVE_PLAYER);
+            c.getPlayerInfoDataLists().write(0, Collections.singletonList(
+                    new PlayerInfoData(p, 0, EnumWrappers.NativeGameMode.SURVIVAL, WrappedChatComponent.fromText(p.getName()))));
+            return c;
+        }
+
+        PacketContainer spawn(int id, UUID uuid, double x, double y, double z, byte yaw, byte pitch) {
+            PacketContainer c = spawn.shallowClone();
+            c.getIntegers().write(0, id);
+            c.getUUIDs().write(0, uuid);
+            c.getDoubles().write(0, x).write(1, y).write(2, z);
+            c.getBytes().write(0, yaw).write(1, pitch);
+            return c;
+        }
+
+        PacketContainer head(int id, byte yaw) {
+            PacketContainer c = head.shallowClone();
+            c.getIntegers().write(0, id);
+            c.getBytes().write(0, yaw);
+            return c;
+        }
+
+        PacketContainer move(int id, short dx, short dy, short dz) {
+            PacketContainer c = move.shallowClone();
+            c.getIntegers().write(0, id);
+            c.getShorts().write(0, dx).write(1, dy).write(2, dz);
+            c.getBooleans().write(0, true);
+            return c;
+        }
+
+        PacketContainer moveLook(int id, short dx, short dy, short dz, byte yaw, byte pitch) {
+            PacketContainer c = moveLook.shallowClone();
+            c.getIntegers().write(0, id);
+            c.getShorts().write(0, dx).write(1, dy).write(2, dz);
+            c.getBytes().write(0, yaw).write(1, pitch);
+            c.getBooleans().write(0, true);
+            return c;
+        }
+
+        PacketContainer look(int id, byte yaw, byte pitch) {
+            PacketContainer c = look.shallowClone();
+            c.getIntegers().write(0, id);
+            c.getBytes().write(0, yaw).write(1, pitch);
+            c.getBooleans().write(0, true);
+            return c;
+        }
+
+        PacketContainer teleport(int id, double x, double y, double z, byte yaw, byte pitch) {
+            PacketContainer c = teleport.shallowClone();
+            c.getIntegers().write(0, id);
+            c.getDoubles().write(0, x).write(1, y).write(2, z);
+            c.getBytes().write(0, yaw).write(1, pitch);
+            c.getBooleans().write(0, true);
+            return c;
+        }
+
+        PacketContainer destroy(int[] ids) {
+            PacketContainer c = destroy.shallowClone();
+            c.getIntegerArrays().write(0, ids);
+            return c;
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package com.sana.paranoiaplus.util;
+
+import java.util.*;
+
+/**
+ * BotStream - what {@link BotRenderer} sends, without the packets. Visibility is kept as bitsets, per viewer over
+ * bot slots and per bot over viewer slots, so a flush diffs who should see a bot against who does a word at a
+ * time. Movement goes out as relative moves in the protocol's 1/4096-block fixed point (one frame per bot shared
+ * by all its viewers), with look folded in when it changed; a delta that does not fit a short becomes a teleport.
+ * A viewer whose update was refused by the {@link Sink} is marked stale and gets a teleport instead of the next
+ * delta, so it never drifts. Destroys for viewers that lost sight are batched per flush.
+ *
+ * The {@link Sink} builds and queues the packets; packet counts and estimated wire bytes are kept here per bot
+ * and per viewer. Main thread only.
+ */
+public final class BotStream {
+    /** Movement of a bot in one flush, as handed to {@link Sink#frame}. */
+    public static final int NONE = 0, MOVE = 1, MOVE_LOOK = 2, LOOK = 3, TELEPORT = 4;
+    // estimated bytes on the wire (uncompressed, ids as 5-byte varints)
+    public static final int B_INFO = 64, B_SPAWN = 44, B_HEAD = 7, B_MOVE = 13, B_MOVE_LOOK = 15, B_LOOK = 9,
+            B_TELEPORT = 37, B_DESTROY = 2, B_DESTROY_ID = 5;
+    private static final int[] KIND_BYTES = {0, B_MOVE, B_MOVE_LOOK, B_LOOK, B_TELEPORT};
+    private static final double FIXED = 4096.0;
+
+    /** Where the packets go. show/update/resync return false when the viewer's queue refused them. */
+    public interface Sink {
+        /** Viewer slot for a player in the snapshot (from {@link BotStream#addViewer}), or -1 if they cannot see bots. */
+        int viewer(UUID player);
+
+        /** Tab entry, spawn and head rotation of bot b for viewer v. */
+        boolean show(int b, int v, double x, double y, double z, byte yaw, byte pitch);
+
+        /** Bot b's movement this flush (a kind above; NONE when it stood still), before any {@link #update} for it. */
+        void frame(int b, int kind, short dx, short dy, short dz, double x, double y, double z, byte yaw, byte pitch, boolean head);
+
+        /** The current frame (plus head rotation when it turned) for viewer v. */
+        boolean update(int b, int v);
+
+        /** Teleport and head rotation for a stale viewer. */
+        boolean resync(int b, int v, double x, double y, double z, byte yaw, byte pitch);
+
+        /** One destroy for ids[0..n) at the end of a flush; the array is reused. */
+        void destroy(int v, int[] ids, int n);
+
+        /** Destroy and tab removal of bot b for viewer v, outside a flush. */
+        void hide(int b, int v);
+    }
+
+    private final Sink sink;
+
+    // bots, by slot
+    private int botCap;
+    private boolean[] live;
+    private int[] entityId;
+    private UUID[] target, world;
+    private double[] x, y, z;
+    private float[] yaw, pitch;
+    private long[] fx, fy, fz; // last position sent, fixed point
+    private byte[] sentYaw, sentPitch;
+    private long[][] seenBy; // viewer slots the bot is spawned for
+    private long[] botPackets, botBytes;
+    private int[] freeBots = new int[16];
+    private int freeBotCount, botHigh;
+
+    // viewers, by slot
+    private int viewerCap;
+    private long[][] visible, stale; // bot slots
+    private long[] viewerPackets, viewerBytes;
+    private int[][] destroyIds;
+    private int[] destroyCount;
+    private int[] freeViewers = new int[16];
+    private int freeViewerCount, viewerHigh, viewers;
+
+    private long[] want = new long[1]; // scratch: viewer slots that should see the current bot
+    private int[] near = new int[32];
+    private long spawns, destroys, moves, looks, teleports, resyncs, dropped, packetsSent, bytesSent;
+
+    public BotStream(Sink sink) {
+        this.sink = sink;
+        growBots(16);
+        growViewers(16);
+    }
+
+    /** Start streaming a bot with the given entity id; returns its slot. */
+    public int add(int id, UUID targetPlayer, UUID w, double px, double py, double pz, float yw, float pt) {
+        int b;
+        if (freeBotCount > 0) {
+            b = freeBots[--freeBotCount];
+        } else {
+            b = botHigh++;
+            if (b == botCap) growBots(botCap * 2);
+        }
+        live[b] = true;
+        entityId[b] = id;
+        target[b] = targetPlayer;
+        world[b] = w;
+        x[b] = px; y[b] = py; z[b] = pz;
+        yaw[b] = yw; pitch[b] = pt;
+        fx[b] = fixed(px); fy[b] = fixed(py); fz[b] = fixed(pz);
+        sentYaw[b] = angle(yw);
+        sentPitch[b] = angle(pt);
+        Arrays.fill(seenBy[b], 0L);
+        botPackets[b] = 0;
+        botBytes[b] = 0;
+        return b;
+    }
+
+    public boolean isLive(int b) {
+        return b >= 0 && b < botCap && live[b];
+    }
+
+    /** New desired state for a bot; sent on the next {@link #flush}. */
+    public void update(int b, UUID w, double px, double py, double pz, float yw, float pt) {
+        if (!isLive(b)) return;
+        if (!Objects.equals(w, world[b])) {
+            respawn(b); // different world: spawned again wherever it is visible now
+            world[b] = w;
+            fx[b] = fixed(px); fy[b] = fixed(py); fz[b] = fixed(pz);
+        }
+        x[b] = px; y[b] = py; z[b] = pz;
+        yaw[b] = yw; pitch[b] = pt;
+    }
+
+    /** Despawn a bot everywhere now; viewers that still should see it get it spawned again on the next flush. */
+    public void respawn(int b) {
+        if (!isLive(b)) return;
+        long[] seen = seenBy[b];
+        for (int w = 0; w < seen.length; w++) {
+            for (long bits = seen[w]; bits != 0; bits &= bits - 1) {
+                int v = (w << 6) | Long.numberOfTrailingZeros(bits);
+                clear(visible[v], b);
+                clear(stale[v], b);
+                sink.hide(b, v);
+                count(b, v, 2, B_DESTROY + B_DESTROY_ID + B_INFO);
+                destroys++;
+            }
+        }
+        Arrays.fill(seen, 0L);
+    }
+
+    /** Stop streaming a bot and despawn it everywhere; its slot is reused. */
+    public void remove(int b) {
+        if (!isLive(b)) return;
+        respawn(b);
+        live[b] = false;
+        target[b] = null;
+        world[b] = null;
+        if (freeBotCount == freeBots.length) freeBots = Arrays.copyOf(freeBots, freeBotCount * 2);
+        freeBots[freeBotCount++] = b;
+    }
+
+    /** A new viewer slot, seeing nothing yet. */
+    public int addViewer() {
+        int v;
+        if (freeViewerCount > 0) {
+            v = freeViewers[--freeViewerCount];
+        } else {
+            v = viewerHigh++;
+            if (v == viewerCap) growViewers(viewerCap * 2);
+        }
+        Arrays.fill(visible[v], 0L);
+        Arrays.fill(stale[v], 0L);
+        viewerPackets[v] = 0;
+        viewerBytes[v] = 0;
+        destroyCount[v] = 0;
+        viewers++;
+        return v;
+    }
+
+    /** Forget a viewer that left; nothing is sent to it. */
+    public void removeViewer(int v) {
+        long[] vis = visible[v];
+        for (int w = 0; w < vis.length; w++) {
+            for (long bits = vis[w]; bits != 0; bits &= bits - 1) clear(seenBy[(w << 6) | Long.numberOfTrailingZeros(bits)], v);
+        }
+        Arrays.fill(vis, 0L);
+        viewers--;
+        if (freeViewerCount == freeViewers.length) freeViewers = Arrays.copyOf(freeViewers, freeViewerCount * 2);
+        freeViewers[freeViewerCount++] = v;
+    }
+
+    /**
+     * Stream every live bot to its current viewers: spawn for new viewers, one shared move/look frame for
+     * existing ones, a batched destroy for viewers that lost sight. nearby: everyone within range sees a bot,
+     * otherwise only its target.
+     */
+    public void flush(PlayerSnapshot snap, boolean nearby, double range) {
+        double range2 = range * range;
+        for (int b = 0; b < botCap; b++) {
+            if (!live[b]) continue;
+            collectViewers(b, snap, nearby, range, range2);
+            stream(b);
+        }
+        for (int v = 0; v < viewerCap; v++) {
+            int n = destroyCount[v];
+            if (n == 0) continue;
+            destroyCount[v] = 0;
+            sink.destroy(v, destroyIds[v], n);
+            count(-1, v, 1, B_DESTROY + n * B_DESTROY_ID);
+            destroys += n;
+        }
+    }
+
+    private void collectViewers(int b, PlayerSnapshot snap, boolean nearby, double range, double range2) {
+        Arrays.fill(want, 0L);
+        int wi = world[b] == null ? -1 : snap.worldIndex(world[b]);
+        if (wi < 0) return;
+        if (!nearby) {
+            int i = snap.indexOf(target[b]);
+            if (i >= 0 && snap.world[i] == wi && snap.distanceSquared(i, x[b], y[b], z[b]) <= range2) mark(sink.viewer(snap.ids[i]));
+            return;
+        }
+        int n = snap.near(wi, x[b], y[b], z[b], range, near);
+        if (n > near.length) {
+            near = new int[Integer.highestOneBit(n) << 1];
+            n = snap.near(wi, x[b], y[b], z[b], range, near);
+        }
+        for (int k = 0; k < n; k++) mark(sink.viewer(snap.ids[near[k]]));
+    }
+
+    private void mark(int v) {
+        if (v >= 0) want[v >>> 6] |= 1L << v;
+    }
+
+    private void stream(int b) {
+        long nx = fixed(x[b]), ny = fixed(y[b]), nz = fixed(z[b]);
+        byte ya = angle(yaw[b]), pi = angle(pitch[b]);
+        long dx = nx - fx[b], dy = ny - fy[b], dz = nz - fz[b];
+        boolean moved = (dx | dy | dz) != 0, looked = ya != sentYaw[b] || pi != sentPitch[b];
+        boolean overflow = moved && !(fits(dx) && fits(dy) && fits(dz));
+        int kind = overflow ? TELEPORT : moved ? (looked ? MOVE_LOOK : MOVE) : looked ? LOOK : NONE;
+        boolean head = ya != sentYaw[b];
+        sink.frame(b, kind, (short) dx, (short) dy, (short) dz, x[b], y[b], z[b], ya, pi, head);
+        int frameBytes = KIND_BYTES[kind] + (head ? B_HEAD : 0), framePackets = head ? 2 : 1;
+        long[] seen = seenBy[b];
+        for (int w = 0; w < want.length; w++) {
+            long both = seen[w] & want[w], gone = seen[w] & ~want[w], added = want[w] & ~seen[w];
+            for (long bits = both; bits != 0; bits &= bits - 1) {
+                int v = (w << 6) | Long.numberOfTrailingZeros(bits);
+                if (get(stale[v], b)) {
+                    if (!sink.resync(b, v, x[b], y[b], z[b], ya, pi)) {
+                        dropped++;
+                        continue;
+                    }
+                    count(b, v, 2, B_TELEPORT + B_HEAD);
+                    clear(stale[v], b);
+                    resyncs++;
+                } else if (kind != NONE) {
+                    if (sink.update(b, v)) {
+                        count(b, v, framePackets, frameBytes);
+                    } else {
+                        dropped++;
+                        stale[v] = set(stale[v], b);
+                    }
+                }
+            }
+            for (long bits = gone; bits != 0; bits &= bits - 1) {
+                int v = (w << 6) | Long.numberOfTrailingZeros(bits);
+                hide(b, v);
+            }
+            for (long bits = added; bits != 0; bits &= bits - 1) {
+                int v = (w << 6) | Long.numberOfTrailingZeros(bits);
+                show(b, v, ya, pi);
+            }
+        }
+        if (kind == TELEPORT) teleports++; else if (kind == MOVE || kind == MOVE_LOOK) moves++; else if (kind == LOOK) looks++;
+        fx[b] = nx; fy[b] = ny; fz[b] = nz;
+        sentYaw[b] = ya;
+        sentPitch[b] = pi;
+    }
+
+    private void show(int b, int v, byte ya, byte pi) {
+        if (!sink.show(b, v, x[b], y[b], z[b], ya, pi)) {
+            dropped++;
+            return; // queue full: try again next flush
+        }
+        count(b, v, 3, B_INFO + B_SPAWN + B_HEAD);
+        spawns++;
+        seenBy[b] = set(seenBy[b], v);
+        visible[v] = set(visible[v], b);
+        clear(stale[v], b);
+    }
+
+    // queue a destroy for this flush's batch
+    private void hide(int b, int v) {
+        clear(seenBy[b], v);
+        clear(visible[v], b);
+        clear(stale[v], b);
+        if (destroyCount[v] == destroyIds[v].length) destroyIds[v] = Arrays.copyOf(destroyIds[v], destroyCount[v] * 2);
+        destroyIds[v][destroyCount[v]++] = entityId[b];
+    }
+
+    private void count(int b, int v, int packetCount, int bytes) {
+        packetsSent += packetCount;
+        bytesSent += bytes;
+        if (b >= 0) {
+            botPackets[b] += packetCount;
+            botBytes[b] += bytes;
+        }
+        viewerPackets[v] += packetCount;
+        viewerBytes[v] += bytes;
+    }
+
+    // ---- stats ----
+
+    /** Packets and estimated bytes sent so far, all bots. */
+    public long packets() {
+        return packetsSent;
+    }
+
+    public long bytes() {
+        return bytesSent;
+    }
+
+    /** Bots viewer v currently sees. */
+    public int visibleCount(int v) {
+        int n = 0;
+        for (long word : visible[v]) n += Long.bitCount(word);
+        return n;
+    }
+
+    public long viewerPackets(int v) {
+        return viewerPackets[v];
+    }
+
+    public long viewerBytes(int v) {
+        return viewerBytes[v];
+    }
+
+    public String stats() {
+        long pairs = 0;
+        int bots = 0;
+        for (int b = 0; b < botCap; b++) {
+            if (!live[b]) continue;
+            bots++;
+            for (long word : seenBy[b]) pairs += Long.bitCount(word);
+        }
+        return "bots=" + bots + " viewers=" + viewers + " visiblePairs=" + pairs + " packets=" + packetsSent
+                + " estBytes=" + bytesSent + " spawns=" + spawns + " destroys=" + destroys + " moves=" + moves
+                + " looks=" + looks + " teleports=" + teleports + " resyncs=" + resyncs + " dropped=" + dropped;
+    }
+
+    /** Packets and estimated bytes for one bot (and how many players see it). */
+    public String botStats(int b) {
+        if (!isLive(b)) return "not rendered";
+        int n = 0;
+        for (long word : seenBy[b]) n += Long.bitCount(word);
+        return "viewers=" + n + " packets=" + botPackets[b] + " estBytes=" + botBytes[b];
+    }
+
+    // ---- helpers ----
+
+    private static long fixed(double v) {
+        return (long) Math.floor(v * FIXED);
+    }
+
+    private static boolean fits(long d) {
+        return d >= Short.MIN_VALUE && d <= Short.MAX_VALUE;
+    }
+
+    private static byte angle(float deg) {
+        return (byte) (int) Math.floor(deg * 256.0 / 360.0);
+    }
+
+    private static boolean get(long[] a, int i) {
+        return (i >>> 6) < a.length && (a[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static long[] set(long[] a, int i) {
+        if ((i >>> 6) >= a.length) a = Arrays.copyOf(a, Math.max((i >>> 6) + 1, a.length * 2));
+        a[i >>> 6] |= 1L << i;
+        return a;
+    }
+
+    private static void clear(long[] a, int i) {
+        if ((i >>> 6) < a.length) a[i >>> 6] &= ~(1L << i);
+    }
+
+    private void growBots(int cap) {
+        live = live == null ? new boolean[cap] : Arrays.copyOf(live, cap);
+        entityId = entityId == null ? new int[cap] : Arrays.copyOf(entityId, cap);
+        target = target == null ? new UUID[cap] : Arrays.copyOf(target, cap);
+        world = world == null ? new UUID[cap] : Arrays.copyOf(world, cap);
+        x = x == null ? new double[cap] : Arrays.copyOf(x, cap);
+        y = y == null ? new double[cap] : Arrays.copyOf(y, cap);
+        z = z == null ? new double[cap] : Arrays.copyOf(z, cap);
+        yaw = yaw == null ? new float[cap] : Arrays.copyOf(yaw, cap);
+        pitch = pitch == null ? new float[cap] : Arrays.copyOf(pitch, cap);
+        fx = fx == null ? new long[cap] : Arrays.copyOf(fx, cap);
+        fy = fy == null ? new long[cap] : Arrays.copyOf(fy, cap);
+        fz = fz == null ? new long[cap] : Arrays.copyOf(fz, cap);
+        sentYaw = sentYaw == null ? new byte[cap] : Arrays.copyOf(sentYaw, cap);
+        sentPitch = sentPitch == null ? new byte[cap] : Arrays.copyOf(sentPitch, cap);
+        botPackets = botPackets == null ? new long[cap] : Arrays.copyOf(botPackets, cap);
+        botBytes = botBytes == null ? new long[cap] : Arrays.copyOf(botBytes, cap);
+        long[][] s = seenBy == null ? new long[cap][] : Arrays.copyOf(seenBy, cap);
+        for (int b = botCap; b < cap; b++) s[b] = new long[Math.max(1, (viewerCap + 63) >>> 6)];
+        seenBy = s;
+        botCap = cap;
+    }
+
+    private void growViewers(int cap) {
+        viewerPackets = viewerPackets == null ? new long[cap] : Arrays.copyOf(viewerPackets, cap);
+        viewerBytes = viewerBytes == null ? new long[cap] : Arrays.copyOf(viewerBytes, cap);
+        destroyCount = destroyCount == null ? new int[cap] : Arrays.copyOf(destroyCount, cap);
+        long[][] vis = visible == null ? new long[cap][] : Arrays.copyOf(visible, cap);
+        long[][] st = stale == null ? new long[cap][] : Arrays.copyOf(stale, cap);
+        int[][] ids = destroyIds == null ? new int[cap][] : Arrays.copyOf(destroyIds, cap);
+        for (int v = viewerCap; v < cap; v++) {
+            vis[v] = new long[Math.max(1, (botCap + 63) >>> 6)];
+            st[v] = new long[vis[v].length];
+            ids[v] = new int[8];
+        }
+        visible = vis;
+        stale = st;
+        destroyIds = ids;
+        viewerCap = cap;
+        if (want.length < (cap + 63) >>> 6) want = Arrays.copyOf(want, (cap + 63) >>> 6); // may grow mid-collect
+        for (int b = 0; b < botCap; b++) {
+            if (seenBy[b].length < want.length) seenBy[b] = Arrays.copyOf(seenBy[b], want.length);
+        }
+    }
+}
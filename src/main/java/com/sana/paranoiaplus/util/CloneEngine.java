@@ -0,0 +1,247 @@
+package com.sana.paranoiaplus.util;
+
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CloneEngine - batched behaviour-clone inference for bots on a small worker pool.
+ * Each bot owns a slot with a cursor into the shared {@link CloneModel}; every round advances the cursor a few
+ * recorded steps (following the recorded stream, or with probability epsilon / at a stream end jumping to a
+ * step recorded in the same motion context) and sums them into an intent: position delta, yaw delta, pitch and
+ * action bits. Rounds are pipelined: {@link #tick} publishes the previous round's intents and starts the next
+ * one, so the main thread never waits. Workers stop at their CPU budget; unfinished bots keep no intent for
+ * that round and count as an overrun.
+ *
+ * Slots are registered and released on the main thread only; a slot released while a round is out stays
+ * retired until that round is swapped, so its workers never write into a re-claimed slot. The worker pool and slot table are created on
+ * first use, so a server with ml.clone disabled pays for neither; growing the table keeps every live slot and
+ * its published intent.
+ */
+public final class CloneEngine {
+    private static final int STEP_TO_BLOCK = 32;
+    private static final float ANGLE_TO_DEG = 360f / 256f;
+
+    /** Output of one round; indexed by slot. */
+    public static final class Intents {
+        public float[] dx, dy, dz, dyaw, pitch;
+        public int[] bits;
+        public boolean[] ready;
+
+        Intents(int cap) {
+            dx = new float[cap]; dy = new float[cap]; dz = new float[cap];
+            dyaw = new float[cap]; pitch = new float[cap];
+            bits = new int[cap];
+            ready = new boolean[cap];
+        }
+
+        // Copy of from, grown to cap.
+        Intents(Intents from, int cap) {
+            dx = Arrays.copyOf(from.dx, cap); dy = Arrays.copyOf(from.dy, cap); dz = Arrays.copyOf(from.dz, cap);
+            dyaw = Arrays.copyOf(from.dyaw, cap); pitch = Arrays.copyOf(from.pitch, cap);
+            bits = Arrays.copyOf(from.bits, cap);
+            ready = Arrays.copyOf(from.ready, cap);
+        }
+    }
+
+    private ExecutorService pool; // main thread; created with the first round
+    private final int workers;
+    private final int initialCapacity;
+    private volatile CloneModel model;
+
+    // main thread: slot table, double-buffered intents, round in flight
+    private int capacity;
+    private boolean[] active = new boolean[0];
+    private boolean[] pendingReset = new boolean[0];
+    private boolean[] retired = new boolean[0]; // released during the round in flight; reusable after the swap
+    private int[] cursor = new int[0];
+    private long[] rng = new long[0];
+    private Intents front = new Intents(0), back = front;
+    private CompletableFuture<Void> round;
+    private int rotate;
+
+    private final AtomicLong inferences = new AtomicLong();
+    private final AtomicLong inferenceNanos = new AtomicLong();
+    private final AtomicLong maxInferenceNanos = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+    private long rounds, late, fallbacks;
+
+    public CloneEngine(int workers, int capacity) {
+        this.workers = Math.max(1, workers);
+        this.initialCapacity = Math.max(16, capacity);
+    }
+
+    public void setModel(CloneModel m) { model = m; }
+
+    public CloneModel model() { return model; }
+
+    /** Claim a slot for a bot, or -1 while a round is in flight and the table is full. */
+    public int register(long seed) {
+        for (int s = 0; s < capacity; s++) {
+            if (!active[s] && !retired[s]) return claim(s, seed);
+        }
+        if (round != null && !round.isDone()) return -1; // workers hold the current arrays
+        int s = capacity;
+        alloc(capacity == 0 ? initialCapacity : capacity * 2);
+        return claim(s, seed);
+    }
+
+    private int claim(int s, long seed) {
+        active[s] = true;
+        pendingReset[s] = true;
+        rng[s] = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+        front.ready[s] = false;
+        return s;
+    }
+
+    public void release(int slot) {
+        if (slot < 0 || slot >= capacity) return;
+        active[slot] = false;
+        front.ready[slot] = false;
+        if (round != null) retired[slot] = true; // workers may still write this slot's cursor, seed and intent
+    }
+
+    /** Forget the slot's position in the recordings (e.g. after the bot got blocked). */
+    public void reset(int slot) {
+        if (slot >= 0 && slot < capacity) pendingReset[slot] = true;
+    }
+
+    /** Intents of the last completed round (main thread; valid until the next {@link #tick}). */
+    public Intents intents() { return front; }
+
+    public void noteFallback() { fallbacks++; }
+
+    /**
+     * Publish the finished round and start the next one (main thread).
+     * Returns false if the previous round is still running (counted as late; nothing is published).
+     */
+    public boolean tick(int steps, long budgetNanos, double epsilon) {
+        CloneModel m = model;
+        if (m == null || m.size == 0) return false;
+        if (round != null) {
+            if (!round.isDone()) {
+                late++;
+                return false;
+            }
+            Intents t = front; front = back; back = t; // join above orders the workers' writes before this read
+            round = null;
+        }
+        int n = 0;
+        int[] slots = new int[capacity];
+        for (int s = 0; s < capacity; s++) {
+            back.ready[s] = false;
+            if (retired[s]) { retired[s] = false; front.ready[s] = false; } // drop the released bot's last intent
+            if (!active[s]) continue;
+            if (pendingReset[s]) { cursor[s] = -1; pendingReset[s] = false; }
+            slots[n++] = s;
+        }
+        if (n == 0) return true;
+        // rotate the start so the same bots are not always the ones cut off by the budget
+        rotate = (rotate + 1) % n;
+        int per = (n + workers - 1) / workers;
+        CompletableFuture<?>[] parts = new CompletableFuture<?>[Math.min(workers, n)];
+        if (pool == null) pool = newPool();
+        Intents out = back;
+        int[] cur = cursor;
+        long[] rs = rng;
+        for (int w = 0; w < parts.length; w++) {
+            final int from = w * per, to = Math.min(n, from + per);
+            final int total = n, rot = rotate;
+            parts[w] = CompletableFuture.runAsync(() -> run(m, slots, total, rot, from, to, steps, budgetNanos, epsilon, cur, rs, out), pool);
+        }
+        round = CompletableFuture.allOf(parts);
+        rounds++;
+        return true;
+    }
+
+    private void run(CloneModel m, int[] slots, int n, int rot, int from, int to, int steps, long budget, double eps,
+                     int[] cur, long[] rs, Intents out) {
+        long start = System.nanoTime();
+        for (int k = from; k < to; k++) {
+            long t0 = System.nanoTime();
+            if (t0 - start > budget) {
+                deferred.addAndGet(to - k);
+                overruns.incrementAndGet();
+                return;
+            }
+            int s = slots[(k + rot) % n];
+            infer(m, s, steps, eps, cur, rs, out);
+            long dt = System.nanoTime() - t0;
+            inferences.incrementAndGet();
+            inferenceNanos.addAndGet(dt);
+            long max;
+            while (dt > (max = maxInferenceNanos.get()) && !maxInferenceNanos.compareAndSet(max, dt)) { }
+        }
+    }
+
+    private static void infer(CloneModel m, int s, int steps, double eps, int[] cur, long[] rs, Intents out) {
+        int c = cur[s];
+        long r = rs[s];
+        float dx = 0, dy = 0, dz = 0, dyaw = 0;
+        int bits = 0;
+        for (int i = 0; i < steps; i++) {
+            r ^= r << 13; r ^= r >>> 7; r ^= r << 17;
+            if (c < 0 || c >= m.size) {
+                c = (int) ((r >>> 1) % m.size);
+            } else {
+                int nx = m.next[c];
+                if (nx < 0 || (r >>> 11) * 0x1.0p-53 < eps) {
+                    int ctx = m.context(c), size = m.contextSize(ctx);
+                    r ^= r << 13; r ^= r >>> 7; r ^= r << 17;
+                    nx = size > 0 ? m.contextStep(ctx, (int) ((r >>> 1) % size)) : (int) ((r >>> 1) % m.size);
+                }
+                c = nx;
+            }
+            dx += m.dx[c];
+            dy += m.dy[c];
+            dz += m.dz[c];
+            dyaw += m.dyaw[c];
+            bits |= m.bits[c] & 0xFF;
+        }
+        cur[s] = c;
+        rs[s] = r;
+        out.dx[s] = dx / STEP_TO_BLOCK;
+        out.dy[s] = dy / STEP_TO_BLOCK;
+        out.dz[s] = dz / STEP_TO_BLOCK;
+        out.dyaw[s] = dyaw * ANGLE_TO_DEG;
+        out.pitch[s] = c >= 0 ? m.pitch[c] * ANGLE_TO_DEG : 0f;
+        out.bits[s] = bits;
+        out.ready[s] = true;
+    }
+
+    public String stats() {
+        long n = inferences.get();
+        CloneModel m = model;
+        return "model=" + (m == null ? "none" : m.size + " steps/" + (m.memoryBytes() >> 10) + "KB")
+                + " rounds=" + rounds + " inferences=" + n + " avgNs=" + (n == 0 ? 0 : inferenceNanos.get() / n)
+                + " maxNs=" + maxInferenceNanos.get() + " overruns=" + overruns.get() + " deferred=" + deferred.get()
+                + " late=" + late + " fallbacks=" + fallbacks;
+    }
+
+    public void shutdown() {
+        if (pool != null) pool.shutdownNow();
+    }
+
+    private ExecutorService newPool() {
+        AtomicInteger n = new AtomicInteger();
+        return Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "ParanoiaPlus-Clone-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Grow the slot table (no round in flight): live slots keep their cursor, seed and both intent buffers.
+    private void alloc(int cap) {
+        active = Arrays.copyOf(active, cap);
+        pendingReset = Arrays.copyOf(pendingReset, cap);
+        retired = Arrays.copyOf(retired, cap);
+        cursor = Arrays.copyOf(cursor, cap);
+        rng = Arrays.copyOf(rng, cap);
+        front = new Intents(front, cap);
+        back = new Intents(back, cap);
+        capacity = cap;
+    }
+}
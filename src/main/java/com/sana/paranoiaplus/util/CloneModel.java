@@ -0,0 +1,178 @@
+package com.sana.paranoiaplus.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * CloneModel - recorded behaviour (see {@link BehaviorRecorder}) decoded once into flat primitive tables
+ * shared read-only by every bot. Each sample is a step (position delta, yaw delta, pitch, action bits) with a
+ * link to the step that followed it; steps are also grouped by a coarse motion context (speed, turn rate,
+ * sneak/sprint) so inference can continue a recorded stream or jump to a similar moment in another one.
+ */
+public final class CloneModel {
+    public static final int CONTEXTS = 4 * 3 * 4;
+    private static final int MAX_GAP_TICKS = 40;
+    private static final int MAX_STEP = 10 * 32; // 10 blocks in one sample is a teleport, not movement
+
+    public final int size;
+    public final short[] dx, dy, dz;  // 1/32 block per step
+    public final byte[] dyaw, pitch;  // 1/256 turn (pitch absolute, signed)
+    public final byte[] bits;
+    public final int[] next;          // following step of the same stream, or -1
+    public final int sampleRateTps;
+    private final int[] contextStart; // CSR: steps of context c are byContext[contextStart[c] .. contextStart[c + 1])
+    private final int[] byContext;
+
+    private CloneModel(Builder b, int sampleRateTps) {
+        this.size = b.n;
+        this.dx = Arrays.copyOf(b.dx, b.n);
+        this.dy = Arrays.copyOf(b.dy, b.n);
+        this.dz = Arrays.copyOf(b.dz, b.n);
+        this.dyaw = Arrays.copyOf(b.dyaw, b.n);
+        this.pitch = Arrays.copyOf(b.pitch, b.n);
+        this.bits = Arrays.copyOf(b.bits, b.n);
+        this.next = Arrays.copyOf(b.next, b.n);
+        this.sampleRateTps = sampleRateTps;
+        contextStart = new int[CONTEXTS + 1];
+        for (int i = 0; i < size; i++) contextStart[context(i) + 1]++;
+        for (int c = 0; c < CONTEXTS; c++) contextStart[c + 1] += contextStart[c];
+        byContext = new int[size];
+        int[] fill = Arrays.copyOf(contextStart, CONTEXTS);
+        for (int i = 0; i < size; i++) byContext[fill[context(i)]++] = i;
+    }
+
+    /** Motion context of step i: speed bucket x turn bucket x sneak/sprint. */
+    public int context(int i) {
+        return context(dx[i], dz[i], dyaw[i], bits[i]);
+    }
+
+    public static int context(int dx, int dz, int dyaw, int bits) {
+        int sq = dx * dx + dz * dz; // (1/32 block)^2 per step
+        int speed = sq < 4 ? 0 : sq < 64 ? 1 : sq < 256 ? 2 : 3;
+        int turn = Math.abs(dyaw) < 4 ? 0 : Math.abs(dyaw) < 16 ? 1 : 2;
+        int mode = ((bits & BehaviorRecorder.SNEAKING) != 0 ? 1 : 0) | ((bits & BehaviorRecorder.SPRINTING) != 0 ? 2 : 0);
+        return (speed * 3 + turn) * 4 + mode;
+    }
+
+    public int contextSize(int c) {
+        return contextStart[c + 1] - contextStart[c];
+    }
+
+    /** k-th step (0 <= k < contextSize(c)) recorded in context c. */
+    public int contextStep(int c, int k) {
+        return byContext[contextStart[c] + k];
+    }
+
+    public long memoryBytes() {
+        return (long) size * (2 * 3 + 1 + 1 + 1 + 4 + 4) + (CONTEXTS + 1) * 4L;
+    }
+
+    /** Decode every *.seg below dir, up to maxSteps steps. Returns null if nothing usable was found. */
+    public static CloneModel load(File dir, int maxSteps, Logger log) {
+        File[] players = dir.listFiles(File::isDirectory);
+        if (players == null) return null;
+        Builder b = new Builder();
+        int rate = 0;
+        for (File p : players) {
+            File[] segs = p.listFiles((d, n) -> n.endsWith(".seg"));
+            if (segs == null) continue;
+            Arrays.sort(segs);
+            for (File f : segs) {
+                if (b.n >= maxSteps) break;
+                try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+                    MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                    int r = decode(buf, b, maxSteps);
+                    if (r > 0) rate = r;
+                } catch (IOException | RuntimeException ex) {
+                    if (log != null) log.warning("Skipping recording " + f.getName() + ": " + ex);
+                }
+            }
+        }
+        return b.n == 0 ? null : new CloneModel(b, rate);
+    }
+
+    // One segment: header, then records until the end of data. Returns the sample rate, or 0 if rejected.
+    private static int decode(ByteBuffer in, Builder b, int maxSteps) {
+        if (in.remaining() < 18 || in.getInt() != BehaviorRecorder.MAGIC || in.getShort() != BehaviorRecorder.VERSION) return 0;
+        in.getLong();
+        int rate = in.getInt();
+        int x = 0, y = 0, z = 0, yaw = 0, pitch = 0;
+        boolean started = false;
+        int prev = -1, world = 0;
+        while (in.hasRemaining() && b.n < maxSteps) {
+            long head = getVar(in);
+            int nx, ny, nz, nyaw, npitch, nbits;
+            boolean link = started && (head >>> 1) <= MAX_GAP_TICKS;
+            if ((head & 1) != 0) {
+                nx = unzig(getVar(in)); ny = unzig(getVar(in)); nz = unzig(getVar(in));
+                nyaw = in.get() & 0xFF; npitch = in.get() & 0xFF;
+                nbits = (int) getVar(in);
+                int len = (int) getVar(in), h = 1;
+                for (int k = 0; k < len; k++) h = 31 * h + in.get();
+                if (h != world) link = false; // world change: the position jump is not a step
+                world = h;
+            } else {
+                if (!started) return rate; // delta without a keyframe: corrupt
+                nx = x + unzig(getVar(in)); ny = y + unzig(getVar(in)); nz = z + unzig(getVar(in));
+                nyaw = (yaw + unzig(getVar(in))) & 0xFF;
+                npitch = (pitch + unzig(getVar(in))) & 0xFF;
+                nbits = (int) getVar(in);
+            }
+            if (Math.abs(nx - x) > MAX_STEP || Math.abs(ny - y) > MAX_STEP || Math.abs(nz - z) > MAX_STEP) link = false; // teleport
+            if (!link) {
+                prev = -1;
+            } else {
+                int i = b.add(clampShort(nx - x), clampShort(ny - y), clampShort(nz - z), (byte) (nyaw - yaw), (byte) npitch, (byte) nbits);
+                if (prev >= 0) b.next[prev] = i;
+                prev = i;
+            }
+            x = nx; y = ny; z = nz; yaw = nyaw; pitch = npitch;
+            started = true;
+        }
+        return rate;
+    }
+
+    private static short clampShort(int v) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, v));
+    }
+
+    private static long getVar(ByteBuffer in) {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+        throw new IllegalStateException("varint too long");
+    }
+
+    private static int unzig(long v) {
+        int i = (int) v;
+        return (i >>> 1) ^ -(i & 1);
+    }
+
+    private static final class Builder {
+        short[] dx = new short[1024], dy = new short[1024], dz = new short[1024];
+        byte[] dyaw = new byte[1024], pitch = new byte[1024], bits = new byte[1024];
+        int[] next = new int[1024];
+        int n;
+
+        int add(short x, short y, short z, byte yaw, byte p, byte bt) {
+            if (n == dx.length) {
+                int cap = n * 2;
+                dx = Arrays.copyOf(dx, cap); dy = Arrays.copyOf(dy, cap); dz = Arrays.copyOf(dz, cap);
+                dyaw = Arrays.copyOf(dyaw, cap); pitch = Arrays.copyOf(pitch, cap); bits = Arrays.copyOf(bits, cap);
+                next = Arrays.copyOf(next, cap);
+            }
+            dx[n] = x; dy[n] = y; dz[n] = z; dyaw[n] = yaw; pitch[n] = p; bits[n] = bt;
+            next[n] = -1;
+            return n++;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.sana.paranoiaplus.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * CommandQueue - side effects produced off the main thread (block changes, events, entity removal) handed to
+ * the main thread in batches: a worker collects its commands in a {@link Batch} and publishes it with one
+ * queue operation. The main thread drains under a per-tick time budget; whatever does not fit stays queued
+ * for the next tick, in order.
+ */
+public final class CommandQueue {
+    /** Commands of one producer pass; not thread-safe, publish it once with {@link #post(Batch)}. */
+    public static final class Batch {
+        private final List<Runnable> commands = new ArrayList<>();
+
+        public void add(Runnable command) { commands.add(command); }
+
+        public boolean isEmpty() { return commands.isEmpty(); }
+    }
+
+    private final ConcurrentLinkedQueue<Batch> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger backlog = new AtomicInteger();
+    private final AtomicLong posted = new AtomicLong();
+    private Batch current; // main thread: batch being drained
+    private int index;
+    private long run, failed, overBudget, maxBacklog;
+
+    /** Publish a batch (any thread). Empty batches are ignored. */
+    public void post(Batch b) {
+        if (b.isEmpty()) return;
+        int n = b.commands.size();
+        posted.addAndGet(n);
+        int q = backlog.addAndGet(n);
+        if (q > maxBacklog) maxBacklog = q; // racy max, stats only
+        queue.add(b);
+    }
+
+    /** Publish a single command (any thread). */
+    public void post(Runnable command) {
+        Batch b = new Batch();
+        b.add(command);
+        post(b);
+    }
+
+    /** Run queued commands until empty or budgetNanos is spent (main thread). Returns the number run. */
+    public int drain(long budgetNanos, Logger log) {
+        long start = System.nanoTime();
+        int n = 0;
+        while (true) {
+            if (current == null || index >= current.commands.size()) {
+                current = queue.poll();
+                index = 0;
+                if (current == null) break;
+            }
+            if (n > 0 && System.nanoTime() - start > budgetNanos) {
+                overBudget++;
+                break;
+            }
+            Runnable c = current.commands.get(index);
+            current.commands.set(index++, null);
+            n++;
+            try {
+                c.run();
+            } catch (Throwable t) {
+                failed++;
+                if (log != null) log.warning("Queued command error: " + t.getMessage());
+            }
+        }
+        backlog.addAndGet(-n);
+        run += n;
+        return n;
+    }
+
+    public int backlog() { return backlog.get(); }
+
+    public String stats() {
+        return "posted=" + posted.get() + " run=" + run + " backlog=" + backlog.get() + " maxBacklog=" + maxBacklog
+                + " overBudgetTicks=" + overBudget + " failed=" + failed;
+    }
+}
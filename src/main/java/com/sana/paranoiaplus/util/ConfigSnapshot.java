@@ -0,0 +1,337 @@
+package com.sana.paranoiaplus.util;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.EntityType;
+
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * ConfigSnapshot - config.yml compiled once into typed, immutable fields.
+ * Published by CoreModule through a volatile reference; hot paths read one snapshot per call and never
+ * touch the Bukkit configuration (no map lookups, string parsing or boxing).
+ */
+public final class ConfigSnapshot {
+    public final Global global;
+    public final Shadow shadow;
+    public final Mobs mobs;
+    public final Fake fake;
+    public final Ml ml;
+
+    private ConfigSnapshot(ConfigurationSection c, Logger log) {
+        this.global = new Global(c);
+        this.shadow = new Shadow(c);
+        this.mobs = new Mobs(c, log);
+        this.fake = new Fake(c);
+        this.ml = new Ml(c, log);
+    }
+
+    public static ConfigSnapshot compile(ConfigurationSection c, Logger log) {
+        return new ConfigSnapshot(c, log);
+    }
+
+    public static final class Global {
+        public final boolean enabled;
+        public final boolean disableInCreative, disableInSpectator;
+        public final double healthReducedMs, healthMinimalMs, healthOffMs, healthRecoverRatio;
+        public final int healthWindowTicks, healthDegradeTicks, healthRecoverTicks;
+        public final String metricsExport, metricsFile;
+        public final int metricsPort;
+        public final long metricsIntervalSeconds;
+        public final Set<String> worldsAllow;
+        public final int gridCellSize;
+        public final int terrainMaxChunks, terrainCapturesPerTick, terrainPrefetchRadius;
+        public final int packetBudgetPerTick, packetMaxQueuePerViewer;
+
+        Global(ConfigurationSection c) {
+            enabled = c.getBoolean("global.enabled", true);
+            disableInCreative = c.getBoolean("global.disable-in-creative", true);
+            disableInSpectator = c.getBoolean("global.disable-in-spectator", true);
+            healthReducedMs = c.getDouble("global.health.reduced-p95-ms", 40.0);
+            healthMinimalMs = Math.max(healthReducedMs, c.getDouble("global.health.minimal-p95-ms", 50.0));
+            healthOffMs = Math.max(healthMinimalMs, c.getDouble("global.health.off-p95-ms", 80.0));
+            healthRecoverRatio = Math.max(0.1, Math.min(1.0, c.getDouble("global.health.recover-ratio", 0.8)));
+            healthWindowTicks = Math.max(20, Math.min(1200, c.getInt("global.health.window-ticks", 40)));
+            healthDegradeTicks = Math.max(1, c.getInt("global.health.degrade-ticks", 3));
+            healthRecoverTicks = Math.max(1, c.getInt("global.health.recover-ticks", 100));
+            metricsExport = c.getString("global.metrics.export", "none").trim().toLowerCase(Locale.ROOT);
+            metricsFile = c.getString("global.metrics.file", "metrics.prom");
+            metricsPort = c.getInt("global.metrics.port", 9464);
+            metricsIntervalSeconds = Math.max(1L, c.getLong("global.metrics.interval-seconds", 15L));
+            worldsAllow = Collections.unmodifiableSet(new HashSet<>(c.getStringList("global.worlds-allow")));
+            gridCellSize = c.getInt("global.grid-cell-size", 32);
+            terrainMaxChunks = c.getInt("global.terrain.max-chunks", 1024);
+            terrainCapturesPerTick = c.getInt("global.terrain.captures-per-tick", 8);
+            terrainPrefetchRadius = c.getInt("global.terrain.prefetch-radius", 1);
+            packetBudgetPerTick = c.getInt("global.packets.budget-per-tick", 256);
+            packetMaxQueuePerViewer = c.getInt("global.packets.max-queue-per-viewer", 64);
+        }
+
+        /** Empty worlds-allow means every world is allowed. */
+        public boolean worldAllowed(String world) {
+            return worldsAllow.isEmpty() || worldsAllow.contains(world);
+        }
+    }
+
+    public static final class Shadow {
+        public final boolean enabled;
+        public final String[] scenes;
+        public final int fovDeg, fovMarginDeg;
+        public final boolean requireLos;
+        public final int losSamples;
+        public final int distanceMin, distanceMax;
+        public final int minLightLevel;
+        public final int maxY;
+        public final double requireAloneRadius;
+        public final int headTrackLagMs, headTrackMaxUpdatesPerSecond;
+        public final boolean retreatEnabled;
+        public final double retreatCoverDepth;
+        public final int[] cooldownSeconds;
+        public final String[] actionbarMessages;
+        public final boolean showActionbarOnSpawn;
+        public final Set<String> devSafe;
+
+        Shadow(ConfigurationSection c) {
+            enabled = c.getBoolean("shadow.enabled", true);
+            scenes = c.getStringList("shadow.scenes").toArray(new String[0]);
+            fovDeg = c.getInt("shadow.fov-deg", 30);
+            fovMarginDeg = c.getInt("shadow.fov-margin-deg", 8);
+            requireLos = c.getBoolean("shadow.require-los", true);
+            losSamples = c.getInt("shadow.los-samples", 3);
+            distanceMin = c.getInt("shadow.distance-min", 20);
+            distanceMax = Math.max(distanceMin, c.getInt("shadow.distance-max", 40));
+            minLightLevel = c.getInt("shadow.min-light-level", 7);
+            maxY = c.getInt("shadow.max-y", 60);
+            requireAloneRadius = c.getDouble("shadow.require-alone-radius", 40.0);
+            headTrackLagMs = Math.max(0, c.getInt("shadow.head-track-lag-ms", 150));
+            headTrackMaxUpdatesPerSecond = c.getInt("shadow.head-track-max-updates-per-second", 5);
+            retreatEnabled = c.getBoolean("shadow.retreat-enabled", true);
+            retreatCoverDepth = c.getDouble("shadow.retreat-cover-depth", 1.2);
+            cooldownSeconds = toIntArray(c.getIntegerList("shadow.cooldown-seconds"), 300);
+            actionbarMessages = c.getStringList("shadow.actionbar-messages").toArray(new String[0]);
+            showActionbarOnSpawn = c.getBoolean("shadow.show-actionbar-on-spawn", true);
+            devSafe = Collections.unmodifiableSet(new HashSet<>(c.getStringList("shadow.dev-safe")));
+        }
+    }
+
+    public static final class Mobs {
+        public final boolean replaceNaturalSpawns;
+        public final double replaceChance;
+        public final int maxControlledPerWorld;
+        public final boolean anyPlayerLooks;
+        public final double fovDeg;
+        public final boolean requireLos;
+        public final double visionRange;
+        public final long controllerBudgetNanos;
+        public final double replaceRatePerSecond, replaceBurst;
+        public final Set<EntityType> enabledTypes;
+        public final Rule[] rules; // by EntityType ordinal; null = never replaced
+
+        /** Spawn-replacement rule of one mob type (mobs.types.<type>). */
+        public static final class Rule {
+            public final double chance;
+            public final boolean onlyNight, waterOnly, fortressOnly, preferAbove;
+            public final double keepMin, keepMax;
+
+            Rule(ConfigurationSection t, double defaultChance) {
+                chance = t.getDouble("replace-chance", defaultChance);
+                onlyNight = t.getBoolean("only-night", false);
+                waterOnly = t.getBoolean("water-only", false);
+                fortressOnly = t.getBoolean("fortress-only", false);
+                preferAbove = t.getBoolean("prefer-above", false);
+                List<Integer> keep = t.getIntegerList("keep-distance");
+                keepMin = keep.isEmpty() ? 0 : keep.get(0);
+                keepMax = keep.size() < 2 ? keepMin : Math.max(keepMin, keep.get(1));
+            }
+        }
+
+        Mobs(ConfigurationSection c, Logger log) {
+            replaceNaturalSpawns = c.getBoolean("mobs.replace-natural-spawns", true);
+            replaceChance = c.getDouble("mobs.replace-chance", 0.25);
+            maxControlledPerWorld = c.getInt("mobs.max-controlled-per-world", 15);
+            anyPlayerLooks = c.getBoolean("mobs.any-player-looks", true);
+            fovDeg = c.getDouble("mobs.fov-deg", 30.0);
+            requireLos = c.getBoolean("mobs.require-los", true);
+            visionRange = c.getDouble("mobs.vision-range", 48.0);
+            controllerBudgetNanos = Math.max(1, c.getInt("mobs.controller-budget-us", 200)) * 1000L;
+            replaceRatePerSecond = c.getDouble("mobs.replace-rate-per-second", 2.0);
+            replaceBurst = Math.max(1.0, c.getDouble("mobs.replace-burst", 5.0));
+            EnumSet<EntityType> types = EnumSet.noneOf(EntityType.class);
+            rules = new Rule[EntityType.values().length];
+            ConfigurationSection sec = c.getConfigurationSection("mobs.types");
+            if (sec != null) {
+                for (String key : sec.getKeys(false)) {
+                    EntityType t = entityType(key);
+                    if (t == null) { warn(log, "mobs.types", key); continue; }
+                    if (!sec.getBoolean(key + ".enabled", true)) continue;
+                    types.add(t);
+                    ConfigurationSection ts = sec.getConfigurationSection(key);
+                    if (ts != null) rules[t.ordinal()] = new Rule(ts, replaceChance);
+                }
+            }
+            enabledTypes = Collections.unmodifiableSet(types);
+        }
+    }
+
+    public static final class Fake {
+        public final boolean enabled;
+        public final int maxBots;
+        public final String defaultMode;
+        public final String visibleTo;
+        public final String skinFrom;
+        public final long skinTtlMillis, skinPreloadMillis;
+        public final int skinCacheMax;
+        public final int tickInterval;
+        public final double speedWalk, speedSneak;
+        public final boolean unstuck;
+        public final String navMode;
+        public final int astarMaxNodes;
+        public final long astarMaxMs;
+        public final boolean taskGatherWood, taskCraft, taskGatherStone, taskBuild;
+        public final String blueprint;
+        public final int realPlaceRate;
+        public final long placeBudgetNanos;
+        public final boolean applyPhysics;
+        public final int areaScanRadius;
+        public final int simWorkers;
+        public final double renderViewDistance;
+        public final long simBudgetNanos;
+
+        Fake(ConfigurationSection c) {
+            enabled = c.getBoolean("fake.enabled", true);
+            maxBots = c.getInt("fake.max-bots", 1);
+            defaultMode = c.getString("fake.default-mode", "real");
+            visibleTo = c.getString("fake.visible-to", "target");
+            skinFrom = c.getString("fake.skin-from", "");
+            skinTtlMillis = Math.max(1L, c.getLong("fake.skin-cache.ttl-hours", 24L)) * 3_600_000L;
+            skinPreloadMillis = Math.max(0L, c.getLong("fake.skin-cache.preload-days", 7L)) * 86_400_000L;
+            skinCacheMax = Math.max(1, c.getInt("fake.skin-cache.max-entries", 512));
+            tickInterval = Math.max(1, c.getInt("fake.movement.tick-interval", 2));
+            speedWalk = c.getDouble("fake.movement.speed-walk", 0.18);
+            speedSneak = c.getDouble("fake.movement.speed-sneak", 0.12);
+            unstuck = c.getBoolean("fake.movement.unstuck", true);
+            navMode = c.getString("fake.nav.mode", "astar");
+            astarMaxNodes = c.getInt("fake.nav.astar-max-nodes", 1500);
+            astarMaxMs = c.getLong("fake.nav.astar-max-ms", 5L);
+            taskGatherWood = c.getBoolean("fake.tasks-enabled.gatherwood", true);
+            taskCraft = c.getBoolean("fake.tasks-enabled.craft", true);
+            taskGatherStone = c.getBoolean("fake.tasks-enabled.gatherstone", true);
+            taskBuild = c.getBoolean("fake.tasks-enabled.build", true);
+            blueprint = c.getString("fake.build.blueprint", "hut_5x5");
+            realPlaceRate = c.getInt("fake.build.real-place-rate", 30);
+            placeBudgetNanos = Math.max(0L, c.getLong("fake.build.place-budget-us", 250L)) * 1000L;
+            applyPhysics = c.getBoolean("fake.build.apply-physics", false);
+            areaScanRadius = c.getInt("fake.build.area-scan-radius", 8);
+            simWorkers = Math.max(1, c.getInt("fake.sim.workers", 2));
+            renderViewDistance = c.getDouble("fake.render.view-distance", 48.0);
+            simBudgetNanos = Math.max(0L, c.getLong("fake.sim.main-thread-budget-us", 500L)) * 1000L;
+        }
+    }
+
+    public static final class Ml {
+        public final boolean whitelistEnabled;
+        public final String scope;
+        public final int regionSize;
+        public final long scopeMaxMemoryBytes;
+        public final long updateIntervalSeconds;
+        public final int minSamples;
+        public final int topK;
+        public final double threshold;
+        public final double emaAlpha;
+        public final Set<MaterialPolicy.Category> hardDenyCategories;
+        public final Set<Material> hardDenyMaterials;
+        public final MaterialPolicy hardDeny; // deny bits only (allows nothing); rebuilt with every compile
+        public final Material[] seedAllow;
+        public final boolean excludeCreative;
+        public final boolean cloneEnabled;
+        public final String cloneMode;
+        public final int recordSampleRateTps;
+        public final int recordMaxSessionMin;
+        public final Set<String> recordIncludePlayers;
+        public final int recordBuffers, recordBufferBytes;
+        public final long recordSegmentBytes;
+        public final int inferenceIntervalTicks;
+        public final double inferenceEpsilon;
+        public final boolean inferenceFallbackOnLowTps;
+        public final int inferenceWorkers;
+        public final long inferenceBudgetNanos;
+        public final int inferenceMaxSteps;
+        public final long persistFlushSeconds;
+        public final CountStore.Fsync persistFsync;
+        public final long persistFsyncIntervalMs;
+        public final long persistCompactBytes;
+
+        Ml(ConfigurationSection c, Logger log) {
+            whitelistEnabled = c.getBoolean("ml.whitelist.enabled", true);
+            scope = c.getString("ml.whitelist.scope", "global");
+            regionSize = c.getInt("ml.whitelist.region-size", 512);
+            scopeMaxMemoryBytes = 1024L * Math.max(64L, c.getLong("ml.whitelist.scope-max-memory-kb", 16384L));
+            updateIntervalSeconds = Math.max(1L, c.getLong("ml.whitelist.update-interval-seconds", 300L));
+            minSamples = c.getInt("ml.whitelist.min-samples", 50);
+            topK = c.getInt("ml.whitelist.top-k", 20);
+            threshold = c.getDouble("ml.whitelist.threshold", 0.55);
+            emaAlpha = c.getDouble("ml.whitelist.ema-alpha", 0.3);
+            EnumSet<MaterialPolicy.Category> cats = EnumSet.noneOf(MaterialPolicy.Category.class);
+            for (String s : c.getStringList("ml.whitelist.hard-deny.categories")) {
+                MaterialPolicy.Category cat = MaterialPolicy.Category.parse(s);
+                if (cat == null) warn(log, "ml.whitelist.hard-deny.categories", s);
+                else cats.add(cat);
+            }
+            hardDenyCategories = Collections.unmodifiableSet(cats);
+            hardDenyMaterials = Collections.unmodifiableSet(materials(c, "ml.whitelist.hard-deny.materials", log));
+            hardDeny = MaterialPolicy.compile(new int[0], 0, new Material[0], hardDenyMaterials, hardDenyCategories);
+            seedAllow = materials(c, "ml.whitelist.seed-allow", log).toArray(new Material[0]);
+            excludeCreative = c.getBoolean("ml.whitelist.exclude-creative", true);
+            cloneEnabled = c.getBoolean("ml.clone.enabled", true);
+            cloneMode = c.getString("ml.clone.mode", "hybrid");
+            recordSampleRateTps = Math.max(1, Math.min(20, c.getInt("ml.clone.record.sample-rate-tps", 10)));
+            recordMaxSessionMin = c.getInt("ml.clone.record.max-session-min", 60);
+            recordIncludePlayers = Collections.unmodifiableSet(new HashSet<>(c.getStringList("ml.clone.record.include-players")));
+            recordBuffers = Math.max(2, c.getInt("ml.clone.record.buffers", 32));
+            recordBufferBytes = 1024 * Math.max(4, c.getInt("ml.clone.record.buffer-kb", 64));
+            recordSegmentBytes = 1024L * Math.max(64L, c.getLong("ml.clone.record.segment-kb", 1024L));
+            inferenceIntervalTicks = Math.max(1, c.getInt("ml.clone.inference.interval-ticks", 10));
+            inferenceEpsilon = c.getDouble("ml.clone.inference.epsilon", 0.05);
+            inferenceFallbackOnLowTps = c.getBoolean("ml.clone.inference.fallback-on-low-tps", true);
+            inferenceWorkers = Math.max(1, c.getInt("ml.clone.inference.workers", 1));
+            inferenceBudgetNanos = 1000L * Math.max(50L, c.getLong("ml.clone.inference.budget-us", 500L));
+            inferenceMaxSteps = Math.max(1000, c.getInt("ml.clone.inference.max-steps", 2000000));
+            persistFlushSeconds = Math.max(1L, c.getLong("ml.persist.flush-interval-seconds", 30L));
+            persistFsync = CountStore.parseFsync(c.getString("ml.persist.fsync", "interval"));
+            persistFsyncIntervalMs = 1000L * Math.max(0L, c.getLong("ml.persist.fsync-interval-seconds", 10L));
+            persistCompactBytes = 1024L * Math.max(1L, c.getLong("ml.persist.compact-journal-kb", 1024L));
+        }
+    }
+
+    // ---- helpers ----
+
+    private static int[] toIntArray(List<Integer> list, int fallback) {
+        if (list == null || list.isEmpty()) return new int[]{fallback};
+        int[] out = new int[list.size()];
+        for (int i = 0; i < out.length; i++) out[i] = list.get(i);
+        return out;
+    }
+
+    private static EnumSet<Material> materials(ConfigurationSection c, String path, Logger log) {
+        EnumSet<Material> out = EnumSet.noneOf(Material.class);
+        for (String s : c.getStringList(path)) {
+            Material m = Material.matchMaterial(s);
+            if (m == null) warn(log, path, s);
+            else out.add(m);
+        }
+        return out;
+    }
+
+    private static EntityType entityType(String key) {
+        String k = key.toUpperCase(Locale.ROOT).replace('-', '_');
+        for (EntityType t : EntityType.values()) {
+            if (t.name().equals(k) || t.name().replace("_", "").equals(k)) return t;
+        }
+        return null;
+    }
+
+    private static void warn(Logger log, String path, String value) {
+        if (log != null) log.warning("Config " + path + ": unknown entry '" + value + "' ignored.");
+    }
+}
@@ -0,0 +1,337 @@
+package com.sana.paranoiaplus.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * CountStore - crash-safe binary persistence for (name -> double) counts.
+ * A versioned snapshot ({@code <base>.snap}) plus an append-only journal of changed entries
+ * ({@code <base>.journal}). Snapshots are written to a temp file, fsynced and atomically renamed;
+ * journal records carry a CRC so a torn tail after a crash is detected and ignored. Both files share a
+ * generation number, so a journal left over from before a compaction is never replayed. A snapshot that
+ * fails its checks is moved aside ({@code <base>.snap.corrupt}) and the journal is still replayed under its own
+ * generation, so the changes since the last compaction survive and later appends do not truncate them. All writes
+ * happen on one background thread (owned, or shared between many small stores, in which case the journal
+ * is only held open while writing); loading memory-maps the files.
+ *
+ * Snapshot: magic, version, generation, count, {len, name, value}*, crc32.
+ * Journal:  magic, version, generation, {len, name, value, crc32}*.
+ */
+public final class CountStore {
+    public enum Fsync { ALWAYS, INTERVAL, NEVER }
+
+    /** Receives loaded entries; later entries for the same name override earlier ones. */
+    public interface Sink {
+        void put(String name, double value);
+    }
+
+    private static final int SNAP_MAGIC = 0x50504D53;    // "PPMS"
+    private static final int JOURNAL_MAGIC = 0x50504D4A; // "PPMJ"
+    private static final short VERSION = 1;
+    private static final int JOURNAL_HEADER = 4 + 2 + 8;
+
+    private final Path snapFile, journalFile, tmpFile;
+    private final Fsync fsync;
+    private final long fsyncIntervalMs;
+    private final long compactBytes;
+    private final Logger log;
+    private final ExecutorService writer;
+    private final boolean owned;
+
+    // writer-thread state
+    private FileChannel journal;
+    private long generation;
+    private long validEnd = -1L; // end of the last intact journal record (from load(), then every write)
+    private long lastForce;
+    private volatile long journalBytes;
+
+    public CountStore(File dir, String base, Fsync fsync, long fsyncIntervalMs, long compactBytes, Logger log) {
+        this.snapFile = new File(dir, base + ".snap").toPath();
+        this.journalFile = new File(dir, base + ".journal").toPath();
+        this.tmpFile = new File(dir, base + ".snap.tmp").toPath();
+        this.fsync = fsync;
+        this.fsyncIntervalMs = fsyncIntervalMs;
+        this.compactBytes = compactBytes;
+        this.log = log;
+        this.writer = newWriter("ParanoiaPlus-Store-" + base);
+        this.owned = true;
+    }
+
+    /** Store that queues its writes on a shared single-thread writer (see {@link #newWriter(String)}). */
+    public CountStore(File dir, String base, Fsync fsync, long fsyncIntervalMs, long compactBytes, Logger log, ExecutorService writer) {
+        this.snapFile = new File(dir, base + ".snap").toPath();
+        this.journalFile = new File(dir, base + ".journal").toPath();
+        this.tmpFile = new File(dir, base + ".snap.tmp").toPath();
+        this.fsync = fsync;
+        this.fsyncIntervalMs = fsyncIntervalMs;
+        this.compactBytes = compactBytes;
+        this.log = log;
+        this.writer = writer;
+        this.owned = false;
+    }
+
+    public static ExecutorService newWriter(String name) {
+        return Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static Fsync parseFsync(String s) {
+        try { return Fsync.valueOf(s.trim().toUpperCase(java.util.Locale.ROOT)); } catch (Exception ex) { return Fsync.INTERVAL; }
+    }
+
+    public boolean exists() {
+        return Files.exists(snapFile) || Files.exists(journalFile);
+    }
+
+    /** Load snapshot then journal into sink (caller thread); call before the first write. Returns the number of entries read. */
+    public int load(Sink sink) throws IOException {
+        int n = 0;
+        long gen = -1L; // -1: no usable snapshot, take the journal's generation
+        long end = -1L;
+        if (Files.exists(snapFile)) {
+            try {
+                int[] read = new int[1];
+                gen = loadSnapshot((name, v) -> { sink.put(name, v); read[0]++; });
+                n = read[0];
+            } catch (IOException | RuntimeException ex) {
+                log.warning("CountStore snapshot unreadable (" + ex.getMessage() + "), recovering from the journal only");
+                quarantine();
+                gen = -1L;
+            }
+        }
+        if (Files.exists(journalFile)) {
+            try (FileChannel ch = FileChannel.open(journalFile, StandardOpenOption.READ)) {
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                long jgen;
+                if (buf.remaining() >= JOURNAL_HEADER && buf.getInt() == JOURNAL_MAGIC && buf.getShort() == VERSION
+                        && ((jgen = buf.getLong()) == gen || gen < 0L)) {
+                    gen = jgen;
+                    CRC32 crc = new CRC32();
+                    while (buf.remaining() >= 2) {
+                        int start = buf.position();
+                        int len = buf.getShort() & 0xFFFF;
+                        if (buf.remaining() < len + 12) { buf.position(start); break; } // torn tail
+                        ByteBuffer rec = buf.duplicate();
+                        rec.position(start).limit(start + 2 + len + 8);
+                        crc.reset();
+                        crc.update(rec);
+                        byte[] name = new byte[len];
+                        buf.get(name);
+                        double v = buf.getDouble();
+                        if ((int) crc.getValue() != buf.getInt()) { buf.position(start); break; } // corrupt record: stop replay
+                        sink.put(new String(name, StandardCharsets.UTF_8), v);
+                        n++;
+                    }
+                    end = buf.position();
+                }
+            }
+        }
+        final long g = Math.max(0L, gen), e = end;
+        writer.execute(() -> { generation = g; validEnd = e; });
+        return n;
+    }
+
+    // Entries go to sink only once the whole file has checked out. Returns the snapshot generation.
+    private long loadSnapshot(Sink sink) throws IOException {
+        try (FileChannel ch = FileChannel.open(snapFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.remaining() < 22 || buf.getInt() != SNAP_MAGIC) throw new IOException("bad snapshot header: " + snapFile);
+            short version = buf.getShort();
+            if (version != VERSION) throw new IOException("unsupported snapshot version " + version);
+            long gen = buf.getLong();
+            int count = buf.getInt();
+            CRC32 crc = new CRC32();
+            ByteBuffer body = buf.duplicate();
+            body.position(0).limit(buf.limit() - 4);
+            crc.update(body);
+            if ((int) crc.getValue() != buf.getInt(buf.limit() - 4)) throw new IOException("snapshot checksum mismatch: " + snapFile);
+            for (int i = 0; i < count; i++) sink.put(readName(buf), buf.getDouble());
+            return gen;
+        }
+    }
+
+    // Move a bad snapshot aside so it is neither replayed nor overwritten before someone can look at it.
+    private void quarantine() {
+        try {
+            Files.move(snapFile, snapFile.resolveSibling(snapFile.getFileName() + ".corrupt"), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            log.warning("CountStore could not move the bad snapshot aside: " + ex.getMessage());
+        }
+    }
+
+    /** Queue changed entries for the journal. Arrays are copied; safe from any thread. */
+    public void append(String[] names, double[] values, int count) {
+        if (count == 0) return;
+        final String[] n = java.util.Arrays.copyOf(names, count);
+        final double[] v = java.util.Arrays.copyOf(values, count);
+        writer.execute(() -> {
+            try {
+                writeJournal(n, v);
+            } catch (IOException ex) {
+                log.warning("CountStore journal write failed: " + ex.getMessage());
+            }
+        });
+    }
+
+    /** True once the journal has grown past the compaction threshold. */
+    public boolean needsCompaction() {
+        return journalBytes > compactBytes;
+    }
+
+    /** Queue a full snapshot (compaction); the journal is reset once the snapshot is durable. */
+    public void snapshot(String[] names, double[] values, int count) {
+        final String[] n = java.util.Arrays.copyOf(names, count);
+        final double[] v = java.util.Arrays.copyOf(values, count);
+        writer.execute(() -> {
+            try {
+                writeSnapshot(n, v);
+            } catch (IOException ex) {
+                log.warning("CountStore snapshot failed: " + ex.getMessage());
+            }
+        });
+    }
+
+    /** Run task on the writer thread once every previously queued write has completed. */
+    public void whenWritten(Runnable task) {
+        writer.execute(task);
+    }
+
+    /** Block until every write queued so far has completed (up to timeoutMs). */
+    public void sync(long timeoutMs) {
+        try {
+            writer.submit(() -> { }).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException | RejectedExecutionException ex) {
+            log.warning("CountStore sync did not finish: " + ex);
+        }
+    }
+
+    /**
+     * Flush pending writes and fsync. An owned writer is stopped (blocking up to timeoutMs);
+     * on a shared writer the close is only queued.
+     */
+    public void close(long timeoutMs) {
+        writer.execute(this::closeJournal);
+        if (!owned) return;
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS)) log.warning("CountStore writer did not finish in time.");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---- writer thread ----
+
+    private void closeJournal() {
+        try {
+            if (journal != null) {
+                if (fsync != Fsync.NEVER) journal.force(false);
+                journal.close();
+                journal = null;
+            }
+        } catch (IOException ex) {
+            log.warning("CountStore close failed: " + ex.getMessage());
+        }
+    }
+
+    private void writeJournal(String[] names, double[] values) throws IOException {
+        if (journal == null) openJournal(false);
+        int size = 0;
+        byte[][] raw = new byte[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            raw[i] = names[i].getBytes(StandardCharsets.UTF_8);
+            size += 2 + raw[i].length + 8 + 4;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < names.length; i++) {
+            int start = buf.position();
+            buf.putShort((short) raw[i].length).put(raw[i]).putDouble(values[i]);
+            crc.reset();
+            crc.update(buf.array(), start, buf.position() - start);
+            buf.putInt((int) crc.getValue());
+        }
+        buf.flip();
+        while (buf.hasRemaining()) journal.write(buf);
+        validEnd = journalBytes = journal.size(); // a shared store reopens from here on its next append
+        long now = System.currentTimeMillis();
+        if (fsync == Fsync.ALWAYS || (fsync == Fsync.INTERVAL && now - lastForce >= fsyncIntervalMs)) {
+            journal.force(false);
+            lastForce = now;
+        }
+        if (!owned) {
+            journal.close(); // many stores share one writer: do not pin a file handle per store
+            journal = null;
+        }
+    }
+
+    private void writeSnapshot(String[] names, double[] values) throws IOException {
+        long gen = generation + 1;
+        byte[][] raw = new byte[names.length][];
+        int size = 4 + 2 + 8 + 4 + 4;
+        for (int i = 0; i < names.length; i++) {
+            raw[i] = names[i].getBytes(StandardCharsets.UTF_8);
+            size += 2 + raw[i].length + 8;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.putInt(SNAP_MAGIC).putShort(VERSION).putLong(gen).putInt(names.length);
+        for (int i = 0; i < names.length; i++) buf.putShort((short) raw[i].length).put(raw[i]).putDouble(values[i]);
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, buf.position());
+        buf.putInt((int) crc.getValue());
+        buf.flip();
+        Files.createDirectories(snapFile.getParent());
+        try (FileChannel ch = FileChannel.open(tmpFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+        try {
+            Files.move(tmpFile, snapFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmpFile, snapFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        // the snapshot is durable: start a fresh journal for the new generation
+        generation = gen;
+        openJournal(true);
+        if (!owned) closeJournal();
+    }
+
+    private void openJournal(boolean reset) throws IOException {
+        if (journal != null) journal.close();
+        Files.createDirectories(journalFile.getParent());
+        // a journal of another generation (or one load() never validated) starts over
+        boolean fresh = reset || validEnd < 0L || !Files.exists(journalFile);
+        if (fresh) {
+            journal = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            ByteBuffer h = ByteBuffer.allocate(JOURNAL_HEADER);
+            h.putInt(JOURNAL_MAGIC).putShort(VERSION).putLong(generation).flip();
+            while (h.hasRemaining()) journal.write(h);
+            journal.force(false);
+        } else {
+            journal = FileChannel.open(journalFile, StandardOpenOption.WRITE);
+            journal.truncate(validEnd); // drop a torn tail so new records are not written behind it
+            journal.position(journal.size());
+        }
+        validEnd = journalBytes = journal.size();
+    }
+
+    private static String readName(ByteBuffer buf) {
+        int len = buf.getShort() & 0xFFFF;
+        byte[] b = new byte[len];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
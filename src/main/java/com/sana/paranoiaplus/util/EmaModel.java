@@ -0,0 +1,162 @@
+package com.sana.paranoiaplus.util;
+
+/**
+ * EmaModel - sparse EMA table keyed by Material ordinal (open addressing, primitive arrays).
+ * A scope that has only seen a few dozen materials costs well under a kilobyte, so thousands of
+ * per-player or per-region models fit in memory. Not thread-safe: owners serialize access.
+ */
+public final class EmaModel {
+    private int[] keys;      // ordinal + 1, 0 = empty
+    private double[] vals;
+    private boolean[] dirty; // changed since the last journal flush
+    private int size;
+    private long samples;
+    private long changes;    // bumped on every update; compared against the policy's compile stamp
+
+    public EmaModel() {
+        alloc(16);
+    }
+
+    public void update(int ordinal, double weight, double alpha) {
+        int s = slot(ordinal);
+        if (keys[s] == 0) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                grow();
+                s = slot(ordinal);
+            }
+            keys[s] = ordinal + 1;
+            vals[s] = weight;
+            size++;
+        } else {
+            vals[s] = vals[s] * (1.0 - alpha) + weight * alpha;
+        }
+        dirty[s] = true;
+        samples++;
+        changes++;
+    }
+
+    /** Load a persisted value (not marked dirty). */
+    public void put(int ordinal, double value) {
+        int s = slot(ordinal);
+        if (keys[s] == 0) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                grow();
+                s = slot(ordinal);
+            }
+            keys[s] = ordinal + 1;
+            size++;
+        }
+        vals[s] = value;
+        changes++;
+    }
+
+    /** Value for ordinal, or NaN if it was never seen. */
+    public double get(int ordinal) {
+        int s = slot(ordinal);
+        return keys[s] == 0 ? Double.NaN : vals[s];
+    }
+
+    public int size() { return size; }
+
+    public long samples() { return samples; }
+
+    public void setSamples(long n) { samples = n; }
+
+    public long changes() { return changes; }
+
+    /** Approximate heap footprint in bytes. */
+    public long memoryBytes() {
+        return 64L + keys.length * (4L + 8L + 1L);
+    }
+
+    /**
+     * Copy entries into ords/values (sized at least {@link #size()}); only dirty ones unless all is set.
+     * Clears the dirty marks of copied entries. Returns the number copied.
+     */
+    public int collect(boolean all, int[] ords, double[] values) {
+        int n = 0;
+        for (int s = 0; s < keys.length; s++) {
+            if (keys[s] == 0 || !(all || dirty[s])) continue;
+            ords[n] = keys[s] - 1;
+            values[n++] = vals[s];
+            dirty[s] = false;
+        }
+        return n;
+    }
+
+    /**
+     * Ordinals of the k highest values, best first, skipping ordinals set in skip (may be null).
+     * Bounded min-heap selection: O(n log k), no boxing.
+     */
+    public int[] top(int k, long[] skip) {
+        if (k <= 0) return new int[0];
+        int[] heapO = new int[Math.min(k, size)];
+        double[] heapV = new double[heapO.length];
+        int h = 0;
+        for (int s = 0; s < keys.length; s++) {
+            if (keys[s] == 0) continue;
+            int o = keys[s] - 1;
+            if (skip != null && (o >>> 6) < skip.length && (skip[o >>> 6] & (1L << o)) != 0) continue;
+            double v = vals[s];
+            if (h < heapO.length) {
+                int i = h++;
+                while (i > 0) {
+                    int p = (i - 1) >>> 1;
+                    if (heapV[p] <= v) break;
+                    heapO[i] = heapO[p]; heapV[i] = heapV[p];
+                    i = p;
+                }
+                heapO[i] = o; heapV[i] = v;
+            } else if (h > 0 && v > heapV[0]) {
+                siftDown(heapO, heapV, h, o, v);
+            }
+        }
+        // pop the min repeatedly, filling the result from the back
+        int[] out = new int[h];
+        for (int n = h; n > 0; n--) {
+            out[n - 1] = heapO[0];
+            if (n > 1) siftDown(heapO, heapV, n - 1, heapO[n - 1], heapV[n - 1]);
+        }
+        return out;
+    }
+
+    private static void siftDown(int[] heapO, double[] heapV, int n, int o, double v) {
+        int i = 0;
+        while (true) {
+            int c = 2 * i + 1;
+            if (c >= n) break;
+            if (c + 1 < n && heapV[c + 1] < heapV[c]) c++;
+            if (heapV[c] >= v) break;
+            heapO[i] = heapO[c]; heapV[i] = heapV[c];
+            i = c;
+        }
+        heapO[i] = o; heapV[i] = v;
+    }
+
+    private int slot(int ordinal) {
+        int mask = keys.length - 1;
+        int s = (ordinal * 0x9E3779B9) >>> 16 & mask;
+        while (keys[s] != 0 && keys[s] != ordinal + 1) s = (s + 1) & mask;
+        return s;
+    }
+
+    private void alloc(int cap) {
+        keys = new int[cap];
+        vals = new double[cap];
+        dirty = new boolean[cap];
+    }
+
+    private void grow() {
+        int[] ok = keys;
+        double[] ov = vals;
+        boolean[] od = dirty;
+        alloc(ok.length * 2);
+        for (int s = 0; s < ok.length; s++) {
+            if (ok[s] == 0) continue;
+            int t = slot(ok[s] - 1);
+            keys[t] = ok[s];
+            vals[t] = ov[s];
+            dirty[t] = od[s];
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.sana.paranoiaplus.util;
+
+import org.bukkit.Material;
+
+import java.util.*;
+
+/**
+ * MaterialPolicy - immutable allow/deny bitsets indexed by Material ordinal.
+ * Compiled from ranked ML results, seeds, hard-deny materials and hard-deny categories; deny always wins.
+ * Lookups are a single word read with no allocation.
+ */
+public final class MaterialPolicy {
+    private static final Material[] MATERIALS = Material.values();
+    private static final int WORDS = (MATERIALS.length + 63) >>> 6;
+
+    public enum Category {
+        CONTAINER, REDSTONE, PORTAL, FLUID, SPAWNER, ORE, EXPLOSIVE, UNOBTAINABLE;
+
+        private long[] mask;
+
+        /** Config name (case-insensitive) to category, or null. */
+        public static Category parse(String s) {
+            try { return valueOf(s.trim().toUpperCase(Locale.ROOT)); } catch (IllegalArgumentException ex) { return null; }
+        }
+
+        synchronized long[] mask() {
+            if (mask == null) {
+                long[] m = new long[WORDS];
+                for (Material mat : MATERIALS) if (!mat.isLegacy() && matches(this, mat.name())) set(m, mat.ordinal());
+                mask = m;
+            }
+            return mask;
+        }
+    }
+
+    public static final MaterialPolicy EMPTY = new MaterialPolicy(new long[WORDS], new long[WORDS]);
+
+    private final long[] allowed;
+    private final long[] denied;
+    private volatile List<Material> allowedList;
+
+    private MaterialPolicy(long[] allowed, long[] denied) {
+        this.allowed = allowed;
+        this.denied = denied;
+    }
+
+    /**
+     * @param ranked ordinals ordered best first; the first topK that are not denied are allowed
+     * @param seeds  always allowed unless denied
+     */
+    public static MaterialPolicy compile(int[] ranked, int topK, Material[] seeds,
+                                         Set<Material> denyMaterials, Set<Category> denyCategories) {
+        return compile(ranked, topK, seeds, denyMask(denyMaterials, denyCategories));
+    }
+
+    /** Deny bits for materials and categories; compute once and share across many compiles. */
+    public static long[] denyMask(Set<Material> denyMaterials, Set<Category> denyCategories) {
+        long[] deny = new long[WORDS];
+        for (Category c : denyCategories) {
+            long[] m = c.mask();
+            for (int i = 0; i < WORDS; i++) deny[i] |= m[i];
+        }
+        for (Material m : denyMaterials) set(deny, m.ordinal());
+        return deny;
+    }
+
+    /** As above with a precomputed deny mask (not modified, may be shared). */
+    public static MaterialPolicy compile(int[] ranked, int topK, Material[] seeds, long[] deny) {
+        long[] allow = new long[WORDS];
+        int taken = 0;
+        for (int i = 0; i < ranked.length && taken < topK; i++) {
+            int o = ranked[i];
+            if (get(deny, o) || get(allow, o)) continue;
+            set(allow, o);
+            taken++;
+        }
+        for (Material m : seeds) if (!get(deny, m.ordinal())) set(allow, m.ordinal());
+        return new MaterialPolicy(allow, deny);
+    }
+
+    public boolean isAllowed(Material m) {
+        return get(allowed, m.ordinal());
+    }
+
+    /** Hard-denied by material or category, regardless of ML ranking. */
+    public boolean isDenied(Material m) {
+        return get(denied, m.ordinal());
+    }
+
+    public int size() {
+        int n = 0;
+        for (long w : allowed) n += Long.bitCount(w);
+        return n;
+    }
+
+    /** Allowed materials in ordinal order (built once, then cached). */
+    public List<Material> toList() {
+        List<Material> l = allowedList;
+        if (l == null) {
+            List<Material> out = new ArrayList<>(size());
+            for (int w = 0; w < WORDS; w++) {
+                long bits = allowed[w];
+                while (bits != 0) {
+                    out.add(MATERIALS[(w << 6) + Long.numberOfTrailingZeros(bits)]);
+                    bits &= bits - 1;
+                }
+            }
+            l = allowedList = Collections.unmodifiableList(out);
+        }
+        return l;
+    }
+
+    private static boolean get(long[] bits, int o) {
+        return (bits[o >>> 6] & (1L << o)) != 0;
+    }
+
+    private static void set(long[] bits, int o) {
+        bits[o >>> 6] |= 1L << o;
+    }
+
+    // Name-based classification keeps working across API versions without per-version tag lists.
+    private static boolean matches(Category c, String n) {
+        switch (c) {
+            case CONTAINER:
+                return n.endsWith("CHEST") || n.endsWith("SHULKER_BOX") || n.endsWith("FURNACE") || n.endsWith("_MINECART") && !n.equals("TNT_MINECART")
+                        || n.equals("BARREL") || n.equals("SMOKER") || n.equals("HOPPER") || n.equals("DROPPER") || n.equals("DISPENSER")
+                        || n.equals("BREWING_STAND") || n.equals("JUKEBOX") || n.equals("LECTERN");
+            case REDSTONE:
+                return n.contains("REDSTONE") || n.endsWith("_BUTTON") || n.endsWith("PRESSURE_PLATE") || n.endsWith("PISTON") || n.endsWith("_RAIL")
+                        || n.equals("REPEATER") || n.equals("COMPARATOR") || n.equals("OBSERVER") || n.equals("LEVER") || n.equals("PISTON_HEAD")
+                        || n.equals("MOVING_PISTON") || n.startsWith("TRIPWIRE") || n.equals("DAYLIGHT_DETECTOR") || n.equals("TARGET")
+                        || n.equals("HOPPER") || n.equals("DROPPER") || n.equals("DISPENSER") || n.equals("NOTE_BLOCK") || n.equals("TRAPPED_CHEST");
+            case PORTAL:
+                return n.contains("PORTAL") || n.equals("END_GATEWAY") || n.equals("ENDER_EYE");
+            case FLUID:
+                return n.equals("WATER") || n.equals("LAVA") || n.equals("BUBBLE_COLUMN") || n.endsWith("_BUCKET") && !n.equals("MILK_BUCKET");
+            case SPAWNER:
+                return n.equals("SPAWNER") || n.endsWith("_SPAWN_EGG");
+            case ORE:
+                return n.endsWith("_ORE") || n.equals("ANCIENT_DEBRIS") || n.equals("GILDED_BLACKSTONE");
+            case EXPLOSIVE:
+                return n.equals("TNT") || n.equals("TNT_MINECART") || n.equals("END_CRYSTAL") || n.equals("RESPAWN_ANCHOR")
+                        || n.equals("FIRE_CHARGE") || n.equals("FIREWORK_ROCKET") || n.endsWith("_BED");
+            case UNOBTAINABLE:
+                return n.equals("BEDROCK") || n.equals("BARRIER") || n.endsWith("COMMAND_BLOCK") || n.startsWith("STRUCTURE_")
+                        || n.equals("JIGSAW") || n.equals("END_PORTAL_FRAME") || n.equals("SPAWNER") || n.equals("LIGHT")
+                        || n.equals("DEBUG_STICK") || n.equals("KNOWLEDGE_BOOK") || n.equals("PETRIFIED_OAK_SLAB") || n.startsWith("INFESTED_")
+                        || n.equals("FARMLAND") || n.equals("GRASS_PATH") || n.equals("DIRT_PATH") || n.equals("FROSTED_ICE")
+                        || n.equals("BUDDING_AMETHYST") || n.equals("REINFORCED_DEEPSLATE") || n.equals("FIRE") || n.equals("SOUL_FIRE")
+                        || n.endsWith("_AIR") || n.equals("AIR");
+            default:
+                return false;
+        }
+    }
+}
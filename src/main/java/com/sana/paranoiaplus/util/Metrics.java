@@ -0,0 +1,263 @@
+package com.sana.paranoiaplus.util;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Metrics - the plugin's counters, gauges and latency histograms, readable as /paranoia stats lines or as
+ * Prometheus text. Metrics are created once (at enable) and kept in fields; recording is a striped
+ * {@link LongAdder} increment, allocation-free and safe from any thread. Gauges and function counters are only
+ * evaluated when read, so existing stats fields can be exported without touching their hot paths. Sampled ones
+ * wrap main-thread state instead: {@link #sample()} evaluates them once per tick on the main thread and readers
+ * on other threads (the exporter) only see the published values.
+ *
+ * Every metric carries a module label; task timers share one family (paranoia_task_seconds) keyed by task.
+ */
+public final class Metrics {
+    private enum Type { COUNTER, GAUGE, HISTOGRAM }
+
+    private static final String EVENTS = "paranoia_events_total", EVENTS_HELP = "Actions taken by a module.";
+
+    /** Bucket upper bounds of every histogram, in nanoseconds (10 µs .. 100 ms, then +Inf). */
+    private static final long[] BOUNDS = {
+            10_000L, 25_000L, 50_000L, 100_000L, 250_000L, 500_000L,
+            1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L, 100_000_000L };
+
+    private abstract static class Metric {
+        final String family, module, key, labels;
+
+        Metric(String family, String module, String key, String labels) {
+            this.family = family;
+            this.module = module;
+            this.key = key;
+            this.labels = labels;
+        }
+    }
+
+    public static final class Counter extends Metric {
+        private final LongAdder value = new LongAdder();
+        private final LongSupplier fn; // null: counted here
+        private final boolean sampled;
+        private volatile long last;
+
+        Counter(String family, String module, String key, String labels, LongSupplier fn, boolean sampled) {
+            super(family, module, key, labels);
+            this.fn = fn;
+            this.sampled = sampled;
+        }
+
+        public void inc() { value.increment(); }
+
+        public void add(long n) { value.add(n); }
+
+        public long get() { return sampled ? last : fn != null ? fn.getAsLong() : value.sum(); }
+    }
+
+    public static final class Gauge extends Metric {
+        private final DoubleSupplier fn;
+        private final boolean sampled;
+        private volatile double last;
+
+        Gauge(String family, String module, String key, String labels, DoubleSupplier fn, boolean sampled) {
+            super(family, module, key, labels);
+            this.fn = fn;
+            this.sampled = sampled;
+        }
+
+        public double get() { return sampled ? last : fn.getAsDouble(); }
+    }
+
+    public static final class Histogram extends Metric {
+        private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+        private final LongAdder sum = new LongAdder();
+
+        Histogram(String family, String module, String key, String labels) {
+            super(family, module, key, labels);
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        public void record(long nanos) {
+            int i = 0;
+            while (i < BOUNDS.length && nanos > BOUNDS[i]) i++;
+            buckets[i].increment();
+            sum.add(nanos);
+        }
+
+        /** Record the time since t0 (a System.nanoTime() taken before the work). */
+        public void since(long t0) {
+            record(System.nanoTime() - t0);
+        }
+
+        public long count() {
+            long n = 0;
+            for (LongAdder b : buckets) n += b.sum();
+            return n;
+        }
+
+        // upper bound of the bucket holding quantile q, in nanoseconds (Long.MAX_VALUE: above the last bound)
+        long quantile(double q) {
+            long[] c = new long[buckets.length];
+            long n = 0;
+            for (int i = 0; i < c.length; i++) n += c[i] = buckets[i].sum();
+            long rank = (long) Math.ceil(q * n), seen = 0;
+            for (int i = 0; i < c.length; i++) {
+                seen += c[i];
+                if (seen >= rank) return i < BOUNDS.length ? BOUNDS[i] : Long.MAX_VALUE;
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private final List<Metric> metrics = new CopyOnWriteArrayList<>();
+    private final List<Metric> sampled = new CopyOnWriteArrayList<>();
+    private final Map<String, String[]> families = new LinkedHashMap<>(); // name -> {type, help}
+
+    /** A counter incremented by the caller. */
+    public Counter counter(String family, String help, String module, String key) {
+        return add(new Counter(family, module, key, labels(family, module, key), null, false), Type.COUNTER, help);
+    }
+
+    /** A counter read from an existing thread-safe monotonic field. */
+    public Counter counter(String family, String help, String module, String key, LongSupplier fn) {
+        return add(new Counter(family, module, key, labels(family, module, key), fn, false), Type.COUNTER, help);
+    }
+
+    /** A counter over a main-thread field; fn only runs in {@link #sample()}. */
+    public Counter sampledCounter(String family, String help, String module, String key, LongSupplier fn) {
+        return sampled(add(new Counter(family, module, key, labels(family, module, key), fn, true), Type.COUNTER, help));
+    }
+
+    /** A gauge over thread-safe state. */
+    public Gauge gauge(String family, String help, String module, String key, DoubleSupplier fn) {
+        return add(new Gauge(family, module, key, labels(family, module, key), fn, false), Type.GAUGE, help);
+    }
+
+    /** A gauge over main-thread state; fn only runs in {@link #sample()}. */
+    public Gauge sampledGauge(String family, String help, String module, String key, DoubleSupplier fn) {
+        return sampled(add(new Gauge(family, module, key, labels(family, module, key), fn, true), Type.GAUGE, help));
+    }
+
+    public Histogram histogram(String family, String help, String module, String key) {
+        return add(new Histogram(family, module, key, labels(family, module, key)), Type.HISTOGRAM, help);
+    }
+
+    /** Wall time of one scheduled task or event listener. */
+    public Histogram timer(String module, String task) {
+        return histogram("paranoia_task_seconds", "Time spent per run of a scheduled task or event listener.", module, task);
+    }
+
+    /** Count of one kind of action a module took (spawns, placements, lookups...). */
+    public Counter events(String module, String name) {
+        return counter(EVENTS, EVENTS_HELP, module, name);
+    }
+
+    public Counter events(String module, String name, LongSupplier fn) {
+        return counter(EVENTS, EVENTS_HELP, module, name, fn);
+    }
+
+    /** As {@link #events(String, String, LongSupplier)} over a main-thread field. */
+    public Counter sampledEvents(String module, String name, LongSupplier fn) {
+        return sampledCounter(EVENTS, EVENTS_HELP, module, name, fn);
+    }
+
+    /** Publish every sampled metric; main thread, once per tick. A failing supplier keeps its last value. */
+    public void sample() {
+        for (Metric m : sampled) {
+            try {
+                if (m instanceof Counter) ((Counter) m).last = ((Counter) m).fn.getAsLong();
+                else ((Gauge) m).last = ((Gauge) m).fn.getAsDouble();
+            } catch (RuntimeException ignored) {
+                // stale for one tick is fine; the next sample retries
+            }
+        }
+    }
+
+    private <M extends Metric> M sampled(M m) {
+        sampled.add(m);
+        return m;
+    }
+
+    private synchronized <M extends Metric> M add(M m, Type type, String help) {
+        String[] f = families.get(m.family);
+        if (f == null) families.put(m.family, new String[]{type.name().toLowerCase(Locale.ROOT), help});
+        else if (!f[0].equalsIgnoreCase(type.name())) throw new IllegalArgumentException(m.family + " is a " + f[0]);
+        for (Metric o : metrics) {
+            if (o.family.equals(m.family) && o.labels.equals(m.labels)) throw new IllegalArgumentException("duplicate metric " + m.family + m.labels);
+        }
+        metrics.add(m);
+        return m;
+    }
+
+    // the key goes into a label named after what the family counts: task for timers, name otherwise
+    private static String labels(String family, String module, String key) {
+        String k = family.equals("paranoia_task_seconds") ? "task" : "name";
+        return "{module=\"" + module + "\"," + k + "=\"" + key + "\"}";
+    }
+
+    /** One line per metric, optionally only one module's: counters and gauges as values, timers as count/avg/p99. */
+    public List<String> lines(String module) {
+        List<String> out = new ArrayList<>();
+        for (Metric m : metrics) {
+            if (module != null && !module.equalsIgnoreCase(m.module)) continue;
+            StringBuilder sb = new StringBuilder(m.module).append(' ').append(m.key).append(": ");
+            if (m instanceof Counter) {
+                sb.append(((Counter) m).get());
+            } else if (m instanceof Gauge) {
+                sb.append(format(((Gauge) m).get()));
+            } else {
+                Histogram h = (Histogram) m;
+                long n = h.count();
+                sb.append("n=").append(n);
+                if (n > 0) {
+                    long p99 = h.quantile(0.99);
+                    sb.append(String.format(" avg=%.1fus p99<=%s", h.sum.sum() / 1e3 / n,
+                            p99 == Long.MAX_VALUE ? ">100ms" : format(p99 / 1e3) + "us"));
+                }
+            }
+            out.add(sb.toString());
+        }
+        return out;
+    }
+
+    /** Prometheus text exposition (version 0.0.4); histograms in seconds. */
+    public String prometheus() {
+        StringBuilder sb = new StringBuilder(4096);
+        Map<String, String[]> fams;
+        synchronized (this) {
+            fams = new LinkedHashMap<>(families);
+        }
+        for (Map.Entry<String, String[]> f : fams.entrySet()) {
+            String name = f.getKey();
+            sb.append("# HELP ").append(name).append(' ').append(f.getValue()[1]).append('\n');
+            sb.append("# TYPE ").append(name).append(' ').append(f.getValue()[0]).append('\n');
+            for (Metric m : metrics) {
+                if (!m.family.equals(name)) continue;
+                if (m instanceof Counter) {
+                    sb.append(name).append(m.labels).append(' ').append(((Counter) m).get()).append('\n');
+                } else if (m instanceof Gauge) {
+                    sb.append(name).append(m.labels).append(' ').append(format(((Gauge) m).get())).append('\n');
+                } else {
+                    Histogram h = (Histogram) m;
+                    String inner = m.labels.substring(1, m.labels.length() - 1);
+                    long cum = 0;
+                    for (int i = 0; i < h.buckets.length; i++) {
+                        cum += h.buckets[i].sum();
+                        String le = i < BOUNDS.length ? format(BOUNDS[i] / 1e9) : "+Inf";
+                        sb.append(name).append("_bucket{").append(inner).append(",le=\"").append(le).append("\"} ").append(cum).append('\n');
+                    }
+                    sb.append(name).append("_sum").append(m.labels).append(' ').append(format(h.sum.sum() / 1e9)).append('\n');
+                    sb.append(name).append("_count").append(m.labels).append(' ').append(cum).append('\n');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String format(double v) {
+        if (v == Math.rint(v) && Math.abs(v) < 1e15) return Long.toString((long) v);
+        return Double.toString(v);
+    }
+}
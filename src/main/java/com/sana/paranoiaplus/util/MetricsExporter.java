@@ -0,0 +1,90 @@
+package com.sana.paranoiaplus.util;
+
+import com.sun.net.httpserver.HttpServer;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MetricsExporter - publishes {@link Metrics} as Prometheus text, either rewritten to a file every
+ * metrics.interval-seconds (for node_exporter's textfile collector) or served at /metrics on the loopback
+ * interface only; it never listens on a public address. Rendering runs on its own daemon thread.
+ */
+public final class MetricsExporter {
+    private final JavaPlugin plugin;
+    private final Metrics metrics;
+    private ScheduledExecutorService worker;
+    private HttpServer http;
+
+    public MetricsExporter(JavaPlugin plugin, Metrics metrics) {
+        this.plugin = plugin;
+        this.metrics = metrics;
+    }
+
+    public void onEnable(ConfigSnapshot.Global cfg) {
+        String mode = cfg.metricsExport;
+        if (mode.equals("none")) return;
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ParanoiaPlus-Metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        if (mode.equals("http")) {
+            try {
+                http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), cfg.metricsPort), 4);
+                http.createContext("/metrics", ex -> {
+                    byte[] body;
+                    int code = 200;
+                    try {
+                        body = metrics.prometheus().getBytes(StandardCharsets.UTF_8);
+                    } catch (RuntimeException e) {
+                        code = 500;
+                        body = ("# render failed: " + e + "\n").getBytes(StandardCharsets.UTF_8);
+                    }
+                    ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                    ex.sendResponseHeaders(code, body.length);
+                    try (OutputStream out = ex.getResponseBody()) {
+                        out.write(body);
+                    }
+                });
+                http.setExecutor(worker);
+                http.start();
+                plugin.getLogger().info("Metrics served on http://127.0.0.1:" + cfg.metricsPort + "/metrics");
+            } catch (IOException ex) {
+                plugin.getLogger().warning("Metrics endpoint not started: " + ex.getMessage());
+            }
+        } else if (mode.equals("file")) {
+            File f = new File(plugin.getDataFolder(), cfg.metricsFile);
+            long every = cfg.metricsIntervalSeconds;
+            worker.scheduleWithFixedDelay(() -> write(f.toPath()), every, every, TimeUnit.SECONDS);
+        } else {
+            plugin.getLogger().warning("Unknown metrics.export '" + mode + "' (none, file, http)");
+        }
+    }
+
+    public void onDisable() {
+        if (http != null) http.stop(0);
+        if (worker != null) worker.shutdownNow();
+    }
+
+    // replace atomically so a collector never reads half a file; nothing may escape, or the schedule stops for good
+    private void write(Path file) {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            Files.write(tmp, metrics.prometheus().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException ex) {
+            plugin.getLogger().warning("Failed to write metrics file: " + ex);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.sana.paranoiaplus.util;
+
+import org.bukkit.World;
+import org.bukkit.entity.LivingEntity;
+
+import java.util.*;
+
+/**
+ * MobRegistry - controlled mobs in dense per-world arrays with O(1) add, swap-remove, count and cap checks.
+ * Controllers walk it with {@link #visit}, which resumes where the previous call stopped and gives up once
+ * its time budget is spent, so the per-tick cost stays flat however many mobs are registered; a mob is
+ * simply updated every few ticks instead.
+ *
+ * Main thread only.
+ */
+public final class MobRegistry {
+    /** Per-mob controller step; return false to drop the mob from the registry (e.g. it is no longer valid). */
+    public interface Visitor {
+        boolean visit(LivingEntity mob);
+    }
+
+    private static final class Slots {
+        final UUID world;
+        LivingEntity[] mobs = new LivingEntity[16];
+        int count;
+
+        Slots(UUID world) { this.world = world; }
+    }
+
+    private final Map<UUID, Slots> byWorld = new HashMap<>();
+    private final List<Slots> worlds = new ArrayList<>();
+    private final Map<UUID, Integer> slotOf = new HashMap<>(); // mob -> index inside its world's array
+    private final Map<UUID, Slots> worldOf = new HashMap<>();
+    private int cursorWorld, cursorSlot;
+
+    private long visited, slices, exhausted, rejected;
+
+    public int size() { return slotOf.size(); }
+
+    public int count(World w) {
+        Slots s = byWorld.get(w.getUID());
+        return s == null ? 0 : s.count;
+    }
+
+    public boolean contains(UUID mob) { return slotOf.containsKey(mob); }
+
+    /** Add a mob unless its world already holds cap mobs. Returns true if it is (now) registered. */
+    public boolean add(LivingEntity mob, int cap) {
+        UUID id = mob.getUniqueId();
+        if (slotOf.containsKey(id)) return true;
+        UUID wid = mob.getWorld().getUID();
+        Slots s = byWorld.get(wid);
+        if (s == null) {
+            s = new Slots(wid);
+            byWorld.put(wid, s);
+            worlds.add(s);
+        }
+        if (s.count >= cap) {
+            rejected++;
+            return false;
+        }
+        if (s.count == s.mobs.length) s.mobs = Arrays.copyOf(s.mobs, s.count * 2);
+        slotOf.put(id, s.count);
+        worldOf.put(id, s);
+        s.mobs[s.count++] = mob;
+        return true;
+    }
+
+    public LivingEntity get(UUID mob) {
+        Integer i = slotOf.get(mob);
+        return i == null ? null : worldOf.get(mob).mobs[i];
+    }
+
+    public boolean remove(UUID mob) {
+        Integer i = slotOf.remove(mob);
+        if (i == null) return false;
+        removeAt(worldOf.remove(mob), i);
+        return true;
+    }
+
+    /** Drop every mob of an unloaded world. */
+    public void removeWorld(UUID world) {
+        Slots s = byWorld.remove(world);
+        if (s == null) return;
+        for (int i = 0; i < s.count; i++) {
+            UUID id = s.mobs[i].getUniqueId();
+            slotOf.remove(id);
+            worldOf.remove(id);
+        }
+        int wi = worlds.indexOf(s);
+        worlds.remove(wi);
+        if (cursorWorld > wi) cursorWorld--;
+        else if (cursorWorld == wi) cursorSlot = 0;
+    }
+
+    /**
+     * Visit mobs round-robin from where the last call stopped, until every mob was visited once or
+     * budgetNanos ran out. Returns the number visited.
+     */
+    public int visit(long budgetNanos, Visitor v) {
+        int total = size();
+        if (total == 0) return 0;
+        slices++;
+        long start = System.nanoTime();
+        int n = 0;
+        while (n < total) {
+            if (cursorWorld >= worlds.size()) { cursorWorld = 0; cursorSlot = 0; }
+            Slots s = worlds.get(cursorWorld);
+            if (cursorSlot >= s.count) {
+                cursorWorld++;
+                cursorSlot = 0;
+                continue;
+            }
+            LivingEntity mob = s.mobs[cursorSlot];
+            n++;
+            if (v.visit(mob)) {
+                cursorSlot++;
+            } else { // swap-remove pulls the last mob into this slot: visit that one next
+                UUID id = mob.getUniqueId();
+                slotOf.remove(id);
+                worldOf.remove(id);
+                removeAt(s, cursorSlot);
+            }
+            if ((n & 7) == 0 && System.nanoTime() - start > budgetNanos) {
+                if (n < total) exhausted++;
+                break;
+            }
+        }
+        visited += n;
+        return n;
+    }
+
+    public String stats() {
+        StringBuilder sb = new StringBuilder("mobs=").append(size()).append(" worlds=").append(worlds.size());
+        for (Slots s : worlds) sb.append(' ').append(s.world.toString(), 0, 8).append('=').append(s.count);
+        return sb.append(" visited=").append(visited).append(" slices=").append(slices)
+                .append(" overBudget=").append(exhausted).append(" capRejected=").append(rejected).toString();
+    }
+
+    private void removeAt(Slots s, int i) {
+        int last = --s.count;
+        if (i != last) {
+            LivingEntity moved = s.mobs[last];
+            s.mobs[i] = moved;
+            slotOf.put(moved.getUniqueId(), i);
+        }
+        s.mobs[last] = null;
+    }
+}
@@ -1,22 +1,147 @@
 package com.sana.paranoiaplus.util;
 
 import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * NavUtils - skeleton A* pathfinding utilities. Real implementation should be async and optimized.
- * This file provides structure for path requests and a simple node class.
+ * NavUtils - async A* pathfinding. Coordinates are packed into longs, the search itself runs on a
+ * small daemon pool against a {@link BlockSource} (normally a {@link TerrainCache} view) and never
+ * touches the live Bukkit world.
  */
 public final class NavUtils {
     private NavUtils() {}
 
-    public static class Node {
-        public final int x, y, z;
-        public Node(int x, int y, int z) { this.x=x; this.y=y; this.z=z; }
+    /** Per-block terrain flags. Implementations must be safe to call from worker threads. */
+    public interface BlockSource {
+        int UNKNOWN = -1;
+        int SOLID = 1;
+        int PASSABLE = 2;
+        int LIQUID = 4;
+
+        /** Flags for the block at (x, y, z), or {@link #UNKNOWN} if that terrain is not available. */
+        int flags(int x, int y, int z);
+    }
+
+    public enum Status { FOUND, NO_PATH, BUDGET, TIMEOUT, UNKNOWN_TERRAIN }
+
+    /** Search outcome. For BUDGET/TIMEOUT the path leads to the node closest to the goal. */
+    public static final class PathResult {
+        public final Status status;
+        public final long[] nodes;
+        public final int expanded;
+        public final long nanos;
+
+        PathResult(Status status, long[] nodes, int expanded, long nanos) {
+            this.status = status;
+            this.nodes = nodes;
+            this.expanded = expanded;
+            this.nanos = nanos;
+        }
+
+        public boolean isEmpty() { return nodes.length == 0; }
+
+        /** Block-centred locations of the path nodes. */
+        public List<Location> toLocations(World w) {
+            List<Location> out = new ArrayList<>(nodes.length);
+            for (long n : nodes) out.add(new Location(w, unpackX(n) + 0.5, unpackY(n), unpackZ(n) + 0.5));
+            return out;
+        }
+    }
+
+    private static final ThreadLocal<AStar> ENGINE = new ThreadLocal<AStar>() {
+        @Override protected AStar initialValue() { return new AStar(); }
+    };
+    private static volatile ExecutorService pool;
+
+    private static final AtomicLong searches = new AtomicLong();
+    private static final AtomicLong expandedTotal = new AtomicLong();
+    private static final AtomicLong nanosTotal = new AtomicLong();
+    private static final AtomicLong budgetHits = new AtomicLong();
+    private static final AtomicLong timeouts = new AtomicLong();
+
+    // ---- packing: x 26 bits | z 26 bits | y 12 bits (same layout as vanilla BlockPosition) ----
+
+    public static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    public static int unpackX(long p) { return (int) (p >> 38); }
+    public static int unpackY(long p) { return (int) (p << 52 >> 52); }
+    public static int unpackZ(long p) { return (int) (p << 26 >> 38); }
+
+    /** Request a path from start to goal against the given terrain; safe to call from any thread. */
+    public static CompletableFuture<PathResult> findPath(BlockSource src, Location start, Location goal, int maxNodes, long maxMillis) {
+        if (start.getWorld() == null || !start.getWorld().equals(goal.getWorld())) {
+            CompletableFuture<PathResult> f = new CompletableFuture<>();
+            f.complete(new PathResult(Status.NO_PATH, new long[0], 0, 0L));
+            return f;
+        }
+        return findPath(src, start.getBlockX(), start.getBlockY(), start.getBlockZ(),
+                goal.getBlockX(), goal.getBlockY(), goal.getBlockZ(), maxNodes, maxMillis);
+    }
+
+    public static CompletableFuture<PathResult> findPath(BlockSource src, int sx, int sy, int sz, int gx, int gy, int gz,
+                                                         int maxNodes, long maxMillis) {
+        long maxNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, maxMillis));
+        return CompletableFuture.supplyAsync(() -> {
+            PathResult r = ENGINE.get().search(src, sx, sy, sz, gx, gy, gz, maxNodes, maxNanos);
+            record(r);
+            return r;
+        }, pool());
+    }
+
+    private static void record(PathResult r) {
+        searches.incrementAndGet();
+        expandedTotal.addAndGet(r.expanded);
+        nanosTotal.addAndGet(r.nanos);
+        if (r.status == Status.BUDGET) budgetHits.incrementAndGet();
+        else if (r.status == Status.TIMEOUT) timeouts.incrementAndGet();
+    }
+
+    public static String stats() {
+        long n = searches.get();
+        return "searches=" + n
+                + " avgNodes=" + (n == 0 ? 0 : expandedTotal.get() / n)
+                + " avgUs=" + (n == 0 ? 0 : nanosTotal.get() / n / 1000L)
+                + " budgetHits=" + budgetHits.get()
+                + " timeouts=" + timeouts.get();
+    }
+
+    private static ExecutorService pool() {
+        ExecutorService p = pool;
+        if (p == null) {
+            synchronized (NavUtils.class) {
+                p = pool;
+                if (p == null) {
+                    int threads = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 2));
+                    AtomicInteger n = new AtomicInteger();
+                    p = Executors.newFixedThreadPool(threads, r -> {
+                        Thread t = new Thread(r, "ParanoiaPlus-Nav-" + n.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    pool = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    public static void shutdown() {
+        synchronized (NavUtils.class) {
+            if (pool != null) pool.shutdownNow();
+            pool = null;
+        }
     }
 
-    public static List<Location> findPath(Location start, Location goal, int maxNodes) {
-        // Placeholder: real A* implementation required. Return empty list for now.
-        return Collections.emptyList();
+    public static int flagsOf(Material m) {
+        if (m == Material.WATER || m == Material.LAVA) return BlockSource.LIQUID | BlockSource.PASSABLE;
+        return m.isSolid() ? BlockSource.SOLID : BlockSource.PASSABLE;
     }
 }
@@ -0,0 +1,159 @@
+package com.sana.paranoiaplus.util;
+
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+
+import com.comphenix.protocol.ProtocolManager;
+import com.comphenix.protocol.events.PacketContainer;
+
+/**
+ * PacketQueue - per-viewer outbound packet queues flushed once per tick under a global packet budget.
+ * Each viewer's packets go out as one contiguous burst in the order they were queued; viewers that did not
+ * fit into this tick's budget are served first on the next tick, so a mass event is spread over several
+ * ticks instead of flooding Netty in one. Packets are sent without ProtocolLib's listener pass (they are
+ * ours, nobody needs to rewrite them).
+ *
+ * Main thread only.
+ */
+public final class PacketQueue {
+    private final JavaPlugin plugin;
+    private final ProtocolManager protocol;
+    private final Map<UUID, Viewer> viewers = new HashMap<>();
+    private final ArrayDeque<Viewer> pending = new ArrayDeque<>();
+    private BukkitTask task;
+    private int budget = 256;
+    private int maxQueue = 64;
+
+    private long sent, dropped, failed, deferredTicks, maxBurst;
+
+    private static final class Viewer {
+        final Player player;
+        final ArrayDeque<PacketContainer> queue = new ArrayDeque<>();
+        boolean scheduled;
+
+        Viewer(Player player) { this.player = player; }
+    }
+
+    public PacketQueue(JavaPlugin plugin, ProtocolManager protocol) {
+        this.plugin = plugin;
+        this.protocol = protocol;
+    }
+
+    public void onEnable(ConfigSnapshot.Global cfg) {
+        configure(cfg);
+        task = new BukkitRunnable() {
+            @Override
+            public void run() { flush(); }
+        }.runTaskTimer(plugin, 1L, 1L);
+    }
+
+    public void onDisable() {
+        if (task != null) task.cancel();
+        flushAll();
+    }
+
+    public void configure(ConfigSnapshot.Global cfg) {
+        budget = Math.max(1, cfg.packetBudgetPerTick);
+        maxQueue = Math.max(1, cfg.packetMaxQueuePerViewer);
+    }
+
+    /**
+     * Queue a group of packets for one viewer. The group is dropped as a whole (returns false) if the viewer's
+     * queue would exceed its cap; callers should treat that like a failed spawn.
+     */
+    public boolean offer(Player viewer, PacketContainer... group) {
+        Viewer v = viewer(viewer);
+        if (v.queue.size() + group.length > maxQueue) {
+            dropped += group.length;
+            return false;
+        }
+        for (PacketContainer c : group) v.queue.add(c);
+        schedule(v);
+        return true;
+    }
+
+    /** Queue a packet that must not be dropped (cleanup such as ENTITY_DESTROY); ignores the per-viewer cap. */
+    public void push(Player viewer, PacketContainer packet) {
+        Viewer v = viewer(viewer);
+        v.queue.add(packet);
+        schedule(v);
+    }
+
+    public int queued() {
+        int n = 0;
+        for (Viewer v : pending) n += v.queue.size();
+        return n;
+    }
+
+    public long sent() { return sent; }
+    public long dropped() { return dropped; }
+    public long failed() { return failed; }
+
+    public String stats() {
+        return "sent=" + sent + " queued=" + queued() + " viewers=" + pending.size() + " dropped=" + dropped
+                + " failed=" + failed + " deferredTicks=" + deferredTicks + " maxBurst=" + maxBurst + " budget=" + budget;
+    }
+
+    private Viewer viewer(Player p) {
+        Viewer v = viewers.get(p.getUniqueId());
+        return v == null || v.player != p ? new Viewer(p) : v; // rejoined: the old Player object is dead
+    }
+
+    private void schedule(Viewer v) {
+        if (v.scheduled) return;
+        v.scheduled = true;
+        viewers.put(v.player.getUniqueId(), v);
+        pending.add(v);
+    }
+
+    private void flush() {
+        int left = budget, burst = 0;
+        int n = pending.size();
+        for (int i = 0; i < n && left > 0; i++) {
+            Viewer v = pending.poll();
+            if (!v.player.isOnline()) {
+                retire(v);
+                continue;
+            }
+            while (left > 0 && !v.queue.isEmpty()) {
+                send(v.player, v.queue.poll());
+                left--;
+                burst++;
+            }
+            if (v.queue.isEmpty()) retire(v);
+            else pending.addFirst(v); // budget ran out mid-viewer: finish it first next tick
+        }
+        if (!pending.isEmpty()) deferredTicks++;
+        if (burst > maxBurst) maxBurst = burst;
+    }
+
+    private void flushAll() {
+        Viewer v;
+        while ((v = pending.poll()) != null) {
+            if (v.player.isOnline()) {
+                while (!v.queue.isEmpty()) send(v.player, v.queue.poll());
+            }
+            retire(v);
+        }
+    }
+
+    private void retire(Viewer v) {
+        v.scheduled = false;
+        v.queue.clear();
+        if (viewers.get(v.player.getUniqueId()) == v) viewers.remove(v.player.getUniqueId());
+    }
+
+    private void send(Player p, PacketContainer c) {
+        try {
+            protocol.sendServerPacket(p, c, false);
+            sent++;
+        } catch (Exception ex) {
+            failed++;
+            plugin.getLogger().warning("ProtocolLib send error: " + ex.getMessage());
+        }
+    }
+}
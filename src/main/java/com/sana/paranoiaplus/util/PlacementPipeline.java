@@ -0,0 +1,223 @@
+package com.sana.paranoiaplus.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+import org.bukkit.event.block.BlockPlaceEvent;
+
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * PlacementPipeline - real block placement for whole blueprints, metered so a build never spikes a tick.
+ * A submitted blueprint becomes a job whose blocks are ordered by chunk, then bottom-up. Each tick the
+ * pipeline places blocks while a global token bucket (real-place-rate blocks per second, one second of
+ * burst) has tokens and the tick's time budget lasts; jobs take turns one chunk group at a time. Blocks that
+ * already have the target material cost no token, solid blocks are never replaced, and a chunk that is not
+ * loaded is skipped rather than loaded. Each finished chunk group requests one terrain-cache recapture.
+ *
+ * With an actor, every block still fires a cancellable BlockPlaceEvent so protection plugins apply.
+ * Main thread only.
+ */
+public final class PlacementPipeline {
+    /** Extra per-block veto (e.g. learned material policy); called before any event is fired. */
+    public interface Filter {
+        boolean allow(Player actor, Block b, Material m);
+    }
+
+    /** Called once when a job finishes or is cancelled. */
+    public interface Done {
+        void done(String owner, int placed, boolean complete);
+    }
+
+    private static final class Job {
+        final String owner, blueprint;
+        final World world;
+        final int[] x, y, z;
+        final Material[] type;
+        final int[] groupEnd; // exclusive end index of each chunk group, in placement order
+        final Player actor;
+        final Filter filter;
+        final Done done;
+        int next, group;
+        int placed, skipped;
+
+        Job(String owner, String blueprint, World world, int n, int groups, Player actor, Filter filter, Done done) {
+            this.owner = owner;
+            this.blueprint = blueprint;
+            this.world = world;
+            this.x = new int[n];
+            this.y = new int[n];
+            this.z = new int[n];
+            this.type = new Material[n];
+            this.groupEnd = new int[groups];
+            this.actor = actor;
+            this.filter = filter;
+            this.done = done;
+        }
+    }
+
+    private final TerrainCache terrain;
+    private final Logger log;
+    private final ArrayDeque<Job> jobs = new ArrayDeque<>();
+    private final Map<String, Job> byOwner = new HashMap<>();
+    private double tokens;
+    private boolean primed;
+
+    private long submitted, completed, cancelled, placed, noop, obstructed, denied, unloaded, budgetTicks, throttledTicks;
+    private long windowStart, windowPlaced;
+    private double placedPerSecond;
+
+    public PlacementPipeline(TerrainCache terrain, Logger log) {
+        this.terrain = terrain;
+        this.log = log;
+    }
+
+    /**
+     * Queue a blueprint with its minimum corner at (ox, oy, oz). One job per owner: returns false while the
+     * owner still has one queued.
+     */
+    public boolean submit(String owner, World w, int ox, int oy, int oz, Blueprint bp, Player actor, Filter filter, Done done) {
+        if (byOwner.containsKey(owner) || bp.size == 0 || bp.size > 0xFFFF) return false;
+        int n = bp.size;
+        // order by chunk, then bottom-up so floors go in before the walls standing on them
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            int bx = ox + bp.dx[i], by = oy + bp.dy[i], bz = oz + bp.dz[i];
+            long chunk = chunkOrder(bx >> 4, bz >> 4);
+            keys[i] = chunk << 44 | (long) (by & 0xFFF) << 32 | (long) ((bx & 15) << 4 | (bz & 15)) << 16 | i;
+        }
+        Arrays.sort(keys);
+        int groups = 1;
+        for (int k = 1; k < n; k++) if (keys[k] >>> 44 != keys[k - 1] >>> 44) groups++;
+        Job j = new Job(owner, bp.name, w, n, groups, actor, filter, done);
+        int g = 0;
+        for (int k = 0; k < n; k++) {
+            int i = (int) (keys[k] & 0xFFFF);
+            j.x[k] = ox + bp.dx[i];
+            j.y[k] = oy + bp.dy[i];
+            j.z[k] = oz + bp.dz[i];
+            j.type[k] = bp.type[i];
+            if (k > 0 && keys[k] >>> 44 != keys[k - 1] >>> 44) j.groupEnd[g++] = k;
+        }
+        j.groupEnd[g] = n;
+        jobs.add(j);
+        byOwner.put(owner, j);
+        submitted++;
+        return true;
+    }
+
+    // chunk coordinates folded into 20 bits; only needs to keep the chunks of one blueprint apart and ordered
+    private static long chunkOrder(int cx, int cz) {
+        return (long) (cx & 0x3FF) << 10 | (cz & 0x3FF);
+    }
+
+    /** Drop an owner's queued job; blocks already placed stay. */
+    public boolean cancel(String owner) {
+        Job j = byOwner.remove(owner);
+        if (j == null) return false;
+        jobs.remove(j);
+        cancelled++;
+        if (j.done != null) j.done.done(owner, j.placed, false);
+        return true;
+    }
+
+    public boolean has(String owner) { return byOwner.containsKey(owner); }
+
+    public boolean isEmpty() { return jobs.isEmpty(); }
+
+    /** Blocks still queued over all jobs. */
+    public int depth() {
+        int d = 0;
+        for (Job j : jobs) d += j.x.length - j.next;
+        return d;
+    }
+
+    /** Place what fits into this tick's budget (main thread, once per tick). */
+    public void tick(ConfigSnapshot.Fake cfg, long budgetNanos) {
+        double rate = Math.max(1, cfg.realPlaceRate);
+        tokens = primed ? Math.min(rate, tokens + rate / 20.0) : rate;
+        primed = true;
+        long now = System.nanoTime();
+        if (now - windowStart >= 1_000_000_000L) {
+            placedPerSecond = windowStart == 0 ? 0 : windowPlaced * 1e9 / (now - windowStart);
+            windowStart = now;
+            windowPlaced = 0;
+        }
+        if (jobs.isEmpty()) return;
+        if (tokens < 1.0) {
+            throttledTicks++;
+            return;
+        }
+        long deadline = now + budgetNanos;
+        boolean physics = cfg.applyPhysics;
+        while (!jobs.isEmpty()) {
+            if (tokens < 1.0) {
+                throttledTicks++;
+                break;
+            }
+            if (System.nanoTime() > deadline) {
+                budgetTicks++;
+                break;
+            }
+            Job j = jobs.peekFirst();
+            placeOne(j, physics);
+            if (j.next < j.groupEnd[j.group]) continue;
+            // chunk group finished: refresh its terrain and let the next job have a turn
+            terrain.request(j.world, j.x[j.next - 1] >> 4, j.z[j.next - 1] >> 4);
+            jobs.pollFirst();
+            if (++j.group < j.groupEnd.length) {
+                jobs.addLast(j);
+            } else {
+                finish(j);
+            }
+        }
+    }
+
+    private void placeOne(Job j, boolean physics) {
+        int k = j.next;
+        if (k == (j.group == 0 ? 0 : j.groupEnd[j.group - 1]) && !j.world.isChunkLoaded(j.x[k] >> 4, j.z[k] >> 4)) {
+            unloaded += j.groupEnd[j.group] - k;
+            j.skipped += j.groupEnd[j.group] - k;
+            j.next = j.groupEnd[j.group];
+            return;
+        }
+        j.next++;
+        Material m = j.type[k];
+        Block b = j.world.getBlockAt(j.x[k], j.y[k], j.z[k]);
+        Material cur = b.getType();
+        if (cur == m) { noop++; j.skipped++; return; }
+        if (cur.isSolid()) { obstructed++; j.skipped++; return; }
+        Player actor = j.actor != null && j.actor.isOnline() ? j.actor : null;
+        if (j.filter != null && !j.filter.allow(actor, b, m)) { denied++; j.skipped++; return; }
+        if (actor != null) {
+            BlockPlaceEvent ev = new BlockPlaceEvent(b, b.getState(), b, actor.getInventory().getItemInMainHand(), actor, true);
+            Bukkit.getPluginManager().callEvent(ev);
+            if (ev.isCancelled()) { denied++; j.skipped++; return; }
+        }
+        b.setType(m, physics);
+        tokens -= 1.0;
+        placed++;
+        windowPlaced++;
+        j.placed++;
+    }
+
+    private void finish(Job j) {
+        byOwner.remove(j.owner);
+        completed++;
+        log.info("Bot " + j.owner + " built " + j.blueprint + ": placed=" + j.placed + " skipped=" + j.skipped);
+        if (j.done != null) j.done.done(j.owner, j.placed, true);
+    }
+
+    public long placed() { return placed; }
+
+    public String stats() {
+        return "jobs=" + jobs.size() + " depth=" + depth() + " tokens=" + (int) tokens
+                + " placedPerSec=" + String.format("%.1f", placedPerSecond) + " placed=" + placed
+                + " noop=" + noop + " obstructed=" + obstructed + " denied=" + denied + " unloaded=" + unloaded
+                + " submitted=" + submitted + " completed=" + completed + " cancelled=" + cancelled
+                + " budgetTicks=" + budgetTicks + " throttledTicks=" + throttledTicks;
+    }
+}
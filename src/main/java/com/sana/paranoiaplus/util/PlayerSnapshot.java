@@ -0,0 +1,287 @@
+package com.sana.paranoiaplus.util;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.*;
+
+/**
+ * PlayerSnapshot - immutable per-tick capture of every online player in struct-of-arrays form,
+ * indexed by a uniform spatial hash grid over (world, x, z). Captured once on the main thread;
+ * queries are read-only and safe from any thread.
+ */
+public final class PlayerSnapshot {
+    public static final PlayerSnapshot EMPTY = new PlayerSnapshot(0, 0L, 16);
+    public static final byte SNEAKING = 1, SPRINTING = 2;
+
+    public final int count;
+    public final long tick;
+    public final UUID[] ids;
+    public final double[] x, y, z, eyeY;
+    public final float[] yaw, pitch;
+    public final float[] dirX, dirY, dirZ;
+    public final int[] world;
+    public final byte[] gameMode;
+    public final byte[] light;
+    public final byte[] state; // SNEAKING | SPRINTING
+    private final List<UUID> worldIds = new ArrayList<>(4);
+    private final int[] byId; // player indices sorted by UUID, for indexOf
+
+    // grid: players sorted by cell; open-addressing table cellKey -> [start, start + size)
+    private final int cellShift;
+    private final int[] order;
+    private long[] cellKeys;
+    private int[] cellStart, cellSize;
+    private int cellMask;
+
+    private PlayerSnapshot(int n, long tick, int cellSize) {
+        this.count = n;
+        this.tick = tick;
+        this.ids = new UUID[n];
+        this.x = new double[n];
+        this.y = new double[n];
+        this.z = new double[n];
+        this.eyeY = new double[n];
+        this.yaw = new float[n];
+        this.pitch = new float[n];
+        this.dirX = new float[n];
+        this.dirY = new float[n];
+        this.dirZ = new float[n];
+        this.world = new int[n];
+        this.gameMode = new byte[n];
+        this.light = new byte[n];
+        this.state = new byte[n];
+        this.byId = new int[n];
+        this.cellShift = 31 - Integer.numberOfLeadingZeros(Math.max(1, cellSize));
+        this.order = new int[n];
+    }
+
+    /**
+     * Capture all players (main thread only). cellSize is rounded down to a power of two.
+     * Light comes from the terrain cache; a block that is not cached yet counts as fully lit.
+     */
+    public static PlayerSnapshot capture(Collection<? extends Player> players, TerrainCache terrain, long tick, int cellSize) {
+        PlayerSnapshot s = new PlayerSnapshot(players.size(), tick, cellSize);
+        int i = 0;
+        for (Player p : players) {
+            if (i >= s.count) break;
+            Location l = p.getLocation();
+            s.ids[i] = p.getUniqueId();
+            s.x[i] = l.getX();
+            s.y[i] = l.getY();
+            s.z[i] = l.getZ();
+            s.eyeY[i] = l.getY() + p.getEyeHeight();
+            s.look(i, l.getYaw(), l.getPitch());
+            World w = l.getWorld();
+            s.world[i] = s.worldIndex(w.getUID(), true);
+            s.gameMode[i] = (byte) p.getGameMode().ordinal();
+            int light = terrain.light(w, l.getBlockX(), l.getBlockY(), l.getBlockZ());
+            s.light[i] = (byte) (light == TerrainCache.UNKNOWN ? 15 : light);
+            s.state[i] = (byte) ((p.isSneaking() ? SNEAKING : 0) | (p.isSprinting() ? SPRINTING : 0));
+            i++;
+        }
+        s.buildIndex();
+        s.buildGrid();
+        return s;
+    }
+
+    /**
+     * Build a snapshot from plain columns instead of live players (the load harness; no server needed).
+     * Eye height is the standing 1.62; arrays are indexed by player and copied.
+     */
+    public static PlayerSnapshot of(UUID[] ids, UUID[] worlds, double[] x, double[] y, double[] z, float[] yaw, float[] pitch,
+                                    byte[] gameMode, byte[] light, long tick, int cellSize) {
+        PlayerSnapshot s = new PlayerSnapshot(ids.length, tick, cellSize);
+        for (int i = 0; i < s.count; i++) {
+            s.ids[i] = ids[i];
+            s.x[i] = x[i];
+            s.y[i] = y[i];
+            s.z[i] = z[i];
+            s.eyeY[i] = y[i] + 1.62;
+            s.look(i, yaw[i], pitch[i]);
+            s.world[i] = s.worldIndex(worlds[i], true);
+            s.gameMode[i] = gameMode[i];
+            s.light[i] = light[i];
+        }
+        s.buildIndex();
+        s.buildGrid();
+        return s;
+    }
+
+    private void look(int i, float yaw, float pitch) {
+        this.yaw[i] = yaw;
+        this.pitch[i] = pitch;
+        double ry = Math.toRadians(yaw), rp = Math.toRadians(pitch);
+        double xz = Math.cos(rp);
+        dirX[i] = (float) (-xz * Math.sin(ry));
+        dirY[i] = (float) -Math.sin(rp);
+        dirZ[i] = (float) (xz * Math.cos(ry));
+    }
+
+    // ---- lookups ----
+
+    /** Snapshot index of a player, or -1 if they were not online at capture time. */
+    public int indexOf(UUID id) {
+        int lo = 0, hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = ids[byId[mid]].compareTo(id);
+            if (c < 0) lo = mid + 1;
+            else if (c > 0) hi = mid - 1;
+            else return byId[mid];
+        }
+        return -1;
+    }
+
+    /** Index of a world inside this snapshot, or -1 if no captured player is in it. */
+    public int worldIndex(World w) {
+        return worldIndex(w.getUID(), false);
+    }
+
+    /** Same, by world UID. */
+    public int worldIndex(UUID world) {
+        return worldIndex(world, false);
+    }
+
+    /** World UID for a world index of this snapshot. */
+    public UUID worldId(int index) {
+        return worldIds.get(index);
+    }
+
+    private int worldIndex(UUID id, boolean add) {
+        int i = worldIds.indexOf(id);
+        if (i < 0 && add) { worldIds.add(id); i = worldIds.size() - 1; }
+        return i;
+    }
+
+    public double distanceSquared(int i, double px, double py, double pz) {
+        double dx = x[i] - px, dy = y[i] - py, dz = z[i] - pz;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Collect indices of players in world w within radius of (px, py, pz) into out.
+     * Returns the number of matches, which may exceed out.length (extra matches are not stored).
+     */
+    public int near(int w, double px, double py, double pz, double radius, int[] out) {
+        if (w < 0 || count == 0) return 0;
+        double r2 = radius * radius;
+        int found = 0;
+        int c0x = floorCell(px - radius), c1x = floorCell(px + radius);
+        int c0z = floorCell(pz - radius), c1z = floorCell(pz + radius);
+        for (int cx = c0x; cx <= c1x; cx++) {
+            for (int cz = c0z; cz <= c1z; cz++) {
+                int slot = findCell(cellKey(w, cx, cz));
+                if (slot < 0) continue;
+                int end = cellStart[slot] + cellSize[slot];
+                for (int k = cellStart[slot]; k < end; k++) {
+                    int j = order[k];
+                    if (distanceSquared(j, px, py, pz) <= r2) {
+                        if (found < out.length) out[found] = j;
+                        found++;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /** True if any other player in the same world is within radius of player i. */
+    public boolean anyOtherWithin(int i, double radius) {
+        double r2 = radius * radius;
+        int w = world[i];
+        int c0x = floorCell(x[i] - radius), c1x = floorCell(x[i] + radius);
+        int c0z = floorCell(z[i] - radius), c1z = floorCell(z[i] + radius);
+        for (int cx = c0x; cx <= c1x; cx++) {
+            for (int cz = c0z; cz <= c1z; cz++) {
+                int slot = findCell(cellKey(w, cx, cz));
+                if (slot < 0) continue;
+                int end = cellStart[slot] + cellSize[slot];
+                for (int k = cellStart[slot]; k < end; k++) {
+                    int j = order[k];
+                    if (j != i && distanceSquared(j, x[i], y[i], z[i]) < r2) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // ---- id index ----
+
+    private void buildIndex() {
+        for (int i = 0; i < count; i++) byId[i] = i;
+        if (count > 1) sortById(byId, new int[count], 0, count);
+    }
+
+    // merge sort of player indices by UUID; no boxing
+    private void sortById(int[] a, int[] tmp, int from, int to) {
+        if (to - from < 2) return;
+        int mid = (from + to) >>> 1;
+        sortById(a, tmp, from, mid);
+        sortById(a, tmp, mid, to);
+        if (ids[a[mid - 1]].compareTo(ids[a[mid]]) <= 0) return;
+        System.arraycopy(a, from, tmp, from, to - from);
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to) a[k++] = ids[tmp[i]].compareTo(ids[tmp[j]]) <= 0 ? tmp[i++] : tmp[j++];
+        while (i < mid) a[k++] = tmp[i++];
+        while (j < to) a[k++] = tmp[j++];
+    }
+
+    // ---- grid ----
+
+    private int floorCell(double v) {
+        return ((int) Math.floor(v)) >> cellShift;
+    }
+
+    private static long cellKey(int w, int cx, int cz) {
+        return ((long) w << 48) ^ ((long) (cx & 0xFFFFFF) << 24) ^ (cz & 0xFFFFFF);
+    }
+
+    private void buildGrid() {
+        int cap = Integer.highestOneBit(Math.max(16, count * 2) - 1) << 1;
+        cellKeys = new long[cap];
+        cellStart = new int[cap];
+        cellSize = new int[cap];
+        cellMask = cap - 1;
+        boolean[] used = new boolean[cap];
+        int[] slotOf = new int[count];
+        for (int i = 0; i < count; i++) {
+            long k = cellKey(world[i], floorCell(x[i]), floorCell(z[i]));
+            int s = mix(k) & cellMask;
+            while (used[s] && cellKeys[s] != k) s = (s + 1) & cellMask;
+            used[s] = true;
+            cellKeys[s] = k;
+            cellSize[s]++;
+            slotOf[i] = s;
+        }
+        int acc = 0;
+        for (int s = 0; s < cap; s++) {
+            if (!used[s]) { cellSize[s] = -1; continue; }
+            cellStart[s] = acc;
+            acc += cellSize[s];
+        }
+        int[] fill = new int[cap];
+        for (int i = 0; i < count; i++) {
+            int s = slotOf[i];
+            order[cellStart[s] + fill[s]++] = i;
+        }
+    }
+
+    private int findCell(long k) {
+        if (cellKeys == null) return -1;
+        int s = mix(k) & cellMask;
+        while (cellSize[s] >= 0) {
+            if (cellKeys[s] == k) return s;
+            s = (s + 1) & cellMask;
+        }
+        return -1;
+    }
+
+    private static int mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        return (int) k;
+    }
+}
@@ -0,0 +1,397 @@
+package com.sana.paranoiaplus.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import com.comphenix.protocol.wrappers.WrappedGameProfile;
+import com.comphenix.protocol.wrappers.WrappedSignedProperty;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * ProfileCache - skins (signed "textures" properties) for fake players, by player name or UUID.
+ * Lookups go memory, then the on-disk store ({@code profiles.bin}, read once at startup), then a
+ * {@link Resolver} on one background thread; callers never block: {@link #get} answers from memory only and
+ * {@link #request} completes later. Online players are captured from their own profile on join, for free.
+ * Stale entries are still served while a refresh runs; failed lookups are not retried for a while.
+ *
+ * At startup every stored entry seen within fake.skin-cache.preload-days is loaded in one pass and the stale
+ * ones are queued for refresh; older entries are dropped when the store is next written. Memory holds at most
+ * fake.skin-cache.max profiles (plus a little slack): the least recently seen are evicted together with the
+ * store trim.
+ *
+ * Store: magic, version, count, {msb, lsb, name, texture, signature, fetched, seen}*, crc32.
+ */
+public final class ProfileCache implements Listener {
+    /** A resolved profile; texture and signature are null for players without a custom skin. */
+    public static final class Skin {
+        public final UUID id;
+        public final String name, texture, signature;
+        final long fetched;
+        volatile long seen;
+
+        public Skin(UUID id, String name, String texture, String signature, long fetched) {
+            this.id = id;
+            this.name = name;
+            this.texture = texture;
+            this.signature = signature;
+            this.fetched = fetched;
+            this.seen = fetched;
+        }
+    }
+
+    /** Blocking lookup by name or UUID, run on the cache's thread; null when the player does not exist. */
+    public interface Resolver {
+        Skin resolve(String key) throws IOException;
+    }
+
+    private static final int MAGIC = 0x50505046; // "PPPF"
+    private static final short VERSION = 1;
+    private static final long FAILED_RETRY_MS = 10L * 60_000L;
+    private static final int MAX_STARTUP_REFRESH = 32;
+
+    private final JavaPlugin plugin;
+    private final Resolver resolver;
+    private final Path file, tmp;
+    private final ExecutorService worker;
+    private final Map<String, Skin> byKey = new ConcurrentHashMap<>(); // "u:<uuid>" and "n:<lowercase name>"
+    private final Map<String, CompletableFuture<Skin>> inflight = new ConcurrentHashMap<>();
+    private final Map<String, Long> failedUntil = new ConcurrentHashMap<>();
+    private volatile long ttlMillis, preloadMillis;
+    private volatile int maxEntries;
+    private volatile boolean dirty;
+    private final AtomicBoolean trimQueued = new AtomicBoolean();
+
+    private final AtomicLong hits = new AtomicLong(), staleHits = new AtomicLong(), misses = new AtomicLong();
+    private final AtomicLong resolved = new AtomicLong(), notFound = new AtomicLong(), failed = new AtomicLong();
+    private final AtomicLong resolveNanos = new AtomicLong(), maxResolveNanos = new AtomicLong();
+    private volatile int preloaded;
+
+    public ProfileCache(JavaPlugin plugin, Resolver resolver) {
+        this.plugin = plugin;
+        this.resolver = resolver;
+        this.file = new File(plugin.getDataFolder(), "profiles.bin").toPath();
+        this.tmp = new File(plugin.getDataFolder(), "profiles.bin.tmp").toPath();
+        this.worker = CountStore.newWriter("ParanoiaPlus-Profiles");
+    }
+
+    public void onEnable(ConfigSnapshot.Fake cfg) {
+        configure(cfg);
+        worker.execute(this::preload);
+        for (Player p : Bukkit.getOnlinePlayers()) capture(p);
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+    }
+
+    public void onDisable() {
+        HandlerList.unregisterAll(this);
+        worker.execute(this::save);
+        worker.shutdown();
+        try {
+            worker.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void configure(ConfigSnapshot.Fake cfg) {
+        ttlMillis = cfg.skinTtlMillis;
+        preloadMillis = cfg.skinPreloadMillis;
+        maxEntries = cfg.skinCacheMax;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent e) {
+        capture(e.getPlayer());
+    }
+
+    /** The player's own skin, read from their live profile (main thread); also refreshes the cache. */
+    public Skin capture(Player p) {
+        String texture = null, signature = null;
+        for (WrappedSignedProperty prop : WrappedGameProfile.fromPlayer(p).getProperties().get("textures")) {
+            texture = prop.getValue();
+            signature = prop.getSignature();
+        }
+        Skin s = new Skin(p.getUniqueId(), p.getName(), texture, signature, System.currentTimeMillis());
+        put(s);
+        return s;
+    }
+
+    /** Memory only, never blocks; a miss or stale entry starts a background lookup. */
+    public Skin get(String key) {
+        String k = normalize(key);
+        if (k == null) return null;
+        Skin s = byKey.get(k);
+        long now = System.currentTimeMillis();
+        if (s == null) {
+            misses.incrementAndGet();
+            resolve(k, key);
+            return null;
+        }
+        s.seen = now;
+        if (now - s.fetched > ttlMillis) {
+            staleHits.incrementAndGet();
+            resolve(k, key);
+        } else {
+            hits.incrementAndGet();
+        }
+        return s;
+    }
+
+    /** Completes with the profile (null if it does not exist or the lookup failed), on the cache's thread. */
+    public CompletableFuture<Skin> request(String key) {
+        String k = normalize(key);
+        Skin s = get(key);
+        if (s != null || k == null) return CompletableFuture.completedFuture(s);
+        CompletableFuture<Skin> f = inflight.get(k);
+        return f != null ? f : CompletableFuture.completedFuture(byKey.get(k)); // already done, or failed recently
+    }
+
+    private void resolve(String k, String key) {
+        Long until = failedUntil.get(k);
+        if (until != null && until > System.currentTimeMillis()) return;
+        CompletableFuture<Skin> f = new CompletableFuture<>();
+        if (inflight.putIfAbsent(k, f) != null) return;
+        try {
+            worker.execute(() -> lookup(k, key.trim(), f));
+        } catch (RejectedExecutionException ex) {
+            inflight.remove(k);
+            f.complete(null);
+        }
+    }
+
+    private void lookup(String k, String key, CompletableFuture<Skin> f) {
+        Skin s = null;
+        long t0 = System.nanoTime();
+        try {
+            s = resolver.resolve(key);
+            if (s == null) {
+                notFound.incrementAndGet();
+                failedUntil.put(k, System.currentTimeMillis() + FAILED_RETRY_MS);
+            } else {
+                resolved.incrementAndGet();
+                failedUntil.remove(k);
+                put(s);
+            }
+        } catch (Exception ex) {
+            failed.incrementAndGet();
+            failedUntil.put(k, System.currentTimeMillis() + FAILED_RETRY_MS);
+            plugin.getLogger().fine("Profile lookup failed for " + key + ": " + ex.getMessage());
+        }
+        long dt = System.nanoTime() - t0;
+        resolveNanos.addAndGet(dt);
+        maxResolveNanos.accumulateAndGet(dt, Math::max);
+        inflight.remove(k, f);
+        if (s == null) s = byKey.get(k); // keep serving the stale one
+        f.complete(s);
+        if (dirty) save();
+    }
+
+    private void put(Skin s) {
+        byKey.put("u:" + s.id, s);
+        byKey.put("n:" + s.name.toLowerCase(Locale.ROOT), s);
+        dirty = true;
+        // two keys per profile; the slack makes this one sort per max/4 new profiles
+        int max = maxEntries;
+        if (byKey.size() > 2 * (max + Math.max(8, max / 4)) && trimQueued.compareAndSet(false, true)) {
+            try {
+                worker.execute(this::trim);
+            } catch (RejectedExecutionException ex) {
+                trimQueued.set(false);
+            }
+        }
+    }
+
+    private static String normalize(String key) {
+        if (key == null) return null;
+        String t = key.trim();
+        if (t.isEmpty()) return null;
+        UUID id = parseUuid(t);
+        return id != null ? "u:" + id : "n:" + t.toLowerCase(Locale.ROOT);
+    }
+
+    static UUID parseUuid(String s) {
+        if (s.length() == 32) s = s.replaceFirst("(\\w{8})(\\w{4})(\\w{4})(\\w{4})(\\w{12})", "$1-$2-$3-$4-$5");
+        if (s.length() != 36) return null;
+        try { return UUID.fromString(s); } catch (IllegalArgumentException ex) { return null; }
+    }
+
+    // ---- store (cache thread) ----
+
+    private void preload() {
+        if (!Files.exists(file)) return;
+        long now = System.currentTimeMillis();
+        List<Skin> stale = new ArrayList<>();
+        int n = 0;
+        try {
+            byte[] all = Files.readAllBytes(file);
+            if (all.length < 14) throw new IOException("truncated");
+            CRC32 crc = new CRC32();
+            crc.update(all, 0, all.length - 4);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(all));
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) throw new IOException("bad header");
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Skin s = new Skin(new UUID(in.readLong(), in.readLong()), in.readUTF(), nullable(in.readUTF()), nullable(in.readUTF()), in.readLong());
+                s.seen = in.readLong();
+                if (now - s.seen > preloadMillis || byKey.containsKey("u:" + s.id)) continue;
+                byKey.putIfAbsent("u:" + s.id, s);
+                byKey.putIfAbsent("n:" + s.name.toLowerCase(Locale.ROOT), s);
+                n++;
+                if (now - s.fetched > ttlMillis) stale.add(s);
+            }
+            if ((int) crc.getValue() != in.readInt()) throw new IOException("checksum mismatch");
+        } catch (IOException ex) {
+            plugin.getLogger().warning("Profile store unreadable, starting empty: " + ex.getMessage());
+            return;
+        }
+        preloaded = n;
+        trim();
+        // most recently seen first; the rest refresh lazily on their next use
+        stale.sort((a, b) -> Long.compare(b.seen, a.seen));
+        for (int i = 0; i < stale.size() && i < MAX_STARTUP_REFRESH; i++) {
+            String id = stale.get(i).id.toString();
+            resolve("u:" + id, id);
+        }
+        plugin.getLogger().info("Preloaded " + n + " profiles (" + stale.size() + " stale)");
+    }
+
+    // Evict all but the maxEntries most recently seen profiles from memory; returns the kept ones, newest first.
+    private List<Skin> trim() {
+        trimQueued.set(false);
+        List<Skin> keep = new ArrayList<>(distinct());
+        keep.sort((a, b) -> Long.compare(b.seen, a.seen));
+        int max = maxEntries;
+        if (keep.size() > max) {
+            for (Skin s : keep.subList(max, keep.size())) {
+                byKey.remove("u:" + s.id, s);
+                byKey.remove("n:" + s.name.toLowerCase(Locale.ROOT), s);
+            }
+            keep = keep.subList(0, max);
+        }
+        long now = System.currentTimeMillis();
+        failedUntil.values().removeIf(t -> t <= now);
+        return keep;
+    }
+
+    private void save() {
+        if (!dirty) return;
+        dirty = false;
+        List<Skin> keep = trim();
+        try {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(64 + keep.size() * 1200);
+            DataOutputStream out = new DataOutputStream(buf);
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeInt(keep.size());
+            for (Skin s : keep) {
+                out.writeLong(s.id.getMostSignificantBits());
+                out.writeLong(s.id.getLeastSignificantBits());
+                out.writeUTF(s.name);
+                out.writeUTF(s.texture == null ? "" : s.texture);
+                out.writeUTF(s.signature == null ? "" : s.signature);
+                out.writeLong(s.fetched);
+                out.writeLong(s.seen);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buf.toByteArray());
+            out.writeInt((int) crc.getValue());
+            Files.createDirectories(file.getParent());
+            Files.write(tmp, buf.toByteArray());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            dirty = true;
+            plugin.getLogger().warning("Failed to write profile store: " + ex.getMessage());
+        }
+    }
+
+    // each profile sits under its UUID and its name
+    private Set<Skin> distinct() {
+        Set<Skin> out = Collections.newSetFromMap(new IdentityHashMap<>());
+        out.addAll(byKey.values());
+        return out;
+    }
+
+    private static String nullable(String s) {
+        return s.isEmpty() ? null : s;
+    }
+
+    public String stats() {
+        long h = hits.get(), st = staleHits.get(), m = misses.get();
+        long lookups = resolved.get() + notFound.get() + failed.get();
+        long total = h + st + m;
+        return "entries=" + distinct().size()
+                + " preloaded=" + preloaded + " hitRate=" + (total == 0 ? "-" : String.format("%.1f%%", (h + st) * 100.0 / total))
+                + " hits=" + h + " stale=" + st + " misses=" + m + " inflight=" + inflight.size()
+                + " resolved=" + resolved.get() + " notFound=" + notFound.get() + " failed=" + failed.get()
+                + " avgResolveMs=" + (lookups == 0 ? "-" : String.format("%.1f", resolveNanos.get() / 1e6 / lookups))
+                + " maxResolveMs=" + String.format("%.1f", maxResolveNanos.get() / 1e6);
+    }
+
+    /**
+     * Mojang's public API: name to UUID, then the signed session profile. One request pair per lookup, short
+     * timeouts; a 204/404 means the player does not exist.
+     */
+    public static final class MojangResolver implements Resolver {
+        private static final int TIMEOUT_MS = 3000;
+
+        @Override
+        public Skin resolve(String key) throws IOException {
+            UUID id = parseUuid(key);
+            if (id == null) {
+                JsonObject o = get("https://api.mojang.com/users/profiles/minecraft/" + key);
+                if (o == null) return null;
+                id = parseUuid(o.get("id").getAsString());
+                if (id == null) return null;
+            }
+            JsonObject p = get("https://sessionserver.mojang.com/session/minecraft/profile/" + id.toString().replace("-", "") + "?unsigned=false");
+            if (p == null) return null;
+            String texture = null, signature = null;
+            JsonArray props = p.getAsJsonArray("properties");
+            if (props != null) {
+                for (JsonElement e : props) {
+                    JsonObject prop = e.getAsJsonObject();
+                    if (!"textures".equals(prop.get("name").getAsString())) continue;
+                    texture = prop.get("value").getAsString();
+                    signature = prop.has("signature") ? prop.get("signature").getAsString() : null;
+                }
+            }
+            return new Skin(id, p.get("name").getAsString(), texture, signature, System.currentTimeMillis());
+        }
+
+        private static JsonObject get(String url) throws IOException {
+            HttpURLConnection c = (HttpURLConnection) new URL(url).openConnection();
+            c.setConnectTimeout(TIMEOUT_MS);
+            c.setReadTimeout(TIMEOUT_MS);
+            c.setRequestProperty("Accept", "application/json");
+            try {
+                int code = c.getResponseCode();
+                if (code == 204 || code == 404) return null;
+                if (code != 200) throw new IOException("HTTP " + code);
+                try (Reader r = new InputStreamReader(c.getInputStream(), StandardCharsets.UTF_8)) {
+                    return new JsonParser().parse(r).getAsJsonObject();
+                }
+            } finally {
+                c.disconnect();
+            }
+        }
+    }
+}
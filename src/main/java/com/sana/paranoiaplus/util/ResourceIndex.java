@@ -0,0 +1,321 @@
+package com.sana.paranoiaplus.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ResourceIndex - where the gatherable blocks (logs, stone, ores) are, per chunk and kind, as sorted arrays of
+ * packed in-chunk positions (y, z, x - the same layout as {@link TerrainCache}). Built on the terrain decoder
+ * thread from the snapshots {@link TerrainCache} already captures, so the world is never scanned on the main
+ * thread; only blocks with an open face inside their chunk are indexed, which keeps buried stone out.
+ * Block break/place events patch the affected chunk copy-on-write; recaptures replace it wholesale. Every entry
+ * carries the terrain tick it reflects and both paths go through one atomic compute, so an older snapshot never
+ * overwrites a newer edit; a snapshot captured before its chunk unloaded is dropped.
+ *
+ * Queries are safe from any thread. Chunks that are not indexed yet count as empty and are requested.
+ */
+public final class ResourceIndex implements TerrainCache.SnapshotListener, Listener {
+    public static final int WOOD = 0, STONE = 1, ORE = 2, KINDS = 3;
+    public static final long NONE = Long.MIN_VALUE;
+
+    private static final byte[] KIND; // by Material ordinal, -1 = not gatherable
+    private static final boolean[] OPEN; // passable: a face against it is reachable
+    private static final char[] NO_ENTRIES = new char[0];
+    private static final char[][] EMPTY_LISTS = {NO_ENTRIES, NO_ENTRIES, NO_ENTRIES};
+    private static final int PRUNE_EVERY = 64;
+    static {
+        Set<String> stone = new HashSet<>(Arrays.asList("STONE", "COBBLESTONE", "ANDESITE", "DIORITE", "GRANITE",
+                "SANDSTONE", "BLACKSTONE", "NETHERRACK"));
+        Material[] all = Material.values();
+        KIND = new byte[all.length];
+        OPEN = new boolean[all.length];
+        for (Material m : all) {
+            String n = m.name();
+            int k = -1;
+            if (!m.isLegacy()) {
+                if (n.endsWith("_LOG") || n.endsWith("_WOOD") || n.endsWith("_STEM") || n.endsWith("_HYPHAE")) k = WOOD;
+                else if (stone.contains(n)) k = STONE;
+                else if (n.endsWith("_ORE") || n.equals("ANCIENT_DEBRIS")) k = ORE;
+            }
+            KIND[m.ordinal()] = (byte) k;
+            OPEN[m.ordinal()] = (NavUtils.flagsOf(m) & NavUtils.BlockSource.PASSABLE) != 0;
+        }
+    }
+
+    private static final class Chunk {
+        final char[][] lists; // per kind, ascending
+        final int version;    // terrain tick this copy reflects: capture tick or edit tick
+
+        Chunk(char[][] lists, int version) {
+            this.lists = lists;
+            this.version = version;
+        }
+    }
+
+    private static final class WorldIndex {
+        final ConcurrentHashMap<Long, Chunk> chunks = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Long, Integer> unloaded = new ConcurrentHashMap<>(); // chunk -> unload tick
+    }
+
+    private final JavaPlugin plugin;
+    private final TerrainCache terrain;
+    private final Map<UUID, WorldIndex> worlds = new ConcurrentHashMap<>();
+
+    // decoder thread only
+    private final byte[] kind = new byte[65536];
+    private final boolean[] open = new boolean[65536];
+    private final char[][] collect = new char[KINDS][4096];
+    private int snapshots;
+
+    private final AtomicLong indexed = new AtomicLong(), queries = new AtomicLong(), queryNanos = new AtomicLong();
+    private final AtomicLong found = new AtomicLong(), missingChunks = new AtomicLong();
+    private long edits;
+
+    public ResourceIndex(JavaPlugin plugin, TerrainCache terrain) {
+        this.plugin = plugin;
+        this.terrain = terrain;
+    }
+
+    public void onEnable() {
+        terrain.addListener(this);
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+    }
+
+    public void onDisable() {
+        HandlerList.unregisterAll(this);
+        worlds.clear();
+    }
+
+    /** Gatherable kind of a material, or -1. */
+    public static int kindOf(Material m) {
+        return KIND[m.ordinal()];
+    }
+
+    // ---- build (decoder thread) ----
+
+    @Override
+    public void onSnapshot(UUID world, int cx, int cz, ChunkSnapshot snap, int capturedTick) {
+        for (int sy = 0; sy < 16; sy++) {
+            int base = sy << 12;
+            if (snap.isSectionEmpty(sy)) {
+                Arrays.fill(kind, base, base + 4096, (byte) -1);
+                Arrays.fill(open, base, base + 4096, true);
+                continue;
+            }
+            for (int i = 0; i < 4096; i++) {
+                int y = (sy << 4) | (i >> 8), z = (i >> 4) & 15, x = i & 15;
+                int o = snap.getBlockType(x, y, z).ordinal();
+                kind[base + i] = KIND[o];
+                open[base + i] = OPEN[o];
+            }
+        }
+        int[] n = new int[KINDS];
+        for (int i = 0; i < 65536; i++) {
+            int k = kind[i];
+            if (k < 0 || !exposed(i)) continue;
+            if (n[k] == collect[k].length) collect[k] = Arrays.copyOf(collect[k], n[k] * 2);
+            collect[k][n[k]++] = (char) i; // ascending: i only grows
+        }
+        char[][] lists = EMPTY_LISTS;
+        if (n[WOOD] + n[STONE] + n[ORE] > 0) {
+            lists = new char[KINDS][];
+            for (int k = 0; k < KINDS; k++) lists[k] = n[k] == 0 ? NO_ENTRIES : Arrays.copyOf(collect[k], n[k]);
+        }
+        Chunk c = new Chunk(lists, capturedTick);
+        WorldIndex wi = index(world);
+        wi.chunks.compute(key(cx, cz), (kk, cur) -> {
+            Integer unloadedAt = wi.unloaded.get(kk);
+            if (unloadedAt != null) {
+                if (capturedTick <= unloadedAt) return cur; // captured before the unload
+                wi.unloaded.remove(kk, unloadedAt);
+            }
+            // an edit in the capture tick happened after the capture (tasks run before block events)
+            return cur != null && cur.version >= capturedTick ? cur : c;
+        });
+        indexed.incrementAndGet();
+        // snapshots arrive in capture order: older markers can no longer match one
+        if (++snapshots % PRUNE_EVERY == 0)
+            for (WorldIndex w : worlds.values()) w.unloaded.values().removeIf(t -> t < capturedTick);
+    }
+
+    // an open neighbour inside the chunk; faces on the chunk border only count from this side
+    private boolean exposed(int i) {
+        int y = i >> 8, z = (i >> 4) & 15, x = i & 15;
+        return (y < 255 && open[i + 256]) || (y > 0 && open[i - 256])
+                || (z < 15 && open[i + 16]) || (z > 0 && open[i - 16])
+                || (x < 15 && open[i + 1]) || (x > 0 && open[i - 1]);
+    }
+
+    // ---- queries (any thread) ----
+
+    /**
+     * Nearest indexed block of a kind within radius (euclidean) of (x, y, z), packed with
+     * {@link NavUtils#pack}, or {@link #NONE}.
+     */
+    public long nearest(World w, int k, int x, int y, int z, int radius) {
+        long t0 = System.nanoTime();
+        WorldIndex wi = worlds.get(w.getUID());
+        Map<Long, Chunk> m = wi == null ? null : wi.chunks;
+        long best = NONE;
+        int bestD = radius * radius + 1;
+        int span = (radius + 15) >> 4, ccx = x >> 4, ccz = z >> 4;
+        int ylo = Math.max(0, y - radius), yhi = y + radius;
+        // centre chunk first so the bound below prunes the ring around it
+        for (int ring = 0; ring <= span; ring++) {
+            for (int cx = ccx - ring; cx <= ccx + ring; cx++) {
+                for (int cz = ccz - ring; cz <= ccz + ring; cz++) {
+                    if (Math.max(Math.abs(cx - ccx), Math.abs(cz - ccz)) != ring) continue;
+                    int bx = cx << 4, bz = cz << 4;
+                    int dx = x < bx ? bx - x : x > bx + 15 ? x - bx - 15 : 0;
+                    int dz = z < bz ? bz - z : z > bz + 15 ? z - bz - 15 : 0;
+                    if (dx * dx + dz * dz >= bestD) continue;
+                    Chunk c = m == null ? null : m.get(key(cx, cz));
+                    if (c == null) {
+                        missingChunks.incrementAndGet();
+                        terrain.request(w, cx, cz);
+                        continue;
+                    }
+                    char[] l = c.lists[k];
+                    if (l.length == 0) continue;
+                    int from = lowerBound(l, ylo << 8), to = yhi >= 255 ? l.length : lowerBound(l, (yhi + 1) << 8);
+                    for (int i = from; i < to; i++) {
+                        int p = l[i];
+                        int px = bx + (p & 15), py = p >> 8, pz = bz + ((p >> 4) & 15);
+                        int d = (px - x) * (px - x) + (py - y) * (py - y) + (pz - z) * (pz - z);
+                        if (d < bestD) {
+                            bestD = d;
+                            best = NavUtils.pack(px, py, pz);
+                        }
+                    }
+                }
+            }
+        }
+        queries.incrementAndGet();
+        queryNanos.addAndGet(System.nanoTime() - t0);
+        if (best != NONE) found.incrementAndGet();
+        return best;
+    }
+
+    private static int lowerBound(char[] a, int key) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < key) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // ---- incremental updates (main thread) ----
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBreak(BlockBreakEvent ev) {
+        Block b = ev.getBlock();
+        int k = KIND[b.getType().ordinal()];
+        if (k >= 0) edit(b, k, false);
+        // the hole exposes gatherable neighbours
+        for (int f = 0; f < 6; f++) {
+            Block nb = b.getRelative(f == 0 ? 1 : f == 1 ? -1 : 0, f == 2 ? 1 : f == 3 ? -1 : 0, f == 4 ? 1 : f == 5 ? -1 : 0);
+            int nk = KIND[nb.getType().ordinal()];
+            if (nk >= 0) edit(nb, nk, true);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlace(BlockPlaceEvent ev) {
+        Block b = ev.getBlock();
+        int k = KIND[b.getType().ordinal()];
+        if (k >= 0) edit(b, k, true);
+    }
+
+    @EventHandler
+    public void onChunkUnload(ChunkUnloadEvent ev) {
+        WorldIndex wi = worlds.get(ev.getWorld().getUID());
+        if (wi == null) return;
+        int at = terrain.currentTick();
+        wi.chunks.compute(key(ev.getChunk().getX(), ev.getChunk().getZ()), (kk, cur) -> {
+            wi.unloaded.put(kk, at);
+            return null;
+        });
+    }
+
+    @EventHandler
+    public void onWorldUnload(WorldUnloadEvent ev) {
+        worlds.remove(ev.getWorld().getUID());
+    }
+
+    private void edit(Block b, int k, boolean add) {
+        int y = b.getY();
+        if (y < 0 || y > 255) return;
+        WorldIndex wi = worlds.get(b.getWorld().getUID());
+        if (wi == null) return;
+        char p = (char) (y << 8 | (b.getZ() & 15) << 4 | (b.getX() & 15));
+        int now = terrain.currentTick();
+        // not indexed yet: its first capture will see the change
+        wi.chunks.computeIfPresent(key(b.getX() >> 4, b.getZ() >> 4), (kk, c) -> patch(c, k, p, add, now));
+    }
+
+    // A copy of c with p added to or removed from kind k, stamped with the edit tick; c itself if nothing changes.
+    private Chunk patch(Chunk c, int k, char p, boolean add, int now) {
+        char[] l = c.lists[k];
+        int i = Arrays.binarySearch(l, p);
+        if (add == (i >= 0)) return c;
+        char[] nl;
+        if (add) {
+            i = -i - 1;
+            nl = new char[l.length + 1];
+            System.arraycopy(l, 0, nl, 0, i);
+            nl[i] = p;
+            System.arraycopy(l, i, nl, i + 1, l.length - i);
+        } else {
+            nl = new char[l.length - 1];
+            System.arraycopy(l, 0, nl, 0, i);
+            System.arraycopy(l, i + 1, nl, i, nl.length - i);
+        }
+        char[][] lists = c.lists.clone();
+        lists[k] = nl;
+        edits++;
+        return new Chunk(lists, Math.max(c.version, now));
+    }
+
+    private WorldIndex index(UUID world) {
+        WorldIndex wi = worlds.get(world);
+        if (wi == null) wi = worlds.computeIfAbsent(world, u -> new WorldIndex());
+        return wi;
+    }
+
+    private static long key(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+
+    public String stats() {
+        long[] total = new long[KINDS];
+        int chunks = 0;
+        for (WorldIndex wi : worlds.values()) {
+            for (Chunk c : wi.chunks.values()) {
+                chunks++;
+                for (int k = 0; k < KINDS; k++) total[k] += c.lists[k].length;
+            }
+        }
+        long q = queries.get();
+        return "chunks=" + chunks + " wood=" + total[WOOD] + " stone=" + total[STONE] + " ore=" + total[ORE]
+                + " indexed=" + indexed.get() + " edits=" + edits + " queries=" + q
+                + " avgQueryNs=" + (q == 0 ? 0 : queryNanos.get() / q) + " found=" + found.get()
+                + " missingChunks=" + missingChunks.get();
+    }
+}
@@ -0,0 +1,136 @@
+package com.sana.paranoiaplus.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SamplePipeline - lock-free, allocation-free ingestion of (ordinal, weight, scope) samples.
+ * Every producing thread gets its own single-producer ring of packed longs; one consumer drains all
+ * rings in batches. A full ring drops the sample and counts it instead of blocking the producer.
+ *
+ * Sample layout: two longs per sample. First: bits 48-63 ordinal, bits 32-47 weight (8.8 fixed point),
+ * bits 0-31 ms since start. Second: bits 32-63 scope id, bits 0-31 parent scope id (see ScopedModels).
+ * Producers stamp samples with a coarse clock advanced by {@link #advanceClock()} (once per server tick)
+ * instead of reading the wall clock per sample; the consumer measures lag against the real clock.
+ */
+public final class SamplePipeline {
+
+    /** Receives drained samples on the consumer thread. */
+    public interface Sink {
+        void accept(int ordinal, double weight, int scope, int parent, long ageMs);
+    }
+
+    private final int capacity;
+    private final long epoch = System.currentTimeMillis();
+    private final List<Ring> rings = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Ring> local = new ThreadLocal<Ring>() {
+        @Override
+        protected Ring initialValue() {
+            Ring r = new Ring(capacity);
+            rings.add(r);
+            return r;
+        }
+    };
+
+    private volatile int clock;
+    private final AtomicLong drained = new AtomicLong();
+    private volatile long lastLagMs;
+    private volatile long maxLagMs;
+
+    /** capacity is per producing thread and rounded up to a power of two. */
+    public SamplePipeline(int capacity) {
+        this.capacity = Integer.highestOneBit(Math.max(64, capacity) - 1) << 1;
+    }
+
+    /** Record a sample from the calling thread; returns false if it was dropped (ring full). */
+    public boolean offer(int ordinal, double weight, int scope, int parent) {
+        long w = Math.min(0xFFFF, Math.max(0, (long) (weight * 256.0)));
+        return local.get().offer(((long) ordinal << 48) | (w << 32) | (clock & 0xFFFFFFFFL),
+                ((long) scope << 32) | (parent & 0xFFFFFFFFL));
+    }
+
+    /** Advance the producer clock; call once per tick from any single thread. */
+    public void advanceClock() {
+        clock = (int) (System.currentTimeMillis() - epoch);
+    }
+
+    /** Drain every ring into sink. Single consumer: callers must not drain concurrently. */
+    public synchronized int drain(Sink sink) {
+        long now = (System.currentTimeMillis() - epoch) & 0xFFFFFFFFL;
+        int n = 0;
+        long lag = 0;
+        for (Ring r : rings) {
+            long head = r.published.get();
+            long tail = r.tail.get();
+            for (long t = tail; t < head; t++) {
+                int i = ((int) t & r.mask) << 1;
+                long v = r.buf[i], s = r.buf[i + 1];
+                // signed 32-bit difference: a producer may stamp a sample just after we read the clock
+                long age = Math.max(0, (int) (now - (v & 0xFFFFFFFFL)));
+                if (age > lag) lag = age;
+                sink.accept((int) (v >>> 48), ((v >>> 32) & 0xFFFF) / 256.0, (int) (s >>> 32), (int) s, age);
+            }
+            r.tail.lazySet(head);
+            n += (int) (head - tail);
+        }
+        drained.addAndGet(n);
+        lastLagMs = lag;
+        if (lag > maxLagMs) maxLagMs = lag;
+        return n;
+    }
+
+    public long accepted() {
+        long s = 0;
+        for (Ring r : rings) s += r.published.get();
+        return s;
+    }
+
+    public long dropped() {
+        long s = 0;
+        for (Ring r : rings) s += r.dropped.get();
+        return s;
+    }
+
+    public long drained() { return drained.get(); }
+
+    /** Age of the oldest sample in the last drained batch. */
+    public long lastLagMs() { return lastLagMs; }
+
+    public long maxLagMs() { return maxLagMs; }
+
+    public String stats() {
+        return "accepted=" + accepted() + " drained=" + drained() + " dropped=" + dropped()
+                + " lagMs=" + lastLagMs + " maxLagMs=" + maxLagMs + " rings=" + rings.size();
+    }
+
+    private static final class Ring {
+        final long[] buf;
+        final int mask;
+        long head;                                   // producer-local
+        final AtomicLong published = new AtomicLong(); // producer -> consumer
+        final AtomicLong tail = new AtomicLong();      // consumer -> producer
+        final AtomicLong dropped = new AtomicLong();
+        long tailCache;                              // producer's last view of tail
+
+        Ring(int capacity) {
+            buf = new long[capacity << 1];
+            mask = capacity - 1;
+        }
+
+        boolean offer(long v, long s) {
+            if (head - tailCache > mask) {
+                tailCache = tail.get();
+                if (head - tailCache > mask) {
+                    dropped.lazySet(dropped.get() + 1);
+                    return false;
+                }
+            }
+            int i = ((int) head & mask) << 1;
+            buf[i] = v;
+            buf[i + 1] = s;
+            published.lazySet(++head);
+            return true;
+        }
+    }
+}
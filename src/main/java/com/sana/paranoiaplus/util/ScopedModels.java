@@ -0,0 +1,477 @@
+package com.sana.paranoiaplus.util;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Logger;
+
+/**
+ * ScopedModels - EMA models per scope (global, world, player or region) with bounded memory.
+ * Producers resolve scope ids on the event thread and push them with each sample; the aggregator updates
+ * the sample's scope, its world and the global model. Cold scopes are snapshotted to disk and dropped
+ * once loaded models exceed the memory cap (least recently used first) and reload from disk on their next
+ * sample. Policies are recompiled only for scopes that changed; lookups fall back
+ * player/region -> world -> global until a scope has enough samples. A forgotten scope's slot is reused under
+ * the next generation, so the scope table stays as large as the peak number of live scopes.
+ */
+public final class ScopedModels {
+    public enum Mode {
+        GLOBAL, WORLD, PLAYER, REGION;
+
+        public static Mode parse(String s) {
+            try { return valueOf(s.trim().toUpperCase(Locale.ROOT)); } catch (Exception ex) { return GLOBAL; }
+        }
+    }
+
+    public static final int GLOBAL = 0;
+    private static final Material[] MATERIALS = Material.values();
+    private static final String SAMPLES_KEY = "#samples";
+    private static final int SWEEP_EVERY_DRAINS = 20;
+    // scope id = generation << SLOT_BITS | slot; samples still queued for a slot's previous scope no longer match
+    private static final int SLOT_BITS = 20, SLOT_MASK = (1 << SLOT_BITS) - 1, GEN_MASK = 0x7FF;
+
+    private static final class Scope {
+        final int id;
+        final Object key;
+        final File dir;
+        final String file;
+        CountStore store;         // open while loaded
+        EmaModel model;           // null until loaded
+        long lastUsed;            // drain counter
+        long compiledAt = -1L;    // model.changes() at the last policy compile
+        volatile MaterialPolicy policy; // null until the scope has min-samples
+
+        Scope(int id, Object key, File dir, String file) {
+            this.id = id;
+            this.key = key;
+            this.dir = dir;
+            this.file = file;
+        }
+    }
+
+    private final Mode mode;
+    private final int regionShift;
+    private final long maxMemoryBytes;
+    private final ConfigSnapshot.Ml persist;
+    private final File scopeDir;
+    private final Logger log;
+    private final ExecutorService writer = CountStore.newWriter("ParanoiaPlus-MLStore");
+
+    // id registry: written under ids, read lock-free through the volatile array and region table
+    private final Map<Object, Integer> ids = new ConcurrentHashMap<>(); // world / player UUID -> id
+    private volatile RegionTable regions = RegionTable.EMPTY;           // region key -> id
+    private final Map<UUID, Integer> worldIndex = new ConcurrentHashMap<>(); // stable region-key prefix
+    private volatile Scope[] scopes = new Scope[64]; // by slot
+    private int[] generation = new int[64];          // by slot, under ids
+    private int[] freeSlots = new int[16];
+    private int freeCount, nextSlot;
+
+    // aggregator state, guarded by this
+    private long drains;
+    private double alpha;
+    private int loadedScopes, evictions, reloads;
+    private long loadedBytes;
+    private ConfigSnapshot.Ml compiledFor;
+    private final SamplePipeline.Sink sink = this::apply;
+
+    public ScopedModels(File dataFolder, ConfigSnapshot.Ml cfg, Logger log) {
+        this.mode = ScopedModels.Mode.parse(cfg.scope);
+        this.regionShift = 31 - Integer.numberOfLeadingZeros(Math.max(16, cfg.regionSize));
+        this.maxMemoryBytes = cfg.scopeMaxMemoryBytes;
+        this.persist = cfg;
+        this.scopeDir = new File(dataFolder, "ml_scopes");
+        this.log = log;
+        Scope g = new Scope(GLOBAL, "global", dataFolder, "ml_counts");
+        g.model = new EmaModel();
+        g.store = store(g);
+        scopes[GLOBAL] = g;
+        ids.put(g.key, GLOBAL);
+        nextSlot = 1;
+        loadedScopes = 1;
+    }
+
+    public Mode mode() { return mode; }
+
+    // ---- producer side: id resolution (any thread) ----
+    // Known scopes are found by UUID or primitive key without allocating; file names are built only on a miss.
+
+    public int worldScope(World w) {
+        if (mode == Mode.GLOBAL) return GLOBAL;
+        UUID key = w.getUID();
+        Integer id = ids.get(key);
+        if (id != null) return id;
+        return register(key, "world_" + safe(w.getName()));
+    }
+
+    public int playerScope(UUID player) {
+        Integer id = ids.get(player);
+        if (id != null) return id;
+        return register(player, "player_" + player);
+    }
+
+    public int regionScope(World w, int blockX, int blockZ) {
+        int rx = blockX >> regionShift, rz = blockZ >> regionShift;
+        long key = regionKey(w, rx, rz);
+        int id = regions.get(key);
+        if (id >= 0) return id;
+        return registerRegion(key, "region_" + safe(w.getName()) + "_" + rx + "_" + rz);
+    }
+
+    private long regionKey(World w, int rx, int rz) {
+        Integer wi = worldIndex.get(w.getUID());
+        if (wi == null) wi = registerWorld(w.getUID());
+        return ((long) wi << 48) | ((long) (rx & 0xFFFFFF) << 24) | (rz & 0xFFFFFF);
+    }
+
+    // Indices are handed out under ids, so two worlds first seen at once never share one.
+    private int registerWorld(UUID world) {
+        synchronized (ids) {
+            Integer wi = worldIndex.get(world);
+            if (wi != null) return wi;
+            int n = worldIndex.size();
+            worldIndex.put(world, n);
+            return n;
+        }
+    }
+
+    /** Most specific scope for a sample in the configured mode. */
+    public int scopeOf(UUID player, World w, int blockX, int blockZ) {
+        switch (mode) {
+            case WORLD: return worldScope(w);
+            case PLAYER: return playerScope(player);
+            case REGION: return regionScope(w, blockX, blockZ);
+            default: return GLOBAL;
+        }
+    }
+
+    private int register(UUID key, String file) {
+        synchronized (ids) {
+            Integer id = ids.get(key);
+            if (id != null) return id;
+            int n = add(key, file);
+            ids.put(key, n);
+            return n;
+        }
+    }
+
+    private int registerRegion(long key, String file) {
+        synchronized (ids) {
+            int id = regions.get(key);
+            if (id >= 0) return id;
+            int n = add(key, file);
+            regions = regions.with(key, n);
+            return n;
+        }
+    }
+
+    // Caller holds ids.
+    private int add(Object key, String file) {
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : nextSlot++;
+        Scope[] arr = scopes;
+        if (slot >= arr.length) {
+            arr = Arrays.copyOf(arr, arr.length * 2);
+            generation = Arrays.copyOf(generation, arr.length);
+        }
+        int id = generation[slot] << SLOT_BITS | slot;
+        arr[slot] = new Scope(id, key, scopeDir, file);
+        scopes = arr; // volatile publish after the slot write
+        return id;
+    }
+
+    // Scope currently holding an id, or null once it was forgotten.
+    private Scope scope(int id) {
+        Scope[] arr = scopes;
+        int slot = id & SLOT_MASK;
+        Scope s = id >= 0 && slot < arr.length ? arr[slot] : null;
+        return s != null && s.id == id ? s : null;
+    }
+
+    // ---- lookups (any thread) ----
+
+    public MaterialPolicy policy(int id) {
+        Scope s = scope(id);
+        return s == null ? null : s.policy;
+    }
+
+    /** Policy for the most specific trained scope: player or region, then world, then global. */
+    public MaterialPolicy policyFor(UUID player, World w, int blockX, int blockZ) {
+        MaterialPolicy p = null;
+        if (mode == Mode.PLAYER && player != null) p = find(player);
+        else if (mode == Mode.REGION && w != null) {
+            int id = regions.get(regionKey(w, blockX >> regionShift, blockZ >> regionShift));
+            if (id >= 0) p = policy(id);
+        }
+        if (p == null && mode != Mode.GLOBAL && w != null) p = find(w.getUID());
+        if (p == null) p = policy(GLOBAL);
+        return p == null ? MaterialPolicy.EMPTY : p;
+    }
+
+    private MaterialPolicy find(UUID key) {
+        Integer id = ids.get(key);
+        return id == null ? null : policy(id);
+    }
+
+    // ---- aggregator side ----
+
+    /** Drain pipeline samples into their scopes, then evict over the memory cap. Single consumer. */
+    public synchronized int drain(SamplePipeline samples, double emaAlpha) {
+        alpha = emaAlpha;
+        drains++;
+        int n = samples.drain(sink);
+        if (loadedBytes > maxMemoryBytes || drains % SWEEP_EVERY_DRAINS == 0) sweep();
+        return n;
+    }
+
+    private void apply(int ordinal, double weight, int scope, int parent, long ageMs) {
+        if (ordinal >= MATERIALS.length) return;
+        update(GLOBAL, ordinal, weight);
+        if (parent != GLOBAL) update(parent, ordinal, weight);
+        if (scope != GLOBAL && scope != parent) update(scope, ordinal, weight);
+    }
+
+    private void update(int id, int ordinal, double weight) {
+        Scope s = loaded(id);
+        if (s == null) return;
+        long before = s.model.memoryBytes();
+        s.model.update(ordinal, weight, alpha);
+        loadedBytes += s.model.memoryBytes() - before;
+        s.lastUsed = drains;
+    }
+
+    // Scope with its model in memory, loading it from disk on first use.
+    private Scope loaded(int id) {
+        Scope s = scope(id);
+        if (s == null || s.model != null) return s;
+        EmaModel m = new EmaModel();
+        CountStore st = store(s);
+        st.sync(5000L); // an evicted predecessor may still have its snapshot queued
+        try {
+            if (st.exists()) {
+                st.load((name, value) -> put(m, name, value));
+                reloads++;
+            }
+        } catch (IOException ex) {
+            log.warning("Failed to load ML scope " + s.file + ": " + ex.getMessage());
+        }
+        s.store = st;
+        s.model = m;
+        loadedScopes++;
+        loadedBytes += m.memoryBytes();
+        return s;
+    }
+
+    /** Load the global model from disk; returns false if nothing was persisted yet. */
+    public synchronized boolean loadGlobal() throws IOException {
+        Scope g = scopes[GLOBAL];
+        if (!g.store.exists()) return false;
+        g.store.load((name, value) -> put(g.model, name, value));
+        return true;
+    }
+
+    /** Import a global value (legacy migration); call {@link #compactGlobal()} afterwards. */
+    public synchronized void putGlobal(String name, double value) {
+        put(scopes[GLOBAL].model, name, value);
+    }
+
+    public synchronized void compactGlobal() {
+        flush(scopes[GLOBAL], true);
+    }
+
+    public void whenWritten(Runnable task) {
+        writer.execute(task);
+    }
+
+    private static void put(EmaModel m, String name, double value) {
+        if (SAMPLES_KEY.equals(name)) { m.setSamples((long) value); return; }
+        Material mat = Material.getMaterial(name);
+        if (mat != null) m.put(mat.ordinal(), value);
+    }
+
+    // Evict least recently used scopes down to 3/4 of the cap; drop ids that never got loaded.
+    private void sweep() {
+        Scope[] arr = scopes;
+        int n = Math.min(arr.length, slotsInUse());
+        List<Scope> victims = new ArrayList<>();
+        long bytes = 0L;
+        for (int i = 1; i < n; i++) {
+            Scope s = arr[i];
+            if (s == null) continue;
+            if (s.model == null) {
+                if (drains - s.lastUsed > SWEEP_EVERY_DRAINS) forget(s); // resolved but no sample ever arrived
+                continue;
+            }
+            bytes += s.model.memoryBytes();
+            victims.add(s);
+        }
+        loadedBytes = bytes + scopes[GLOBAL].model.memoryBytes();
+        if (loadedBytes <= maxMemoryBytes) return;
+        victims.sort((a, b) -> Long.compare(a.lastUsed, b.lastUsed));
+        long target = maxMemoryBytes * 3 / 4;
+        for (Scope s : victims) {
+            if (loadedBytes <= target) break;
+            loadedBytes -= s.model.memoryBytes();
+            flush(s, true);
+            s.store.close(0L);
+            forget(s);
+            loadedScopes--;
+            evictions++;
+        }
+    }
+
+    private int slotsInUse() {
+        synchronized (ids) { return nextSlot; }
+    }
+
+    // The slot goes back to the free list under a new generation: stale samples for the old id are ignored and
+    // the key re-resolves to a fresh scope.
+    private void forget(Scope s) {
+        synchronized (ids) {
+            if (s.key instanceof Long) regions = regions.without((Long) s.key);
+            else ids.remove(s.key);
+            int slot = s.id & SLOT_MASK;
+            Scope[] arr = scopes;
+            if (arr[slot] == s) {
+                arr[slot] = null;
+                scopes = arr; // volatile publish
+                generation[slot] = (generation[slot] + 1) & GEN_MASK;
+                if (freeCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+                freeSlots[freeCount++] = slot;
+            }
+        }
+        s.model = null;
+        s.policy = null;
+    }
+
+    /** Append changed entries of every loaded scope to its journal (compacting large journals). */
+    public synchronized void flushAll() {
+        Scope[] arr = scopes;
+        for (Scope s : arr) if (s != null && s.model != null) flush(s, s.store.needsCompaction());
+    }
+
+    private void flush(Scope s, boolean all) {
+        int size = s.model.size();
+        int[] ords = new int[size];
+        double[] values = new double[size];
+        int n = s.model.collect(all, ords, values);
+        if (n == 0 && !all) return;
+        String[] names = new String[n + 1];
+        double[] vals = new double[n + 1];
+        for (int i = 0; i < n; i++) { names[i] = MATERIALS[ords[i]].name(); vals[i] = values[i]; }
+        names[n] = SAMPLES_KEY;
+        vals[n] = s.model.samples();
+        if (all) s.store.snapshot(names, vals, n + 1);
+        else s.store.append(names, vals, n + 1);
+    }
+
+    /**
+     * Recompile policies of scopes whose model changed since their last compile (every scope after a
+     * config reload). Non-global scopes get a policy only once they reach min-samples.
+     */
+    public synchronized int recompute(ConfigSnapshot.Ml cfg) {
+        boolean all = cfg != compiledFor;
+        compiledFor = cfg;
+        long[] deny = MaterialPolicy.denyMask(cfg.hardDenyMaterials, cfg.hardDenyCategories);
+        int compiled = 0;
+        for (Scope s : scopes) {
+            if (s == null || s.model == null) continue;
+            if (!all && s.model.changes() == s.compiledAt) continue;
+            if (s.id != GLOBAL && s.model.samples() < cfg.minSamples) continue;
+            s.policy = MaterialPolicy.compile(s.model.top(cfg.topK, deny), cfg.topK, cfg.seedAllow, deny);
+            s.compiledAt = s.model.changes();
+            compiled++;
+        }
+        return compiled;
+    }
+
+    /** Top n global ordinals with their EMA values (best first). */
+    public synchronized Map<Material, Double> topGlobal(int n) {
+        EmaModel g = scopes[GLOBAL].model;
+        Map<Material, Double> out = new LinkedHashMap<>();
+        for (int o : g.top(n, null)) out.put(MATERIALS[o], g.get(o));
+        return out;
+    }
+
+    public synchronized int globalSize() {
+        return scopes[GLOBAL].model.size();
+    }
+
+    public synchronized String stats() {
+        return "mode=" + mode + " loaded=" + loadedScopes + " memKb=" + (loadedBytes >> 10) + "/" + (maxMemoryBytes >> 10)
+                + " evictions=" + evictions + " reloads=" + reloads;
+    }
+
+    /** Flush everything and stop the writer (blocks up to timeoutMs). */
+    public void close(long timeoutMs) {
+        flushAll();
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(timeoutMs, java.util.concurrent.TimeUnit.MILLISECONDS))
+                log.warning("ML store writer did not finish in time.");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CountStore store(Scope s) {
+        return new CountStore(s.dir, s.file, persist.persistFsync, persist.persistFsyncIntervalMs, persist.persistCompactBytes, log, writer);
+    }
+
+    private static String safe(String name) {
+        return name.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+
+    // Immutable open-addressing region key -> id table; replaced under ids (new regions are rare), read lock-free.
+    private static final class RegionTable {
+        static final RegionTable EMPTY = new RegionTable(16, 0);
+
+        final long[] keys;
+        final int[] vals; // id + 1; 0 marks an empty slot
+        final int size;
+
+        RegionTable(int capacity, int size) {
+            this.keys = new long[capacity];
+            this.vals = new int[capacity];
+            this.size = size;
+        }
+
+        int get(long k) {
+            int mask = keys.length - 1;
+            for (int s = mix(k) & mask; vals[s] != 0; s = (s + 1) & mask) if (keys[s] == k) return vals[s] - 1;
+            return -1;
+        }
+
+        RegionTable with(long k, int id) {
+            RegionTable t = new RegionTable((size + 1) * 2 > keys.length ? keys.length * 2 : keys.length, size + 1);
+            for (int i = 0; i < keys.length; i++) if (vals[i] != 0) t.insert(keys[i], vals[i]);
+            t.insert(k, id + 1);
+            return t;
+        }
+
+        RegionTable without(long k) {
+            if (get(k) < 0) return this;
+            RegionTable t = new RegionTable(keys.length, size - 1);
+            for (int i = 0; i < keys.length; i++) if (vals[i] != 0 && keys[i] != k) t.insert(keys[i], vals[i]);
+            return t;
+        }
+
+        private void insert(long k, int v) {
+            int mask = keys.length - 1;
+            int s = mix(k) & mask;
+            while (vals[s] != 0) s = (s + 1) & mask;
+            keys[s] = k;
+            vals[s] = v;
+        }
+
+        private static int mix(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            return (int) k;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.sana.paranoiaplus.util;
+
+/**
+ * ShadowHead - head tracking for one live shadow: where it stands, what its viewer last saw, a short delay line
+ * of target angles (shadow.head-track-lag-ms) and the per-viewer rate cap (head-track-max-updates-per-second).
+ * Pure state and math; ShadowModule sends the look + head rotation {@link #track} asks for.
+ */
+public final class ShadowHead {
+    /** {@link #track}: nothing new to send, or a changed angle held back by the rate cap. */
+    public static final int NONE = -1, SUPPRESSED = -2;
+    // estimated bytes on the wire: spawn + metadata + head, look + head, destroy
+    public static final int B_SPAWN = BotStream.B_SPAWN + 24 + BotStream.B_HEAD, B_TRACK = BotStream.B_LOOK + BotStream.B_HEAD,
+            B_DESPAWN = BotStream.B_DESTROY + BotStream.B_DESTROY_ID;
+    private static final double EYE = 1.62;
+
+    public final double x, y, z;
+    private final int minInterval; // ticks between head updates (rate cap)
+    private final short[] delay;   // yaw << 8 | pitch per tick, head-track-lag-ms long
+    private int head, filled;
+    private byte sentYaw, sentPitch;
+    private long lastSample = -1, lastSend;
+
+    /** A shadow standing at (x, y, z), spawned facing a viewer whose eye is at (ex, ey, ez). */
+    public ShadowHead(double x, double y, double z, double ex, double ey, double ez, ConfigSnapshot.Shadow cfg) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.minInterval = Math.max(1, 20 / Math.max(1, cfg.headTrackMaxUpdatesPerSecond));
+        this.delay = new short[Math.min(100, cfg.headTrackLagMs / 50) + 1];
+        double dx = ex - x, dy = ey - (y + EYE), dz = ez - z;
+        this.sentYaw = yawTo(dx, dz);
+        this.sentPitch = pitchTo(dx, dy, dz);
+    }
+
+    /** Angles the viewer last saw. */
+    public byte yaw() {
+        return sentYaw;
+    }
+
+    public byte pitch() {
+        return sentPitch;
+    }
+
+    /**
+     * Sample the viewer's eye for this tick and aim at where it was head-track-lag-ms ago. Returns
+     * yaw << 8 | pitch to send now, {@link #NONE} when the quantized angle is unchanged (or this tick was
+     * already sampled), {@link #SUPPRESSED} when the rate cap coalesces it; the latest angle goes out once the
+     * cap allows. Call {@link #sent} when the packets were queued.
+     */
+    public int track(long tick, double ex, double ey, double ez) {
+        if (tick == lastSample) return NONE;
+        lastSample = tick;
+        double dx = ex - x, dy = ey - (y + EYE), dz = ez - z;
+        int delayed = push(yawTo(dx, dz), pitchTo(dx, dy, dz));
+        if ((byte) (delayed >> 8) == sentYaw && (byte) delayed == sentPitch) return NONE;
+        if (tick - lastSend < minInterval) return SUPPRESSED;
+        return delayed & 0xFFFF;
+    }
+
+    /** The angles {@link #track} returned went out at this tick. */
+    public void sent(long tick, int angles) {
+        sentYaw = yaw(angles);
+        sentPitch = pitch(angles);
+        lastSend = tick;
+    }
+
+    public static byte yaw(int angles) {
+        return (byte) (angles >> 8);
+    }
+
+    public static byte pitch(int angles) {
+        return (byte) angles;
+    }
+
+    // record this tick's angle; returns the one from head-track-lag-ms ago (or the oldest known)
+    private int push(byte yaw, byte pitch) {
+        delay[head] = (short) ((yaw & 0xFF) << 8 | (pitch & 0xFF));
+        head = (head + 1) % delay.length;
+        if (filled < delay.length) filled++;
+        return delay[filled < delay.length ? 0 : head];
+    }
+
+    private static byte angle(double deg) {
+        return (byte) (int) Math.floor(deg * 256.0 / 360.0);
+    }
+
+    private static byte yawTo(double dx, double dz) {
+        return angle(Math.toDegrees(Math.atan2(-dx, dz)));
+    }
+
+    private static byte pitchTo(double dx, double dy, double dz) {
+        return angle(-Math.toDegrees(Math.atan2(dy, Math.sqrt(dx * dx + dz * dz))));
+    }
+}
@@ -0,0 +1,46 @@
+package com.sana.paranoiaplus.util;
+
+import java.util.Random;
+
+/**
+ * ShadowSpot - candidate search for where a shadow may appear: a random point at shadow.distance-min..max from
+ * the viewer, just outside the edge of their field of view, at most shadow.max-y high and dark enough.
+ * Pure math over a {@link Light} lookup (the {@link TerrainCache} in the plugin); a spot whose light is not
+ * cached is skipped rather than loaded.
+ */
+public final class ShadowSpot {
+    private ShadowSpot() {}
+
+    private static final int ATTEMPTS = 12;
+
+    /** Block light lookup; {@link TerrainCache#UNKNOWN} when that terrain is not available. */
+    public interface Light {
+        int light(int x, int y, int z);
+    }
+
+    /**
+     * Try up to 12 random candidates around the viewer's eye (ex, ey, ez) looking along (lookX, lookZ).
+     * On success writes the spot to out[0..2] and returns true.
+     */
+    public static boolean find(ConfigSnapshot.Shadow cfg, Random random, double ex, double ey, double ez,
+                               double lookX, double lookZ, Light light, double[] out) {
+        double baseYaw = Math.atan2(lookZ, lookX);
+        double y = Math.max(2, Math.min(ey, cfg.maxY));
+        int min = cfg.distanceMin, max = cfg.distanceMax;
+        for (int attempts = 0; attempts < ATTEMPTS; attempts++) {
+            double dist = min + random.nextDouble() * (max - min);
+            double angle = Math.toRadians((cfg.fovDeg + cfg.fovMarginDeg) + (5 + random.nextDouble() * 120));
+            double yaw = baseYaw + angle * (random.nextBoolean() ? 1 : -1);
+            double cx = ex + Math.cos(yaw) * dist;
+            double cz = ez + Math.sin(yaw) * dist;
+            int l = light.light((int) Math.floor(cx), (int) Math.floor(y), (int) Math.floor(cz));
+            if (l != TerrainCache.UNKNOWN && l <= cfg.minLightLevel) {
+                out[0] = cx;
+                out[1] = y;
+                out[2] = cz;
+                return true;
+            }
+        }
+        return false;
+    }
+}
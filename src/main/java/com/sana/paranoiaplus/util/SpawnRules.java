@@ -0,0 +1,138 @@
+package com.sana.paranoiaplus.util;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.LivingEntity;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * SpawnRules - decides whether a spawn is taken over, from the rule table compiled into
+ * {@link ConfigSnapshot.Mobs#rules} (indexed by EntityType ordinal). Cheap predicates run first, the random
+ * roll next and the per-world token bucket last, so a token is only spent on a spawn that is accepted.
+ * No allocation per call; accepted/rejected counts are kept per type and rejections per reason.
+ * The roll and the bucket clock are injectable so a seeded run replays the same verdicts.
+ *
+ * Main thread only (spawn events).
+ */
+public final class SpawnRules {
+    public static final int ACCEPT = 0, NO_RULE = 1, CAP = 2, DAYTIME = 3, NOT_IN_WATER = 4, NOT_FORTRESS = 5,
+            TOO_CLOSE = 6, CHANCE = 7, THROTTLED = 8;
+    private static final String[] REASONS = {"accept", "no-rule", "cap", "daytime", "not-in-water", "not-fortress",
+            "too-close", "chance", "throttled"};
+    private static final double ABOVE_RADIUS = 32.0;
+
+    private final long[] accepted = new long[EntityType.values().length];
+    private final long[] rejected = new long[accepted.length];
+    private final long[] reasons = new long[REASONS.length];
+    private final Map<UUID, Bucket> buckets = new HashMap<>();
+    private final Random random; // null: ThreadLocalRandom
+    private final LongSupplier clock; // nanoseconds
+    private final int[] near = new int[8];
+    private final Location scratch = new Location(null, 0, 0, 0);
+    private World lastWorld;
+    private Bucket lastBucket;
+
+    private static final class Bucket {
+        double tokens;
+        long stamp;
+    }
+
+    public SpawnRules() {
+        this(null, System::nanoTime);
+    }
+
+    /** random: the chance roll (null for ThreadLocalRandom); clock: nanoseconds for the token bucket refill. */
+    public SpawnRules(Random random, LongSupplier clock) {
+        this.random = random;
+        this.clock = clock;
+    }
+
+    /** Evaluate a spawn; returns {@link #ACCEPT} or the rejection reason. atCap: the world is already full. */
+    public int evaluate(LivingEntity le, ConfigSnapshot.Mobs cfg, PlayerSnapshot players, boolean atCap) {
+        int o = le.getType().ordinal();
+        ConfigSnapshot.Mobs.Rule rule = cfg.rules[o];
+        if (rule == null) return count(o, NO_RULE);
+        if (atCap) return count(o, CAP);
+        World w = le.getWorld();
+        if (rule.onlyNight) {
+            long t = w.getTime() % 24000L;
+            if (t < 13000L || t > 23000L) return count(o, DAYTIME);
+        }
+        if (rule.waterOnly && !le.isInWater()) return count(o, NOT_IN_WATER);
+        Location l = le.getLocation(scratch);
+        if (rule.fortressOnly && (w.getEnvironment() != World.Environment.NETHER
+                || l.getBlock().getRelative(0, -1, 0).getType() != Material.NETHER_BRICKS)) return count(o, NOT_FORTRESS);
+        double chance = rule.chance;
+        if (rule.keepMin > 0 || rule.preferAbove) {
+            int wi = players.worldIndex(w);
+            if (rule.keepMin > 0 && players.near(wi, l.getX(), l.getY(), l.getZ(), rule.keepMin, near) > 0) return count(o, TOO_CLOSE);
+            // prefer-above: full chance only over the heads of nearby players, halved otherwise
+            if (rule.preferAbove && !above(players, wi, l)) chance *= 0.5;
+        }
+        if ((random != null ? random : ThreadLocalRandom.current()).nextDouble() >= chance) return count(o, CHANCE);
+        if (!take(w, cfg)) return count(o, THROTTLED);
+        return count(o, ACCEPT);
+    }
+
+    private boolean above(PlayerSnapshot players, int wi, Location l) {
+        int n = Math.min(near.length, players.near(wi, l.getX(), l.getY(), l.getZ(), ABOVE_RADIUS, near));
+        for (int k = 0; k < n; k++) {
+            if (players.y[near[k]] + 2.0 <= l.getY()) return true;
+        }
+        return false;
+    }
+
+    // per-world token bucket: replaceRatePerSecond refill, replaceBurst capacity
+    private boolean take(World w, ConfigSnapshot.Mobs cfg) {
+        Bucket b = lastBucket;
+        if (w != lastWorld) {
+            b = buckets.get(w.getUID());
+            if (b == null) {
+                b = new Bucket();
+                b.tokens = cfg.replaceBurst;
+                b.stamp = clock.getAsLong();
+                buckets.put(w.getUID(), b);
+            }
+            lastWorld = w;
+            lastBucket = b;
+        }
+        long now = clock.getAsLong();
+        b.tokens = Math.min(cfg.replaceBurst, b.tokens + (now - b.stamp) * 1e-9 * cfg.replaceRatePerSecond);
+        b.stamp = now;
+        if (b.tokens < 1.0) return false;
+        b.tokens -= 1.0;
+        return true;
+    }
+
+    private int count(int ordinal, int verdict) {
+        if (verdict == ACCEPT) accepted[ordinal]++;
+        else if (verdict != NO_RULE) rejected[ordinal]++;
+        reasons[verdict]++;
+        return verdict;
+    }
+
+    public void forgetWorld(UUID world) {
+        buckets.remove(world);
+        lastWorld = null;
+        lastBucket = null;
+    }
+
+    public String stats() {
+        StringBuilder sb = new StringBuilder();
+        EntityType[] types = EntityType.values();
+        for (int o = 0; o < accepted.length; o++) {
+            if (accepted[o] == 0 && rejected[o] == 0) continue;
+            sb.append(types[o].name()).append('=').append(accepted[o]).append('/').append(rejected[o]).append(' ');
+        }
+        sb.append("(accepted/rejected) reasons:");
+        for (int r = 1; r < REASONS.length; r++) {
+            if (reasons[r] > 0) sb.append(' ').append(REASONS[r]).append('=').append(reasons[r]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,393 @@
+package com.sana.paranoiaplus.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPhysicsEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TerrainCache - immutable, bit-packed chunk snapshots shared by navigation and spawn search.
+ * Snapshots are taken on the main thread only for chunks that are already loaded and are decoded on a
+ * worker thread. Lookups are safe from any thread; a miss returns {@link #UNKNOWN} and queues the chunk.
+ * Block place/break/physics events queue a recapture (at most once per second per chunk); stale data is
+ * served until the new snapshot is published. A snapshot captured before its chunk unloaded is dropped when
+ * it finishes decoding, so unloaded chunks never come back.
+ *
+ * Per block (short): bits 0-2 nav flags (solid, passable, liquid), bits 4-7 sky light, bits 8-11 block light.
+ */
+public final class TerrainCache implements Listener {
+    public static final int UNKNOWN = -1;
+
+    /** Extra consumer of every kept chunk snapshot (e.g. an index); runs on the decoder thread, in capture order. */
+    public interface SnapshotListener {
+        /** capturedTick is on the {@link #currentTick()} clock. */
+        void onSnapshot(UUID world, int cx, int cz, ChunkSnapshot snap, int capturedTick);
+    }
+
+    private static final int SECTIONS = 16;
+    private static final int MIN_RECAPTURE_TICKS = 20;
+    private static final short[] MATERIAL_FLAGS;
+    static {
+        Material[] all = Material.values();
+        MATERIAL_FLAGS = new short[all.length];
+        for (Material m : all) MATERIAL_FLAGS[m.ordinal()] = (short) NavUtils.flagsOf(m);
+    }
+
+    private final JavaPlugin plugin;
+    private final Map<UUID, WorldCache> worlds = new ConcurrentHashMap<>();
+    private final List<SnapshotListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger cachedChunks = new AtomicInteger();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong captures = new AtomicLong();
+    private ExecutorService decoder;
+    private BukkitTask task;
+    private volatile int tick;
+    private volatile int decodedTick = -1; // capture tick of the last decoded snapshot (decoder is FIFO)
+    private volatile long decoded; // snapshots decoded so far; written by the decoder only
+
+    private volatile int maxChunks = 1024;
+    private volatile int capturesPerTick = 8;
+    private volatile int prefetchRadius = 1;
+
+    public TerrainCache(JavaPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    public void onEnable(ConfigSnapshot.Global cfg) {
+        configure(cfg);
+        decoder = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "ParanoiaPlus-Terrain");
+            t.setDaemon(true);
+            return t;
+        });
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+        task = new BukkitRunnable() {
+            @Override
+            public void run() { tick(); }
+        }.runTaskTimer(plugin, 1L, 1L);
+    }
+
+    /** Apply terrain.* settings; called again on every config publish. */
+    public void configure(ConfigSnapshot.Global cfg) {
+        maxChunks = cfg.terrainMaxChunks;
+        capturesPerTick = cfg.terrainCapturesPerTick;
+        prefetchRadius = cfg.terrainPrefetchRadius;
+    }
+
+    public void addListener(SnapshotListener l) {
+        listeners.add(l);
+    }
+
+    public void onDisable() {
+        HandlerList.unregisterAll(this);
+        if (task != null) task.cancel();
+        if (decoder != null) decoder.shutdownNow();
+        worlds.clear();
+        cachedChunks.set(0);
+    }
+
+    // ---- queries (any thread) ----
+
+    /** Nav flags ({@link NavUtils.BlockSource}) at a block, or UNKNOWN if the chunk is not cached. */
+    public int flags(World w, int x, int y, int z) {
+        if (y < 0) return NavUtils.BlockSource.SOLID;
+        if (y >= SECTIONS * 16) return NavUtils.BlockSource.PASSABLE;
+        ChunkFlags c = lookup(w, x >> 4, z >> 4);
+        return c == null ? UNKNOWN : c.get(x, y, z) & 7;
+    }
+
+    /** Effective light level (0-15) at a block for the current time of day, or UNKNOWN. */
+    public int light(World w, int x, int y, int z) {
+        if (y < 0 || y >= SECTIONS * 16) return y < 0 ? 0 : 15 - worldCache(w).skyDarken;
+        ChunkFlags c = lookup(w, x >> 4, z >> 4);
+        if (c == null) return UNKNOWN;
+        int v = c.get(x, y, z);
+        int sky = ((v >> 4) & 15) - worldCache(w).skyDarken;
+        return Math.max(sky, (v >> 8) & 15);
+    }
+
+    /** A terrain view for one search; caches the last chunk so it must not be shared between threads. */
+    public NavUtils.BlockSource source(World w) {
+        final WorldCache wc = worldCache(w);
+        return new NavUtils.BlockSource() {
+            private ChunkFlags last;
+
+            @Override
+            public int flags(int x, int y, int z) {
+                if (y < 0) return SOLID;
+                if (y >= SECTIONS * 16) return PASSABLE;
+                int cx = x >> 4, cz = z >> 4;
+                ChunkFlags c = last;
+                if (c == null || c.cx != cx || c.cz != cz) {
+                    c = TerrainCache.this.lookup(wc, cx, cz);
+                    if (c == null) return UNKNOWN;
+                    last = c;
+                }
+                return c.get(x, y, z) & 7;
+            }
+        };
+    }
+
+    /** Queue a capture of the given chunk if it is loaded; never loads it. Any thread. */
+    public void request(World w, int cx, int cz) {
+        worldCache(w).wanted.add(key(cx, cz));
+    }
+
+    /** The cache's own tick counter (advanced at the start of each server tick); capture ticks use this clock. */
+    public int currentTick() { return tick; }
+
+    public long captures() { return captures.get(); }
+    public long hits() { return hits.get(); }
+    public long misses() { return misses.get(); }
+
+    public String stats() {
+        return "chunks=" + cachedChunks.get() + " hits=" + hits.get() + " misses=" + misses.get() + " captures=" + captures.get();
+    }
+
+    private ChunkFlags lookup(World w, int cx, int cz) {
+        return lookup(worldCache(w), cx, cz);
+    }
+
+    private ChunkFlags lookup(WorldCache wc, int cx, int cz) {
+        long k = key(cx, cz);
+        ChunkFlags c = wc.chunks.get(k);
+        if (c == null) {
+            misses.incrementAndGet();
+            wc.wanted.add(k);
+            return null;
+        }
+        hits.incrementAndGet();
+        c.lastAccess = tick;
+        return c;
+    }
+
+    private WorldCache worldCache(World w) {
+        WorldCache wc = worlds.get(w.getUID());
+        if (wc == null) wc = worlds.computeIfAbsent(w.getUID(), u -> new WorldCache());
+        return wc;
+    }
+
+    private static long key(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+
+    // ---- main-thread capture ----
+
+    private void tick() {
+        tick++;
+        if (prefetchRadius >= 0 && tick % 20 == 0) {
+            for (Player p : Bukkit.getOnlinePlayers()) {
+                WorldCache wc = worldCache(p.getWorld());
+                int pcx = p.getLocation().getBlockX() >> 4, pcz = p.getLocation().getBlockZ() >> 4;
+                for (int dx = -prefetchRadius; dx <= prefetchRadius; dx++)
+                    for (int dz = -prefetchRadius; dz <= prefetchRadius; dz++) {
+                        long k = key(pcx + dx, pcz + dz);
+                        if (!wc.chunks.containsKey(k)) wc.wanted.add(k);
+                    }
+            }
+        }
+        int budget = capturesPerTick;
+        for (World w : Bukkit.getWorlds()) {
+            WorldCache wc = worlds.get(w.getUID());
+            if (wc == null) continue;
+            if (tick % 20 == 0) wc.skyDarken = skyDarken(w.getTime());
+            Iterator<Long> it = wc.wanted.iterator();
+            while (budget > 0 && it.hasNext()) {
+                long k = it.next();
+                ChunkFlags cur = wc.chunks.get(k);
+                if (cur != null && tick - cur.capturedTick < MIN_RECAPTURE_TICKS) continue; // debounce physics storms
+                it.remove();
+                int cx = (int) (k >> 32), cz = (int) k;
+                if (!w.isChunkLoaded(cx, cz)) continue;
+                ChunkSnapshot snap = w.getChunkAt(cx, cz).getChunkSnapshot(false, false, false);
+                final int captured = tick;
+                final UUID wid = w.getUID();
+                decoder.execute(() -> {
+                    boolean kept = publish(wc, k, decode(snap, cx, cz, captured));
+                    decodedTick = captured;
+                    decoded++;
+                    if (kept) for (SnapshotListener l : listeners) l.onSnapshot(wid, cx, cz, snap, captured);
+                });
+                captures.incrementAndGet();
+                budget--;
+            }
+        }
+        if (tick % 100 == 0) {
+            // markers older than the last decoded capture can no longer match a pending publish
+            // (all of them once the decoder has caught up)
+            int done = decoded == captures.get() ? Integer.MAX_VALUE : decodedTick;
+            for (WorldCache wc : worlds.values()) wc.unloaded.values().removeIf(t -> t < done);
+            if (cachedChunks.get() > maxChunks) evictOldest();
+        }
+    }
+
+    /** Decoder thread. False when the snapshot was dropped (chunk or world unloaded after capture, or a newer one is cached). */
+    private boolean publish(WorldCache wc, long k, ChunkFlags c) {
+        boolean[] kept = new boolean[1];
+        wc.chunks.compute(k, (kk, cur) -> {
+            if (wc.dead) return cur;
+            Integer unloadedAt = wc.unloaded.get(kk);
+            if (unloadedAt != null) {
+                if (c.capturedTick <= unloadedAt) return cur;
+                wc.unloaded.remove(kk, unloadedAt);
+            }
+            if (cur != null && cur.capturedTick > c.capturedTick) return cur;
+            if (cur == null) cachedChunks.incrementAndGet();
+            kept[0] = true;
+            return c;
+        });
+        return kept[0];
+    }
+
+    private void evictOldest() {
+        // coarse LRU: drop everything not touched in the oldest half of the access window
+        int excess = cachedChunks.get() - maxChunks;
+        int oldest = Integer.MAX_VALUE, newest = Integer.MIN_VALUE;
+        for (WorldCache wc : worlds.values())
+            for (ChunkFlags c : wc.chunks.values()) { oldest = Math.min(oldest, c.lastAccess); newest = Math.max(newest, c.lastAccess); }
+        int cutoff = oldest + Math.max(1, (newest - oldest) / 2);
+        for (WorldCache wc : worlds.values()) {
+            Iterator<ChunkFlags> it = wc.chunks.values().iterator();
+            while (excess > 0 && it.hasNext()) {
+                if (it.next().lastAccess < cutoff) { it.remove(); cachedChunks.decrementAndGet(); excess--; }
+            }
+        }
+    }
+
+    private static ChunkFlags decode(ChunkSnapshot snap, int cx, int cz, int capturedTick) {
+        short[][] sections = new short[SECTIONS][];
+        short[] uniform = new short[SECTIONS];
+        for (int sy = 0; sy < SECTIONS; sy++) {
+            short[] data = new short[4096];
+            boolean same = true;
+            int base = sy << 4;
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        int by = base + y;
+                        int f = MATERIAL_FLAGS[snap.getBlockType(x, by, z).ordinal()];
+                        f |= snap.getBlockSkyLight(x, by, z) << 4;
+                        f |= snap.getBlockEmittedLight(x, by, z) << 8;
+                        int i = (y << 8) | (z << 4) | x;
+                        data[i] = (short) f;
+                        if (same && data[i] != data[0]) same = false;
+                    }
+                }
+            }
+            // sections with a single value (open sky, solid stone) are stored as one short
+            if (same) uniform[sy] = data[0];
+            else sections[sy] = data;
+        }
+        return new ChunkFlags(cx, cz, sections, uniform, capturedTick);
+    }
+
+    // Vanilla sky darkening (0-11) for a world time, ignoring weather.
+    static int skyDarken(long time) {
+        double d = ((time % 24000L) / 24000.0) - 0.25;
+        if (d < 0) d += 1.0;
+        double angle = d + (1.0 - (Math.cos(d * Math.PI) + 1.0) / 2.0 - d) / 3.0;
+        double f = 1.0 - (Math.cos(angle * Math.PI * 2.0) * 2.0 + 0.5);
+        f = Math.max(0.0, Math.min(1.0, f));
+        return (int) (f * 11.0);
+    }
+
+    // ---- invalidation ----
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlace(BlockPlaceEvent ev) { invalidate(ev.getBlock()); }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBreak(BlockBreakEvent ev) { invalidate(ev.getBlock()); }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPhysics(BlockPhysicsEvent ev) { invalidate(ev.getBlock()); }
+
+    @EventHandler
+    public void onChunkUnload(ChunkUnloadEvent ev) {
+        WorldCache wc = worlds.get(ev.getWorld().getUID());
+        if (wc == null) return;
+        long k = key(ev.getChunk().getX(), ev.getChunk().getZ());
+        wc.wanted.remove(k);
+        final int at = tick;
+        wc.chunks.compute(k, (kk, cur) -> {
+            wc.unloaded.put(kk, at);
+            if (cur != null) cachedChunks.decrementAndGet();
+            return null;
+        });
+    }
+
+    @EventHandler
+    public void onWorldUnload(WorldUnloadEvent ev) {
+        WorldCache wc = worlds.remove(ev.getWorld().getUID());
+        if (wc == null) return;
+        wc.dead = true;
+        // decrement per removed entry so a publish racing this cannot skew the count
+        for (Long k : new ArrayList<>(wc.chunks.keySet()))
+            if (wc.chunks.remove(k) != null) cachedChunks.decrementAndGet();
+    }
+
+    private void invalidate(Block b) {
+        WorldCache wc = worlds.get(b.getWorld().getUID());
+        if (wc == null) return;
+        int cx = b.getX() >> 4, cz = b.getZ() >> 4;
+        // physics fires in bursts inside one chunk; one lookup per chunk per tick is enough
+        if (wc.lastTick == tick && wc.lastCx == cx && wc.lastCz == cz) return;
+        wc.lastTick = tick;
+        wc.lastCx = cx;
+        wc.lastCz = cz;
+        long k = key(cx, cz);
+        if (wc.chunks.containsKey(k)) wc.wanted.add(k);
+    }
+
+    private static final class WorldCache {
+        final ConcurrentHashMap<Long, ChunkFlags> chunks = new ConcurrentHashMap<>();
+        final Set<Long> wanted = ConcurrentHashMap.newKeySet();
+        final ConcurrentHashMap<Long, Integer> unloaded = new ConcurrentHashMap<>(); // chunk -> unload tick
+        volatile boolean dead; // world unloaded; late publishes are dropped
+        volatile int skyDarken;
+        int lastTick = -1, lastCx, lastCz; // main thread only
+    }
+
+    private static final class ChunkFlags {
+        final int cx, cz;
+        final short[][] sections;
+        final short[] uniform;
+        final int capturedTick;
+        volatile int lastAccess;
+
+        ChunkFlags(int cx, int cz, short[][] sections, short[] uniform, int capturedTick) {
+            this.cx = cx;
+            this.cz = cz;
+            this.sections = sections;
+            this.uniform = uniform;
+            this.capturedTick = capturedTick;
+            this.lastAccess = capturedTick;
+        }
+
+        int get(int x, int y, int z) {
+            int sy = y >> 4;
+            short[] s = sections[sy];
+            return s == null ? uniform[sy] : s[((y & 15) << 8) | ((z & 15) << 4) | (x & 15)];
+        }
+    }
+}
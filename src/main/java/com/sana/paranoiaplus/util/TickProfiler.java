@@ -0,0 +1,196 @@
+package com.sana.paranoiaplus.util;
+
+import com.destroystokyo.paper.event.server.ServerTickEndEvent;
+import com.destroystokyo.paper.event.server.ServerTickStartEvent;
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.Arrays;
+
+/**
+ * TickProfiler - measured milliseconds per tick (MSPT) from Paper's tick start/end events, kept as a histogram
+ * over the last global.health.window-ticks ticks, and the graded {@link Level} modules scale their work to.
+ * The level drops as soon as the window's p95 has been over a threshold for degrade-ticks ticks, and climbs one
+ * step at a time only after p95 stayed under recover-ratio of it for recover-ticks ticks, so a lag spike is
+ * answered within a few ticks and a recovering server is not flooded again right away.
+ *
+ * Written by the main thread only; level and percentiles are published through volatiles and safe to read
+ * from any thread.
+ */
+public final class TickProfiler implements Listener {
+    /** How much optional work the server can take right now. */
+    public enum Level {
+        FULL, REDUCED, MINIMAL, OFF;
+
+        /** A per-tick time budget scaled to this level: all, half, a quarter, nothing. */
+        public long budget(long nanos) {
+            return this == OFF ? 0L : nanos >> ordinal();
+        }
+
+        /** A period in ticks stretched to this level: x1, x2, x4; 0 when the work should not run. */
+        public int stride(int ticks) {
+            return this == OFF ? 0 : ticks << ordinal();
+        }
+
+        /** Whether work that runs every stride(interval) ticks is due on this tick. */
+        public boolean due(long tick, int interval) {
+            int s = stride(Math.max(1, interval));
+            return s > 0 && tick % s == 0;
+        }
+
+        public boolean atLeast(Level l) {
+            return ordinal() <= l.ordinal();
+        }
+    }
+
+    private static final double BUCKET_MS = 0.5;
+    private static final int BUCKETS = 401; // 0..200 ms, last one is everything above
+
+    private final JavaPlugin plugin;
+    private final int[] counts = new int[BUCKETS];
+    private short[] ring = new short[40];
+    private int head, filled;
+    private long[] starts = new long[40]; // tick start times, same ring
+
+    private long tickStart;
+    private long ticks, degradeRun, recoverRun, changes;
+    private double maxMs;
+    private final long[] ticksAt = new long[Level.values().length];
+
+    private volatile Level level = Level.FULL;
+    private volatile double p50, p95, p99, lastMs, tps = 20.0;
+
+    // config (main thread)
+    private double reducedMs = 40, minimalMs = 50, offMs = 80, recoverRatio = 0.8;
+    private int degradeTicks = 3, recoverTicks = 100;
+
+    public TickProfiler(JavaPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    public void onEnable(ConfigSnapshot.Global cfg) {
+        configure(cfg);
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+    }
+
+    public void onDisable() {
+        HandlerList.unregisterAll(this);
+    }
+
+    public void configure(ConfigSnapshot.Global cfg) {
+        reducedMs = cfg.healthReducedMs;
+        minimalMs = cfg.healthMinimalMs;
+        offMs = cfg.healthOffMs;
+        recoverRatio = cfg.healthRecoverRatio;
+        degradeTicks = cfg.healthDegradeTicks;
+        recoverTicks = cfg.healthRecoverTicks;
+        if (cfg.healthWindowTicks != ring.length) {
+            ring = new short[cfg.healthWindowTicks];
+            starts = new long[cfg.healthWindowTicks];
+            Arrays.fill(counts, 0);
+            head = 0;
+            filled = 0;
+        }
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onTickStart(ServerTickStartEvent e) {
+        tickStart = System.nanoTime();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onTickEnd(ServerTickEndEvent e) {
+        if (tickStart == 0L) return;
+        record((System.nanoTime() - tickStart) / 1e6, tickStart);
+    }
+
+    /** One finished tick: its duration in ms and the nanoTime it started at. */
+    void record(double ms, long startNanos) {
+        int b = (int) Math.min(BUCKETS - 1, ms / BUCKET_MS);
+        if (filled == ring.length) counts[ring[head]]--;
+        else filled++;
+        counts[b]++;
+        ring[head] = (short) b;
+        long oldest = filled == ring.length ? starts[(head + 1) % ring.length] : starts[0];
+        starts[head] = startNanos;
+        head = (head + 1) % ring.length;
+        ticks++;
+        lastMs = ms;
+        if (ms > maxMs) maxMs = ms;
+        if (filled > 1 && startNanos > oldest) tps = Math.min(20.0, (filled - 1) * 1e9 / (startNanos - oldest));
+        double q50 = percentile(0.50), q95 = percentile(0.95);
+        p50 = q50;
+        p95 = q95;
+        p99 = percentile(0.99);
+        grade(q95);
+        ticksAt[level.ordinal()]++;
+    }
+
+    private double percentile(double q) {
+        int rank = (int) Math.ceil(q * filled);
+        int seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts[b];
+            if (seen >= rank) return (b + 1) * BUCKET_MS; // bucket upper bound
+        }
+        return BUCKETS * BUCKET_MS;
+    }
+
+    private Level target(double ms, double scale) {
+        if (ms > offMs * scale) return Level.OFF;
+        if (ms > minimalMs * scale) return Level.MINIMAL;
+        if (ms > reducedMs * scale) return Level.REDUCED;
+        return Level.FULL;
+    }
+
+    private void grade(double q95) {
+        Level cur = level;
+        Level worse = target(q95, 1.0);
+        if (worse.ordinal() > cur.ordinal()) {
+            recoverRun = 0;
+            if (++degradeRun >= degradeTicks) set(worse);
+            return;
+        }
+        degradeRun = 0;
+        if (cur == Level.FULL || target(q95, recoverRatio).ordinal() >= cur.ordinal()) {
+            recoverRun = 0;
+            return;
+        }
+        if (++recoverRun >= recoverTicks) set(Level.values()[cur.ordinal() - 1]);
+    }
+
+    private void set(Level l) {
+        Level prev = level;
+        level = l;
+        degradeRun = 0;
+        recoverRun = 0;
+        changes++;
+        plugin.getLogger().info("Server load " + prev + " -> " + l + " (p95 " + String.format("%.1f", p95) + " ms)");
+    }
+
+    /** Current graded level; any thread. */
+    public Level level() {
+        return level;
+    }
+
+    public double p50() { return p50; }
+    public double p95() { return p95; }
+    public double p99() { return p99; }
+
+    /** Ticks per second over the window, measured from tick starts (at most 20). */
+    public double tps() {
+        return tps;
+    }
+
+    public String stats() {
+        StringBuilder sb = new StringBuilder("level=").append(level)
+                .append(String.format(" mspt=%.1f p50=%.1f p95=%.1f p99=%.1f max=%.1f tps=%.2f", lastMs, p50, p95, p99, maxMs, tps))
+                .append(" ticks=").append(ticks).append(" changes=").append(changes).append(" at=");
+        for (Level l : Level.values()) sb.append(l.name().charAt(0)).append(ticksAt[l.ordinal()]).append(l == Level.OFF ? "" : "/");
+        return sb.toString();
+    }
+}
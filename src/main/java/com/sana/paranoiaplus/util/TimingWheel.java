@@ -0,0 +1,272 @@
+package com.sana.paranoiaplus.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+
+/**
+ * TimingWheel - hashed timing wheel for plugin-wide delayed actions, driven by one repeating task.
+ * Entries live in recycled primitive slots (intrusive doubly-linked bucket lists), so schedule and cancel are
+ * O(1) and allocation-free; an action is a shared {@link Action} plus a reference and a long argument, never a
+ * new Runnable. Entries may belong to a player: when that player quits all of its entries are dropped at once.
+ * Delays longer than the wheel simply stay in their bucket for extra revolutions.
+ *
+ * Main thread only. Time is in server ticks.
+ */
+public final class TimingWheel implements Listener {
+    public static final long NONE = 0L;
+
+    /** A delayed action; implementations should be shared instances (e.g. one per module and kind). */
+    public interface Action {
+        void run(Object ref, long arg);
+    }
+
+    private static final int WHEEL_BITS = 9; // 512 ticks per revolution
+    private static final int WHEEL = 1 << WHEEL_BITS, MASK = WHEEL - 1;
+    private static final byte FREE = 0, SCHEDULED = 1, FIRING = 2;
+
+    private final JavaPlugin plugin;
+    private final int[] bucketHead = new int[WHEEL];
+    private BukkitTask task;
+    private long now;
+
+    // slots
+    private int[] next, prev, gen, owner, ownerNext, ownerPrev;
+    private long[] deadline, arg;
+    private byte[] state;
+    private Action[] action;
+    private Object[] ref;
+    private int freeHead = -1, used;
+
+    // owners (players): id -> first slot of its chain
+    private final Map<UUID, Integer> ownerIds = new HashMap<>();
+    private int[] ownerHead = new int[16];
+    private UUID[] ownerUuid = new UUID[16];
+    private int[] freeOwners = new int[16];
+    private int freeOwnerCount, ownerCount;
+
+    private long scheduled, fired, cancelled, dropped, failed;
+
+    public TimingWheel(JavaPlugin plugin) {
+        this.plugin = plugin;
+        Arrays.fill(bucketHead, -1);
+        alloc(256);
+    }
+
+    public void onEnable() {
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+        task = new BukkitRunnable() {
+            @Override
+            public void run() { advance(); }
+        }.runTaskTimer(plugin, 1L, 1L);
+    }
+
+    public void onDisable() {
+        if (task != null) task.cancel();
+        HandlerList.unregisterAll(this);
+    }
+
+    public long now() { return now; }
+
+    /** Run action(ref, arg) after delayTicks (at least 1). Returns a handle for {@link #cancel}. */
+    public long schedule(long delayTicks, Action a, Object r, long x) {
+        return schedule(delayTicks, a, r, x, null);
+    }
+
+    /** As {@link #schedule(long, Action, Object, long)}, dropped without running if ownerPlayer quits first. */
+    public long schedule(long delayTicks, Action a, Object r, long x, UUID ownerPlayer) {
+        if (freeHead < 0) alloc(next.length * 2);
+        int s = freeHead;
+        freeHead = next[s];
+        used++;
+        state[s] = SCHEDULED;
+        deadline[s] = now + Math.max(1L, delayTicks);
+        action[s] = a;
+        ref[s] = r;
+        arg[s] = x;
+        link(s, (int) (deadline[s] & MASK));
+        owner[s] = -1;
+        if (ownerPlayer != null) linkOwner(s, ownerId(ownerPlayer));
+        scheduled++;
+        return (long) gen[s] << 32 | s;
+    }
+
+    /** Cancel a pending entry; stale or already-fired handles are ignored. Returns true if it was pending. */
+    public boolean cancel(long handle) {
+        int s = (int) handle;
+        if (handle == NONE || s < 0 || s >= next.length || gen[s] != (int) (handle >>> 32)) return false;
+        if (state[s] == SCHEDULED) {
+            unlink(s, (int) (deadline[s] & MASK));
+            release(s);
+        } else if (state[s] == FIRING) {
+            state[s] = FREE; // still chained for this tick's firing pass, which skips and releases it
+        } else {
+            return false;
+        }
+        cancelled++;
+        return true;
+    }
+
+    /** Drop every pending entry owned by a player. */
+    public int cancelOwner(UUID player) {
+        Integer id = ownerIds.get(player);
+        if (id == null) return 0;
+        int n = 0;
+        for (int s = ownerHead[id]; s >= 0; ) {
+            int nx = ownerNext[s];
+            if (state[s] == SCHEDULED) {
+                unlink(s, (int) (deadline[s] & MASK));
+                release(s);
+                n++;
+            }
+            s = nx;
+        }
+        dropped += n;
+        return n;
+    }
+
+    public int size() { return used; }
+    public long fired() { return fired; }
+
+    public String stats() {
+        return "pending=" + used + " slots=" + next.length + " owners=" + ownerIds.size() + " scheduled=" + scheduled
+                + " fired=" + fired + " cancelled=" + cancelled + " dropped=" + dropped + " failed=" + failed;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent ev) {
+        cancelOwner(ev.getPlayer().getUniqueId());
+    }
+
+    /** One tick: fire every action due. Run by the wheel's own task; call it directly only when that is not started (load harness). */
+    public void advance() {
+        now++;
+        int b = (int) (now & MASK);
+        // move due entries to a private chain first, so actions may schedule or cancel freely
+        int due = -1, last = -1;
+        for (int s = bucketHead[b]; s >= 0; ) {
+            int nx = next[s];
+            if (deadline[s] <= now) {
+                unlink(s, b);
+                state[s] = FIRING;
+                next[s] = -1;
+                if (last < 0) due = s; else next[last] = s;
+                last = s;
+            }
+            s = nx;
+        }
+        for (int s = due; s >= 0; ) {
+            int nx = next[s];
+            if (state[s] == FIRING) {
+                Action a = action[s];
+                Object r = ref[s];
+                long x = arg[s];
+                release(s);
+                fired++;
+                try {
+                    a.run(r, x);
+                } catch (Throwable t) {
+                    failed++;
+                    plugin.getLogger().warning("Scheduled action error: " + t.getMessage());
+                }
+            } else {
+                release(s);
+            }
+            s = nx;
+        }
+    }
+
+    private void link(int s, int b) {
+        int h = bucketHead[b];
+        prev[s] = -1;
+        next[s] = h;
+        if (h >= 0) prev[h] = s;
+        bucketHead[b] = s;
+    }
+
+    private void unlink(int s, int b) {
+        if (prev[s] >= 0) next[prev[s]] = next[s]; else bucketHead[b] = next[s];
+        if (next[s] >= 0) prev[next[s]] = prev[s];
+    }
+
+    // return the slot to the free list; its handle goes stale
+    private void release(int s) {
+        if (owner[s] >= 0) unlinkOwner(s);
+        state[s] = FREE;
+        action[s] = null;
+        ref[s] = null;
+        gen[s]++;
+        next[s] = freeHead;
+        freeHead = s;
+        used--;
+    }
+
+    private int ownerId(UUID player) {
+        Integer id = ownerIds.get(player);
+        if (id != null) return id;
+        int o;
+        if (freeOwnerCount > 0) {
+            o = freeOwners[--freeOwnerCount];
+        } else {
+            o = ownerCount++;
+            if (o == ownerHead.length) {
+                ownerHead = Arrays.copyOf(ownerHead, o * 2);
+                ownerUuid = Arrays.copyOf(ownerUuid, o * 2);
+                freeOwners = Arrays.copyOf(freeOwners, o * 2);
+            }
+        }
+        ownerHead[o] = -1;
+        ownerUuid[o] = player;
+        ownerIds.put(player, o);
+        return o;
+    }
+
+    private void linkOwner(int s, int o) {
+        owner[s] = o;
+        int h = ownerHead[o];
+        ownerPrev[s] = -1;
+        ownerNext[s] = h;
+        if (h >= 0) ownerPrev[h] = s;
+        ownerHead[o] = s;
+    }
+
+    private void unlinkOwner(int s) {
+        int o = owner[s];
+        if (ownerPrev[s] >= 0) ownerNext[ownerPrev[s]] = ownerNext[s]; else ownerHead[o] = ownerNext[s];
+        if (ownerNext[s] >= 0) ownerPrev[ownerNext[s]] = ownerPrev[s];
+        owner[s] = -1;
+        if (ownerHead[o] < 0) { // last entry gone: recycle the owner id
+            ownerIds.remove(ownerUuid[o]);
+            ownerUuid[o] = null;
+            freeOwners[freeOwnerCount++] = o;
+        }
+    }
+
+    private void alloc(int cap) {
+        int old = next == null ? 0 : next.length;
+        next = next == null ? new int[cap] : Arrays.copyOf(next, cap);
+        prev = prev == null ? new int[cap] : Arrays.copyOf(prev, cap);
+        gen = gen == null ? new int[cap] : Arrays.copyOf(gen, cap);
+        owner = owner == null ? new int[cap] : Arrays.copyOf(owner, cap);
+        ownerNext = ownerNext == null ? new int[cap] : Arrays.copyOf(ownerNext, cap);
+        ownerPrev = ownerPrev == null ? new int[cap] : Arrays.copyOf(ownerPrev, cap);
+        deadline = deadline == null ? new long[cap] : Arrays.copyOf(deadline, cap);
+        arg = arg == null ? new long[cap] : Arrays.copyOf(arg, cap);
+        state = state == null ? new byte[cap] : Arrays.copyOf(state, cap);
+        action = action == null ? new Action[cap] : Arrays.copyOf(action, cap);
+        ref = ref == null ? new Object[cap] : Arrays.copyOf(ref, cap);
+        for (int s = cap - 1; s >= old; s--) {
+            gen[s] = 1; // handle 0 is never valid
+            next[s] = freeHead;
+            freeHead = s;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.sana.paranoiaplus.util;
+
+import org.bukkit.GameMode;
+import org.bukkit.World;
+
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * VisionSystem - batched "is anyone looking at this?" for every controlled mob, once per tick.
+ * The main thread only fills a frame with target positions; a worker then culls candidate viewers with the
+ * {@link PlayerSnapshot} grid and a view-cone test, and casts a voxel DDA ray over {@link TerrainCache}
+ * (no live world access) for the survivors. The result is a watched bitset per frame. Frames are pipelined:
+ * the result of tick N is read on tick N+1, and a frame still running on the worker is never waited for.
+ *
+ * Uncached terrain along a ray counts as transparent: a mob that freezes a little too eagerly is better
+ * than one seen moving. Main thread only, except the worker pass itself.
+ */
+public final class VisionSystem {
+    private static final int SPECTATOR = GameMode.SPECTATOR.ordinal();
+
+    /** One tick's targets and, once finished, which of them are watched. */
+    public static final class Frame {
+        public int count;
+        public Object[] ref = new Object[16];
+        World[] world = new World[16];
+        double[] x = new double[16], y = new double[16], z = new double[16];
+        long[] watched = new long[1];
+
+        public boolean watched(int i) {
+            return (watched[i >>> 6] & (1L << i)) != 0;
+        }
+
+        void ensure(int n) {
+            if (n <= ref.length) return;
+            int cap = Math.max(n, ref.length * 2);
+            ref = Arrays.copyOf(ref, cap);
+            world = Arrays.copyOf(world, cap);
+            x = Arrays.copyOf(x, cap);
+            y = Arrays.copyOf(y, cap);
+            z = Arrays.copyOf(z, cap);
+        }
+
+        void clear() {
+            Arrays.fill(ref, 0, count, null);
+            Arrays.fill(world, 0, count, null);
+            count = 0;
+        }
+    }
+
+    private final Function<World, NavUtils.BlockSource> terrain;
+    private final ExecutorService worker;
+    private Frame front = new Frame(), back = new Frame();
+    private Future<?> job;
+
+    private long frames, late;
+    private final AtomicLong workerNanos = new AtomicLong(), maxWorkerNanos = new AtomicLong();
+    private final AtomicLong candidates = new AtomicLong(), rays = new AtomicLong(), blocked = new AtomicLong();
+
+    public VisionSystem(TerrainCache terrain) {
+        this(terrain::source);
+    }
+
+    /** Rays over any terrain: one fresh {@link NavUtils.BlockSource} per world and frame, used by the worker only. */
+    public VisionSystem(Function<World, NavUtils.BlockSource> terrain) {
+        this.terrain = terrain;
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "ParanoiaPlus-Vision");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Publish the finished frame, if any, and open a new one for {@link #add}. Returns false while the
+     * worker is still busy with the previous frame (counted as late; add nothing and try next tick).
+     */
+    public boolean poll() {
+        if (job != null) {
+            if (!job.isDone()) {
+                late++;
+                return false;
+            }
+            job = null;
+            Frame t = front; front = back; back = t; // isDone() orders the worker's writes before this read
+        }
+        back.clear();
+        return true;
+    }
+
+    /** Result of the last finished frame (main thread; valid until the next successful {@link #poll}). */
+    public Frame result() { return front; }
+
+    /** Add a target (e.g. a mob's body centre) to the open frame. */
+    public void add(World w, double x, double y, double z, Object ref) {
+        Frame f = back;
+        f.ensure(f.count + 1);
+        int i = f.count++;
+        f.world[i] = w;
+        f.x[i] = x;
+        f.y[i] = y;
+        f.z[i] = z;
+        f.ref[i] = ref;
+    }
+
+    /** Hand the open frame to the worker. */
+    public void start(PlayerSnapshot snap, ConfigSnapshot.Mobs cfg, double range) {
+        Frame f = back;
+        int words = (f.count + 63) >>> 6;
+        if (f.watched.length < words) f.watched = new long[words];
+        else Arrays.fill(f.watched, 0L);
+        frames++;
+        if (f.count == 0) {
+            job = CompletableFuture.completedFuture(null);
+            return;
+        }
+        double cos = Math.cos(Math.toRadians(cfg.fovDeg));
+        boolean any = cfg.anyPlayerLooks, los = cfg.requireLos;
+        job = worker.submit(() -> run(f, snap, cos, range, any, los));
+    }
+
+    public String stats() {
+        return "frames=" + frames + " late=" + late + " avgWorkerNs=" + (frames == 0 ? 0 : workerNanos.get() / frames)
+                + " maxWorkerNs=" + maxWorkerNanos.get() + " candidates=" + candidates.get() + " rays=" + rays.get()
+                + " blocked=" + blocked.get();
+    }
+
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    // ---- worker ----
+
+    private void run(Frame f, PlayerSnapshot snap, double cos, double range, boolean any, boolean los) {
+        long t0 = System.nanoTime();
+        int[] near = new int[64];
+        World lastWorld = null;
+        int w = -1;
+        NavUtils.BlockSource src = null;
+        long cand = 0, cast = 0, hidden = 0;
+        for (int t = 0; t < f.count; t++) {
+            if (f.world[t] != lastWorld) {
+                lastWorld = f.world[t];
+                w = snap.worldIndex(lastWorld);
+                src = los ? terrain.apply(lastWorld) : null;
+            }
+            if (w < 0) continue; // nobody in that world
+            double tx = f.x[t], ty = f.y[t], tz = f.z[t];
+            int n = snap.near(w, tx, ty, tz, range, near);
+            if (n > near.length) {
+                near = new int[Integer.highestOneBit(n) << 1];
+                n = snap.near(w, tx, ty, tz, range, near);
+            }
+            if (!any && n > 1) { // only the closest player's gaze counts
+                int best = near[0];
+                for (int k = 1; k < n; k++) {
+                    if (snap.distanceSquared(near[k], tx, ty, tz) < snap.distanceSquared(best, tx, ty, tz)) best = near[k];
+                }
+                near[0] = best;
+                n = 1;
+            }
+            for (int k = 0; k < n; k++) {
+                int i = near[k];
+                if (snap.gameMode[i] == SPECTATOR) continue;
+                if (!inCone(snap.dirX[i], snap.dirY[i], snap.dirZ[i], tx - snap.x[i], ty - snap.eyeY[i], tz - snap.z[i], cos)) continue;
+                cand++;
+                if (src != null) {
+                    cast++;
+                    if (blockedBetween(src, snap.x[i], snap.eyeY[i], snap.z[i], tx, ty, tz)) {
+                        hidden++;
+                        continue;
+                    }
+                }
+                f.watched[t >>> 6] |= 1L << t;
+                break;
+            }
+        }
+        candidates.addAndGet(cand);
+        rays.addAndGet(cast);
+        blocked.addAndGet(hidden);
+        long dt = System.nanoTime() - t0;
+        workerNanos.addAndGet(dt);
+        long max;
+        while (dt > (max = maxWorkerNanos.get()) && !maxWorkerNanos.compareAndSet(max, dt)) { }
+    }
+
+    /**
+     * Whether offset (dx, dy, dz) from an eye lies within the view cone around the unit direction dir, given the
+     * cosine of its half angle. A target at the eye itself counts as seen.
+     */
+    public static boolean inCone(double dirX, double dirY, double dirZ, double dx, double dy, double dz, double cos) {
+        double dist = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        return dist <= 1.0E-6 || dirX * dx + dirY * dy + dirZ * dz >= cos * dist;
+    }
+
+    /** Voxel DDA (Amanatides-Woo) from a to b; true if a solid block lies strictly between them. */
+    public static boolean blockedBetween(NavUtils.BlockSource src, double ax, double ay, double az, double bx, double by, double bz) {
+        int x = floor(ax), y = floor(ay), z = floor(az);
+        int ex = floor(bx), ey = floor(by), ez = floor(bz);
+        double dx = bx - ax, dy = by - ay, dz = bz - az;
+        int sx = dx > 0 ? 1 : dx < 0 ? -1 : 0, sy = dy > 0 ? 1 : dy < 0 ? -1 : 0, sz = dz > 0 ? 1 : dz < 0 ? -1 : 0;
+        double inf = Double.POSITIVE_INFINITY;
+        double ddx = sx == 0 ? inf : Math.abs(1.0 / dx), ddy = sy == 0 ? inf : Math.abs(1.0 / dy), ddz = sz == 0 ? inf : Math.abs(1.0 / dz);
+        // parametric distance (t in [0, 1] along a->b) to the first boundary on each axis
+        double mx = sx == 0 ? inf : (sx > 0 ? x + 1 - ax : ax - x) * ddx;
+        double my = sy == 0 ? inf : (sy > 0 ? y + 1 - ay : ay - y) * ddy;
+        double mz = sz == 0 ? inf : (sz > 0 ? z + 1 - az : az - z) * ddz;
+        int steps = Math.abs(ex - x) + Math.abs(ey - y) + Math.abs(ez - z);
+        for (int s = 0; s < steps; s++) {
+            if (mx < my && mx < mz) { x += sx; mx += ddx; }
+            else if (my < mz) { y += sy; my += ddy; }
+            else { z += sz; mz += ddz; }
+            if (x == ex && y == ey && z == ez) return false;
+            int fl = src.flags(x, y, z);
+            if (fl != NavUtils.BlockSource.UNKNOWN && (fl & NavUtils.BlockSource.SOLID) != 0) return true;
+        }
+        return false;
+    }
+
+    private static int floor(double v) {
+        int i = (int) v;
+        return v < i ? i - 1 : i;
+    }
+}
@@ -0,0 +1,184 @@
+package com.sana.paranoiaplus.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * BotStreamTest - the visibility diff (spawn, shared update, batched destroy), move kinds, and the teleport
+ * resync after a refused update, through a recording sink.
+ */
+public class BotStreamTest {
+    private static final UUID WORLD = new UUID(9, 9);
+    private static final UUID ALICE = new UUID(0, 1), BOB = new UUID(0, 2);
+    private static final int ID = 4242;
+
+    private Recorder sink;
+    private BotStream stream;
+
+    @Before
+    public void setUp() {
+        sink = new Recorder();
+        stream = new BotStream(sink);
+    }
+
+    @Test
+    public void spawnsUpdatesAndDestroysByVisibility() {
+        int b = stream.add(ID, ALICE, WORLD, 0, 64, 0, 0f, 0f);
+        stream.flush(snap(2, 64, 0, 500, 64, 0), true, 32);
+        assertEquals(Collections.singletonList("show " + b + " alice"), sink.sent());
+
+        sink.events.clear();
+        stream.update(b, WORLD, 0.5, 64, 0, 0f, 0f);
+        stream.flush(snap(2, 64, 0, 500, 64, 0), true, 32);
+        assertEquals(Arrays.asList("frame " + b + " " + BotStream.MOVE + " 2048", "update " + b + " alice"), sink.events);
+
+        sink.events.clear();
+        stream.flush(snap(2, 64, 0, 500, 64, 0), true, 32); // stood still: a frame but nothing sent
+        assertEquals(Collections.singletonList("frame " + b + " " + BotStream.NONE + " 0"), sink.events);
+
+        sink.events.clear();
+        stream.flush(snap(400, 64, 0, 10, 64, 0), true, 32); // alice walks off, bob comes close
+        assertTrue(sink.events.contains("show " + b + " bob"));
+        assertTrue(sink.events.contains("destroy alice [" + ID + "]"));
+        assertFalse(sink.events.contains("update " + b + " alice"));
+        assertTrue(stream.stats().contains("spawns=2"));
+        assertTrue(stream.stats().contains("destroys=1"));
+    }
+
+    @Test
+    public void targetModeShowsOnlyTheTarget() {
+        int b = stream.add(ID, BOB, WORLD, 0, 64, 0, 0f, 0f);
+        stream.flush(snap(1, 64, 0, 3, 64, 0), false, 32);
+        assertEquals(Collections.singletonList("show " + b + " bob"), sink.sent());
+    }
+
+    @Test
+    public void refusedUpdateIsResyncedWithATeleport() {
+        int b = stream.add(ID, ALICE, WORLD, 0, 64, 0, 0f, 0f);
+        PlayerSnapshot s = snap(2, 64, 0, 500, 64, 0);
+        stream.flush(s, true, 32);
+
+        sink.refuse = true;
+        stream.update(b, WORLD, 0.25, 64, 0, 0f, 0f);
+        stream.flush(s, true, 32);
+        sink.refuse = false;
+
+        sink.events.clear();
+        stream.update(b, WORLD, 0.5, 64, 0, 0f, 0f);
+        stream.flush(s, true, 32);
+        assertTrue(sink.events.contains("resync " + b + " alice 0.5"));
+        assertFalse(sink.events.contains("update " + b + " alice"));
+
+        sink.events.clear();
+        stream.update(b, WORLD, 0.75, 64, 0, 0f, 0f);
+        stream.flush(s, true, 32); // back in step: plain deltas again
+        assertTrue(sink.events.contains("update " + b + " alice"));
+        assertTrue(stream.stats().contains("resyncs=1"));
+        assertTrue(stream.stats().contains("dropped=1"));
+    }
+
+    @Test
+    public void deltaPastAShortBecomesATeleportAndTurningAddsHead() {
+        int b = stream.add(ID, ALICE, WORLD, 0, 64, 0, 0f, 0f);
+        stream.flush(snap(2, 64, 0, 500, 64, 0), true, 32);
+
+        sink.events.clear();
+        stream.update(b, WORLD, 9, 64, 0, 0f, 0f); // 9 blocks = 36864 fixed-point units
+        stream.flush(snap(2, 64, 0, 500, 64, 0), true, 32);
+        assertEquals("frame " + b + " " + BotStream.TELEPORT + " " + (short) 36864, sink.events.get(0));
+
+        sink.events.clear();
+        stream.update(b, WORLD, 9, 64, 0, 90f, 0f);
+        stream.flush(snap(2, 64, 0, 500, 64, 0), true, 32);
+        assertEquals("frame " + b + " " + BotStream.LOOK + " 0 head", sink.events.get(0));
+    }
+
+    @Test
+    public void respawnHidesNowAndShowsAgainNextFlush() {
+        int b = stream.add(ID, ALICE, WORLD, 0, 64, 0, 0f, 0f);
+        PlayerSnapshot s = snap(2, 64, 0, 500, 64, 0);
+        stream.flush(s, true, 32);
+        sink.events.clear();
+        stream.respawn(b);
+        assertEquals(Collections.singletonList("hide " + b + " alice"), sink.events);
+        stream.flush(s, true, 32);
+        assertTrue(sink.events.contains("show " + b + " alice"));
+    }
+
+    @Test
+    public void removedViewerIsForgottenAndItsSlotReused() {
+        stream.add(ID, ALICE, WORLD, 0, 64, 0, 0f, 0f);
+        stream.flush(snap(2, 64, 0, 500, 64, 0), true, 32);
+        int v = sink.slots.remove(ALICE);
+        stream.removeViewer(v);
+        assertEquals(0, stream.visibleCount(v));
+        assertEquals(v, stream.addViewer());
+    }
+
+    // alice at (ax, ay, az), bob at (bx, by, bz), both in WORLD
+    private static PlayerSnapshot snap(double ax, double ay, double az, double bx, double by, double bz) {
+        return PlayerSnapshot.of(new UUID[]{ALICE, BOB}, new UUID[]{WORLD, WORLD}, new double[]{ax, bx}, new double[]{ay, by},
+                new double[]{az, bz}, new float[2], new float[2], new byte[2], new byte[2], 1L, 16);
+    }
+
+    private final class Recorder implements BotStream.Sink {
+        final List<String> events = new ArrayList<>();
+        final Map<UUID, Integer> slots = new HashMap<>();
+        final Map<Integer, String> names = new HashMap<>();
+        boolean refuse;
+
+        List<String> sent() {
+            List<String> out = new ArrayList<>();
+            for (String e : events) if (!e.startsWith("frame ")) out.add(e);
+            return out;
+        }
+
+        @Override
+        public int viewer(UUID player) {
+            Integer s = slots.get(player);
+            if (s != null) return s;
+            int v = stream.addViewer();
+            slots.put(player, v);
+            names.put(v, player.equals(ALICE) ? "alice" : "bob");
+            return v;
+        }
+
+        @Override
+        public boolean show(int b, int v, double x, double y, double z, byte yaw, byte pitch) {
+            events.add("show " + b + " " + names.get(v));
+            return true;
+        }
+
+        @Override
+        public void frame(int b, int kind, short dx, short dy, short dz, double x, double y, double z, byte yaw, byte pitch, boolean head) {
+            events.add("frame " + b + " " + kind + " " + dx + (head ? " head" : ""));
+        }
+
+        @Override
+        public boolean update(int b, int v) {
+            if (refuse) return false;
+            events.add("update " + b + " " + names.get(v));
+            return true;
+        }
+
+        @Override
+        public boolean resync(int b, int v, double x, double y, double z, byte yaw, byte pitch) {
+            events.add("resync " + b + " " + names.get(v) + " " + x);
+            return true;
+        }
+
+        @Override
+        public void destroy(int v, int[] ids, int n) {
+            events.add("destroy " + names.get(v) + " " + Arrays.toString(Arrays.copyOf(ids, n)));
+        }
+
+        @Override
+        public void hide(int b, int v) {
+            events.add("hide " + b + " " + names.get(v));
+        }
+    }
+}
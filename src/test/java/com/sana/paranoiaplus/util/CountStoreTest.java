@@ -0,0 +1,219 @@
+package com.sana.paranoiaplus.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * CountStoreTest - journal recovery: torn tail, CRC mismatch, generation mismatch and a bad snapshot; appends
+ * through a shared writer, which reopens the journal for every write.
+ */
+public class CountStoreTest {
+    private static final Logger LOG = Logger.getLogger("CountStoreTest");
+    private static final int JOURNAL_HEADER = 4 + 2 + 8;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("countstore").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir.toPath())) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void snapshotThenJournalRoundTrip() throws IOException {
+        CountStore s = open();
+        s.load((n, v) -> { });
+        s.snapshot(new String[]{"a", "b"}, new double[]{1, 2}, 2);
+        s.append(new String[]{"b", "c"}, new double[]{5, 3}, 2);
+        s.close(1000);
+
+        Map<String, Double> m = new HashMap<>();
+        assertEquals(4, open().load(m::put));
+        assertEquals(1.0, m.get("a"), 0);
+        assertEquals(5.0, m.get("b"), 0); // journal overrides the snapshot
+        assertEquals(3.0, m.get("c"), 0);
+    }
+
+    @Test
+    public void tornTailIsIgnoredAndTruncatedOnNextAppend() throws IOException {
+        CountStore s = open();
+        s.load((n, v) -> { });
+        s.append(new String[]{"a"}, new double[]{1}, 1);
+        s.close(1000);
+        try (RandomAccessFile f = new RandomAccessFile(journal(), "rw")) {
+            f.seek(f.length());
+            f.write(new byte[]{0, 5, 'x', 'y'}); // record header promising 5 name bytes, then the crash
+        }
+
+        CountStore again = open();
+        Map<String, Double> m = new HashMap<>();
+        assertEquals(1, again.load(m::put));
+        assertEquals(1.0, m.get("a"), 0);
+        again.append(new String[]{"b"}, new double[]{2}, 1);
+        again.close(1000);
+
+        m.clear();
+        assertEquals(2, open().load(m::put));
+        assertEquals(2.0, m.get("b"), 0);
+    }
+
+    @Test
+    public void crcMismatchStopsReplay() throws IOException {
+        CountStore s = open();
+        s.load((n, v) -> { });
+        s.append(new String[]{"a"}, new double[]{1}, 1);
+        s.append(new String[]{"b"}, new double[]{2}, 1);
+        s.close(1000);
+        // second record: 2 len + 1 name + 8 value + 4 crc; flip a value byte
+        try (RandomAccessFile f = new RandomAccessFile(journal(), "rw")) {
+            long pos = JOURNAL_HEADER + 15 + 2 + 1;
+            f.seek(pos);
+            int b = f.read();
+            f.seek(pos);
+            f.write(b ^ 0xFF);
+        }
+
+        Map<String, Double> m = new HashMap<>();
+        assertEquals(1, open().load(m::put));
+        assertEquals(1.0, m.get("a"), 0);
+        assertNull(m.get("b"));
+    }
+
+    @Test
+    public void journalOfAnotherGenerationIsNotReplayed() throws IOException {
+        CountStore s = open();
+        s.load((n, v) -> { });
+        s.snapshot(new String[]{"a"}, new double[]{1}, 1);
+        s.append(new String[]{"b"}, new double[]{2}, 1);
+        s.close(1000);
+        try (RandomAccessFile f = new RandomAccessFile(journal(), "rw")) {
+            f.seek(4 + 2);
+            f.writeLong(7L); // journal left over from some other compaction
+        }
+
+        CountStore again = open();
+        Map<String, Double> m = new HashMap<>();
+        assertEquals(1, again.load(m::put));
+        assertNull(m.get("b"));
+        again.append(new String[]{"c"}, new double[]{3}, 1); // starts a fresh journal for the snapshot's generation
+        again.close(1000);
+
+        m.clear();
+        assertEquals(2, open().load(m::put));
+        assertEquals(1.0, m.get("a"), 0);
+        assertEquals(3.0, m.get("c"), 0);
+    }
+
+    @Test
+    public void badSnapshotIsQuarantinedAndJournalSurvives() throws IOException {
+        CountStore s = open();
+        s.load((n, v) -> { });
+        s.snapshot(new String[]{"a"}, new double[]{1}, 1);
+        s.append(new String[]{"b"}, new double[]{2}, 1);
+        s.close(1000);
+        try (RandomAccessFile f = new RandomAccessFile(new File(dir, "t.snap"), "rw")) {
+            f.seek(f.length() - 1);
+            int b = f.read();
+            f.seek(f.length() - 1);
+            f.write(b ^ 0xFF); // checksum mismatch
+        }
+
+        CountStore again = open();
+        Map<String, Double> m = new HashMap<>();
+        assertEquals(1, again.load(m::put));
+        assertEquals(2.0, m.get("b"), 0);
+        assertTrue(new File(dir, "t.snap.corrupt").exists());
+        assertFalse(new File(dir, "t.snap").exists());
+        again.append(new String[]{"c"}, new double[]{3}, 1);
+        again.close(1000);
+
+        m.clear();
+        assertEquals(2, open().load(m::put)); // the first journal record was kept, not truncated away
+        assertEquals(2.0, m.get("b"), 0);
+        assertEquals(3.0, m.get("c"), 0);
+    }
+
+    @Test
+    public void sharedWriterKeepsEveryAppend() throws IOException {
+        ExecutorService writer = CountStore.newWriter("CountStoreTest-Writer");
+        try {
+            CountStore s = shared(writer); // fresh scope: load() never ran
+            s.append(new String[]{"a"}, new double[]{1}, 1);
+            s.append(new String[]{"b"}, new double[]{2}, 1);
+            s.append(new String[]{"c"}, new double[]{3}, 1);
+            s.sync(1000);
+
+            CountStore again = shared(writer);
+            Map<String, Double> m = new HashMap<>();
+            assertEquals(3, again.load(m::put));
+            again.append(new String[]{"d"}, new double[]{4}, 1);
+            again.append(new String[]{"e", "a"}, new double[]{5, 6}, 2);
+            again.close(1000);
+            again.sync(1000);
+
+            m.clear();
+            assertEquals(6, shared(writer).load(m::put));
+            assertEquals(6.0, m.get("a"), 0);
+            assertEquals(2.0, m.get("b"), 0);
+            assertEquals(3.0, m.get("c"), 0);
+            assertEquals(4.0, m.get("d"), 0);
+            assertEquals(5.0, m.get("e"), 0);
+        } finally {
+            writer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void sharedWriterAppendsAfterACompaction() throws IOException {
+        ExecutorService writer = CountStore.newWriter("CountStoreTest-Writer");
+        try {
+            CountStore s = shared(writer);
+            s.load((n, v) -> { });
+            s.snapshot(new String[]{"a"}, new double[]{1}, 1);
+            s.append(new String[]{"b"}, new double[]{2}, 1);
+            s.append(new String[]{"c"}, new double[]{3}, 1);
+            s.sync(1000);
+
+            Map<String, Double> m = new HashMap<>();
+            assertEquals(3, shared(writer).load(m::put));
+            assertEquals(1.0, m.get("a"), 0);
+            assertEquals(2.0, m.get("b"), 0);
+            assertEquals(3.0, m.get("c"), 0);
+        } finally {
+            writer.shutdownNow();
+        }
+    }
+
+    private CountStore shared(ExecutorService writer) {
+        return new CountStore(dir, "t", CountStore.Fsync.NEVER, 0L, Long.MAX_VALUE, LOG, writer);
+    }
+
+    private CountStore open() {
+        return new CountStore(dir, "t", CountStore.Fsync.NEVER, 0L, Long.MAX_VALUE, LOG);
+    }
+
+    private File journal() {
+        return new File(dir, "t.journal");
+    }
+}
@@ -0,0 +1,145 @@
+package com.sana.paranoiaplus.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * TimingWheelTest - slot wrap, cancel by generation handle and owner chains, driven through advance().
+ */
+public class TimingWheelTest {
+    private TimingWheel wheel;
+    private List<Long> ran;
+    private TimingWheel.Action record;
+
+    @Before
+    public void setUp() {
+        wheel = new TimingWheel(null); // the plugin is only needed for onEnable and error logging
+        ran = new ArrayList<>();
+        record = (ref, arg) -> ran.add(arg);
+    }
+
+    @Test
+    public void firesOnTheDeadlineTick() {
+        wheel.schedule(3, record, null, 7L);
+        advance(2);
+        assertTrue(ran.isEmpty());
+        advance(1);
+        assertEquals(1, ran.size());
+        assertEquals(7L, (long) ran.get(0));
+        assertEquals(0, wheel.size());
+        assertEquals(1L, wheel.fired());
+    }
+
+    @Test
+    public void delayLongerThanTheWheelWaitsExtraRevolutions() {
+        wheel.schedule(512 + 5, record, null, 1L);
+        wheel.schedule(5, record, null, 2L); // same bucket, first revolution
+        advance(5);
+        assertEquals(1, ran.size());
+        assertEquals(2L, (long) ran.get(0));
+        advance(511);
+        assertEquals(1, ran.size());
+        advance(1);
+        assertEquals(2, ran.size());
+        assertEquals(1L, (long) ran.get(1));
+    }
+
+    @Test
+    public void zeroDelayRunsNextTick() {
+        wheel.schedule(0, record, null, 1L);
+        advance(1);
+        assertEquals(1, ran.size());
+    }
+
+    @Test
+    public void cancelledEntryNeverRuns() {
+        long h = wheel.schedule(2, record, null, 1L);
+        assertTrue(wheel.cancel(h));
+        assertFalse(wheel.cancel(h));
+        advance(3);
+        assertTrue(ran.isEmpty());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void staleHandleDoesNotCancelTheSlotsNextEntry() {
+        long first = wheel.schedule(1, record, null, 1L);
+        advance(1);
+        long second = wheel.schedule(1, record, null, 2L); // reuses the freed slot
+        assertEquals((int) first, (int) second);
+        assertFalse(wheel.cancel(first));
+        assertFalse(wheel.cancel(TimingWheel.NONE));
+        advance(1);
+        assertEquals(2, ran.size());
+    }
+
+    @Test
+    public void cancelFromAnActionDueTheSameTick() {
+        long victim = wheel.schedule(1, record, null, 2L);
+        boolean[] cancelled = new boolean[1];
+        // buckets fire newest first, so the canceller runs before the victim
+        wheel.schedule(1, (ref, arg) -> cancelled[0] = wheel.cancel(victim), null, 1L);
+        advance(1);
+        assertTrue(cancelled[0]);
+        assertTrue(ran.isEmpty());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void actionsMayScheduleDuringAdvance() {
+        wheel.schedule(1, (ref, arg) -> wheel.schedule(1, record, null, arg + 1), null, 10L);
+        advance(1);
+        assertTrue(ran.isEmpty());
+        advance(1);
+        assertEquals(11L, (long) ran.get(0));
+    }
+
+    @Test
+    public void cancelOwnerDropsOnlyThatPlayersEntries() {
+        UUID a = new UUID(0, 1), b = new UUID(0, 2);
+        wheel.schedule(5, record, null, 1L, a);
+        long mid = wheel.schedule(6, record, null, 2L, a);
+        wheel.schedule(7, record, null, 3L, a);
+        wheel.schedule(5, record, null, 4L, b);
+        assertTrue(wheel.cancel(mid)); // unlinks from the middle of a's chain
+        assertEquals(2, wheel.cancelOwner(a));
+        assertEquals(0, wheel.cancelOwner(a));
+        advance(10);
+        assertEquals(1, ran.size());
+        assertEquals(4L, (long) ran.get(0));
+    }
+
+    @Test
+    public void ownerIdIsRecycledOnceItsChainEmpties() {
+        UUID a = new UUID(0, 1);
+        wheel.schedule(1, record, null, 1L, a);
+        advance(1);
+        assertEquals(0, wheel.cancelOwner(a)); // fired entries left the chain
+        wheel.schedule(1, record, null, 2L, a);
+        assertEquals(1, wheel.cancelOwner(a));
+        advance(1);
+        assertEquals(1, ran.size());
+    }
+
+    @Test
+    public void growsPastTheInitialSlotsAndKeepsPendingEntries() {
+        int n = 1000;
+        long[] handles = new long[n];
+        for (int i = 0; i < n; i++) handles[i] = wheel.schedule(1 + (i % 20), record, null, i);
+        assertEquals(n, wheel.size());
+        assertTrue(wheel.cancel(handles[0]));
+        advance(20);
+        assertEquals(n - 1, ran.size());
+        assertEquals(0, wheel.size());
+    }
+
+    private void advance(int ticks) {
+        for (int i = 0; i < ticks; i++) wheel.advance();
+    }
+}